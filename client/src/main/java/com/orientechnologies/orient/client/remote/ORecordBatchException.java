@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.client.remote;
+
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.exception.OStorageException;
+
+/**
+ * Thrown when some records of a batch request failed while the others were applied. It carries the outcome of each record in the
+ * order of the request: the results of the applied records, with null in place of the failed ones, and the errors of the failed
+ * records by their index in the request.
+ */
+public class ORecordBatchException extends OStorageException {
+  private static final long                    serialVersionUID = 1L;
+
+  private final List<?>                        results;
+  private final Map<Integer, RuntimeException> errors;
+
+  public ORecordBatchException(final String iMessage, final List<?> iResults, final Map<Integer, RuntimeException> iErrors) {
+    super(iMessage + ": " + iErrors.size() + " of " + iResults.size() + " records failed, the others were applied", iErrors
+        .values().iterator().next());
+    results = iResults;
+    errors = iErrors;
+  }
+
+  /**
+   * Returns the result of each record in the order of the request, null for the failed ones.
+   */
+  public List<?> getResults() {
+    return results;
+  }
+
+  /**
+   * Returns the error of each failed record by its index in the request.
+   */
+  public Map<Integer, RuntimeException> getErrors() {
+    return errors;
+  }
+}
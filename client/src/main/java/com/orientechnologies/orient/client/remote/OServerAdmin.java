@@ -96,6 +96,7 @@ public class OServerAdmin {
         storage.beginResponse(network);
         sessionId = network.readInt();
         storage.setSessionId(sessionId);
+        storage.readCompressionThreshold(network);
       } finally {
         storage.endResponse(network);
       }
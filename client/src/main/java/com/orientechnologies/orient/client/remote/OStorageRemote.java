@@ -47,6 +47,7 @@ import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandRequestAsynch;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
+import com.orientechnologies.orient.core.command.OCommandResultListener;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
@@ -68,6 +69,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.OSerializableStream;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerStringAbstract;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.sql.query.OSQLCursorQuery;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.ODataSegment;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
@@ -125,7 +127,9 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
   private Map<String, Object>              connectionOptions;
   private final String                     clientId;
 
-  private final int                        maxReadQueue;
+  private final int                        maxPipelinedRequests;
+  private final int                        requestedCompressionThreshold;
+  private volatile int                     compressionThreshold;
 
   public OStorageRemote(final String iClientId, final String iURL, final String iMode) throws IOException {
     super(iURL, iURL, iMode);
@@ -140,7 +144,9 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
 
     asynchExecutor = Executors.newSingleThreadScheduledExecutor();
 
-    maxReadQueue = Runtime.getRuntime().availableProcessors() - 1;
+    maxPipelinedRequests = clientConfiguration.getValueAsInteger(OGlobalConfiguration.CLIENT_CHANNEL_MAX_PIPELINED_REQUESTS);
+    requestedCompressionThreshold = clientConfiguration
+        .getValueAsInteger(OGlobalConfiguration.CLIENT_CHANNEL_COMPRESSION_THRESHOLD);
   }
 
   public int getSessionId() {
@@ -457,6 +463,193 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     } while (true);
   }
 
+  /**
+   * Reads all the records with one request. Servers that don't support it are asked one record at a time.
+   */
+  @Override
+  public List<ORawBuffer> readRecords(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    checkConnection();
+
+    if (OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting)
+      // PENDING NETWORK OPERATION, CAN'T EXECUTE IT NOW
+      return Arrays.asList(new ORawBuffer[iRids.size()]);
+
+    do {
+      try {
+        if (getServerProtocolVersion() < 15)
+          // OLD SERVER: ONE REQUEST PER RECORD
+          return super.readRecords(iRids, iFetchPlan, iIgnoreCache);
+
+        OChannelBinaryClient network = null;
+        try {
+          network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH);
+          network.writeInt(iRids.size());
+          for (ORecordId rid : iRids)
+            network.writeRID(rid);
+          network.writeString(iFetchPlan != null ? iFetchPlan : "");
+          network.writeByte((byte) (iIgnoreCache ? 1 : 0));
+        } finally {
+          endRequest(network);
+        }
+
+        try {
+          beginResponse(network);
+
+          final List<ORawBuffer> buffers = new ArrayList<ORawBuffer>(iRids.size());
+          for (int i = 0; i < iRids.size(); ++i)
+            if (network.readByte() == 0)
+              buffers.add(null);
+            else
+              buffers.add(new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte()));
+
+          final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+          ORecordInternal<?> record;
+          while (network.readByte() == 2) {
+            record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(network);
+
+            if (database != null)
+              // PUT IN THE CLIENT LOCAL CACHE
+              database.getLevel1Cache().updateRecord(record);
+          }
+          return buffers;
+
+        } finally {
+          endResponse(network);
+        }
+
+      } catch (Exception e) {
+        handleException("Error on read records " + iRids, e);
+
+      }
+    } while (true);
+  }
+
+  /**
+   * Creates all the records with one request and sets the assigned positions in the record ids. The records are not created
+   * atomically: use a transaction for it.
+   * 
+   * @throws ORecordBatchException
+   *           if some records were not created, carrying the positions of the others
+   */
+  public List<OPhysicalPosition> createRecords(final int iDataSegmentId, final List<ORecordId> iRids,
+      final List<ORawBuffer> iContents) {
+    checkConnection();
+
+    do {
+      try {
+        final OChannelBinaryClient network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_CREATE_BATCH);
+        try {
+          network.writeInt(iDataSegmentId);
+          network.writeInt(iRids.size());
+          for (int i = 0; i < iRids.size(); ++i) {
+            final ORawBuffer content = iContents.get(i);
+            network.writeShort((short) iRids.get(i).clusterId);
+            network.writeBytes(content.buffer);
+            network.writeByte(content.recordType);
+          }
+        } finally {
+          endRequest(network);
+        }
+
+        try {
+          beginResponse(network);
+
+          final List<OPhysicalPosition> result = new ArrayList<OPhysicalPosition>(iRids.size());
+          Map<Integer, RuntimeException> errors = null;
+          for (int i = 0; i < iRids.size(); ++i) {
+            if (network.readByte() == 0) {
+              // THE RECORD WAS NOT CREATED: READ ALL THE OUTCOMES BEFORE TO REPORT IT
+              if (errors == null)
+                errors = new HashMap<Integer, RuntimeException>();
+              errors.put(i, network.readException());
+              result.add(null);
+              continue;
+            }
+
+            final ORecordId rid = iRids.get(i);
+            final OPhysicalPosition ppos = new OPhysicalPosition(iDataSegmentId, -1, iContents.get(i).recordType);
+            rid.clusterPosition = network.readClusterPosition();
+            ppos.clusterPosition = rid.clusterPosition;
+            ppos.recordVersion = network.readVersion();
+            result.add(ppos);
+          }
+
+          if (errors != null)
+            throw new ORecordBatchException("Error on create " + iRids.size() + " records", result, errors);
+          return result;
+
+        } finally {
+          endResponse(network);
+        }
+
+      } catch (OModificationOperationProhibitedException mope) {
+        handleDBFreeze();
+      } catch (Exception e) {
+        handleException("Error on create " + iRids.size() + " records", e);
+
+      }
+    } while (true);
+  }
+
+  /**
+   * Updates all the records with one request and returns their new versions. The records are not updated atomically: use a
+   * transaction for it.
+   * 
+   * @throws ORecordBatchException
+   *           if some records were not updated, carrying the new versions of the others
+   */
+  public List<ORecordVersion> updateRecords(final List<ORecordId> iRids, final List<ORawBuffer> iContents) {
+    checkConnection();
+
+    do {
+      try {
+        final OChannelBinaryClient network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_UPDATE_BATCH);
+        try {
+          network.writeInt(iRids.size());
+          for (int i = 0; i < iRids.size(); ++i) {
+            final ORawBuffer content = iContents.get(i);
+            network.writeRID(iRids.get(i));
+            network.writeBytes(content.buffer);
+            network.writeVersion(content.version);
+            network.writeByte(content.recordType);
+          }
+        } finally {
+          endRequest(network);
+        }
+
+        try {
+          beginResponse(network);
+
+          final List<ORecordVersion> result = new ArrayList<ORecordVersion>(iRids.size());
+          Map<Integer, RuntimeException> errors = null;
+          for (int i = 0; i < iRids.size(); ++i)
+            if (network.readByte() == 1)
+              result.add(network.readVersion());
+            else {
+              // THE RECORD WAS NOT UPDATED: READ ALL THE OUTCOMES BEFORE TO REPORT IT
+              if (errors == null)
+                errors = new HashMap<Integer, RuntimeException>();
+              errors.put(i, network.readException());
+              result.add(null);
+            }
+
+          if (errors != null)
+            throw new ORecordBatchException("Error on update " + iRids.size() + " records", result, errors);
+          return result;
+
+        } finally {
+          endResponse(network);
+        }
+
+      } catch (OModificationOperationProhibitedException mope) {
+        handleDBFreeze();
+      } catch (Exception e) {
+        handleException("Error on update " + iRids.size() + " records", e);
+
+      }
+    } while (true);
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, int iMode, final ORecordCallback<ORecordVersion> iCallback) {
     checkConnection();
@@ -987,6 +1180,11 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     if (!(iCommand instanceof OSerializableStream))
       throw new OCommandExecutionException("Cannot serialize the command to be executed to the server side.");
 
+    if (iCommand instanceof OSQLCursorQuery<?> && isCursorSupported()) {
+      commandCursor((OSQLCursorQuery<?>) iCommand);
+      return null;
+    }
+
     OSerializableStream command = iCommand;
     Object result = null;
 
@@ -1097,6 +1295,117 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     return result;
   }
 
+  /**
+   * Executes the query with a server-side cursor, passing to the listener one page of records at a time. The next page is requested
+   * only when the listener consumed the previous one.
+   */
+  protected void commandCursor(final OSQLCursorQuery<?> iCommand) {
+    final OCommandResultListener listener = iCommand.getResultListener();
+    final List<ORecordInternal<?>> page = new ArrayList<ORecordInternal<?>>();
+
+    int cursorId = -1;
+    boolean more = true;
+    try {
+      do {
+        page.clear();
+        cursorId = fetchCursorPage(iCommand, cursorId, page);
+
+        for (ORecordInternal<?> record : page)
+          if (!listener.result(record)) {
+            more = false;
+            break;
+          }
+      } while (more && cursorId > -1);
+
+    } finally {
+      if (cursorId > -1)
+        // STOPPED BY THE LISTENER OR BY AN ERROR
+        closeCursor(cursorId);
+    }
+
+    listener.end();
+  }
+
+  private int fetchCursorPage(final OSQLCursorQuery<?> iCommand, final int iCursorId, final List<ORecordInternal<?>> iPage) {
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.get();
+
+    do {
+      OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting = true;
+      try {
+
+        OChannelBinaryClient network = null;
+        try {
+          if (iCursorId == -1) {
+            network = beginRequest(OChannelBinaryProtocol.REQUEST_COMMAND);
+            network.writeByte((byte) 'c'); // CURSOR
+            network.writeBytes(OStreamSerializerAnyStreamable.INSTANCE.toStream(iCommand));
+          } else {
+            network = beginRequest(OChannelBinaryProtocol.REQUEST_CURSOR_FETCH);
+            network.writeInt(iCursorId);
+          }
+          network.writeInt(iCommand.getPageSize());
+
+        } finally {
+          endRequest(network);
+        }
+
+        try {
+          beginResponse(network);
+
+          byte status;
+          while ((status = network.readByte()) > 0) {
+            final ORecordInternal<?> record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(network);
+            if (status == 1)
+              // PART OF THE RESULT SET
+              iPage.add(record);
+            database.getLevel1Cache().updateRecord(record);
+          }
+
+          return network.readInt();
+
+        } finally {
+          endResponse(network);
+        }
+
+      } catch (OModificationOperationProhibitedException mope) {
+        handleDBFreeze();
+      } catch (Exception e) {
+        handleException("Error on fetching the result of the command: " + iCommand, e);
+
+      } finally {
+        OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting = false;
+      }
+    } while (true);
+  }
+
+  private void closeCursor(final int iCursorId) {
+    try {
+      final OChannelBinaryClient network = beginRequest(OChannelBinaryProtocol.REQUEST_CURSOR_CLOSE);
+      try {
+        network.writeInt(iCursorId);
+      } finally {
+        endRequest(network);
+      }
+
+      try {
+        beginResponse(network);
+      } finally {
+        endResponse(network);
+      }
+    } catch (Exception e) {
+      // THE SERVER CLOSES IT ANYWAY AFTER THE TIMEOUT
+      OLogManager.instance().debug(this, "Error on closing the cursor %d", e, iCursorId);
+    }
+  }
+
+  private boolean isCursorSupported() {
+    try {
+      return getServerProtocolVersion() >= 17;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   public void commit(final OTransaction iTx) {
     checkConnection();
 
@@ -1532,6 +1841,7 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     }
 
     setSessionId(-1);
+    compressionThreshold = 0;
     createConnectionPool();
 
     boolean availableConnections;
@@ -1579,6 +1889,8 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
           if (network.getSrvProtocolVersion() >= 14)
             network.readString();
 
+          readCompressionThreshold(network);
+
           status = STATUS.OPEN;
           return;
         } finally {
@@ -1608,6 +1920,17 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
       network.writeString(DRIVER_NAME).writeString(OConstants.ORIENT_VERSION)
           .writeShort((short) OChannelBinaryProtocol.CURRENT_PROTOCOL_VERSION).writeString(clientId);
     }
+
+    if (network.getSrvProtocolVersion() >= 16)
+      network.writeInt(requestedCompressionThreshold);
+  }
+
+  /**
+   * Reads the compression threshold accepted by the server, that from now on compresses its responses too.
+   */
+  protected void readCompressionThreshold(final OChannelBinaryClient network) throws IOException {
+    if (network.getSrvProtocolVersion() >= 16)
+      compressionThreshold = network.readInt();
   }
 
   /**
@@ -1724,7 +2047,9 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
   }
 
   /**
-   * Acquire a network channel from the pool. Don't lock the write stream since the connection usage is exclusive.
+   * Acquire a network channel from the pool and lock its write stream until endRequest(). The requests are pipelined: a channel is
+   * shared by the threads waiting for their responses, up to client.channel.maxPipelinedRequests threads before another channel is
+   * used or created.
    * 
    * @param iCommand
    * @return
@@ -1754,8 +2079,13 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
         network = networkPool.get(networkPoolCursor);
 
         networkPoolCursor++;
-        if (network.getLockWrite().tryLock())
-          break;
+        if (network.getLockWrite().tryLock()) {
+          if (network.getPendingResponses() < maxPipelinedRequests || networkPool.size() >= maxPool)
+            break;
+
+          // TOO MANY REQUESTS WAITING ON THIS CHANNEL: TRY THE NEXT ONE
+          network.getLockWrite().unlock();
+        }
 
         network = null;
 
@@ -1796,12 +2126,28 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
       }
     }
 
+    network.setCompressionThreshold(compressionThreshold);
     network.writeByte(iCommand);
     network.writeInt(getSessionId());
 
     return network;
   }
 
+  /**
+   * Returns the protocol version of the server, the same for all the channels of the pool.
+   */
+  protected int getServerProtocolVersion() throws IOException {
+    synchronized (networkPool) {
+      if (networkPool.size() == 0)
+        openRemoteDatabase();
+
+      if (networkPool.size() == 0)
+        throw new ONetworkProtocolException("Connection pool closed");
+
+      return networkPool.get(0).getSrvProtocolVersion();
+    }
+  }
+
   /**
    * Ends the request and unlock the write lock
    */
@@ -1853,15 +2199,6 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
   protected void beginResponse(final OChannelBinaryClient iNetwork) throws IOException {
     iNetwork.beginResponse(getSessionId());
 
-    if (iNetwork.getLockRead().getQueueLength() + 1 >= maxReadQueue)
-      synchronized (networkPool) {
-        if (networkPool.size() < maxPool) {
-          // CREATE NEW CONNECTION
-          final OChannelBinaryClient network = createNetworkConnection();
-          networkPool.add(network);
-        }
-      }
-
     if (debug)
       System.out.println("-> res: " + getSessionId());
   }
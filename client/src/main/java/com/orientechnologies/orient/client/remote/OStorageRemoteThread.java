@@ -17,6 +17,7 @@ package com.orientechnologies.orient.client.remote;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -153,6 +154,22 @@ public class OStorageRemoteThread implements OStorageProxy {
     return delegate.readRecord(iRid, iFetchPlan, iIgnoreCache, null, loadTombstones);
   }
 
+  public List<ORawBuffer> readRecords(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    delegate.setSessionId(sessionId);
+    return delegate.readRecords(iRids, iFetchPlan, iIgnoreCache);
+  }
+
+  public List<OPhysicalPosition> createRecords(final int iDataSegmentId, final List<ORecordId> iRids,
+      final List<ORawBuffer> iContents) {
+    delegate.setSessionId(sessionId);
+    return delegate.createRecords(iDataSegmentId, iRids, iContents);
+  }
+
+  public List<ORecordVersion> updateRecords(final List<ORecordId> iRids, final List<ORawBuffer> iContents) {
+    delegate.setSessionId(sessionId);
+    return delegate.updateRecords(iRids, iContents);
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, final int iMode, ORecordCallback<ORecordVersion> iCallback) {
     delegate.setSessionId(sessionId);
@@ -275,6 +275,79 @@ public abstract class OMVRBTree<K, V> extends AbstractMap<K, V> implements ONavi
 
   }
 
+  /**
+   * Returns the value to which the specified key is mapped like {@link #get(Object)}, but without changing the state of the tree:
+   * the current page index and the last search are left untouched and no optimization is requested while searching. For this
+   * reason it can be called by concurrent readers, as long as nobody changes the tree meanwhile and the nodes are loaded in a
+   * thread-safe way.
+   */
+  public V getConcurrent(final Object key) {
+    final OMVRBTreeEntry<K, V> node = searchNodeConcurrent(key);
+    if (node == null)
+      return null;
+
+    final int index = node.indexOf((K) key);
+    return index > -1 ? node.getValueAt(index) : null;
+  }
+
+  /**
+   * Returns <tt>true</tt> if this map contains a mapping for the specified key like {@link #containsKey(Object)}, without
+   * changing the state of the tree.
+   * 
+   * @see #getConcurrent(Object)
+   */
+  public boolean containsKeyConcurrent(final Object key) {
+    final OMVRBTreeEntry<K, V> node = searchNodeConcurrent(key);
+    return node != null && node.indexOf((K) key) > -1;
+  }
+
+  /**
+   * Returns the node that could contain the key, navigating the tree as {@link #getEntry(Object, boolean, PartialSearchMode)} but
+   * keeping the search state in local variables.
+   */
+  protected OMVRBTreeEntry<K, V> searchNodeConcurrent(final Object key) {
+    if (key == null || size() == 0)
+      return null;
+
+    final K k = (K) key;
+
+    OMVRBTreeEntry<K, V> p = getBestEntryPoint(k);
+    OMVRBTreeEntry<K, V> prevNode = null;
+    OMVRBTreeEntry<K, V> tmpNode;
+
+    while (p != null && p.getSize() > 0) {
+      final int beginKey = compare(k, p.getKeyAt(0));
+      if (beginKey == 0)
+        return p;
+
+      final int endKey = compare(k, p.getKeyAt(p.getSize() - 1));
+
+      if (beginKey < 0) {
+        if (endKey < 0) {
+          tmpNode = predecessor(p);
+          if (tmpNode != null && tmpNode != prevNode) {
+            // MINOR THAN THE CURRENT: GET THE LEFT NODE
+            prevNode = p;
+            p = tmpNode;
+            continue;
+          }
+        }
+      } else if (endKey > 0) {
+        tmpNode = successor(p);
+        if (tmpNode != null && tmpNode != prevNode) {
+          // MAJOR THAN THE CURRENT: GET THE RIGHT NODE
+          prevNode = p;
+          p = tmpNode;
+          continue;
+        }
+      }
+
+      return p;
+    }
+
+    return null;
+  }
+
   public Comparator<? super K> comparator() {
     return comparator;
   }
@@ -2784,7 +2857,7 @@ public abstract class OMVRBTree<K, V> extends AbstractMap<K, V> implements ONavi
    * level number is computed by finding the number of splits needed to reach the zeroeth node. (The answer is ~lg(N), but in any
    * case must be computed by same quick O(lg(N)) loop.)
    */
-  private static int computeRedLevel(final int sz) {
+  protected static int computeRedLevel(final int sz) {
     int level = 0;
     for (int m = sz - 1; m >= 0; m = m / 2 - 1)
       level++;
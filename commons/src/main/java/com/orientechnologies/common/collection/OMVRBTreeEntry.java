@@ -271,6 +271,37 @@ public abstract class OMVRBTreeEntry<K, V> implements Map.Entry<K, V>, Comparabl
     return null;
   }
 
+  /**
+   * Binary search inside the node that doesn't change the state of the tree, so it can be executed by concurrent readers.
+   * 
+   * @param iKey
+   *          Key to search
+   * @return The position of the key if found, otherwise -1
+   */
+  protected int indexOf(final K iKey) {
+    int low = 0;
+    int high = getSize() - 1;
+
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+
+      final int cmp;
+      if (tree.comparator != null)
+        cmp = tree.comparator.compare(getKeyAt(mid), iKey);
+      else
+        cmp = ((Comparable<? super K>) getKeyAt(mid)).compareTo(iKey);
+
+      if (cmp < 0)
+        low = mid + 1;
+      else if (cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+
+    return -1;
+  }
+
   protected abstract void insert(final int iPosition, final K key, final V value);
 
   protected abstract void remove();
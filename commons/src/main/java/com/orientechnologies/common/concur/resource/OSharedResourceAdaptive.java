@@ -92,7 +92,7 @@ public class OSharedResourceAdaptive {
 	}
 
 	protected boolean tryAcquireExclusiveLock() {
-		return concurrent || lock.writeLock().tryLock();
+		return !concurrent || lock.writeLock().tryLock();
 	}
 
 	protected void acquireSharedLock() {
@@ -125,7 +125,7 @@ public class OSharedResourceAdaptive {
 	}
 
 	protected boolean tryAcquireSharedLock() {
-		return concurrent || lock.readLock().tryLock();
+		return !concurrent || lock.readLock().tryLock();
 	}
 
 	protected void releaseExclusiveLock() {
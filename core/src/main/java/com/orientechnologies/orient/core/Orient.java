@@ -27,6 +27,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.orientechnologies.common.concur.resource.OSharedResourceAbstract;
@@ -71,6 +76,7 @@ public class Orient extends OSharedResourceAbstract {
   private final OMemoryWatchDog                         memoryWatchDog;
   private final OJVMProfiler                            profiler;
   private static final AtomicInteger                    serialId             = new AtomicInteger();
+  private ThreadPoolExecutor                            parallelScanExecutor;
 
   public ODatabaseThreadLocalFactory                    databaseThreadFactory;
 
@@ -308,6 +314,13 @@ public class Orient extends OSharedResourceAbstract {
         // CLOSE ALL DATABASES
         databaseFactory.shutdown();
 
+      synchronized (this) {
+        if (parallelScanExecutor != null) {
+          parallelScanExecutor.shutdownNow();
+          parallelScanExecutor = null;
+        }
+      }
+
       if (storages != null) {
         // CLOSE ALL THE STORAGES
         final List<OStorage> storagesCopy = new ArrayList<OStorage>(storages.values());
@@ -452,4 +465,36 @@ public class Orient extends OSharedResourceAbstract {
   public OScriptManager getScriptManager() {
     return scriptManager;
   }
+
+  /**
+   * Returns the pool of threads that scan the clusters of the queries in parallel. The pool is resized at every call to follow
+   * the current value of {@link OGlobalConfiguration#QUERY_PARALLEL_SCAN_THREADS}.
+   */
+  public synchronized ExecutorService getParallelScanExecutor() {
+    final int threads = Math.max(1, OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger());
+
+    if (parallelScanExecutor == null) {
+      parallelScanExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            private final AtomicInteger serial = new AtomicInteger();
+
+            public Thread newThread(final Runnable r) {
+              final Thread t = new Thread(threadGroup, r, "OrientDB ParallelScan-" + serial.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      // NO THREADS ARE KEPT WHEN NO QUERIES ARE SCANNING
+      parallelScanExecutor.allowCoreThreadTimeOut(true);
+
+    } else if (threads > parallelScanExecutor.getMaximumPoolSize()) {
+      parallelScanExecutor.setMaximumPoolSize(threads);
+      parallelScanExecutor.setCorePoolSize(threads);
+    } else if (threads < parallelScanExecutor.getMaximumPoolSize()) {
+      parallelScanExecutor.setCorePoolSize(threads);
+      parallelScanExecutor.setMaximumPoolSize(threads);
+    }
+
+    return parallelScanExecutor;
+  }
 }
@@ -0,0 +1,449 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+
+/**
+ * Implementation of generic {@link OCache} interface that keeps the records serialized out of the Java heap, through
+ * {@link ODirectMemory}. Only a small entry with the pointer and the version is kept on heap for every record, so the cache can
+ * grow to gigabytes without weighing on the garbage collector. Records are serialized when put and deserialized at every hit: the
+ * returned instance is always a new one.<br/>
+ * The cache is bounded by number of records and by off-heap memory ("cache.level2.offHeap.size"): records are evicted with the
+ * CLOCK algorithm. Records are split in segments by identity, every segment has its own read/write lock: reads take the shared
+ * lock to avoid the memory is freed while it is copied.
+ *
+ * To use it set the configuration "cache.level2.impl" to the name of this class.
+ */
+public class OOffHeapCache implements OCache {
+  private static final int           DEFAULT_LIMIT = 1000;
+
+  private final AtomicBoolean        enabled       = new AtomicBoolean(false);
+  private final AtomicInteger        size          = new AtomicInteger();
+  private final AtomicLong           usedMemory    = new AtomicLong();
+  private final ODirectMemory        memory;
+  private final Segment[]            segments;
+  private final int                  segmentMask;
+  private final int                  limit;
+  private final long                 maxMemory;
+  private final String               profilerPrefix;
+
+  protected OMemoryWatchDog.Listener lowMemoryListener;
+
+  public OOffHeapCache(final String iName, final int initialLimit) {
+    memory = ODirectMemoryFactory.INSTANCE.directMemory();
+    if (memory == null)
+      throw new IllegalStateException("Direct memory is not available on this JVM");
+
+    limit = initialLimit;
+    maxMemory = OFileUtils.getSizeAsNumber(OGlobalConfiguration.CACHE_LEVEL2_OFFHEAP_SIZE.getValue());
+    profilerPrefix = "db." + iName + ".cache.level2.offHeap.";
+
+    int segmentCount = 1;
+    while (segmentCount < Runtime.getRuntime().availableProcessors() * 4)
+      segmentCount <<= 1;
+
+    segments = new Segment[segmentCount];
+    segmentMask = segmentCount - 1;
+
+    final int initialCapacity = Math.max(16, (initialLimit > 0 ? initialLimit : DEFAULT_LIMIT) / segmentCount);
+    for (int i = 0; i < segmentCount; ++i)
+      segments[i] = new Segment(initialCapacity);
+  }
+
+  public void startup() {
+    lowMemoryListener = Orient.instance().getMemoryWatchDog().addListener(new OLowMemoryListener());
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "used", "Off-heap memory used by the cache", METRIC_TYPE.SIZE, new OProfilerHookValue() {
+          public Object getValue() {
+            return usedMemory.get();
+          }
+        }, "db.*.cache.level2.offHeap.used");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "max", "Maximum off-heap memory used by the cache", METRIC_TYPE.SIZE,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return maxMemory;
+              }
+            }, "db.*.cache.level2.offHeap.max");
+
+    enable();
+  }
+
+  public void shutdown() {
+    Orient.instance().getMemoryWatchDog().removeListener(lowMemoryListener);
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "used");
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "max");
+    disable();
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(id);
+    final Entry entry;
+    final byte[] content;
+
+    segment.lock.readLock().lock();
+    try {
+      entry = segment.map.get(id);
+      if (entry == null)
+        return null;
+
+      if (!entry.referenced)
+        entry.referenced = true;
+      content = memory.get(entry.pointer, entry.length);
+    } finally {
+      segment.lock.readLock().unlock();
+    }
+
+    return toRecord(entry, content);
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    final ORID id = record.getIdentity();
+
+    final byte[] content;
+    try {
+      content = record.toStream();
+    } catch (Exception e) {
+      OLogManager.instance().debug(this, "Cannot serialize record %s to put it in the off-heap cache", e, id);
+      remove(id);
+      return null;
+    }
+
+    if (content == null || content.length > maxMemory)
+      return remove(id);
+
+    final Entry entry = new Entry(id.copy(), record.getRecordType(), record.getRecordVersion().copy(), content.length,
+        memory.allocate(content));
+    usedMemory.addAndGet(content.length);
+
+    final Segment segment = segmentFor(id);
+    Entry previous;
+    byte[] previousContent = null;
+
+    segment.lock.writeLock().lock();
+    try {
+      previous = segment.map.get(id);
+      if (previous != null) {
+        previousContent = memory.get(previous.pointer, previous.length);
+        segment.remove(previous);
+        free(previous);
+      } else
+        size.incrementAndGet();
+
+      segment.add(entry);
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+
+    if ((limit > 0 && size.get() > limit) || usedMemory.get() > maxMemory)
+      evictOverLimit(id.hashCode());
+
+    return previous != null ? toRecord(previous, previousContent) : null;
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(id);
+    final Entry entry;
+    final byte[] content;
+
+    segment.lock.writeLock().lock();
+    try {
+      entry = segment.map.get(id);
+      if (entry == null)
+        return null;
+
+      content = memory.get(entry.pointer, entry.length);
+      segment.remove(entry);
+      free(entry);
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+
+    size.decrementAndGet();
+    return toRecord(entry, content);
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock.writeLock().lock();
+      try {
+        for (int i = 0; i < segment.count; ++i)
+          free(segment.ring[i]);
+        size.addAndGet(-segment.count);
+        segment.clear();
+      } finally {
+        segment.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  /**
+   * Returns the off-heap memory used by the serialized records.
+   */
+  public long getUsedMemory() {
+    return usedMemory.get();
+  }
+
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  public Collection<ORID> keys() {
+    final Collection<ORID> keys = new ArrayList<ORID>(size());
+    for (Segment segment : segments) {
+      segment.lock.readLock().lock();
+      try {
+        keys.addAll(segment.map.keySet());
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+    }
+    return keys;
+  }
+
+  public void lock(final ORID id) {
+    segmentFor(id).lock.writeLock().lock();
+  }
+
+  public void unlock(final ORID id) {
+    segmentFor(id).lock.writeLock().unlock();
+  }
+
+  /**
+   * Removes the amount of records passed.
+   */
+  protected void removeEldest(final int amount) {
+    int removed = 0;
+    boolean found = true;
+    while (removed < amount && found) {
+      found = false;
+      for (int i = 0; i < segments.length && removed < amount; ++i) {
+        final Segment segment = segments[i];
+        segment.lock.writeLock().lock();
+        try {
+          if (segment.evict()) {
+            removed++;
+            found = true;
+          }
+        } finally {
+          segment.lock.writeLock().unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Evicts records until the cache is back under both the limits, starting from the segment of the last record put. Segments
+   * locked by other threads are skipped to avoid deadlocks with the threads that hold a segment lock by {@link #lock(ORID)}.
+   */
+  private void evictOverLimit(final int iStartHash) {
+    final int start = spread(iStartHash);
+    while ((limit > 0 && size.get() > limit) || usedMemory.get() > maxMemory) {
+      boolean evicted = false;
+      for (int i = 0; i < segments.length && !evicted; ++i) {
+        final Segment segment = segments[(start + i) & segmentMask];
+        if (segment.lock.writeLock().tryLock())
+          try {
+            evicted = segment.evict();
+          } finally {
+            segment.lock.writeLock().unlock();
+          }
+      }
+
+      if (!evicted)
+        return;
+    }
+  }
+
+  private void free(final Entry entry) {
+    memory.free(entry.pointer);
+    usedMemory.addAndGet(-entry.length);
+  }
+
+  private ORecordInternal<?> toRecord(final Entry entry, final byte[] content) {
+    final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(entry.recordType);
+    record.fill(entry.id, entry.version, content, false);
+    return record;
+  }
+
+  private Segment segmentFor(final ORID id) {
+    return segments[spread(id.hashCode()) & segmentMask];
+  }
+
+  private static int spread(int h) {
+    // SAME BIT SPREADING OF HASHMAP: RIDS OF THE SAME CLUSTER DIFFER ONLY IN THE LOWER BITS
+    h ^= (h >>> 20) ^ (h >>> 12);
+    return h ^ (h >>> 7) ^ (h >>> 4);
+  }
+
+  private static final class Entry {
+    private final ORID           id;
+    private final byte           recordType;
+    private final ORecordVersion version;
+    private final int            length;
+    private final long           pointer;
+    private volatile boolean     referenced;
+    private int                  position;
+
+    private Entry(final ORID iId, final byte iRecordType, final ORecordVersion iVersion, final int iLength, final long iPointer) {
+      id = iId;
+      recordType = iRecordType;
+      version = iVersion;
+      length = iLength;
+      pointer = iPointer;
+    }
+  }
+
+  /**
+   * Segment of the cache. The entries are kept in a ring scanned by the clock hand. All the methods must be called holding the
+   * write lock of the segment.
+   */
+  private final class Segment {
+    private final Map<ORID, Entry>       map;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Entry[]                      ring;
+    private int                          count;
+    private int                          hand;
+
+    private Segment(final int iInitialCapacity) {
+      map = new HashMap<ORID, Entry>(iInitialCapacity);
+      ring = new Entry[iInitialCapacity];
+    }
+
+    private void add(final Entry entry) {
+      if (count == ring.length)
+        ring = Arrays.copyOf(ring, count << 1);
+
+      entry.position = count;
+      ring[count++] = entry;
+      map.put(entry.id, entry);
+    }
+
+    private void remove(final Entry entry) {
+      map.remove(entry.id);
+
+      final Entry last = ring[--count];
+      ring[entry.position] = last;
+      last.position = entry.position;
+      ring[count] = null;
+
+      if (hand >= count)
+        hand = 0;
+    }
+
+    private void clear() {
+      map.clear();
+      Arrays.fill(ring, 0, count, null);
+      count = 0;
+      hand = 0;
+    }
+
+    /**
+     * Moves the clock hand until it finds an entry to evict, giving a second chance to the referenced ones.
+     */
+    private boolean evict() {
+      while (count > 0) {
+        final Entry entry = ring[hand];
+        if (entry.referenced) {
+          entry.referenced = false;
+          hand = (hand + 1) % count;
+          continue;
+        }
+
+        remove(entry);
+        free(entry);
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  class OLowMemoryListener implements OMemoryWatchDog.Listener {
+    public void memoryUsageLow(final long freeMemory, final long freeMemoryPercentage) {
+      try {
+        final int oldSize = size();
+        if (oldSize == 0)
+          return;
+
+        // ONLY THE ENTRIES ARE ON HEAP: RELEASE A SMALL PART OF THEM
+        final int newSize = (int) (oldSize * (freeMemoryPercentage < 10 ? 0.5f : 0.9f));
+        removeEldest(oldSize - newSize);
+        OLogManager.instance().debug(this, "Low memory (%d%%): reducing off-heap cached records number from %d to %d",
+            freeMemoryPercentage, oldSize, newSize);
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error occurred during off-heap cache cleanup", e);
+      }
+    }
+  }
+}
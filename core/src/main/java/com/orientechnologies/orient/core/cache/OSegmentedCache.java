@@ -0,0 +1,362 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+
+/**
+ * Implementation of generic {@link OCache} interface designed for highly concurrent environments. Records are split in segments by
+ * identity: every segment keeps its records in a {@link ConcurrentHashMap}, so reads never lock, and evicts them with the CLOCK
+ * algorithm: a read only sets the "referenced" flag of the entry, and the eviction gives a second chance to the referenced entries
+ * instead of moving them in an access-ordered list like {@link ODefaultCache} does.<br/>
+ * Writes and {@link #lock(ORID)} take the lock of the segment only, so the level-2 cache serializes the operations on the same
+ * record without blocking the records of other segments.
+ *
+ * To use it set the configuration "cache.level2.impl" to the name of this class.
+ */
+public class OSegmentedCache implements OCache {
+  private static final int           DEFAULT_LIMIT = 1000;
+
+  private final AtomicBoolean        enabled       = new AtomicBoolean(false);
+  private final AtomicInteger        size          = new AtomicInteger();
+  private final Segment[]            segments;
+  private final int                  segmentMask;
+  private final int                  limit;
+
+  protected OMemoryWatchDog.Listener lowMemoryListener;
+
+  public OSegmentedCache(final String iName, final int initialLimit) {
+    limit = initialLimit;
+
+    int segmentCount = 1;
+    while (segmentCount < Runtime.getRuntime().availableProcessors() * 4)
+      segmentCount <<= 1;
+
+    segments = new Segment[segmentCount];
+    segmentMask = segmentCount - 1;
+
+    final int initialCapacity = Math.max(16, (initialLimit > 0 ? initialLimit : DEFAULT_LIMIT) / segmentCount);
+    for (int i = 0; i < segmentCount; ++i)
+      segments[i] = new Segment(initialCapacity);
+  }
+
+  public void startup() {
+    lowMemoryListener = Orient.instance().getMemoryWatchDog().addListener(new OLowMemoryListener());
+    enable();
+  }
+
+  public void shutdown() {
+    Orient.instance().getMemoryWatchDog().removeListener(lowMemoryListener);
+    disable();
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Entry entry = segmentFor(id).map.get(id);
+    if (entry == null)
+      return null;
+
+    if (!entry.referenced)
+      // AVOID TO WRITE THE SHARED FLAG ON EVERY HIT
+      entry.referenced = true;
+    return entry.record;
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    final ORID id = record.getIdentity();
+    final Segment segment = segmentFor(id);
+
+    segment.lock.lock();
+    try {
+      final Entry current = segment.map.get(id);
+      if (current != null) {
+        final ORecordInternal<?> previous = current.record;
+        current.record = record;
+        return previous;
+      }
+
+      segment.add(new Entry(id, record));
+    } finally {
+      segment.lock.unlock();
+    }
+
+    if (size.incrementAndGet() > limit && limit > 0)
+      evictOverLimit(id.hashCode());
+    return null;
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segmentFor(id);
+    if (!segment.map.containsKey(id))
+      // AVOID TO LOCK ON MISSES
+      return null;
+
+    final Entry entry;
+    segment.lock.lock();
+    try {
+      entry = segment.map.get(id);
+      if (entry == null)
+        return null;
+      segment.remove(entry);
+    } finally {
+      segment.lock.unlock();
+    }
+
+    size.decrementAndGet();
+    return entry.record;
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock.lock();
+      try {
+        size.addAndGet(-segment.count);
+        segment.clear();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public Collection<ORID> keys() {
+    final Collection<ORID> keys = new ArrayList<ORID>(size());
+    for (Segment segment : segments)
+      keys.addAll(segment.map.keySet());
+    return keys;
+  }
+
+  public void lock(final ORID id) {
+    segmentFor(id).lock.lock();
+  }
+
+  public void unlock(final ORID id) {
+    segmentFor(id).lock.unlock();
+  }
+
+  /**
+   * Removes the amount of records passed, skipping the dirty and pinned ones.
+   */
+  protected void removeEldest(final int amount) {
+    int removed = 0;
+    boolean found = true;
+    while (removed < amount && found) {
+      found = false;
+      for (int i = 0; i < segments.length && removed < amount; ++i) {
+        final Segment segment = segments[i];
+        segment.lock.lock();
+        try {
+          if (segment.evict(true)) {
+            removed++;
+            found = true;
+          }
+        } finally {
+          segment.lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Evicts records until the cache is back under the limit, starting from the segment of the last record put. Segments locked by
+   * other threads are skipped to avoid deadlocks with the threads that hold a segment lock by {@link #lock(ORID)}: the next put
+   * will complete the work.
+   */
+  private void evictOverLimit(final int iStartHash) {
+    final int start = spread(iStartHash);
+    while (size.get() > limit) {
+      boolean evicted = false;
+      for (int i = 0; i < segments.length && !evicted; ++i) {
+        final Segment segment = segments[(start + i) & segmentMask];
+        if (segment.lock.tryLock())
+          try {
+            evicted = segment.evict(false);
+          } finally {
+            segment.lock.unlock();
+          }
+      }
+
+      if (!evicted)
+        return;
+    }
+  }
+
+  private Segment segmentFor(final ORID id) {
+    return segments[spread(id.hashCode()) & segmentMask];
+  }
+
+  private static int spread(int h) {
+    // SAME BIT SPREADING OF HASHMAP: RIDS OF THE SAME CLUSTER DIFFER ONLY IN THE LOWER BITS
+    h ^= (h >>> 20) ^ (h >>> 12);
+    return h ^ (h >>> 7) ^ (h >>> 4);
+  }
+
+  private static final class Entry {
+    private final ORID                  id;
+    private volatile ORecordInternal<?> record;
+    private volatile boolean            referenced;
+    private int                         position;
+
+    private Entry(final ORID iId, final ORecordInternal<?> iRecord) {
+      id = iId;
+      record = iRecord;
+    }
+  }
+
+  /**
+   * Segment of the cache. The entries are kept in a ring scanned by the clock hand. All the methods must be called holding the
+   * segment lock.
+   */
+  private final class Segment {
+    private final ConcurrentHashMap<ORID, Entry> map;
+    private final ReentrantLock                  lock = new ReentrantLock();
+    private Entry[]                              ring;
+    private int                                  count;
+    private int                                  hand;
+
+    private Segment(final int iInitialCapacity) {
+      map = new ConcurrentHashMap<ORID, Entry>(iInitialCapacity, 0.75f, 1);
+      ring = new Entry[iInitialCapacity];
+    }
+
+    private void add(final Entry entry) {
+      if (count == ring.length)
+        ring = Arrays.copyOf(ring, count << 1);
+
+      entry.position = count;
+      ring[count++] = entry;
+      map.put(entry.id, entry);
+    }
+
+    private void remove(final Entry entry) {
+      map.remove(entry.id);
+
+      // MOVE THE LAST ENTRY IN THE FREED SLOT: THE HAND WILL CHECK IT AS NEXT IF IT WAS POINTING THERE
+      final Entry last = ring[--count];
+      ring[entry.position] = last;
+      last.position = entry.position;
+      ring[count] = null;
+
+      if (hand >= count)
+        hand = 0;
+    }
+
+    private void clear() {
+      map.clear();
+      Arrays.fill(ring, 0, count, null);
+      count = 0;
+      hand = 0;
+    }
+
+    /**
+     * Moves the clock hand until it finds an entry to evict.
+     *
+     * @return true if an entry has been evicted, false if the segment has no candidates
+     */
+    private boolean evict(final boolean iSkipDirtyAndPinned) {
+      // EVERY ENTRY CAN BE SKIPPED AT MOST TWICE: ONCE FOR THE REFERENCED FLAG AND ONCE MORE IF DIRTY OR PINNED
+      for (int skips = count * 2; count > 0; --skips) {
+        final Entry entry = ring[hand];
+
+        if (skips > 0) {
+          if (entry.referenced) {
+            // SECOND CHANCE
+            entry.referenced = false;
+            hand = (hand + 1) % count;
+            continue;
+          }
+
+          if (iSkipDirtyAndPinned && (entry.record.isDirty() || entry.record.isPinned() == Boolean.TRUE)) {
+            hand = (hand + 1) % count;
+            continue;
+          }
+        } else if (iSkipDirtyAndPinned)
+          // ALL THE ENTRIES ARE DIRTY OR PINNED
+          return false;
+
+        remove(entry);
+        size.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  class OLowMemoryListener implements OMemoryWatchDog.Listener {
+    public void memoryUsageLow(final long freeMemory, final long freeMemoryPercentage) {
+      try {
+        final int oldSize = size();
+        if (oldSize == 0)
+          return;
+
+        if (freeMemoryPercentage < 10) {
+          OLogManager.instance().debug(this, "Low memory (%d%%): clearing %d cached records", freeMemoryPercentage, oldSize);
+          removeEldest(oldSize);
+        } else {
+          final int newSize = (int) (oldSize * 0.9f);
+          removeEldest(oldSize - newSize);
+          OLogManager.instance().debug(this, "Low memory (%d%%): reducing cached records number from %d to %d",
+              freeMemoryPercentage, oldSize, newSize);
+        }
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error occurred during segmented cache cleanup", e);
+      }
+    }
+  }
+}
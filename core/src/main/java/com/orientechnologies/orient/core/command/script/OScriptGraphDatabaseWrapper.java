@@ -110,6 +110,18 @@ public class OScriptGraphDatabaseWrapper extends OScriptDocumentDatabaseWrapper
 		return ((OGraphDatabase) database).createEdge(iOutVertex, iInVertex, iClassName);
 	}
 
+	public void createLightweightEdge(ODocument iOutVertex, ODocument iInVertex) {
+		((OGraphDatabase) database).createLightweightEdge(iOutVertex, iInVertex);
+	}
+
+	public boolean removeLightweightEdge(ODocument iOutVertex, ODocument iInVertex) {
+		return ((OGraphDatabase) database).removeLightweightEdge(iOutVertex, iInVertex);
+	}
+
+	public boolean isLightweightEdge(OIdentifiable iEdge) {
+		return ((OGraphDatabase) database).isLightweightEdge(iEdge);
+	}
+
 	public Set<OIdentifiable> getEdgesBetweenVertexes(ODocument iVertex1, ODocument iVertex2) {
 		return ((OGraphDatabase) database).getEdgesBetweenVertexes(iVertex1, iVertex2);
 	}
@@ -64,6 +64,28 @@ public enum OGlobalConfiguration {
   STORAGE_RECORD_LOCK_TIMEOUT("storage.record.lockTimeout", "Maximum timeout in milliseconds to lock a shared record",
       Integer.class, 5000),
 
+  STORAGE_LOCK_PER_CLUSTER("storage.lockPerCluster",
+      "Record operations lock only the involved clusters and data segments instead of the entire storage. Structural changes"
+          + " (add/drop of clusters and data segments) still lock the entire storage", Boolean.class, Boolean.FALSE),
+
+  STORAGE_WAL_ENABLED("storage.wal.enabled",
+      "Logs the changes of local storages in a write ahead log, so after a crash the database is recovered from it instead of"
+          + " being checked and its indexes rebuilt", Boolean.class, Boolean.FALSE),
+
+  STORAGE_WAL_SEGMENT_SIZE("storage.wal.segmentSize", "Size in bytes of every segment file of the write ahead log",
+      Integer.class, 64 * 1024 * 1024),
+
+  STORAGE_WAL_SYNCH("storage.wal.synch",
+      "Forces the write ahead log on disk at every change of the storage. If false the changes survive the crash of the process"
+          + " but not of the operating system", Boolean.class, Boolean.FALSE),
+
+  STORAGE_WAL_CHECKPOINT_SIZE("storage.wal.checkpointSize",
+      "Bytes logged after which a checkpoint is executed: the storage files are synchronized and the log is truncated",
+      Integer.class, 256 * 1024 * 1024),
+
+  STORAGE_WAL_CHECKPOINT_INTERVAL("storage.wal.checkpointInterval",
+      "Maximum time in ms between two checkpoints of the write ahead log", Integer.class, 60000),
+
   STORAGE_USE_TOMBSTONES("storage.useTombstones", "When record will be deleted its cluster"
       + " position will not be freed but tombstone will be placed instead", Boolean.class, false),
 
@@ -76,8 +98,9 @@ public enum OGlobalConfiguration {
 
   CACHE_LEVEL2_SIZE("cache.level2.size", "Size of the cache that keeps the record in memory", Integer.class, -1),
 
-  CACHE_LEVEL2_IMPL("cache.level2.impl", "Actual implementation of secondary cache", String.class, ODefaultCache.class
-      .getCanonicalName()),
+  CACHE_LEVEL2_IMPL("cache.level2.impl",
+      "Actual implementation of secondary cache. Use 'com.orientechnologies.orient.core.cache.OSegmentedCache' for lock-free reads",
+      String.class, ODefaultCache.class.getCanonicalName()),
 
   CACHE_LEVEL2_STRATEGY("cache.level2.strategy",
       "Strategy to use when a database requests a record: 0 = pop the record, 1 = copy the record", Integer.class, 0,
@@ -90,6 +113,10 @@ public enum OGlobalConfiguration {
         }
       }),
 
+  CACHE_LEVEL2_OFFHEAP_SIZE("cache.level2.offHeap.size",
+      "Maximum off-heap memory used by the OOffHeapCache level-2 cache to store the serialized records. Supports Kb, Mb and Gb",
+      String.class, "512Mb"),
+
   // DATABASE
   OBJECT_SAVE_ONLY_DIRTY("object.saveOnlyDirty", "Object Database only saves objects bound to dirty records", Boolean.class, false),
 
@@ -125,8 +152,42 @@ public enum OGlobalConfiguration {
       "Executes a synch against the file-system at every log entry. This slows down transactions but guarantee transaction reliability on unreliable drives",
       Boolean.class, Boolean.FALSE),
 
+  TX_LOG_GROUP_COMMIT("tx.log.groupCommit",
+      "Synchronizes the log entries of concurrent transactions together, with one synch per batch instead of one per entry."
+          + " Used only if tx.log.synch is true", Boolean.class, Boolean.FALSE),
+
+  TX_LOG_GROUP_COMMIT_WINDOW("tx.log.groupCommit.window",
+      "Maximum time in microseconds to wait for other log entries before to synch the batch", Integer.class, 500),
+
+  TX_LOG_GROUP_COMMIT_MAX_BATCH("tx.log.groupCommit.maxBatch",
+      "Maximum number of log entries in a batch. When reached the batch is synchronized without waiting the window",
+      Integer.class, 64),
+
   TX_COMMIT_SYNCH("tx.commit.synch", "Synchronizes the storage after transaction commit", Boolean.class, false),
 
+  // QUERY
+  QUERY_PARALLEL_SCAN_THREADS("query.parallelScan.threads",
+      "Number of threads used to scan the clusters when a query can't use indexes. 0 = scan in the caller thread", Integer.class, 0),
+
+  QUERY_PARALLEL_SCAN_MIN_RECORDS("query.parallelScan.minRecords",
+      "Minimum number of records in the clusters to scan them in parallel. Smaller scans are executed in the caller thread",
+      Long.class, 100000),
+
+  QUERY_PARALLEL_SCAN_CHUNK_SIZE("query.parallelScan.chunkSize", "Number of cluster positions scanned by every parallel task",
+      Integer.class, 10000),
+
+  QUERY_ORDER_BY_BUFFER_SIZE("query.orderBy.bufferSize",
+      "Maximum number of records sorted in memory by ORDER BY without LIMIT. Bigger results are sorted in temporary files. 0 = always in memory",
+      Integer.class, 100000),
+
+  QUERY_GROUP_BY_BUFFER_SIZE("query.groupBy.bufferSize",
+      "Maximum number of groups kept in memory by GROUP BY. More groups are written in temporary files when all the aggregating functions support it. 0 = always in memory",
+      Integer.class, 100000),
+
+  QUERY_GRAPH_MAX_VISITED("query.graph.maxVisited",
+      "Maximum number of vertexes visited by shortestPath() and dijkstra() before giving up the search with an error. 0 = no limit",
+      Integer.class, 0),
+
   // GRAPH
   @Deprecated
   BLUEPRINTS_TX_MODE("blueprints.graph.txMode",
@@ -138,13 +199,28 @@ public enum OGlobalConfiguration {
 
   INDEX_AUTO_LAZY_UPDATES(
       "index.auto.lazyUpdates",
-      "Configure the TreeMaps for automatic indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called",
+      "Configure the TreeMaps for automatic indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called."
+          + " Ignored by local storages with the write ahead log enabled, that save every change",
       Integer.class, 10000),
 
   INDEX_MANUAL_LAZY_UPDATES("index.manual.lazyUpdates",
-      "Configure the TreeMaps for manual indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called",
+      "Configure the TreeMaps for manual indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called."
+          + " Ignored by local storages with the write ahead log enabled, that save every change",
       Integer.class, 1),
 
+  INDEX_REBUILD_THREADS("index.rebuild.threads",
+      "Number of threads that sort the keys when an automatic index is rebuilt, while the caller thread scans the clusters. 0 = sort in the caller thread", Integer.class,
+      Runtime.getRuntime().availableProcessors()),
+
+  INDEX_REBUILD_SORT_BUFFER_SIZE("index.rebuild.sortBufferSize",
+      "Maximum number of keys sorted in memory by every thread that rebuilds an index. More keys are sorted in temporary files",
+      Integer.class, 500000),
+
+  INDEX_MASSIVE_INSERT_BATCH_SIZE(
+      "index.massiveInsert.batchSize",
+      "Number of records created with the massive insert intent whose entries are sorted by key and put in the automatic indexes together. The entries are visible to the queries once put. 0 = put them at every record",
+      Integer.class, 1000),
+
   // TREEMAP
   MVRBTREE_TIMEOUT("mvrbtree.timeout", "Maximum timeout to get lock against the OMVRB-Tree", Integer.class, 5000),
 
@@ -181,6 +257,12 @@ public enum OGlobalConfiguration {
   MVRBTREE_RID_NODE_SAVE_MEMORY("mvrbtree.ridNodeSaveMemory",
       "Save memory usage by avoid keeping RIDs in memory but creating them at every access", Boolean.class, Boolean.FALSE),
 
+  // B+TREE
+  BTREE_PAGE_SIZE("btree.pageSize", "Size in bytes of the pages of the B+tree indexes. It's used only when the index is created",
+      Integer.class, 8192),
+
+  BTREE_CACHE_SIZE("btree.cacheSize", "Number of pages of every B+tree index kept in memory", Integer.class, 2048),
+
   // COLLECTIONS
   LAZYSET_WORK_ON_STREAM("lazyset.workOnStream", "Upon add avoid unmarshalling set", Boolean.class, true),
 
@@ -204,6 +286,14 @@ public enum OGlobalConfiguration {
   FILE_MMAP_AUTOFLUSH_UNUSED_TIME("file.mmap.autoFlush.unusedTime",
       "Remove memory mapped blocks with unused time major than this value. Time is in seconds", int.class, 60),
 
+  FILE_MMAP_CHECKPOINT_RATE("file.mmap.checkpoint.rate",
+      "When using new map manager, flushes the dirty memory mapped blocks in background at this rate in Mb/sec, starting from the"
+          + " oldest ones, instead of all together on flush. 0 = disabled", int.class, 0),
+
+  FILE_MMAP_CHECKPOINT_BLOCK_SIZE("file.mmap.checkpoint.blockSize",
+      "Max size of the memory mapped blocks when the background checkpoint is enabled. A block is the unit flushed on disk",
+      Integer.class, 4 * 1024 * 1024),
+
   FILE_MMAP_LOCK_MEMORY("file.mmap.lockMemory",
       "When using new map manager this parameter specify prevent memory swap or not. true = LOCK MEMORY, false = NOT LOCK MEMORY",
       boolean.class, true),
@@ -247,6 +337,19 @@ public enum OGlobalConfiguration {
   FILE_MMAP_FORCE_RETRY("file.mmap.forceRetry", "Number of times the memory-mapped block will try to flush to disk", Integer.class,
       50),
 
+  FILE_PAGE_CACHE_ENABLED("file.pageCache.enabled",
+      "Accesses the memory mapped files through a page cache shared by all the storages and bounded in size, instead of mapping"
+          + " them in memory. Use it when the database is much bigger than the available memory", Boolean.class, false),
+
+  FILE_PAGE_CACHE_SIZE("file.pageCache.size", "Max memory in bytes used by the page cache, allocated out of the Java heap",
+      Long.class, 268435456),
+
+  FILE_PAGE_CACHE_PAGE_SIZE("file.pageCache.pageSize", "Size in bytes of the pages kept by the page cache", Integer.class, 16384),
+
+  FILE_PAGE_CACHE_STRIPES("file.pageCache.stripes",
+      "Number of parts the page cache is split in. Every part has its own lock, so more parts let more threads access the pages"
+          + " at the same time", Integer.class, 16),
+
   JNA_DISABLE_USE_SYSTEM_LIBRARY("jna.disable.system.library",
       "This property disable to using JNA installed in your system. And use JNA bundled with database.", boolean.class, true),
 
@@ -284,6 +387,22 @@ public enum OGlobalConfiguration {
 
   NETWORK_BINARY_DEBUG("network.binary.debug", "Debug mode: print all data incoming on the binary channel", Boolean.class, false),
 
+  NETWORK_BINARY_SELECTOR_ENABLED("network.binary.selector.enabled",
+      "Serves the binary connections with a selector and a pool of workers instead of a thread per connection. Can be set per listener",
+      Boolean.class, false),
+
+  NETWORK_BINARY_SELECTOR_WORKERS("network.binary.selector.workers",
+      "Number of threads executing the requests of the binary connections served by a selector", Integer.class, 32),
+
+  NETWORK_BINARY_COMPRESSION_ENABLED("network.binary.compression.enabled",
+      "Accepts the compression of the large contents requested by the clients on the binary protocol", Boolean.class, true),
+
+  NETWORK_BINARY_CURSOR_TIMEOUT("network.binary.cursor.timeout",
+      "Time in ms a server-side cursor is kept open waiting for the client to fetch the next page of results", Integer.class, 60000),
+
+  NETWORK_BINARY_CURSOR_MAX("network.binary.cursor.max", "Maximum number of server-side cursors open at the same time by a session",
+      Integer.class, 16),
+
   NETWORK_HTTP_MAX_CONTENT_LENGTH("network.http.maxLength", "TCP/IP max content length in bytes for HTTP requests", Integer.class,
       1000000),
 
@@ -339,6 +458,14 @@ public enum OGlobalConfiguration {
 
   CLIENT_CHANNEL_MAX_POOL("client.channel.maxPool", "Maximum channel pool size", Integer.class, 5),
 
+  CLIENT_CHANNEL_MAX_PIPELINED_REQUESTS("client.channel.maxPipelinedRequests",
+      "Maximum number of requests waiting for the response on the same channel before another channel of the pool is used",
+      Integer.class, 16),
+
+  CLIENT_CHANNEL_COMPRESSION_THRESHOLD("client.channel.compression.threshold",
+      "Compresses the records and the other contents of at least this size in bytes sent in both the directions of the binary channel, if the server accepts it. 0 disables the compression",
+      Integer.class, 0),
+
   CLIENT_CONNECT_POOL_WAIT_TIMEOUT("client.connectionPool.waitTimeout",
       "Maximum time which client should wait connection from the pool", Integer.class, 5000),
 
@@ -40,6 +40,12 @@ import com.orientechnologies.orient.core.version.OVersionFactory;
  * <ul>
  * 3 = introduced file directory in physical segments and data-segment id in clusters
  * </ul>
+ * <ul>
+ * 4 = introduced time zone and charset
+ * </ul>
+ * <ul>
+ * 5 = introduced the record format
+ * </ul>
  * </li>
  * 
  * @author Luca
@@ -53,7 +59,7 @@ public class OStorageConfiguration implements OSerializableStream {
   public static final String                DEFAULT_TIMEZONE = "UTC";
   public static final String                DEFAULT_CHARSET  = "UTF-8";
 
-  public static final int                   CURRENT_VERSION  = 4;
+  public static final int                   CURRENT_VERSION  = 5;
 
   public int                                version          = -1;
   public String                             name;
@@ -67,6 +73,7 @@ public class OStorageConfiguration implements OSerializableStream {
   public String                             dateTimeFormat   = "yyyy-MM-dd HH:mm:ss";
   private TimeZone                          timeZone         = TimeZone.getTimeZone(DEFAULT_TIMEZONE);
   private String                            charset          = DEFAULT_CHARSET;
+  private String                            recordFormat;
 
   public final OStorageSegmentConfiguration fileTemplate;
 
@@ -176,6 +183,10 @@ public class OStorageConfiguration implements OSerializableStream {
       charset = read(values[index++]);
     }
 
+    // @COMPATIBILTY 1.4.0
+    if (version >= 5)
+      recordFormat = read(values[index++]);
+
     // @COMPATIBILTY
     if (version > 1)
       index = phySegmentFromStream(values, index, fileTemplate);
@@ -272,6 +283,7 @@ public class OStorageConfiguration implements OSerializableStream {
 
     write(buffer, timeZone.getID());
     write(buffer, charset);
+    write(buffer, recordFormat);
 
     phySegmentToStream(buffer, fileTemplate);
 
@@ -452,6 +464,17 @@ public class OStorageConfiguration implements OSerializableStream {
     this.charset = charset;
   }
 
+  /**
+   * Returns the name of the serializer used to write the documents, or null to use the default CSV format.
+   */
+  public String getRecordFormat() {
+    return recordFormat;
+  }
+
+  public void setRecordFormat(final String iRecordFormat) {
+    recordFormat = iRecordFormat;
+  }
+
   public void setLocaleLanguage(final String iValue) {
     localeLanguage = iValue;
     localeInstance = null;
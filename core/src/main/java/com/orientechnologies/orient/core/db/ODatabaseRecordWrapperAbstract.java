@@ -15,9 +15,11 @@
  */
 package com.orientechnologies.orient.core.db;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -58,6 +60,12 @@ public abstract class ODatabaseRecordWrapperAbstract<DB extends ODatabaseRecord>
     return (THISDB) super.create();
   }
 
+  public <THISDB extends ODatabase> THISDB open(final OUser iUser) {
+    underlying.open(iUser);
+    Orient.instance().getDatabaseFactory().register(databaseOwner);
+    return (THISDB) this;
+  }
+
   /**
    * Uses drop() instead.
    */
@@ -233,6 +241,11 @@ public abstract class ODatabaseRecordWrapperAbstract<DB extends ODatabaseRecord>
     return (RET) underlying.load(iRecordId, iFetchPlan, iIgnoreCache, loadTombstone);
   }
 
+  public <RET extends ORecordInternal<?>> List<RET> load(final Collection<? extends ORID> iRecordIds, final String iFetchPlan,
+      final boolean iIgnoreCache) {
+    return underlying.load(iRecordIds, iFetchPlan, iIgnoreCache);
+  }
+
   @Override
   public <RET extends ORecordInternal<?>> RET load(ORecordInternal<?> iObject, String iFetchPlan, boolean iIgnoreCache,
       boolean loadTombstone) {
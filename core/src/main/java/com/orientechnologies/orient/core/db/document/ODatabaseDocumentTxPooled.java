@@ -81,6 +81,9 @@ public class ODatabaseDocumentTxPooled extends ODatabaseDocumentTx implements OD
 
     checkOpeness();
 
+    // END THE INTENT: IT COULD HAVE INDEX ENTRIES STILL TO PUT
+    declareIntent(null);
+
     try {
       rollback();
     } catch (Exception e) {
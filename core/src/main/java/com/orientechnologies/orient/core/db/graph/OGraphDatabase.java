@@ -15,6 +15,7 @@
  */
 package com.orientechnologies.orient.core.db.graph;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -27,9 +28,11 @@ import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.hook.ORecordHook;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorClass;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OStorage;
@@ -56,22 +59,26 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     BOTH, IN, OUT
   }
 
-  public static final String TYPE                   = "graph";
+  public static final String TYPE                          = "graph";
 
-  public static final String VERTEX_CLASS_NAME      = "OGraphVertex";
-  public static final String VERTEX_FIELD_IN        = "in";
-  public static final String VERTEX_FIELD_IN_EDGES  = "inEdges";
-  public static final String VERTEX_FIELD_OUT       = "out";
-  public static final String VERTEX_FIELD_OUT_EDGES = "outEdges";
+  public static final String VERTEX_CLASS_NAME             = "OGraphVertex";
+  public static final String VERTEX_FIELD_IN               = "in";
+  public static final String VERTEX_FIELD_IN_EDGES         = "inEdges";
+  public static final String VERTEX_FIELD_IN_LABEL_PREFIX  = "in_";
+  public static final String VERTEX_FIELD_OUT              = "out";
+  public static final String VERTEX_FIELD_OUT_EDGES        = "outEdges";
+  public static final String VERTEX_FIELD_OUT_LABEL_PREFIX = "out_";
 
-  public static final String EDGE_CLASS_NAME        = "OGraphEdge";
-  public static final String EDGE_FIELD_IN          = "in";
-  public static final String EDGE_FIELD_OUT         = "out";
-  public static final String LABEL                  = "label";
+  public static final String EDGE_CLASS_NAME               = "OGraphEdge";
+  public static final String EDGE_FIELD_IN                 = "in";
+  public static final String EDGE_FIELD_OUT                = "out";
+  public static final String EDGE_PARTITIONED_BY_LABEL     = "partitionedByLabel";
+  public static final String EDGE_LIGHTWEIGHT               = "lightweight";
+  public static final String LABEL                         = "label";
 
-  private boolean            useCustomTypes         = true;
-  private boolean            safeMode               = false;
-  private LOCK_MODE          lockMode               = LOCK_MODE.DATABASE_LEVEL_LOCKING;
+  private boolean            useCustomTypes                = true;
+  private boolean            safeMode                      = false;
+  private LOCK_MODE          lockMode                      = LOCK_MODE.DATABASE_LEVEL_LOCKING;
   protected OClass           vertexBaseClass;
   protected OClass           edgeBaseClass;
 
@@ -221,22 +228,16 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
           for (int i = 0; i < iFields.length; i += 2)
             edge.field(iFields[i].toString(), iFields[i + 1]);
 
+      final boolean partitioned = isEdgesPartitionedByLabel();
+
       // OUT FIELD
       acquireWriteLock(iOutVertex);
       try {
 
-        final Object outField = iOutVertex.field(VERTEX_FIELD_OUT);
-        final OMVRBTreeRIDSet out;
-        if (outField instanceof OMVRBTreeRIDSet) {
-          out = (OMVRBTreeRIDSet) outField;
-        } else if (outField instanceof Collection<?>) {
-          out = new OMVRBTreeRIDSet(iOutVertex, (Collection<OIdentifiable>) outField);
-          iOutVertex.field(VERTEX_FIELD_OUT, out);
-        } else {
-          out = new OMVRBTreeRIDSet(iOutVertex);
-          iOutVertex.field(VERTEX_FIELD_OUT, out);
-        }
-        out.add(edge);
+        addEdgeToVertex(iOutVertex, VERTEX_FIELD_OUT, edge);
+        if (partitioned)
+          addEdgeToVertex(iOutVertex, getLabelField(VERTEX_FIELD_OUT_LABEL_PREFIX, edge.field(LABEL)), edge);
+
       } finally {
         releaseWriteLock(iOutVertex);
       }
@@ -245,18 +246,9 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       acquireWriteLock(iInVertex);
       try {
 
-        final Object inField = iInVertex.field(VERTEX_FIELD_IN);
-        final OMVRBTreeRIDSet in;
-        if (inField instanceof OMVRBTreeRIDSet) {
-          in = (OMVRBTreeRIDSet) inField;
-        } else if (inField instanceof Collection<?>) {
-          in = new OMVRBTreeRIDSet(iInVertex, (Collection<OIdentifiable>) inField);
-          iInVertex.field(VERTEX_FIELD_IN, in);
-        } else {
-          in = new OMVRBTreeRIDSet(iInVertex);
-          iInVertex.field(VERTEX_FIELD_IN, in);
-        }
-        in.add(edge);
+        addEdgeToVertex(iInVertex, VERTEX_FIELD_IN, edge);
+        if (partitioned)
+          addEdgeToVertex(iInVertex, getLabelField(VERTEX_FIELD_IN_LABEL_PREFIX, edge.field(LABEL)), edge);
 
       } finally {
         releaseWriteLock(iInVertex);
@@ -277,17 +269,88 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     }
   }
 
+  public void createLightweightEdge(final ORID iOutVertexRid, final ORID iInVertexRid) {
+    final ODocument outVertex = load(iOutVertexRid);
+    if (outVertex == null)
+      throw new IllegalArgumentException("Source vertex '" + iOutVertexRid + "' does not exist");
+
+    final ODocument inVertex = load(iInVertexRid);
+    if (inVertex == null)
+      throw new IllegalArgumentException("Destination vertex '" + iInVertexRid + "' does not exist");
+
+    createLightweightEdge(outVertex, inVertex);
+  }
+
+  /**
+   * Connects two vertexes with an edge without properties that is not stored as a document: the "out" set of iOutVertex gets the
+   * RID of iInVertex and the "in" set of iInVertex gets the RID of iOutVertex. Following it costs one record load instead of two.
+   * Like the edges created by {@link #createEdge(ODocument, ODocument)} the vertexes are saved only in safe mode.
+   * 
+   * @see #setUseLightweightEdges(boolean)
+   */
+  public void createLightweightEdge(final ODocument iOutVertex, final ODocument iInVertex) {
+    if (iOutVertex == null)
+      throw new IllegalArgumentException("iOutVertex is null");
+
+    if (iInVertex == null)
+      throw new IllegalArgumentException("iInVertex is null");
+
+    if (!isUseLightweightEdges())
+      throw new IllegalStateException("Lightweight edges are disabled: enable them with setUseLightweightEdges(true)");
+
+    checkVertexClass(iOutVertex);
+    checkVertexClass(iInVertex);
+
+    final boolean safeMode = beginBlock();
+    try {
+
+      acquireWriteLock(iOutVertex);
+      try {
+        addEdgeToVertex(iOutVertex, VERTEX_FIELD_OUT, iInVertex);
+      } finally {
+        releaseWriteLock(iOutVertex);
+      }
+
+      acquireWriteLock(iInVertex);
+      try {
+        addEdgeToVertex(iInVertex, VERTEX_FIELD_IN, iOutVertex);
+      } finally {
+        releaseWriteLock(iInVertex);
+      }
+
+      if (safeMode) {
+        save(iOutVertex);
+        save(iInVertex);
+        commitBlock(safeMode);
+      }
+
+    } catch (RuntimeException e) {
+      rollbackBlock(safeMode);
+      throw e;
+    }
+  }
+
+  /**
+   * Removes an edge stored as a document. Use {@link #removeLightweightEdge(ODocument, ODocument)} for lightweight edges: they
+   * don't know the vertex they come from.
+   */
   @SuppressWarnings("unchecked")
   public boolean removeEdge(final OIdentifiable iEdge) {
     if (iEdge == null)
       return false;
 
+    if (isLightweightEdge(iEdge))
+      throw new IllegalArgumentException("Edge " + iEdge.getIdentity()
+          + " is a lightweight edge: remove it with removeLightweightEdge(<out-vertex>, <in-vertex>)");
+
     final ODocument edge = iEdge.getRecord();
     if (edge == null)
       return false;
 
     final boolean safeMode = beginBlock();
     try {
+      final boolean partitioned = isEdgesPartitionedByLabel();
+
       // OUT VERTEX
       final ODocument outVertex = edge.field(EDGE_FIELD_OUT);
 
@@ -298,6 +361,8 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
           final Set<ODocument> out = ((Set<ODocument>) outVertex.field(VERTEX_FIELD_OUT));
           if (out != null)
             out.remove(edge);
+          if (partitioned)
+            removeEdgeFromVertex(outVertex, getLabelField(VERTEX_FIELD_OUT_LABEL_PREFIX, edge.field(LABEL)), edge);
           save(outVertex);
         }
 
@@ -315,6 +380,8 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
           final Set<ODocument> in = ((Set<ODocument>) inVertex.field(VERTEX_FIELD_IN));
           if (in != null)
             in.remove(edge);
+          if (partitioned)
+            removeEdgeFromVertex(inVertex, getLabelField(VERTEX_FIELD_IN_LABEL_PREFIX, edge.field(LABEL)), edge);
           save(inVertex);
         }
 
@@ -333,6 +400,45 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return true;
   }
 
+  /**
+   * Removes the lightweight edge from iOutVertex to iInVertex.
+   * 
+   * @return True if the edge existed, otherwise false
+   */
+  public boolean removeLightweightEdge(final ODocument iOutVertex, final ODocument iInVertex) {
+    if (iOutVertex == null || iInVertex == null)
+      return false;
+
+    final boolean safeMode = beginBlock();
+    try {
+      final boolean removed;
+
+      acquireWriteLock(iOutVertex);
+      try {
+        removed = removeEdgeFromVertex(iOutVertex, VERTEX_FIELD_OUT, iInVertex);
+        if (removed)
+          save(iOutVertex);
+      } finally {
+        releaseWriteLock(iOutVertex);
+      }
+
+      acquireWriteLock(iInVertex);
+      try {
+        if (removeEdgeFromVertex(iInVertex, VERTEX_FIELD_IN, iOutVertex))
+          save(iInVertex);
+      } finally {
+        releaseWriteLock(iInVertex);
+      }
+
+      commitBlock(safeMode);
+      return removed;
+
+    } catch (RuntimeException e) {
+      rollbackBlock(safeMode);
+      throw e;
+    }
+  }
+
   public boolean removeVertex(final OIdentifiable iVertex) {
     if (iVertex == null)
       return false;
@@ -343,6 +449,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
 
     final boolean safeMode = beginBlock();
     try {
+      final boolean partitioned = isEdgesPartitionedByLabel();
 
       ODocument otherVertex;
       Set<ODocument> otherEdges;
@@ -354,12 +461,19 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
         Set<ODocument> edges = vertex.field(VERTEX_FIELD_OUT);
         if (edges != null) {
           for (ODocument edge : edges) {
-            if (edge != null) {
+            if (edge != null && isLightweightEdge(edge)) {
+              // THE EDGE IS THE OTHER VERTEX
+              if (removeEdgeFromVertex(edge, VERTEX_FIELD_IN, vertex))
+                save(edge);
+            } else if (edge != null) {
               otherVertex = edge.field(EDGE_FIELD_IN);
               if (otherVertex != null) {
                 otherEdges = otherVertex.field(VERTEX_FIELD_IN);
-                if (otherEdges != null && otherEdges.remove(edge))
+                if (otherEdges != null && otherEdges.remove(edge)) {
+                  if (partitioned)
+                    removeEdgeFromVertex(otherVertex, getLabelField(VERTEX_FIELD_IN_LABEL_PREFIX, edge.field(LABEL)), edge);
                   save(otherVertex);
+                }
               }
               delete(edge);
             }
@@ -370,12 +484,19 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
         edges = vertex.field(VERTEX_FIELD_IN);
         if (edges != null) {
           for (ODocument edge : edges) {
-            if (edge != null) {
+            if (edge != null && isLightweightEdge(edge)) {
+              // THE EDGE IS THE OTHER VERTEX
+              if (removeEdgeFromVertex(edge, VERTEX_FIELD_OUT, vertex))
+                save(edge);
+            } else if (edge != null) {
               otherVertex = edge.field(EDGE_FIELD_OUT);
               if (otherVertex != null) {
                 otherEdges = otherVertex.field(VERTEX_FIELD_OUT);
-                if (otherEdges != null && otherEdges.remove(edge))
+                if (otherEdges != null && otherEdges.remove(edge)) {
+                  if (partitioned)
+                    removeEdgeFromVertex(otherVertex, getLabelField(VERTEX_FIELD_OUT_LABEL_PREFIX, edge.field(LABEL)), edge);
                   save(otherVertex);
+                }
               }
               delete(edge);
             }
@@ -451,7 +572,14 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       try {
 
         // CHECK OUT EDGES
-        for (OIdentifiable e : getOutEdges(iVertex1)) {
+        for (OIdentifiable e : getEdges(iVertex1, true, iLabels)) {
+          if (isLightweightEdge(e)) {
+            // LIGHTWEIGHT EDGES HAVE NO LABEL AND NO CLASS
+            if (iLabels == null && iClassNames == null && e.equals(iVertex2))
+              result.add(e);
+            continue;
+          }
+
           final ODocument edge = (ODocument) e.getRecord();
 
           if (checkEdge(edge, iLabels, iClassNames)) {
@@ -462,7 +590,13 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
         }
 
         // CHECK IN EDGES
-        for (OIdentifiable e : getInEdges(iVertex1)) {
+        for (OIdentifiable e : getEdges(iVertex1, false, iLabels)) {
+          if (isLightweightEdge(e)) {
+            if (iLabels == null && iClassNames == null && e.equals(iVertex2))
+              result.add(e);
+            continue;
+          }
+
           final ODocument edge = (ODocument) e.getRecord();
 
           if (checkEdge(edge, iLabels, iClassNames)) {
@@ -506,6 +640,13 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     acquireReadLock(iVertex);
     try {
 
+      if (iLabel != null) {
+        final Set<OIdentifiable> partition = getLabelPartition(vertex, VERTEX_FIELD_OUT_LABEL_PREFIX, iLabel);
+        if (partition != null)
+          // ONLY THE EDGES WITH THE LABEL
+          return partition;
+      }
+
       final OMVRBTreeRIDSet set = vertex.field(VERTEX_FIELD_OUT);
 
       if (iLabel == null)
@@ -519,7 +660,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       result = new HashSet<OIdentifiable>();
       if (set != null)
         for (OIdentifiable item : set) {
-          if (iLabel == null || iLabel.equals(((ODocument) item).field(LABEL)))
+          if (!isLightweightEdge(item) && iLabel.equals(((ODocument) item).field(LABEL)))
             result.add(item);
         }
 
@@ -584,6 +725,13 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     acquireReadLock(iVertex);
     try {
 
+      if (iLabel != null) {
+        final Set<OIdentifiable> partition = getLabelPartition(vertex, VERTEX_FIELD_IN_LABEL_PREFIX, iLabel);
+        if (partition != null)
+          // ONLY THE EDGES WITH THE LABEL
+          return partition;
+      }
+
       final OMVRBTreeRIDSet set = vertex.field(VERTEX_FIELD_IN);
 
       if (iLabel == null)
@@ -597,7 +745,7 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       result = new HashSet<OIdentifiable>();
       if (set != null)
         for (OIdentifiable item : set) {
-          if (iLabel == null || iLabel.equals(((ODocument) item).field(LABEL)))
+          if (!isLightweightEdge(item) && iLabel.equals(((ODocument) item).field(LABEL)))
             result.add(item);
         }
 
@@ -647,6 +795,10 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     if (iEdge == null)
       return null;
 
+    if (isLightweightEdge(iEdge))
+      // THE EDGE IS THE VERTEX ITSELF
+      return iEdge.getRecord();
+
     final ODocument e = (ODocument) iEdge.getRecord();
 
     checkEdgeClass(e);
@@ -667,6 +819,10 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     if (iEdge == null)
       return null;
 
+    if (isLightweightEdge(iEdge))
+      // THE EDGE IS THE VERTEX ITSELF
+      return iEdge.getRecord();
+
     final ODocument e = (ODocument) iEdge.getRecord();
 
     checkEdgeClass(e);
@@ -698,6 +854,10 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       final OMVRBTreeRIDSet result = new OMVRBTreeRIDSet();
       if (iEdges != null)
         for (OIdentifiable item : iEdges) {
+          if (isLightweightEdge(item))
+            // NO PROPERTIES
+            continue;
+
           final ODocument doc = (ODocument) item;
           for (String propName : iPropertyNames) {
             if (doc.containsField(propName))
@@ -728,6 +888,10 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       final OMVRBTreeRIDSet result = new OMVRBTreeRIDSet();
       if (iEdges != null)
         for (OIdentifiable item : iEdges) {
+          if (isLightweightEdge(item))
+            // NO PROPERTIES
+            continue;
+
           final ODocument doc = (ODocument) item;
           for (Entry<String, Object> prop : iProperties.entrySet()) {
             if (prop.getKey() != null && doc.containsField(prop.getKey())) {
@@ -802,6 +966,55 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return safeMode;
   }
 
+  /**
+   * Tells if the vertexes keep, besides the sets of all their edges, a set of edges per label in the fields "out_&lt;label&gt;" and
+   * "in_&lt;label&gt;". Then {@link #getOutEdges(OIdentifiable, String)} and {@link #getInEdges(OIdentifiable, String)} don't load
+   * all the edges to compare their labels. Only the labels made by letters, digits and underscores are partitioned. Use
+   * {@link OGraphDatabaseMigration#partitionEdgesByLabel(OGraphDatabase)} to partition the edges of an existent database.
+   */
+  public boolean isEdgesPartitionedByLabel() {
+    return edgeBaseClass != null && Boolean.parseBoolean(edgeBaseClass.getCustom(EDGE_PARTITIONED_BY_LABEL));
+  }
+
+  void setEdgesPartitionedByLabel(final boolean iValue) {
+    edgeBaseClass.setCustom(EDGE_PARTITIONED_BY_LABEL, iValue ? Boolean.TRUE.toString() : null);
+  }
+
+  /**
+   * Tells if {@link #createLightweightEdge(ODocument, ODocument)} can link the vertexes directly.
+   */
+  public boolean isUseLightweightEdges() {
+    return edgeBaseClass != null && Boolean.parseBoolean(edgeBaseClass.getCustom(EDGE_LIGHTWEIGHT));
+  }
+
+  /**
+   * Enables or disables the creation of lightweight edges. The setting is stored in the schema. Enabling it lets the "in" and
+   * "out" properties of the vertexes contain vertexes besides edges. Disabling it doesn't convert the lightweight edges already
+   * created: they are still handled by all the methods of this class.
+   */
+  public void setUseLightweightEdges(final boolean iValue) {
+    if (iValue) {
+      relaxLinkedClass(vertexBaseClass.getProperty(VERTEX_FIELD_IN));
+      relaxLinkedClass(vertexBaseClass.getProperty(VERTEX_FIELD_OUT));
+    }
+    edgeBaseClass.setCustom(EDGE_LIGHTWEIGHT, iValue ? Boolean.TRUE.toString() : null);
+  }
+
+  /**
+   * Tells if an item of the edge sets of a vertex is a lightweight edge, namely the RID of the vertex at the other end. Only the
+   * cluster of the RID is checked: the record is not loaded.
+   */
+  public boolean isLightweightEdge(final OIdentifiable iEdge) {
+    if (iEdge == null || vertexBaseClass == null)
+      return false;
+
+    final int clusterId = iEdge.getIdentity().getClusterId();
+    for (int vertexClusterId : vertexBaseClass.getPolymorphicClusterIds())
+      if (vertexClusterId == clusterId)
+        return true;
+    return false;
+  }
+
   public void setSafeMode(boolean safeMode) {
     this.safeMode = safeMode;
   }
@@ -1018,6 +1231,11 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
         OGraphDatabaseMigration.migrate(this);
       }
     }
+
+    for (ORecordHook hook : getHooks())
+      if (hook instanceof OGraphEdgeLabelHook)
+        return;
+    registerHook(new OGraphEdgeLabelHook(this));
   }
 
   protected boolean beginBlock() {
@@ -1038,6 +1256,119 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
       rollback();
   }
 
+  /**
+   * Moves an edge in the edge sets of its vertexes for its current label. It's called before the edge is saved by
+   * {@link OGraphEdgeLabelHook}.
+   * 
+   * @param iCreated
+   *          True if the edge is being created: its RID could be already assigned because it's saved with its vertexes
+   */
+  protected void updateLabelPartitions(final ODocument iEdge, final boolean iCreated) {
+    if (!isEdgesPartitionedByLabel() || iEdge.getSchemaClass() == null || !isEdge(iEdge))
+      return;
+
+    final Object oldLabel;
+    if (iCreated)
+      // IF THE LABEL WAS PASSED TO createEdge() THE EDGE IS ALREADY IN THE SETS
+      oldLabel = null;
+    else if (Arrays.asList(iEdge.getDirtyFields()).contains(LABEL))
+      oldLabel = iEdge.getOriginalValue(LABEL);
+    else
+      return;
+
+    final Object label = iEdge.field(LABEL);
+    updateLabelPartition(iEdge, (ODocument) iEdge.field(EDGE_FIELD_OUT), VERTEX_FIELD_OUT_LABEL_PREFIX, oldLabel, label);
+    updateLabelPartition(iEdge, (ODocument) iEdge.field(EDGE_FIELD_IN), VERTEX_FIELD_IN_LABEL_PREFIX, oldLabel, label);
+  }
+
+  /**
+   * Returns the edges of a vertex with a label.
+   * 
+   * @return The edges or null if the edges with the label aren't partitioned: then all the edges of the vertex must be browsed
+   */
+  @SuppressWarnings("unchecked")
+  protected Set<OIdentifiable> getLabelPartition(final ODocument iVertex, final String iPrefix, final String iLabel) {
+    if (!isEdgesPartitionedByLabel())
+      return null;
+
+    final String fieldName = getLabelField(iPrefix, iLabel);
+    if (fieldName == null)
+      return null;
+
+    final Object partition = iVertex.field(fieldName);
+    if (partition == null)
+      return Collections.emptySet();
+    else if (partition instanceof Set<?>)
+      return Collections.unmodifiableSet((Set<OIdentifiable>) partition);
+    else if (partition instanceof Collection<?>)
+      // SMALL SETS ARE LOADED AS LISTS BECAUSE THE FIELD ISN'T IN THE SCHEMA
+      return Collections.unmodifiableSet(new HashSet<OIdentifiable>((Collection<OIdentifiable>) partition));
+
+    // A FIELD OF THE VERTEX WITH THE SAME NAME
+    return null;
+  }
+
+  /**
+   * Adds an edge to a set of edges of a vertex, creating the set if needed.
+   * 
+   * @param iFieldName
+   *          Field of the set. If it's null or it contains something else than a collection the edge is not added
+   */
+  @SuppressWarnings("unchecked")
+  protected boolean addEdgeToVertex(final ODocument iVertex, final String iFieldName, final OIdentifiable iEdge) {
+    if (iFieldName == null)
+      return false;
+
+    final Object field = iVertex.field(iFieldName);
+    final OMVRBTreeRIDSet set;
+    if (field instanceof OMVRBTreeRIDSet) {
+      set = (OMVRBTreeRIDSet) field;
+    } else if (field instanceof Collection<?>) {
+      set = new OMVRBTreeRIDSet(iVertex, (Collection<OIdentifiable>) field);
+      iVertex.field(iFieldName, set);
+    } else if (field == null) {
+      set = new OMVRBTreeRIDSet(iVertex);
+      iVertex.field(iFieldName, set);
+    } else
+      return false;
+
+    if (set.contains(iEdge))
+      return false;
+
+    set.add(iEdge);
+    return true;
+  }
+
+  protected boolean removeEdgeFromVertex(final ODocument iVertex, final String iFieldName, final OIdentifiable iEdge) {
+    if (iFieldName == null)
+      return false;
+
+    final Object field = iVertex.field(iFieldName);
+    if (!(field instanceof Collection<?>) || !((Collection<?>) field).contains(iEdge))
+      return false;
+
+    ((Collection<?>) field).remove(iEdge);
+    return true;
+  }
+
+  /**
+   * Returns the name of the field of the vertexes with the edges with a label.
+   * 
+   * @return The field name or null if the label can't be part of a field name
+   */
+  protected static String getLabelField(final String iPrefix, final Object iLabel) {
+    if (!(iLabel instanceof String) || ((String) iLabel).length() == 0)
+      return null;
+
+    final String label = (String) iLabel;
+    for (int i = 0; i < label.length(); ++i) {
+      final char c = label.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_')
+        return null;
+    }
+    return iPrefix + label;
+  }
+
   protected boolean checkEdge(final ODocument iEdge, final String[] iLabels, final String[] iClassNames) {
     boolean good = true;
 
@@ -1065,6 +1396,49 @@ public class OGraphDatabase extends ODatabaseDocumentTx {
     return good;
   }
 
+  /**
+   * Returns the edges of a vertex to check against a set of labels: only the edges with those labels if they are partitioned.
+   */
+  private Iterable<OIdentifiable> getEdges(final OIdentifiable iVertex, final boolean iOut, final String[] iLabels) {
+    if (iLabels != null && isEdgesPartitionedByLabel()) {
+      final ODocument vertex = iVertex.getRecord();
+      final Set<OIdentifiable> edges = new HashSet<OIdentifiable>();
+      for (String label : iLabels) {
+        final Set<OIdentifiable> partition = getLabelPartition(vertex, iOut ? VERTEX_FIELD_OUT_LABEL_PREFIX
+            : VERTEX_FIELD_IN_LABEL_PREFIX, label);
+        if (partition == null)
+          return iOut ? getOutEdges(iVertex) : getInEdges(iVertex);
+        edges.addAll(partition);
+      }
+      return edges;
+    }
+    return iOut ? getOutEdges(iVertex) : getInEdges(iVertex);
+  }
+
+  private void relaxLinkedClass(final OProperty iProperty) {
+    if (iProperty != null && iProperty.getLinkedClass() != null)
+      // THE SETS CAN CONTAIN BOTH EDGES AND VERTEXES
+      iProperty.set(OProperty.ATTRIBUTES.LINKEDCLASS, null);
+  }
+
+  private void updateLabelPartition(final ODocument iEdge, final ODocument iVertex, final String iPrefix, final Object iOldLabel,
+      final Object iLabel) {
+    if (iVertex == null)
+      return;
+
+    acquireWriteLock(iVertex);
+    try {
+      final boolean removed = removeEdgeFromVertex(iVertex, getLabelField(iPrefix, iOldLabel), iEdge);
+      final boolean added = addEdgeToVertex(iVertex, getLabelField(iPrefix, iLabel), iEdge);
+
+      if (removed || added)
+        // THE VERTEX COULD HAVE BEEN ALREADY SAVED TOGETHER WITH THE EDGE
+        save(iVertex);
+    } finally {
+      releaseWriteLock(iVertex);
+    }
+  }
+
   public LOCK_MODE getLockMode() {
     return lockMode;
   }
@@ -15,8 +15,14 @@
  */
 package com.orientechnologies.orient.core.db.graph;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
  * Migration tool. Keeps updated the graph with latest OrientDB release.
@@ -27,7 +33,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 public class OGraphDatabaseMigration {
 	public static void main(final String[] iArgs) {
 		if (iArgs.length < 1) {
-			System.err.println("Error: wrong parameters. Syntax: <database-url> [<user> <password>]");
+			System.err.println("Error: wrong parameters. Syntax: <database-url> [<user> <password>] [-partitionEdgesByLabel]");
 			return;
 		}
 
@@ -35,7 +41,15 @@ public class OGraphDatabaseMigration {
 		final String user = iArgs.length > 1 ? iArgs[1] : null;
 		final String password = iArgs.length > 2 ? iArgs[2] : null;
 
-		migrate(dbURL, user, password);
+		if (iArgs.length > 3 && iArgs[3].equals("-partitionEdgesByLabel")) {
+			final OGraphDatabase db = new OGraphDatabase(dbURL).open(user, password);
+			try {
+				partitionEdgesByLabel(db);
+			} finally {
+				db.close();
+			}
+		} else
+			migrate(dbURL, user, password);
 	}
 
 	public static void migrate(final String dbURL, final String user, final String password) {
@@ -87,4 +101,64 @@ public class OGraphDatabaseMigration {
 			db.close();
 		}
 	}
+
+	/**
+	 * Partitions the edges of all the vertices by label and keeps them partitioned from now on. The database is left open.
+	 * 
+	 * @return The number of vertices converted
+	 * @see OGraphDatabase#isEdgesPartitionedByLabel()
+	 */
+	public static long partitionEdgesByLabel(final OGraphDatabase db) {
+		System.out.println("Partitioning of edges by label started...");
+		final long start = System.currentTimeMillis();
+
+		db.setEdgesPartitionedByLabel(true);
+
+		long convertedVertices = 0;
+		for (ODocument doc : db.browseVertices()) {
+			final boolean outConverted = partitionEdges(doc, OGraphDatabase.VERTEX_FIELD_OUT,
+					OGraphDatabase.VERTEX_FIELD_OUT_LABEL_PREFIX);
+			final boolean inConverted = partitionEdges(doc, OGraphDatabase.VERTEX_FIELD_IN,
+					OGraphDatabase.VERTEX_FIELD_IN_LABEL_PREFIX);
+
+			if (outConverted || inConverted) {
+				doc.save();
+				convertedVertices++;
+			}
+		}
+
+		System.out.println(String.format("Partitioning complete in %d seconds. Vertices converted: %d",
+				(System.currentTimeMillis() - start) / 1000, convertedVertices));
+		return convertedVertices;
+	}
+
+	private static boolean partitionEdges(final ODocument iVertex, final String iFieldName, final String iPrefix) {
+		final Object edges = iVertex.field(iFieldName);
+		if (!(edges instanceof Collection<?>))
+			return false;
+
+		// REBUILD THE SETS FROM SCRATCH: THE PARTITIONS LEFT BY A PREVIOUS RUN COULD BE STALE
+		final Map<String, OMVRBTreeRIDSet> partitions = new HashMap<String, OMVRBTreeRIDSet>();
+		for (Object o : (Collection<?>) edges) {
+			final ODocument edge = ((OIdentifiable) o).getRecord();
+			if (edge == null)
+				continue;
+
+			final String fieldName = OGraphDatabase.getLabelField(iPrefix, edge.field(OGraphDatabase.LABEL));
+			if (fieldName == null)
+				continue;
+
+			OMVRBTreeRIDSet partition = partitions.get(fieldName);
+			if (partition == null) {
+				partition = new OMVRBTreeRIDSet(iVertex);
+				partitions.put(fieldName, partition);
+			}
+			partition.add(edge);
+		}
+
+		for (Map.Entry<String, OMVRBTreeRIDSet> partition : partitions.entrySet())
+			iVertex.field(partition.getKey(), partition.getValue());
+
+		return !partitions.isEmpty();
+	}
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.graph;
+
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Keeps the edge sets per label of the vertexes updated when the edges are saved: the label is usually set after
+ * {@link OGraphDatabase#createEdge(ODocument, ODocument)} returns, so it's known only when the edge is saved. The hook is
+ * registered by {@link OGraphDatabase} and does nothing until the edges are partitioned by label.
+ * 
+ * @see OGraphDatabase#isEdgesPartitionedByLabel()
+ */
+public class OGraphEdgeLabelHook extends ODocumentHookAbstract {
+  private final OGraphDatabase database;
+
+  public OGraphEdgeLabelHook(final OGraphDatabase iDatabase) {
+    database = iDatabase;
+  }
+
+  @Override
+  public RESULT onRecordBeforeCreate(final ODocument iDocument) {
+    database.updateLabelPartitions(iDocument, true);
+    return RESULT.RECORD_NOT_CHANGED;
+  }
+
+  @Override
+  public RESULT onRecordBeforeUpdate(final ODocument iDocument) {
+    database.updateLabelPartitions(iDocument, false);
+    return RESULT.RECORD_NOT_CHANGED;
+  }
+}
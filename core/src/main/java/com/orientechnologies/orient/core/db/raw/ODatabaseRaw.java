@@ -45,6 +45,10 @@ import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.intent.OIntent;
+import com.orientechnologies.orient.core.metadata.schema.OSchemaProxy;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2Binary;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
@@ -257,6 +261,17 @@ public class ODatabaseRaw implements ODatabase {
     }
   }
 
+  public List<ORawBuffer> read(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    OFetchHelper.checkFetchPlanValid(iFetchPlan);
+
+    try {
+      return storage.readRecords(iRids, iFetchPlan, iIgnoreCache);
+
+    } catch (Throwable t) {
+      throw new ODatabaseException("Error on retrieving records " + iRids, t);
+    }
+  }
+
   public OStorageOperationResult<ORecordVersion> save(final int iDataSegmentId, final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, final int iMode, boolean iForceCreate,
       final ORecordCallback<? extends Number> iRecordCreatedCallback, final ORecordCallback<ORecordVersion> iRecordUpdatedCallback) {
@@ -582,6 +597,10 @@ public class ODatabaseRaw implements ODatabase {
 
     case CHARSET:
       return storage.getConfiguration().getCharset();
+
+    case RECORDFORMAT:
+      return storage.getConfiguration().getRecordFormat() != null ? storage.getConfiguration().getRecordFormat()
+          : ORecordSerializerSchemaAware2CSV.NAME;
     }
 
     return null;
@@ -649,6 +668,25 @@ public class ODatabaseRaw implements ODatabase {
       storage.getConfiguration().update();
       break;
 
+    case RECORDFORMAT:
+      final String format;
+      if (stringValue == null || stringValue.equalsIgnoreCase("csv"))
+        format = ORecordSerializerSchemaAware2CSV.NAME;
+      else if (stringValue.equalsIgnoreCase("binary"))
+        format = ORecordSerializerSchemaAware2Binary.NAME;
+      else if (ORecordSerializerFactory.instance().getFormat(stringValue) != null)
+        format = stringValue;
+      else
+        throw new IllegalArgumentException("Record format '" + stringValue + "' is not supported");
+
+      if (format.equals(ORecordSerializerSchemaAware2Binary.NAME) && getDatabaseOwner() instanceof ODatabaseRecord)
+        // SAVE THE SCHEMA TO INTERN THE NAMES OF THE PROPERTIES
+        ((OSchemaProxy) ((ODatabaseRecord) getDatabaseOwner()).getMetadata().getSchema()).saveInternal();
+
+      storage.getConfiguration().setRecordFormat(format);
+      storage.getConfiguration().update();
+      break;
+
     default:
       throw new IllegalArgumentException("Option '" + iAttribute + "' not supported on alter database");
 
@@ -15,10 +15,16 @@
  */
 package com.orientechnologies.orient.core.db.record;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.orientechnologies.orient.core.db.ODataSegmentStrategy;
+import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabaseComplex;
 import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
+import com.orientechnologies.orient.core.metadata.security.OUser;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 
 /**
@@ -28,6 +34,15 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
  */
 public interface ODatabaseRecord extends ODatabaseComplex<ORecordInternal<?>> {
 
+  /**
+   * Opens the database as a user already authenticated by another instance of the same database, so without the password.
+   * 
+   * @param iUser
+   *          User of the other instance
+   * @return The database instance itself giving a "fluent interface". Useful to call multiple methods in chain.
+   */
+  public <DB extends ODatabase> DB open(OUser iUser);
+
   /**
    * Browses all the records of the specified cluster.
    * 
@@ -63,6 +78,21 @@ public interface ODatabaseRecord extends ODatabaseComplex<ORecordInternal<?>> {
    */
   public <RET extends ORecordInternal<?>> RET getRecord(OIdentifiable iIdentifiable);
 
+  /**
+   * Loads a set of records at once. The records not found in the transaction or in the local cache are read from the storage with
+   * a single operation, that against a remote storage means a single network round trip.
+   * 
+   * @param iRecordIds
+   *          The ids of the records to load
+   * @param iFetchPlan
+   *          Fetch plan used
+   * @param iIgnoreCache
+   *          Ignore cache or use it
+   * @return The loaded records in the same order of the ids, with null for the records not found
+   */
+  public <RET extends ORecordInternal<?>> List<RET> load(Collection<? extends ORID> iRecordIds, String iFetchPlan,
+      boolean iIgnoreCache);
+
   /**
    * Returns the default record type for this kind of database.
    */
@@ -15,8 +15,11 @@
  */
 package com.orientechnologies.orient.core.db.record;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +114,21 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
 
   @Override
   public <DB extends ODatabase> DB open(final String iUserName, final String iUserPassword) {
+    return (DB) open(iUserName, iUserPassword, null);
+  }
+
+  /**
+   * Opens the database as a user already authenticated by another instance of the same database, so without the password. The
+   * user is loaded again from this instance and must still be active. Used to open the instances that work for the caller in
+   * other threads. Not supported by remote databases.
+   */
+  public <DB extends ODatabase> DB open(final OUser iUser) {
+    if (iUser == null)
+      throw new IllegalArgumentException("User is null");
+    return (DB) open(iUser.getName(), null, iUser);
+  }
+
+  private ODatabase open(final String iUserName, final String iUserPassword, final OUser iAuthenticated) {
     setCurrentDatabaseinThreadLocal();
 
     try {
@@ -122,8 +140,19 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
 
       recordFormat = DEF_RECORD_FORMAT;
 
+      if (iAuthenticated != null) {
+        if (getStorage() instanceof OStorageProxy)
+          throw new ODatabaseException("Cannot open the remote database '" + getName() + "' without the password");
+
+        user = getMetadata().getSecurity().getUser(iUserName);
+        if (user == null || !user.getDocument().getIdentity().equals(iAuthenticated.getDocument().getIdentity())
+            || user.getAccountStatus() != OUser.STATUSES.ACTIVE)
+          throw new OSecurityAccessException(getName(), "User '" + iUserName + "' is not valid for database: '" + getName() + "'");
+      }
+
       if (!(getStorage() instanceof OStorageProxy)) {
-        user = getMetadata().getSecurity().authenticate(iUserName, iUserPassword);
+        if (iAuthenticated == null)
+          user = getMetadata().getSecurity().authenticate(iUserName, iUserPassword);
         if (user != null) {
           final Set<ORole> roles = user.getRoles();
           if (roles == null || roles.isEmpty() || roles.iterator().next() == null) {
@@ -161,7 +190,7 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
       close();
       throw new ODatabaseException("Cannot open database", e);
     }
-    return (DB) this;
+    return this;
   }
 
   @Override
@@ -218,6 +247,10 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
   public void close() {
     setCurrentDatabaseinThreadLocal();
 
+    // END THE INTENT BEFORE THE INDEXES ARE CLOSED: IT COULD HAVE INDEX ENTRIES STILL TO PUT
+    if (!isClosed())
+      underlying.declareIntent(null);
+
     if (metadata != null) {
       metadata.close();
       metadata = null;
@@ -667,26 +700,7 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
       if (recordBuffer == null)
         return null;
 
-      if (iRecord == null || iRecord.getRecordType() != recordBuffer.recordType)
-        // NO SAME RECORD TYPE: CAN'T REUSE OLD ONE BUT CREATE A NEW ONE FOR IT
-        iRecord = Orient.instance().getRecordFactoryManager().newInstance(recordBuffer.recordType);
-
-      iRecord.fill(iRid, recordBuffer.version, recordBuffer.buffer, false);
-
-      if (iRecord.getRecordVersion().isTombstone())
-        return (RET) iRecord;
-
-      if (callbackHooks(TYPE.BEFORE_READ, iRecord) == RESULT.SKIP)
-        return null;
-
-      iRecord.fromStream(recordBuffer.buffer);
-
-      callbackHooks(TYPE.AFTER_READ, iRecord);
-
-      if (!iIgnoreCache)
-        getLevel1Cache().updateRecord(iRecord);
-
-      return (RET) iRecord;
+      return (RET) fillRecord(iRid, iRecord, recordBuffer, iIgnoreCache);
     } catch (OException e) {
       // RE-THROW THE EXCEPTION
       throw e;
@@ -698,6 +712,41 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
     return null;
   }
 
+  public <RET extends ORecordInternal<?>> List<RET> load(final Collection<? extends ORID> iRecordIds, final String iFetchPlan,
+      final boolean iIgnoreCache) {
+    checkOpeness();
+
+    // COLLECT THE RECORDS NOT AVAILABLE IN THE TX OR IN THE CACHE
+    final List<ORecordId> toRead = new ArrayList<ORecordId>();
+    for (ORID rid : iRecordIds) {
+      if (!rid.isValid() || rid.isNew() || getTransaction().getRecord(rid) != null
+          || (!iIgnoreCache && getLevel1Cache().findRecord(rid) != null))
+        continue;
+
+      checkSecurity(ODatabaseSecurityResources.CLUSTER, ORole.PERMISSION_READ, getClusterNameById(rid.getClusterId()));
+      toRead.add((ORecordId) rid);
+    }
+
+    // READ THEM WITH ONE STORAGE OPERATION
+    final Map<ORID, ORawBuffer> buffers = new HashMap<ORID, ORawBuffer>();
+    if (toRead.size() > 1) {
+      final List<ORawBuffer> read = underlying.read(toRead, iFetchPlan, iIgnoreCache);
+      for (int i = 0; i < toRead.size(); ++i)
+        buffers.put(toRead.get(i), read.get(i));
+    }
+
+    final List<RET> result = new ArrayList<RET>(iRecordIds.size());
+    for (ORID rid : iRecordIds) {
+      if (buffers.containsKey(rid)) {
+        final ORawBuffer buffer = buffers.get(rid);
+        result.add(buffer != null ? (RET) fillRecord((ORecordId) rid, null, buffer, iIgnoreCache) : null);
+      } else
+        // ALREADY LOADED OR SINGLE RECORD: USE THE REGULAR LOAD
+        result.add((RET) load(rid, iFetchPlan, iIgnoreCache, false));
+    }
+    return result;
+  }
+
   public <RET extends ORecordInternal<?>> RET executeSaveRecord(final ORecordInternal<?> iRecord, String iClusterName,
       final ORecordVersion iVersion, final byte iRecordType, final boolean iCallTriggers, final OPERATION_MODE iMode,
       boolean iForceCreate, final ORecordCallback<? extends Number> iRecordCreatedCallback,
@@ -1014,6 +1063,33 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
     return ORecordSerializerFactory.instance().getFormatForObject(iObject, recordFormat);
   }
 
+  /**
+   * Fills a record with the content read from the storage, calling the hooks and updating the local cache.
+   */
+  protected ORecordInternal<?> fillRecord(final ORecordId iRid, ORecordInternal<?> iRecord, final ORawBuffer iBuffer,
+      final boolean iIgnoreCache) {
+    if (iRecord == null || iRecord.getRecordType() != iBuffer.recordType)
+      // NO SAME RECORD TYPE: CAN'T REUSE OLD ONE BUT CREATE A NEW ONE FOR IT
+      iRecord = Orient.instance().getRecordFactoryManager().newInstance(iBuffer.recordType);
+
+    iRecord.fill(iRid, iBuffer.version, iBuffer.buffer, false);
+
+    if (iRecord.getRecordVersion().isTombstone())
+      return iRecord;
+
+    if (callbackHooks(TYPE.BEFORE_READ, iRecord) == RESULT.SKIP)
+      return null;
+
+    iRecord.fromStream(iBuffer.buffer);
+
+    callbackHooks(TYPE.AFTER_READ, iRecord);
+
+    if (!iIgnoreCache)
+      getLevel1Cache().updateRecord(iRecord);
+
+    return iRecord;
+  }
+
   @Override
   protected void checkOpeness() {
     if (isClosed())
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.tool;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.db.ODatabase.ATTRIBUTES;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.metadata.OMetadata;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2Binary;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+
+/**
+ * Changes the record format of a database and rewrites its documents in the new format. The documents already written in the
+ * new format are skipped, so the conversion can be resumed. The clusters of the metadata and of the indexes are not converted:
+ * the documents in both the formats can be read anyway.
+ */
+public class ODatabaseRecordFormatConverter {
+  private final ODatabaseRecord        database;
+  private final OCommandOutputListener listener;
+  private final Set<String>            excludeClusters = new HashSet<String>(Arrays.asList(OMetadata.CLUSTER_INTERNAL_NAME,
+                                                           OMetadata.CLUSTER_INDEX_NAME, OMetadata.CLUSTER_MANUAL_INDEX_NAME));
+
+  public ODatabaseRecordFormatConverter(final ODatabaseRecord iDatabase, final OCommandOutputListener iListener) {
+    database = iDatabase;
+    listener = iListener;
+  }
+
+  /**
+   * Sets the record format of the database and converts the documents of all its clusters.
+   *
+   * @param iFormat
+   *          "binary", "csv" or the name of a registered record serializer
+   * @return The number of converted documents
+   */
+  public long convert(final String iFormat) {
+    database.command(new OCommandSQL("alter database recordformat " + iFormat)).execute();
+
+    long converted = 0;
+    for (String clusterName : database.getClusterNames())
+      if (!excludeClusters.contains(clusterName.toLowerCase()))
+        converted += convertCluster(clusterName);
+    return converted;
+  }
+
+  /**
+   * Converts the documents of a cluster in the record format of the database.
+   *
+   * @return The number of converted documents
+   */
+  public long convertCluster(final String iClusterName) {
+    final boolean binary = ORecordSerializerSchemaAware2Binary.NAME.equals(database.get(ATTRIBUTES.RECORDFORMAT));
+
+    long converted = 0;
+    for (ORecordInternal<?> record : database.browseCluster(iClusterName)) {
+      if (!(record instanceof ODocument) || ORecordSerializerSchemaAware2Binary.isBinary(record.toStream()) == binary)
+        continue;
+
+      // LOAD A NEW INSTANCE BYPASSING THE CACHE: IT'S CREATED WITH THE FORMAT OF THE DATABASE
+      final ODocument doc = database.load(record.getIdentity(), null, true);
+      doc.deserializeFields();
+      doc.setDirty();
+      doc.save();
+      converted++;
+    }
+
+    if (listener != null)
+      listener.onMessage("\nConverted " + converted + " records of cluster '" + iClusterName + "'");
+
+    return converted;
+  }
+
+  public Set<String> getExcludeClusters() {
+    return excludeClusters;
+  }
+}
@@ -26,13 +26,17 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeEvent;
 import com.orientechnologies.orient.core.db.record.OMultiValueChangeTimeLine;
@@ -43,8 +47,13 @@ import com.orientechnologies.orient.core.exception.OConcurrentModificationExcept
 import com.orientechnologies.orient.core.exception.OFastConcurrentModificationException;
 import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
 import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.index.btree.local.ONotUniqueBTreeIndex;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey.OTransactionIndexEntry;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 
 /**
@@ -53,6 +62,68 @@ import com.orientechnologies.orient.core.version.ORecordVersion;
  * @author Andrey Lomakin, Artem Orobets
  */
 public class OClassIndexManager extends ODocumentHookAbstract {
+  private static final int                            MAX_BATCHES  = 4;
+
+  private int                                         batchSize;
+  private int                                         batchRecords;
+  private final Map<String, OTransactionIndexChanges> batchChanges = new TreeMap<String, OTransactionIndexChanges>();
+  private final Map<String, OIndex<?>>                batchIndexes = new HashMap<String, OIndex<?>>();
+
+  /**
+   * Keeps the index entries of the records created out of transactions, to put them sorted by key every iBatchSize records: every
+   * index is locked once per batch instead of once per entry. An index locked by another thread is tried again with the next batch,
+   * up to MAX_BATCHES batches. The entries are not visible to the queries until they are put. Only the indexes with more values
+   * per key are batched: the entries of the unique indexes are put right away, so that their keys are checked against the entries
+   * of all the threads.
+   */
+  public void beginBatch(final int iBatchSize) {
+    applyBatch();
+    batchSize = iBatchSize;
+  }
+
+  /**
+   * Puts the index entries kept and goes back to put them at every record.
+   */
+  public void endBatch() {
+    applyBatch();
+    batchSize = 0;
+  }
+
+  /**
+   * Puts the index entries kept, one index at a time in the order of the names to avoid deadlocks. An entry that can't be put
+   * doesn't stop the others: the keys not put are reported at the end.
+   */
+  public void applyBatch() {
+    applyBatch(true);
+  }
+
+  private void applyBatch(final boolean iWait) {
+    if (batchRecords == 0)
+      return;
+
+    RuntimeException exception = null;
+    for (Iterator<Map.Entry<String, OTransactionIndexChanges>> it = batchChanges.entrySet().iterator(); it.hasNext();) {
+      final Map.Entry<String, OTransactionIndexChanges> entry = it.next();
+      try {
+        if (!applyBatch(batchIndexes.get(entry.getKey()).getInternal(), entry.getValue(), iWait))
+          // THE INDEX IS BUSY: TRY AGAIN WITH THE NEXT BATCH
+          continue;
+      } catch (RuntimeException e) {
+        // GO ON WITH THE OTHER INDEXES
+        if (exception == null)
+          exception = e;
+      }
+
+      batchIndexes.remove(entry.getKey());
+      it.remove();
+    }
+
+    if (batchChanges.isEmpty())
+      batchRecords = 0;
+
+    if (exception != null)
+      throw exception;
+  }
 
   @Override
   public RESULT onRecordBeforeCreate(ODocument iDocument) {
@@ -85,18 +156,119 @@ public class OClassIndexManager extends ODocumentHookAbstract {
     final OClass cls = document.getSchemaClass();
     if (cls != null) {
       final Collection<OIndex<?>> indexes = cls.getIndexes();
-      for (final OIndex<?> index : indexes) {
-        final Object key = index.getDefinition().getDocumentValueToIndex(document);
-        // SAVE A COPY TO AVOID PROBLEM ON RECYCLING OF THE RECORD
-        if (key instanceof Collection) {
-          for (final Object keyItem : (Collection<?>) key)
-            if (keyItem != null)
-              index.put(keyItem, rid);
-        } else if (key != null)
-          index.put(key, rid);
-      }
+      if (isBatching()) {
+        // THE RECORD CAN BE RECYCLED BEFORE THE ENTRIES ARE PUT: KEEP A COPY OF ITS RID
+        final OIdentifiable ridCopy = document.getIdentity().copy();
+        for (final OIndex<?> index : indexes) {
+          final Object key = index.getDefinition().getDocumentValueToIndex(document);
+          final boolean batched = isBatchable(index);
+          if (key instanceof Collection) {
+            for (final Object keyItem : (Collection<?>) key)
+              if (keyItem != null)
+                if (batched)
+                  addToBatch(index, keyItem, ridCopy);
+                else
+                  index.put(keyItem, rid);
+          } else if (key != null)
+            if (batched)
+              addToBatch(index, key, ridCopy);
+            else
+              index.put(key, rid);
+        }
+        batchRecords++;
+      } else
+        for (final OIndex<?> index : indexes) {
+          final Object key = index.getDefinition().getDocumentValueToIndex(document);
+          // SAVE A COPY TO AVOID PROBLEM ON RECYCLING OF THE RECORD
+          if (key instanceof Collection) {
+            for (final Object keyItem : (Collection<?>) key)
+              if (keyItem != null)
+                index.put(keyItem, rid);
+          } else if (key != null)
+            index.put(key, rid);
+        }
 
       releaseModificationLock(document, indexes);
+
+      if (batchRecords > 0 && batchRecords % batchSize == 0)
+        applyBatch(batchRecords >= batchSize * MAX_BATCHES);
+    }
+  }
+
+  private boolean isBatching() {
+    // IN TRANSACTION THE ENTRIES ARE ALREADY KEPT UNTIL THE COMMIT
+    return batchSize > 0 && !ODatabaseRecordThreadLocal.INSTANCE.get().getTransaction().isActive();
+  }
+
+  /**
+   * Tells if the entries of the index can wait for the batch: the indexes with one value per key check the keys of the new records
+   * against the entries already put.
+   */
+  private static boolean isBatchable(final OIndex<?> index) {
+    final OIndexInternal<?> internal = index.getInternal();
+    return internal instanceof OIndexMultiValues || internal instanceof ONotUniqueBTreeIndex;
+  }
+
+  private void addToBatch(final OIndex<?> index, final Object key, final OIdentifiable rid) {
+    OTransactionIndexChanges changes = batchChanges.get(index.getName());
+    if (changes == null) {
+      changes = new OTransactionIndexChanges();
+      batchChanges.put(index.getName(), changes);
+      batchIndexes.put(index.getName(), index);
+    }
+    changes.getChangesPerKey(key).add(rid, OPERATION.PUT);
+  }
+
+  private static boolean applyBatch(final OIndexInternal<?> index, final OTransactionIndexChanges changes, final boolean iWait) {
+    index.acquireModificationLock();
+    try {
+      if (index instanceof OSharedResourceAdaptiveExternal)
+        if (iWait)
+          ((OSharedResourceAdaptiveExternal) index).acquireExclusiveLock();
+        else if (!((OSharedResourceAdaptiveExternal) index).tryAcquireExclusiveLock())
+          return false;
+
+      try {
+        final Set<Object> failedKeys = new LinkedHashSet<Object>();
+        RuntimeException failure = null;
+
+        // THE KEYS ARE SORTED
+        for (OTransactionIndexChangesPerKey changesPerKey : changes.changesPerKey.values())
+          if (index instanceof OIndexMultiValues && changesPerKey.entries.size() > 1) {
+            // ADD ALL THE RECORDS OF THE KEY AT ONCE
+            final List<OIdentifiable> values = new ArrayList<OIdentifiable>(changesPerKey.entries.size());
+            for (OTransactionIndexEntry entry : changesPerKey.entries)
+              values.add(entry.value);
+            try {
+              ((OIndexMultiValues) index).putAll(changesPerKey.key, values);
+            } catch (RuntimeException e) {
+              // GO ON WITH THE OTHER KEYS
+              failedKeys.add(changesPerKey.key);
+              if (failure == null)
+                failure = e;
+            }
+          } else
+            for (OTransactionIndexEntry entry : changesPerKey.entries)
+              try {
+                index.put(changesPerKey.key, entry.value);
+              } catch (RuntimeException e) {
+                // GO ON WITH THE OTHER ENTRIES
+                failedKeys.add(changesPerKey.key);
+                if (failure == null)
+                  failure = e;
+              }
+
+        if (failure != null)
+          throw new OIndexException("Error on putting the entries of " + failedKeys.size() + " keys in the index '"
+              + index.getName() + "', the other entries have been put. Keys not put: " + failedKeys, failure);
+
+        return true;
+      } finally {
+        if (index instanceof OSharedResourceAdaptiveExternal)
+          ((OSharedResourceAdaptiveExternal) index).releaseExclusiveLock();
+      }
+    } finally {
+      index.releaseModificationLock();
     }
   }
 
@@ -196,6 +368,9 @@ public class OClassIndexManager extends ODocumentHookAbstract {
               ORecordOperation.DELETED);
     }
 
+    // THE RECORD COULD HAVE ENTRIES STILL TO PUT
+    applyBatch();
+
     acquireModificationLock(iDocument, iDocument.getSchemaClass() != null ? iDocument.getSchemaClass().getIndexes() : null);
     return RESULT.RECORD_NOT_CHANGED;
   }
@@ -203,6 +378,7 @@ public class OClassIndexManager extends ODocumentHookAbstract {
   @Override
   public RESULT onRecordBeforeReplicaDelete(ODocument iDocument) {
     checkForLoading(iDocument);
+    applyBatch();
     acquireModificationLock(iDocument, iDocument.getSchemaClass() != null ? iDocument.getSchemaClass().getIndexes() : null);
     return RESULT.RECORD_NOT_CHANGED;
   }
@@ -505,6 +681,8 @@ public class OClassIndexManager extends ODocumentHookAbstract {
         checkIndexedPropertiesOnCreation(document, indexes);
         break;
       case BEFORE_UPDATE:
+        // THE RECORD COULD HAVE ENTRIES STILL TO PUT
+        applyBatch();
         checkIndexedPropertiesOnUpdate(document, indexes);
         break;
       default:
@@ -0,0 +1,449 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Sorts the keys of an automatic index that is rebuilt, so its tree can be bulk loaded instead of inserting the keys one by one.
+ * The caller thread scans the clusters with its own database and extracts the keys of the documents: no other database is opened,
+ * so the rebuild works also while the caller holds the locks of the storage, of the index manager and of the index. The keys are
+ * collected in buffers that a pool of threads sorts and writes in temporary files (runs) while the scan goes on. Then the runs
+ * are merged every time the keys are read in order: the MVRB-tree reads them twice, the first time to count the distinct keys that
+ * give the shape of the tree, while the B-tree fills its pages bottom-up reading them once.
+ *
+ * @see OGlobalConfiguration#INDEX_REBUILD_THREADS
+ * @see OGlobalConfiguration#INDEX_REBUILD_SORT_BUFFER_SIZE
+ */
+public class OIndexBulkLoader {
+  private static final int                 PROGRESS_INTERVAL = 1000;
+
+  private final OIndex<?>                  index;
+  private final Collection<String>         clusters;
+  private final ODatabaseRecord            database;
+  private final OProgressListener          progressListener;
+  private final OBinarySerializer<Object>  keySerializer;
+  private final Comparator<? super Object> keyComparator;
+  private final Comparator<KeyEntry>       comparator;
+  private final int                        bufferSize;
+  private long                             documentTotal;
+
+  private final List<Run>                  runs              = new ArrayList<Run>();
+  private long                             documentsRead;
+  private long                             documentsIndexed;
+
+  /**
+   * @param iIndex
+   *          Index rebuilt, used for its definition and to report the progress
+   * @param iClusters
+   *          Clusters to scan
+   * @param iKeySerializer
+   *          Serializer of the keys written in the temporary files
+   * @param iKeyComparator
+   *          Order of the keys in the tree
+   */
+  public OIndexBulkLoader(final OIndex<?> iIndex, final Collection<String> iClusters, final ODatabaseRecord iDatabase,
+      final OProgressListener iProgressListener, final OBinarySerializer<Object> iKeySerializer,
+      final Comparator<? super Object> iKeyComparator) {
+    index = iIndex;
+    clusters = iClusters;
+    database = iDatabase;
+    progressListener = iProgressListener;
+    keySerializer = iKeySerializer;
+    bufferSize = Math.max(1, OGlobalConfiguration.INDEX_REBUILD_SORT_BUFFER_SIZE.getValueAsInteger());
+
+    keyComparator = iKeyComparator;
+    comparator = new Comparator<KeyEntry>() {
+      public int compare(final KeyEntry e1, final KeyEntry e2) {
+        final int result = keyComparator.compare(e1.key, e2.key);
+        if (result != 0)
+          return result;
+        return e1.rid.compareTo(e2.rid);
+      }
+    };
+  }
+
+  /**
+   * Scans the clusters and sorts the keys of the documents. Call {@link #close()} when the keys have been read.
+   *
+   * @param iDocumentTotal
+   *          Documents to scan, used to report the progress
+   * @return The number of documents indexed
+   */
+  public long scan(final long iDocumentTotal) {
+    documentTotal = iDocumentTotal;
+    final int threads = OGlobalConfiguration.INDEX_REBUILD_THREADS.getValueAsInteger();
+    final ExecutorService sorters = threads > 0 ? Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger serial = new AtomicInteger();
+
+      public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(r, "OrientDB IndexRebuild-" + index.getName() + "-" + serial.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    }) : null;
+
+    // AT MOST ONE BUFFER PER THREAD IS SORTED WHILE THE SCAN FILLS THE NEXT ONE
+    final LinkedList<Future<Run>> sorting = new LinkedList<Future<Run>>();
+    try {
+      List<KeyEntry> buffer = new ArrayList<KeyEntry>();
+      final OIndexDefinition indexDefinition = index.getDefinition();
+
+      for (String clusterName : clusters)
+        for (final Iterator<ORecordInternal<?>> it = database.browseCluster(clusterName); it.hasNext();) {
+          final ORecordInternal<?> record = it.next();
+          if (++documentsRead % PROGRESS_INTERVAL == 0)
+            reportProgress();
+
+          if (!(record instanceof ODocument))
+            continue;
+
+          if (indexDefinition == null)
+            throw new OConfigurationException("Index '" + index.getName() + "' cannot be rebuilt because has no a valid definition");
+
+          final Object fieldValue = indexDefinition.getDocumentValueToIndex((ODocument) record);
+          if (fieldValue == null)
+            continue;
+
+          final ORID rid = record.getIdentity().copy();
+          if (fieldValue instanceof Collection) {
+            for (final Object fieldValueItem : (Collection<?>) fieldValue)
+              if (fieldValueItem != null)
+                buffer.add(new KeyEntry(fieldValueItem, rid));
+          } else
+            buffer.add(new KeyEntry(fieldValue, rid));
+
+          documentsIndexed++;
+
+          if (buffer.size() >= bufferSize) {
+            if (sorting.size() >= Math.max(1, threads))
+              runs.add(sortedRun(sorting.removeFirst()));
+            sorting.add(sort(sorters, buffer));
+            buffer = new ArrayList<KeyEntry>();
+          }
+        }
+
+      while (!sorting.isEmpty())
+        runs.add(sortedRun(sorting.removeFirst()));
+
+      if (!buffer.isEmpty()) {
+        // THE LAST KEYS STAY IN MEMORY
+        Collections.sort(buffer, comparator);
+        runs.add(new Run(buffer));
+      }
+      reportProgress();
+
+      return documentsIndexed;
+
+    } finally {
+      if (sorters != null) {
+        // THE RUNS OF THE BUFFERS STILL SORTED ON FAILURE ARE DELETED WHEN THE SORT IS OVER
+        for (Future<Run> future : sorting)
+          future.cancel(false);
+        sorters.shutdown();
+        try {
+          sorters.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        for (Future<Run> future : sorting)
+          if (future.isDone() && !future.isCancelled())
+            try {
+              future.get().delete();
+            } catch (Exception e) {
+              // THE SORT FAILED: NOTHING TO DELETE
+            }
+      }
+    }
+  }
+
+  /**
+   * Sorts the keys and writes them in a run by one of the threads, or by the caller if there are no threads.
+   */
+  private Future<Run> sort(final ExecutorService iSorters, final List<KeyEntry> iBuffer) {
+    final FutureTask<Run> task = new FutureTask<Run>(new Callable<Run>() {
+      public Run call() {
+        Collections.sort(iBuffer, comparator);
+        return spill(iBuffer);
+      }
+    });
+
+    if (iSorters != null)
+      iSorters.execute(task);
+    else
+      task.run();
+    return task;
+  }
+
+  /**
+   * Waits for a run sorted by the threads.
+   */
+  private Run sortedRun(final Future<Run> iFuture) {
+    try {
+      return iFuture.get();
+    } catch (ExecutionException e) {
+      throw new OIndexException("Error on sorting the keys to rebuild the index '" + index.getName() + "'", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OIndexException("Interrupted while sorting the keys to rebuild the index '" + index.getName() + "'", e);
+    }
+  }
+
+  private void reportProgress() {
+    if (progressListener != null && documentTotal > 0)
+      progressListener.onProgress(index, documentsRead, documentsRead * 100f / documentTotal);
+  }
+
+  /**
+   * Returns the number of distinct keys.
+   */
+  public int countKeys() {
+    int keys = 0;
+    for (Iterator<Map.Entry<Object, List<ORID>>> it = merge(); it.hasNext(); it.next())
+      ++keys;
+    return keys;
+  }
+
+  /**
+   * Merges the runs returning the keys in order. Equal keys are grouped with their records, sorted by RID and without duplicates.
+   * The iterators read the same runs: a new iterator invalidates the previous one.
+   */
+  public Iterator<Map.Entry<Object, List<ORID>>> merge() {
+    final PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size() + 1, new Comparator<Run>() {
+      public int compare(final Run r1, final Run r2) {
+        return comparator.compare(r1.current, r2.current);
+      }
+    });
+
+    for (Run run : runs) {
+      run.open();
+      if (run.advance())
+        queue.add(run);
+    }
+
+    return new Iterator<Map.Entry<Object, List<ORID>>>() {
+      public boolean hasNext() {
+        return !queue.isEmpty();
+      }
+
+      public Map.Entry<Object, List<ORID>> next() {
+        if (queue.isEmpty())
+          throw new NoSuchElementException();
+
+        final Object key = queue.peek().current.key;
+        final List<ORID> records = new ArrayList<ORID>();
+
+        while (!queue.isEmpty() && keyComparator.compare(queue.peek().current.key, key) == 0) {
+          final Run run = queue.poll();
+          final ORID rid = run.current.rid;
+
+          // THE SAME DOCUMENT CAN HAVE THE SAME KEY MORE TIMES IN A COLLECTION
+          if (records.isEmpty() || !records.get(records.size() - 1).equals(rid))
+            records.add(rid);
+
+          if (run.advance())
+            queue.add(run);
+        }
+
+        return new AbstractMap.SimpleImmutableEntry<Object, List<ORID>>(key, records);
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove()");
+      }
+    };
+  }
+
+  /**
+   * Deletes the temporary files.
+   */
+  public void close() {
+    for (Run run : runs)
+      run.delete();
+    runs.clear();
+  }
+
+  /**
+   * Writes the sorted keys in a temporary file.
+   */
+  private Run spill(final List<KeyEntry> iBuffer) {
+    File file = null;
+    boolean written = false;
+    try {
+      file = File.createTempFile("orientdb-index-", ".tmp");
+
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        for (KeyEntry entry : iBuffer) {
+          final byte[] key = new byte[keySerializer.getObjectSize(entry.key)];
+          keySerializer.serialize(entry.key, key, 0);
+          out.writeInt(key.length);
+          out.write(key);
+          out.writeShort(entry.rid.getClusterId());
+          out.write(entry.rid.getClusterPosition().toStream());
+        }
+      } finally {
+        out.close();
+      }
+
+      written = true;
+      return new Run(file, iBuffer.size());
+
+    } catch (IOException e) {
+      throw new OIndexException("Error on writing the keys of the index '" + index.getName() + "' in a temporary file", e);
+    } finally {
+      // THE RUNS WRITTEN ARE DELETED BY CLOSE()
+      if (!written && file != null)
+        file.delete();
+    }
+  }
+
+  /**
+   * Sorted sequence of keys, written in a temporary file or kept in memory.
+   */
+  private class Run {
+    private final File           file;
+    private final int            size;
+    private final List<KeyEntry> entries;
+    private DataInputStream      in;
+    private Iterator<KeyEntry>   iterator;
+    private int                  remaining;
+    private KeyEntry             current;
+
+    private Run(final List<KeyEntry> iEntries) {
+      entries = iEntries;
+      size = iEntries.size();
+      file = null;
+    }
+
+    private Run(final File iFile, final int iSize) {
+      entries = null;
+      size = iSize;
+      file = iFile;
+    }
+
+    private void open() {
+      if (file == null) {
+        iterator = entries.iterator();
+        return;
+      }
+
+      close();
+      try {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      } catch (IOException e) {
+        throw new OIndexException("Error on reading the keys of the index '" + index.getName() + "' from the temporary file "
+            + file, e);
+      }
+      remaining = size;
+    }
+
+    private boolean advance() {
+      if (file == null) {
+        current = iterator.hasNext() ? iterator.next() : null;
+        return current != null;
+      }
+
+      if (remaining == 0) {
+        close();
+        current = null;
+        return false;
+      }
+
+      try {
+        final byte[] key = new byte[in.readInt()];
+        in.readFully(key);
+        final int clusterId = in.readShort();
+        final OClusterPosition clusterPosition = OClusterPositionFactory.INSTANCE.fromStream((DataInput) in);
+
+        current = new KeyEntry(keySerializer.deserialize(key, 0), new ORecordId(clusterId, clusterPosition));
+        remaining--;
+        return true;
+
+      } catch (IOException e) {
+        close();
+        throw new OIndexException("Error on reading the keys of the index '" + index.getName() + "' from the temporary file "
+            + file, e);
+      }
+    }
+
+    private void close() {
+      try {
+        if (in != null)
+          in.close();
+      } catch (IOException e) {
+        // IGNORE IT: THE FILE IS DELETED ANYWAY
+      }
+      in = null;
+    }
+
+    private void delete() {
+      close();
+      if (file != null)
+        file.delete();
+    }
+  }
+
+  private static class KeyEntry {
+    private final Object key;
+    private final ORID   rid;
+
+    private KeyEntry(final Object iKey, final ORID iRid) {
+      key = iKey;
+      rid = iRid;
+    }
+  }
+}
@@ -17,18 +17,21 @@ package com.orientechnologies.orient.core.index;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.orientechnologies.common.collection.OCompositeKey;
 import com.orientechnologies.common.collection.OMVRBTree;
+import com.orientechnologies.common.comparator.ODefaultComparator;
 import com.orientechnologies.common.concur.lock.OModificationLock;
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
 import com.orientechnologies.common.listener.OProgressListener;
@@ -59,8 +62,11 @@ import com.orientechnologies.orient.core.serialization.serializer.binary.impl.in
 import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OSimpleKeySerializer;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializer;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
 import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeDatabaseLazySave;
+import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeMapProvider;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbstract;
 
 /**
@@ -262,14 +268,15 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
   }
 
   public boolean contains(final Object iKey) {
+    optimizeIfNeeded();
 
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
 
-      return map.containsKey(iKey);
+      return map.containsKeyConcurrent(iKey);
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -363,6 +370,7 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
 
   /**
    * Populates the index with all the existent records. Uses the massive insert intent to speed up and keep the consumed memory low.
+   * If the index supports it the tree is bulk loaded with the keys sorted before by {@link OIndexBulkLoader}.
    */
   public long rebuild(final OProgressListener iProgressListener) {
     long documentIndexed = 0;
@@ -386,37 +394,41 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
       if (iProgressListener != null)
         iProgressListener.onBegin(this, documentTotal);
 
-      for (final String clusterName : clustersToIndex)
-        try {
-          for (final ORecord<?> record : getDatabase().browseCluster(clusterName)) {
-            if (record instanceof ODocument) {
-              final ODocument doc = (ODocument) record;
-
-              if (indexDefinition == null)
-                throw new OConfigurationException("Index '" + name + "' cannot be rebuilt because has no a valid definition ("
-                    + indexDefinition + ")");
-
-              final Object fieldValue = indexDefinition.getDocumentValueToIndex(doc);
-
-              if (fieldValue != null) {
-                if (fieldValue instanceof Collection) {
-                  for (final Object fieldValueItem : (Collection<?>) fieldValue) {
-                    put(fieldValueItem, doc);
-                  }
-                } else
-                  put(fieldValue, doc);
-
-                ++documentIndexed;
+      // A TREE THAT COULDN'T BE CLEARED IS REBUILT ONE KEY AT A TIME
+      if (indexDefinition != null && isBulkLoadSupported() && map.getRoot() == null)
+        documentIndexed = bulkLoad(documentTotal, iProgressListener);
+      else
+        for (final String clusterName : clustersToIndex)
+          try {
+            for (final ORecord<?> record : getDatabase().browseCluster(clusterName)) {
+              if (record instanceof ODocument) {
+                final ODocument doc = (ODocument) record;
+
+                if (indexDefinition == null)
+                  throw new OConfigurationException("Index '" + name + "' cannot be rebuilt because has no a valid definition ("
+                      + indexDefinition + ")");
+
+                final Object fieldValue = indexDefinition.getDocumentValueToIndex(doc);
+
+                if (fieldValue != null) {
+                  if (fieldValue instanceof Collection) {
+                    for (final Object fieldValueItem : (Collection<?>) fieldValue) {
+                      put(fieldValueItem, doc);
+                    }
+                  } else
+                    put(fieldValue, doc);
+
+                  ++documentIndexed;
+                }
               }
-            }
-            documentNum++;
+              documentNum++;
 
-            if (iProgressListener != null)
-              iProgressListener.onProgress(this, documentNum, documentNum * 100f / documentTotal);
+              if (iProgressListener != null)
+                iProgressListener.onProgress(this, documentNum, documentNum * 100f / documentTotal);
+            }
+          } catch (NoSuchElementException e) {
+            // END OF CLUSTER REACHED, IGNORE IT
           }
-        } catch (NoSuchElementException e) {
-          // END OF CLUSTER REACHED, IGNORE IT
-        }
 
       lazySave();
 
@@ -527,38 +539,43 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
 
   public Iterator<Entry<Object, T>> iterator() {
 
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
 
-      return map.entrySet().iterator();
+      // THE ITERATOR IS POSITIONED USING THE PAGE INDEX OF THE TREE: DON'T LET OTHER READERS CHANGE IT MEANWHILE
+      synchronized (map) {
+        return map.entrySet().iterator();
+      }
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
   @SuppressWarnings("unchecked")
   public Iterator<Entry<Object, T>> inverseIterator() {
 
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
 
-      return ((OMVRBTree.EntrySet) map.entrySet()).inverseIterator();
+      synchronized (map) {
+        return ((OMVRBTree.EntrySet) map.entrySet()).inverseIterator();
+      }
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
   public Iterable<Object> keys() {
 
-    acquireExclusiveLock();
+    acquireSharedLock();
     try {
 
       return map.keySet();
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -882,6 +899,26 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     }
   }
 
+  /**
+   * Executes the optimization requested by the memory watch dog, if any. The lookups executed under the shared lock can't free
+   * the memory of the tree because other readers could be navigating it, so they call this before acquiring the lock.
+   */
+  protected void optimizeIfNeeded() {
+    if (map == null || map.getOptimization() <= 0)
+      return;
+
+    acquireExclusiveLock();
+    try {
+
+      final int optimization = map.getOptimization();
+      if (optimization > 0)
+        map.optimize(optimization > 1);
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
   protected void checkForKeyType(final Object iKey) {
     if (indexDefinition == null) {
       // RECOGNIZE THE KEY TYPE AT RUN-TIME
@@ -900,6 +937,26 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     return ODatabaseRecordThreadLocal.INSTANCE.get();
   }
 
+  /**
+   * Tells if the index can be rebuilt by {@link OIndexBulkLoader}. Indexes that transform the keys before storing them are rebuilt
+   * one key at a time.
+   */
+  protected boolean isBulkLoadSupported() {
+    return false;
+  }
+
+  /**
+   * Returns the value to store for a key while the index is bulk loaded.
+   * 
+   * @param iKey
+   *          Key to store
+   * @param iRecords
+   *          Records that have the key, sorted by RID and without duplicates
+   */
+  protected T getBulkLoadValue(final Object iKey, final List<ORID> iRecords) {
+    throw new UnsupportedOperationException("getBulkLoadValue()");
+  }
+
   public OType[] getKeyTypes() {
     if (indexDefinition == null)
       return null;
@@ -951,7 +1008,44 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     return databaseName;
   }
 
+  @SuppressWarnings("unchecked")
+  private long bulkLoad(final long iDocumentTotal, final OProgressListener iProgressListener) {
+    final OIndexBulkLoader loader = new OIndexBulkLoader(this, clustersToIndex, getDatabase(), iProgressListener,
+        ((OMVRBTreeMapProvider<Object, T>) map.getProvider()).getKeySerializer(), map.comparator() != null ? map.comparator()
+            : ODefaultComparator.INSTANCE);
+    try {
+      final long documentIndexed = loader.scan(iDocumentTotal);
+      final int keyCount = loader.countKeys();
+
+      final Iterator<Map.Entry<Object, List<ORID>>> keys = loader.merge();
+      map.putAllSorted(new Iterator<Map.Entry<Object, T>>() {
+        public boolean hasNext() {
+          return keys.hasNext();
+        }
+
+        public Map.Entry<Object, T> next() {
+          final Map.Entry<Object, List<ORID>> entry = keys.next();
+          return new AbstractMap.SimpleImmutableEntry<Object, T>(entry.getKey(), getBulkLoadValue(entry.getKey(), entry.getValue()));
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException("remove()");
+        }
+      }, keyCount);
+
+      return documentIndexed;
+
+    } finally {
+      loader.close();
+    }
+  }
+
   private int lazyUpdates() {
+    final OStorage storage = getDatabase().getStorage();
+    if (storage instanceof OStorageLocal && ((OStorageLocal) storage).isLoggingIndexChanges())
+      // EVERY CHANGE MUST REACH THE WRITE AHEAD LOG
+      return 1;
+
     return isAutomatic() ? OGlobalConfiguration.INDEX_AUTO_LAZY_UPDATES.getValueAsInteger()
         : OGlobalConfiguration.INDEX_MANUAL_LAZY_UPDATES.getValueAsInteger();
   }
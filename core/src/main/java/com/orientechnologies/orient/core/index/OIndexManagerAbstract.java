@@ -36,6 +36,8 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.dictionary.ODictionary;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.btree.local.ONotUniqueBTreeIndex;
+import com.orientechnologies.orient.core.index.btree.local.OUniqueBTreeIndex;
 import com.orientechnologies.orient.core.metadata.OMetadata;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OType;
@@ -363,11 +365,11 @@ public abstract class OIndexManagerAbstract extends ODocumentWrapperNoClass impl
 
   protected OIndex<?> preProcessBeforeReturn(final OIndexInternal<?> index) {
     getDatabase().registerListener(index);
-    if (index instanceof OIndexMultiValues)
+    if (index instanceof OIndexMultiValues || index instanceof ONotUniqueBTreeIndex)
       return new OIndexTxAwareMultiValue(getDatabase(), (OIndex<Collection<OIdentifiable>>) getIndexInstance(index));
     else if (index instanceof OIndexDictionary)
       return new OIndexTxAwareDictionary(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
-    else if (index instanceof OIndexOneValue)
+    else if (index instanceof OIndexOneValue || index instanceof OUniqueBTreeIndex)
       return new OIndexTxAwareOneValue(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
     return index;
   }
@@ -110,6 +110,43 @@ public abstract class OIndexMultiValues extends OIndexMVRBTreeAbstract<Set<OIden
     }
   }
 
+  /**
+   * Adds the values to the key saving its set once, instead of once per value.
+   */
+  public OIndexMultiValues putAll(final Object iKey, final Collection<? extends OIdentifiable> iValues) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        checkForKeyType(iKey);
+
+        Set<OIdentifiable> values = map.get(iKey);
+
+        if (values == null)
+          values = new OMVRBTreeRIDSet().setAutoConvert(false);
+
+        final List<OIdentifiable> rids = new ArrayList<OIdentifiable>(iValues.size());
+        for (OIdentifiable value : iValues) {
+          if (!value.getIdentity().isValid())
+            ((ORecord<?>) value).save();
+          rids.add(value.getIdentity());
+        }
+
+        values.addAll(rids);
+
+        map.put(iKey, values);
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
   @Override
   public boolean remove(final Object iKey, final OIdentifiable iValue) {
     modificationLock.requestModificationLock();
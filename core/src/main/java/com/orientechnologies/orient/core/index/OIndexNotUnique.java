@@ -15,7 +15,13 @@
  */
 package com.orientechnologies.orient.core.index;
 
+import java.util.List;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
  * Index implementation that allows multiple values for the same key.
@@ -35,6 +41,18 @@ public class OIndexNotUnique extends OIndexMultiValues {
     return true;
   }
 
+  @Override
+  protected boolean isBulkLoadSupported() {
+    return true;
+  }
+
+  @Override
+  protected Set<OIdentifiable> getBulkLoadValue(final Object iKey, final List<ORID> iRecords) {
+    final OMVRBTreeRIDSet values = new OMVRBTreeRIDSet().setAutoConvert(false);
+    values.addAll(iRecords);
+    return values;
+  }
+
   @Override
   public boolean supportsOrderedIterations() {
     return true;
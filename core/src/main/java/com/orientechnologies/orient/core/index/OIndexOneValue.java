@@ -51,24 +51,28 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
   }
 
   public OIdentifiable get(final Object iKey) {
-    acquireExclusiveLock();
+    optimizeIfNeeded();
+
+    acquireSharedLock();
     try {
 
-      return map.get(iKey);
+      return map.getConcurrent(iKey);
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
   public long count(final Object iKey) {
-    acquireExclusiveLock();
+    optimizeIfNeeded();
+
+    acquireSharedLock();
     try {
 
-      return map.containsKey(iKey) ? 1 : 0;
+      return map.containsKeyConcurrent(iKey) ? 1 : 0;
 
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -241,7 +245,9 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
     final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
     Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
 
-    acquireExclusiveLock();
+    optimizeIfNeeded();
+
+    acquireSharedLock();
 
     final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
     try {
@@ -249,7 +255,7 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
         if (maxValuesToSearch > -1 && result.size() == maxValuesToSearch)
           return result;
 
-        final OIdentifiable val = map.get(key);
+        final OIdentifiable val = map.getConcurrent(key);
         if (val != null) {
           result.add(val);
         }
@@ -257,7 +263,7 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
 
       return result;
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
   }
 
@@ -396,7 +402,9 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
     final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
     Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
 
-    acquireExclusiveLock();
+    optimizeIfNeeded();
+
+    acquireSharedLock();
 
     final Set<ODocument> result = new ODocumentFieldsHashSet();
     try {
@@ -404,7 +412,7 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
         if (maxEntriesToFetch > -1 && result.size() == maxEntriesToFetch)
           return result;
 
-        final OIdentifiable val = map.get(key);
+        final OIdentifiable val = map.getConcurrent(key);
         if (val != null) {
           final ODocument document = new ODocument();
           document.field("key", key);
@@ -417,7 +425,7 @@ public abstract class OIndexOneValue extends OIndexMVRBTreeAbstract<OIdentifiabl
 
       return result;
     } finally {
-      releaseExclusiveLock();
+      releaseSharedLock();
     }
 
   }
@@ -15,7 +15,10 @@
  */
 package com.orientechnologies.orient.core.index;
 
+import java.util.List;
+
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
@@ -72,6 +75,19 @@ public class OIndexUnique extends OIndexOneValue {
     return true;
   }
 
+  @Override
+  protected boolean isBulkLoadSupported() {
+    return true;
+  }
+
+  @Override
+  protected OIdentifiable getBulkLoadValue(final Object iKey, final List<ORID> iRecords) {
+    if (iRecords.size() > 1)
+      throw new ORecordDuplicatedException("Found duplicated key '" + iKey + "' on unique index '" + name + "' for record "
+          + iRecords.get(1) + ". The record already present in the index is " + iRecords.get(0), iRecords.get(0));
+    return iRecords.get(0);
+  }
+
   @Override
   public boolean supportsOrderedIterations() {
     return true;
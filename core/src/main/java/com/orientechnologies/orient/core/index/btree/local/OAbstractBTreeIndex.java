@@ -0,0 +1,1238 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.concur.lock.OModificationLock;
+import com.orientechnologies.common.concur.resource.OCloseable;
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
+import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.config.OStorageFileConfiguration;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordElement;
+import com.orientechnologies.orient.core.exception.OTransactionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.ODocumentFieldsHashSet;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexBulkLoader;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
+import com.orientechnologies.orient.core.index.OSimpleKeyIndexDefinition;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OSimpleKeySerializer;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
+import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.impl.local.OSingleFileSegment;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageVariableParser;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+
+/**
+ * Index that keeps its entries in a {@link OBTree}, stored in its own file named as the index with extension ".obt". The record
+ * of the index in the index cluster is empty and is used only as identity. With the memory storage the tree is kept in memory,
+ * while the remote clients don't open it at all: they use the index through the server.<br/>
+ * The changed pages are written every time the number of updates configured with "index.auto.lazyUpdates" and
+ * "index.manual.lazyUpdates" is reached, on flush and when the database is closed. An automatic index whose file was not closed
+ * correctly is rebuilt when the database is opened.
+ */
+public abstract class OAbstractBTreeIndex<T> extends OSharedResourceAdaptiveExternal implements OIndexInternal<T>, OCloseable {
+  public static final String          FILE_EXTENSION   = ".obt";
+
+  protected static final String       CONFIG_MAP_RID   = "mapRid";
+  protected static final String       CONFIG_CLUSTERS  = "clusters";
+
+  protected final OModificationLock   modificationLock = new OModificationLock();
+  protected String                    name;
+  protected String                    type;
+  protected OBTree<Object>            tree;
+  protected Set<String>               clustersToIndex  = new LinkedHashSet<String>();
+  protected OIndexDefinition          indexDefinition;
+  protected final String              databaseName;
+  protected ORID                      identity;
+  protected ODocument                 configuration;
+  private int                         maxUpdatesBeforeSave;
+  private int                         updates;
+
+  public OAbstractBTreeIndex(final String iType) {
+    super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(), OGlobalConfiguration.MVRBTREE_TIMEOUT
+        .getValueAsInteger(), true);
+
+    databaseName = ODatabaseRecordThreadLocal.INSTANCE.get().getName();
+    type = iType;
+  }
+
+  /**
+   * Tells if the tree can contain more rids for the same key.
+   */
+  protected abstract boolean isMultiValue();
+
+  public OIndex<T> create(final String iName, final OIndexDefinition iIndexDefinition, final ODatabaseRecord iDatabase,
+      final String iClusterIndexName, final int[] iClusterIdsToIndex, final OProgressListener iProgressListener) {
+    acquireExclusiveLock();
+    try {
+
+      name = iName;
+      configuration = new ODocument();
+
+      indexDefinition = iIndexDefinition;
+      maxUpdatesBeforeSave = lazyUpdates();
+
+      if (iClusterIdsToIndex != null)
+        for (final int id : iClusterIdsToIndex)
+          clustersToIndex.add(iDatabase.getClusterNameById(id));
+
+      final ORecord<?> emptyRecord = new ORecordBytes(new byte[] {});
+      emptyRecord.save(iClusterIndexName);
+      identity = emptyRecord.getIdentity();
+
+      tree = newTree(iDatabase.getStorage());
+      if (tree != null)
+        tree.create(detectKeySerializer(), isMultiValue());
+
+      installHooks(iDatabase);
+
+      rebuild(iProgressListener);
+      updateConfiguration();
+    } catch (Exception e) {
+      if (tree != null)
+        try {
+          tree.delete();
+        } catch (IOException e2) {
+          // IGNORE IT, THE CREATION ERROR IS THROWN
+        }
+      if (e instanceof OIndexException)
+        throw (OIndexException) e;
+
+      throw new OIndexException("Cannot create the index '" + iName + "'", e);
+
+    } finally {
+      releaseExclusiveLock();
+    }
+    return this;
+  }
+
+  public boolean loadFromConfiguration(final ODocument iConfig) {
+    acquireExclusiveLock();
+    try {
+
+      final ORID rid = (ORID) iConfig.field(CONFIG_MAP_RID, ORID.class);
+      if (rid == null)
+        throw new OIndexException("Error during deserialization of index definition: '" + CONFIG_MAP_RID + "' attribute is null");
+      identity = rid;
+
+      configuration = iConfig;
+      name = configuration.field(OIndexInternal.CONFIG_NAME);
+
+      final ODocument indexDefinitionDoc = configuration.field(OIndexInternal.INDEX_DEFINITION);
+      if (indexDefinitionDoc != null) {
+        try {
+          final String indexDefClassName = configuration.field(OIndexInternal.INDEX_DEFINITION_CLASS);
+          final Class<?> indexDefClass = Class.forName(indexDefClassName);
+          indexDefinition = (OIndexDefinition) indexDefClass.getDeclaredConstructor().newInstance();
+          indexDefinition.fromStream(indexDefinitionDoc);
+
+        } catch (final ClassNotFoundException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final NoSuchMethodException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final InvocationTargetException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final InstantiationException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        } catch (final IllegalAccessException e) {
+          throw new OIndexException("Error during deserialization of index definition", e);
+        }
+      }
+
+      clustersToIndex.clear();
+      maxUpdatesBeforeSave = lazyUpdates();
+
+      final Collection<? extends String> clusters = configuration.field(CONFIG_CLUSTERS);
+      if (clusters != null)
+        clustersToIndex.addAll(clusters);
+
+      tree = newTree(getDatabase().getStorage());
+      if (tree != null) {
+        boolean rebuild = false;
+        try {
+          if (tree.exists()) {
+            if (!tree.open(detectKeySerializer())) {
+              OLogManager.instance().warn(this, "Index '%s' was not closed correctly last time", name);
+              rebuild = OGlobalConfiguration.INDEX_AUTO_REBUILD_AFTER_NOTSOFTCLOSE.getValueAsBoolean();
+            }
+          } else {
+            tree.create(detectKeySerializer(), isMultiValue());
+            rebuild = true;
+          }
+        } catch (Exception e) {
+          OLogManager.instance().warn(this, "Cannot load index '%s' from storage: rebuilt it from scratch", name);
+          try {
+            tree.create(detectKeySerializer(), isMultiValue());
+          } catch (IOException e2) {
+            OLogManager.instance().error(this, "Cannot create the file of index '%s'. The index will be removed in configuration", e2,
+                name);
+            return false;
+          }
+          rebuild = true;
+        }
+
+        if (rebuild && isAutomatic())
+          try {
+            rebuild();
+          } catch (Throwable t) {
+            OLogManager.instance().error(this, "Cannot rebuild index '%s'. The index will be removed in configuration", t, name);
+            return false;
+          }
+      }
+
+      installHooks(iConfig.getDatabase());
+
+      return true;
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public boolean contains(final Object iKey) {
+    acquireSharedLock();
+    try {
+
+      return tree.get(iKey) != null;
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public long count(final Object iKey) {
+    acquireSharedLock();
+    try {
+
+      if (!isMultiValue())
+        return tree.get(iKey) != null ? 1 : 0;
+
+      final long[] count = new long[1];
+      tree.range(iKey, true, iKey, true, true, new OBTree.OEntryListener<Object>() {
+        public boolean addResult(final Object iEntryKey, final ORID iRid) {
+          count[0]++;
+          return true;
+        }
+      });
+      return count[0];
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public boolean remove(final Object iKey) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        final boolean removed = tree.remove(iKey) > 0;
+        if (removed)
+          updated();
+        return removed;
+
+      } catch (IOException e) {
+        throw new OIndexException("Error on removing the key '" + iKey + "' from the index '" + name + "'", e);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public boolean remove(final Object iKey, final OIdentifiable iValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        final boolean removed = tree.remove(iKey, iValue.getIdentity());
+        if (removed)
+          updated();
+        return removed;
+
+      } catch (IOException e) {
+        throw new OIndexException("Error on removing the key '" + iKey + "' from the index '" + name + "'", e);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  /**
+   * Removes all the entries of the record. The tree is ordered by key, so the keys of the record are searched scanning the whole
+   * tree: the cost grows with the size of the index, not with the entries removed. The automatic indexes don't use it: they remove
+   * the keys of the record passing them.
+   */
+  public int remove(final OIdentifiable iRecord) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        final ORID rid = iRecord.getIdentity();
+        final List<Object> keys = new ArrayList<Object>();
+        tree.range(null, true, null, true, true, new OBTree.OEntryListener<Object>() {
+          public boolean addResult(final Object iKey, final ORID iRid) {
+            if (iRid.equals(rid))
+              keys.add(iKey);
+            return true;
+          }
+        });
+
+        for (Object key : keys)
+          tree.remove(key, rid);
+
+        if (!keys.isEmpty())
+          updated();
+        return keys.size();
+
+      } catch (IOException e) {
+        throw new OIndexException("Error on removing the record " + iRecord + " from the index '" + name + "'", e);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public OIndex<T> clear() {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        tree.clear();
+        return this;
+
+      } catch (IOException e) {
+        throw new OIndexException("Error on clearing the index '" + name + "'", e);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public OIndex<T> delete() {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        if (tree != null)
+          tree.delete();
+        if (identity != null && identity.isValid())
+          getDatabase().delete(identity);
+        return this;
+
+      } catch (IOException e) {
+        throw new OIndexException("Error on deleting the index '" + name + "'", e);
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public void flush() {
+    lazySave();
+  }
+
+  public OIndex<T> lazySave() {
+    acquireExclusiveLock();
+    try {
+
+      if (tree != null)
+        tree.flush();
+      updates = 0;
+      return this;
+
+    } catch (IOException e) {
+      throw new OIndexException("Error on saving the index '" + name + "'", e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void close() {
+    acquireExclusiveLock();
+    try {
+
+      if (tree != null)
+        tree.close();
+
+    } catch (IOException e) {
+      throw new OIndexException("Error on closing the index '" + name + "'", e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void unload() {
+    acquireExclusiveLock();
+    try {
+
+      tree.unload();
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public long rebuild() {
+    return rebuild(null);
+  }
+
+  /**
+   * Populates the index with all the existent records. Uses the massive insert intent to speed up and keep the consumed memory low.
+   * The keys are sorted before by {@link OIndexBulkLoader} and the tree is bulk loaded.
+   */
+  public long rebuild(final OProgressListener iProgressListener) {
+    long documentIndexed = 0;
+
+    final boolean intentInstalled = getDatabase().declareIntent(new OIntentMassiveInsert());
+
+    acquireExclusiveLock();
+    try {
+      tree.clear();
+
+      long documentTotal = 0;
+
+      for (final String cluster : clustersToIndex)
+        documentTotal += getDatabase().countClusterElements(cluster);
+
+      if (iProgressListener != null)
+        iProgressListener.onBegin(this, documentTotal);
+
+      final OIndexBulkLoader loader = new OIndexBulkLoader(this, clustersToIndex, getDatabase(), iProgressListener,
+          tree.getKeySerializer(), ODefaultComparator.INSTANCE);
+      try {
+        documentIndexed = loader.scan(documentTotal);
+        tree.bulkLoad(new BulkLoadIterator(loader.merge()));
+      } finally {
+        loader.close();
+      }
+
+      lazySave();
+
+      if (iProgressListener != null)
+        iProgressListener.onCompletition(this, true);
+
+    } catch (final Exception e) {
+      if (iProgressListener != null)
+        iProgressListener.onCompletition(this, false);
+
+      try {
+        tree.clear();
+      } catch (Exception e2) {
+        // IGNORE IT, THE REBUILD ERROR IS THROWN
+      }
+
+      throw new OIndexException("Error on rebuilding the index for clusters: " + clustersToIndex, e);
+
+    } finally {
+      if (intentInstalled)
+        getDatabase().declareIntent(null);
+
+      releaseExclusiveLock();
+    }
+
+    return documentIndexed;
+  }
+
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final Object iRangeTo) {
+    return getValuesBetween(iRangeFrom, true, iRangeTo, true);
+  }
+
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive) {
+    return getValuesBetween(iRangeFrom, iFromInclusive, iRangeTo, iToInclusive, -1);
+  }
+
+  /**
+   * Returns the records with key between the range passed as parameter.
+   * <p/>
+   * In case of {@link OCompositeKey}s partial keys can be used as values boundaries.
+   */
+  public Collection<OIdentifiable> getValuesBetween(final Object iRangeFrom, final boolean iFromInclusive, final Object iRangeTo,
+      final boolean iToInclusive, final int maxValuesToFetch) {
+    return fetchValues(iRangeFrom, iFromInclusive, iRangeTo, iToInclusive, true, maxValuesToFetch);
+  }
+
+  public Collection<OIdentifiable> getValuesMajor(final Object fromKey, final boolean isInclusive) {
+    return getValuesMajor(fromKey, isInclusive, -1);
+  }
+
+  public Collection<OIdentifiable> getValuesMajor(final Object fromKey, final boolean isInclusive, final int maxValuesToFetch) {
+    return fetchValues(fromKey, isInclusive, null, true, true, maxValuesToFetch);
+  }
+
+  public Collection<OIdentifiable> getValuesMinor(final Object toKey, final boolean isInclusive) {
+    return getValuesMinor(toKey, isInclusive, -1);
+  }
+
+  public Collection<OIdentifiable> getValuesMinor(final Object toKey, final boolean isInclusive, final int maxValuesToFetch) {
+    return fetchValues(null, true, toKey, isInclusive, false, maxValuesToFetch);
+  }
+
+  public Collection<OIdentifiable> getValues(final Collection<?> iKeys) {
+    return getValues(iKeys, -1);
+  }
+
+  public Collection<OIdentifiable> getValues(final Collection<?> iKeys, final int maxValuesToFetch) {
+    final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
+    Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
+
+    final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+
+    acquireSharedLock();
+    try {
+      for (final Object key : sortedKeys) {
+        if (maxValuesToFetch > -1 && result.size() == maxValuesToFetch)
+          return result;
+
+        tree.range(key, true, key, true, true, new ValuesListener(result, maxValuesToFetch));
+      }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo) {
+    return getEntriesBetween(iRangeFrom, iRangeTo, true);
+  }
+
+  public Collection<ODocument> getEntriesBetween(final Object iRangeFrom, final Object iRangeTo, final boolean iInclusive) {
+    return getEntriesBetween(iRangeFrom, iRangeTo, iInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesBetween(Object iRangeFrom, Object iRangeTo, final boolean iInclusive,
+      final int maxEntriesToFetch) {
+    final OType[] types = getKeyTypes();
+    if (types != null && types.length == 1) {
+      iRangeFrom = OType.convert(iRangeFrom, types[0].getDefaultJavaType());
+      iRangeTo = OType.convert(iRangeTo, types[0].getDefaultJavaType());
+    }
+
+    return fetchEntries(iRangeFrom, iInclusive, iRangeTo, iInclusive, true, maxEntriesToFetch);
+  }
+
+  public Collection<ODocument> getEntriesMajor(final Object fromKey, final boolean isInclusive) {
+    return getEntriesMajor(fromKey, isInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesMajor(final Object fromKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    return fetchEntries(fromKey, isInclusive, null, true, true, maxEntriesToFetch);
+  }
+
+  public Collection<ODocument> getEntriesMinor(final Object toKey, final boolean isInclusive) {
+    return getEntriesMinor(toKey, isInclusive, -1);
+  }
+
+  public Collection<ODocument> getEntriesMinor(final Object toKey, final boolean isInclusive, final int maxEntriesToFetch) {
+    return fetchEntries(null, true, toKey, isInclusive, false, maxEntriesToFetch);
+  }
+
+  public Collection<ODocument> getEntries(final Collection<?> iKeys) {
+    return getEntries(iKeys, -1);
+  }
+
+  public Collection<ODocument> getEntries(final Collection<?> iKeys, final int maxEntriesToFetch) {
+    final List<Object> sortedKeys = new ArrayList<Object>(iKeys);
+    Collections.sort(sortedKeys, ODefaultComparator.INSTANCE);
+
+    final Set<ODocument> result = new ODocumentFieldsHashSet();
+
+    acquireSharedLock();
+    try {
+      for (final Object key : sortedKeys) {
+        if (maxEntriesToFetch > -1 && result.size() == maxEntriesToFetch)
+          return result;
+
+        tree.range(key, true, key, true, true, new EntriesListener(result, maxEntriesToFetch));
+      }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public long getSize() {
+    acquireSharedLock();
+    try {
+      return tree.size();
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public long getKeySize() {
+    acquireSharedLock();
+    try {
+      if (!isMultiValue())
+        return tree.size();
+
+      final long[] keys = new long[1];
+      tree.range(null, true, null, true, true, new OBTree.OEntryListener<Object>() {
+        private Object lastKey;
+
+        public boolean addResult(final Object iKey, final ORID iRid) {
+          if (lastKey == null || ODefaultComparator.INSTANCE.compare(lastKey, iKey) != 0)
+            keys[0]++;
+          lastKey = iKey;
+          return true;
+        }
+      });
+      return keys[0];
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public Iterator<OIdentifiable> valuesIterator() {
+    return new ValuesIterator(new EntryIterator(true));
+  }
+
+  public Iterator<OIdentifiable> valuesInverseIterator() {
+    return new ValuesIterator(new EntryIterator(false));
+  }
+
+  public Iterable<Object> keys() {
+    return new Iterable<Object>() {
+      public Iterator<Object> iterator() {
+        final EntryIterator entries = new EntryIterator(true);
+        return new Iterator<Object>() {
+          private Object next;
+          private Object lastKey;
+
+          public boolean hasNext() {
+            while (next == null && entries.hasNext()) {
+              final Object key = entries.next().getKey();
+              if (lastKey == null || ODefaultComparator.INSTANCE.compare(lastKey, key) != 0)
+                next = key;
+              lastKey = key;
+            }
+            return next != null;
+          }
+
+          public Object next() {
+            if (!hasNext())
+              throw new NoSuchElementException();
+            final Object key = next;
+            next = null;
+            return key;
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException("remove");
+          }
+        };
+      }
+    };
+  }
+
+  public ORID getIdentity() {
+    return identity;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  public String getDatabaseName() {
+    return databaseName;
+  }
+
+  public OIndexInternal<T> getInternal() {
+    return this;
+  }
+
+  public ODocument getConfiguration() {
+    return configuration;
+  }
+
+  public boolean isAutomatic() {
+    return indexDefinition != null && indexDefinition.getClassName() != null;
+  }
+
+  public OType[] getKeyTypes() {
+    if (indexDefinition == null)
+      return null;
+
+    return indexDefinition.getTypes();
+  }
+
+  public OIndexDefinition getDefinition() {
+    return indexDefinition;
+  }
+
+  public Set<String> getClusters() {
+    acquireSharedLock();
+    try {
+
+      return Collections.unmodifiableSet(clustersToIndex);
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public OIndex<T> addCluster(final String iClusterName) {
+    acquireExclusiveLock();
+    try {
+      if (clustersToIndex.add(iClusterName))
+        updateConfiguration();
+      return this;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public OIndex<T> removeCluster(final String iClusterName) {
+    acquireExclusiveLock();
+    try {
+      if (clustersToIndex.remove(iClusterName))
+        updateConfiguration();
+      return this;
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void checkEntry(final OIdentifiable iRecord, final Object iKey) {
+  }
+
+  public boolean canBeUsedInEqualityOperators() {
+    return true;
+  }
+
+  public boolean supportsOrderedIterations() {
+    return true;
+  }
+
+  public ODocument updateConfiguration() {
+    acquireExclusiveLock();
+    try {
+
+      configuration.setInternalStatus(ORecordElement.STATUS.UNMARSHALLING);
+
+      try {
+        configuration.field(OIndexInternal.CONFIG_TYPE, type);
+        configuration.field(OIndexInternal.CONFIG_NAME, name);
+
+        if (indexDefinition != null) {
+          final ODocument indexDefDocument = indexDefinition.toStream();
+          if (!indexDefDocument.hasOwners())
+            indexDefDocument.addOwner(configuration);
+
+          configuration.field(OIndexInternal.INDEX_DEFINITION, indexDefDocument, OType.EMBEDDED);
+          configuration.field(OIndexInternal.INDEX_DEFINITION_CLASS, indexDefinition.getClass().getName());
+        } else {
+          configuration.removeField(OIndexInternal.INDEX_DEFINITION);
+          configuration.removeField(OIndexInternal.INDEX_DEFINITION_CLASS);
+        }
+
+        configuration.field(CONFIG_CLUSTERS, clustersToIndex, OType.EMBEDDEDSET);
+        configuration.field(CONFIG_MAP_RID, identity);
+
+      } finally {
+        configuration.setInternalStatus(ORecordElement.STATUS.LOADED);
+      }
+
+    } finally {
+      releaseExclusiveLock();
+    }
+    return configuration;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void commit(final ODocument iDocument) {
+    if (iDocument == null)
+      return;
+
+    acquireExclusiveLock();
+    try {
+      final Boolean clearAll = (Boolean) iDocument.field("clear");
+      if (clearAll != null && clearAll)
+        clear();
+
+      final Collection<ODocument> entries = iDocument.field("entries");
+
+      for (final ODocument entry : entries) {
+        final String serializedKey = OStringSerializerHelper.decode((String) entry.field("k"));
+
+        final Object key;
+
+        try {
+          if (serializedKey.equals("*"))
+            key = "*";
+          else {
+            final ODocument keyContainer = new ODocument();
+            keyContainer.setLazyLoad(false);
+
+            keyContainer.fromString(serializedKey);
+
+            final Object storedKey = keyContainer.field("key");
+            if (storedKey instanceof List)
+              key = new OCompositeKey((List<? extends Comparable<?>>) storedKey);
+            else if (Boolean.TRUE.equals(keyContainer.field("binary"))) {
+              key = OStreamSerializerAnyStreamable.INSTANCE.fromStream((byte[]) storedKey);
+            } else
+              key = storedKey;
+          }
+        } catch (IOException ioe) {
+          throw new OTransactionException("Error during index changes deserialization. ", ioe);
+        }
+
+        final List<ODocument> operations = (List<ODocument>) entry.field("ops");
+        if (operations != null) {
+          for (final ODocument op : operations) {
+            final int operation = (Integer) op.rawField("o");
+            final OIdentifiable value = op.field("v", OType.LINK);
+
+            if (operation == OPERATION.PUT.ordinal())
+              put(key, value);
+            else if (operation == OPERATION.REMOVE.ordinal()) {
+              if (key.equals("*"))
+                remove(value);
+              else if (value == null)
+                remove(key);
+              else
+                remove(key, value);
+            }
+          }
+        }
+      }
+
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  public void freeze(final boolean throwException) {
+    modificationLock.prohibitModifications(throwException);
+  }
+
+  public void release() {
+    modificationLock.allowModifications();
+  }
+
+  public void acquireModificationLock() {
+    modificationLock.requestModificationLock();
+  }
+
+  public void releaseModificationLock() {
+    modificationLock.releaseModificationLock();
+  }
+
+  public void onCreate(final ODatabase iDatabase) {
+  }
+
+  public void onDelete(final ODatabase iDatabase) {
+  }
+
+  public void onOpen(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxBegin(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxRollback(final ODatabase iDatabase) {
+  }
+
+  public void onAfterTxRollback(final ODatabase iDatabase) {
+  }
+
+  public void onBeforeTxCommit(final ODatabase iDatabase) {
+  }
+
+  public void onAfterTxCommit(final ODatabase iDatabase) {
+  }
+
+  public void onClose(final ODatabase iDatabase) {
+    lazySave();
+  }
+
+  public boolean onCorruptionRepairDatabase(final ODatabase iDatabase, final String iReason, final String iWhatWillbeFixed) {
+    return false;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+
+    final OAbstractBTreeIndex<?> that = (OAbstractBTreeIndex<?>) o;
+
+    if (!name.equals(that.name))
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  /**
+   * Stores the entry in the tree, saving the record first if it's new.
+   */
+  protected void putEntry(final Object iKey, final OIdentifiable iValue) {
+    checkForKeyType(iKey);
+
+    if (!iValue.getIdentity().isPersistent())
+      ((ORecord<?>) iValue.getRecord()).save();
+
+    try {
+      if (tree.put(iKey, iValue.getIdentity()))
+        updated();
+    } catch (IOException e) {
+      throw new OIndexException("Error on putting the key '" + iKey + "' in the index '" + name + "'", e);
+    }
+  }
+
+  /**
+   * Returns the entries in the order of the keys, loading one leaf at a time.
+   */
+  protected Iterator<Entry<Object, ORID>> entryIterator(final boolean iAscending) {
+    return new EntryIterator(iAscending);
+  }
+
+  protected void installHooks(final ODatabaseRecord iDatabase) {
+    final OJVMProfiler profiler = Orient.instance().getProfiler();
+    final String profilerPrefix = profiler.getDatabaseMetric(iDatabase.getName(), "index." + name + '.');
+    final String profilerMetadataPrefix = "db.*.index.*.";
+
+    profiler.registerHookValue(profilerPrefix + "items", "Index size", METRIC_TYPE.SIZE, new OProfilerHookValue() {
+      public Object getValue() {
+        return tree != null ? tree.size() : "-";
+      }
+    }, profilerMetadataPrefix + "items");
+
+    iDatabase.registerListener(this);
+  }
+
+  protected void checkForKeyType(final Object iKey) {
+    if (indexDefinition == null) {
+      // RECOGNIZE THE KEY TYPE AT RUN-TIME
+
+      final OType type = OType.getTypeByClass(iKey.getClass());
+      if (type == null)
+        return;
+
+      indexDefinition = new OSimpleKeyIndexDefinition(type);
+      maxUpdatesBeforeSave = lazyUpdates();
+      updateConfiguration();
+    }
+  }
+
+  protected ODatabaseRecord getDatabase() {
+    return ODatabaseRecordThreadLocal.INSTANCE.get();
+  }
+
+  private OBTree<Object> newTree(final OStorage iStorage) {
+    final int pageSize = OGlobalConfiguration.BTREE_PAGE_SIZE.getValueAsInteger();
+    final int cacheSize = OGlobalConfiguration.BTREE_CACHE_SIZE.getValueAsInteger();
+
+    if (iStorage instanceof OStorageLocal) {
+      final OStorageFileConfiguration fileConfiguration = new OStorageFileConfiguration(null,
+          OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + FILE_EXTENSION, OFileFactory.MMAP, "0", "50%");
+      try {
+        return new OBTree<Object>(new OSingleFileSegment((OStorageLocal) iStorage, fileConfiguration), pageSize, cacheSize);
+      } catch (IOException e) {
+        throw new OIndexException("Cannot open the file of the index '" + name + "'", e);
+      }
+    }
+
+    if (iStorage instanceof OStorageEmbedded)
+      return new OBTree<Object>(null, pageSize, cacheSize);
+
+    // REMOTE CLIENT: THE INDEX IS USED THROUGH THE SERVER
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private OBinarySerializer<Object> detectKeySerializer() {
+    if (indexDefinition == null)
+      return new OSimpleKeySerializer();
+
+    if (indexDefinition instanceof ORuntimeKeyIndexDefinition)
+      return ((ORuntimeKeyIndexDefinition<Object>) indexDefinition).getSerializer();
+
+    if (indexDefinition.getTypes().length > 1)
+      return (OBinarySerializer<Object>) (OBinarySerializer<?>) OCompositeKeySerializer.INSTANCE;
+
+    return (OBinarySerializer<Object>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(indexDefinition.getTypes()[0]);
+  }
+
+  private void updated() throws IOException {
+    if (maxUpdatesBeforeSave > 0 && ++updates >= maxUpdatesBeforeSave) {
+      tree.flush();
+      updates = 0;
+    }
+  }
+
+  private int lazyUpdates() {
+    return isAutomatic() ? OGlobalConfiguration.INDEX_AUTO_LAZY_UPDATES.getValueAsInteger()
+        : OGlobalConfiguration.INDEX_MANUAL_LAZY_UPDATES.getValueAsInteger();
+  }
+
+  private Collection<OIdentifiable> fetchValues(final Object iFrom, final boolean iFromInclusive, final Object iTo,
+      final boolean iToInclusive, final boolean iAscending, final int maxValuesToFetch) {
+    final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+
+    acquireSharedLock();
+    try {
+      tree.range(iFrom, iFromInclusive, iTo, iToInclusive, iAscending, new ValuesListener(result, maxValuesToFetch));
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  private Collection<ODocument> fetchEntries(final Object iFrom, final boolean iFromInclusive, final Object iTo,
+      final boolean iToInclusive, final boolean iAscending, final int maxEntriesToFetch) {
+    final Set<ODocument> result = new ODocumentFieldsHashSet();
+
+    acquireSharedLock();
+    try {
+      tree.range(iFrom, iFromInclusive, iTo, iToInclusive, iAscending, new EntriesListener(result, maxEntriesToFetch));
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  private static final class ValuesListener implements OBTree.OEntryListener<Object> {
+    private final Set<OIdentifiable> result;
+    private final int                maxValuesToFetch;
+
+    private ValuesListener(final Set<OIdentifiable> iResult, final int iMaxValuesToFetch) {
+      result = iResult;
+      maxValuesToFetch = iMaxValuesToFetch;
+    }
+
+    public boolean addResult(final Object iKey, final ORID iRid) {
+      if (maxValuesToFetch > -1 && result.size() == maxValuesToFetch)
+        return false;
+      result.add(iRid);
+      return true;
+    }
+  }
+
+  private static final class EntriesListener implements OBTree.OEntryListener<Object> {
+    private final Set<ODocument> result;
+    private final int            maxEntriesToFetch;
+
+    private EntriesListener(final Set<ODocument> iResult, final int iMaxEntriesToFetch) {
+      result = iResult;
+      maxEntriesToFetch = iMaxEntriesToFetch;
+    }
+
+    public boolean addResult(final Object iKey, final ORID iRid) {
+      if (maxEntriesToFetch > -1 && result.size() == maxEntriesToFetch)
+        return false;
+
+      final ODocument document = new ODocument();
+      document.field("key", iKey);
+      document.field("rid", iRid);
+      document.unsetDirty();
+
+      result.add(document);
+      return true;
+    }
+  }
+
+  /**
+   * Iterates the entries copying one leaf at a time under the shared lock, so the lock is not kept between the calls.
+   */
+  private final class EntryIterator implements Iterator<Entry<Object, ORID>> {
+    private final boolean      ascending;
+    private final List<Object> keys  = new ArrayList<Object>();
+    private final List<ORID>   rids  = new ArrayList<ORID>();
+    private long               nextLeaf;
+    private int                index;
+
+    private EntryIterator(final boolean iAscending) {
+      ascending = iAscending;
+
+      acquireSharedLock();
+      try {
+        nextLeaf = tree.getEdgeLeaf(ascending);
+      } finally {
+        releaseSharedLock();
+      }
+    }
+
+    public boolean hasNext() {
+      while (index >= keys.size()) {
+        if (nextLeaf == -1)
+          return false;
+
+        keys.clear();
+        rids.clear();
+        index = 0;
+
+        acquireSharedLock();
+        try {
+          nextLeaf = tree.readLeaf(nextLeaf, ascending, keys, rids);
+        } finally {
+          releaseSharedLock();
+        }
+      }
+      return true;
+    }
+
+    public Entry<Object, ORID> next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+
+      final Entry<Object, ORID> entry = new AbstractMap.SimpleImmutableEntry<Object, ORID>(keys.get(index), rids.get(index));
+      index++;
+      return entry;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  /**
+   * Returns the entries of the keys sorted by the bulk loader, one per record in multi value mode.
+   */
+  private final class BulkLoadIterator implements Iterator<Entry<Object, ORID>> {
+    private final Iterator<Entry<Object, List<ORID>>> keys;
+    private Object                                    key;
+    private List<ORID>                                records = Collections.emptyList();
+    private int                                       index;
+
+    private BulkLoadIterator(final Iterator<Entry<Object, List<ORID>>> iKeys) {
+      keys = iKeys;
+    }
+
+    public boolean hasNext() {
+      return index < records.size() || keys.hasNext();
+    }
+
+    public Entry<Object, ORID> next() {
+      if (index == records.size()) {
+        final Entry<Object, List<ORID>> entry = keys.next();
+        key = entry.getKey();
+        records = entry.getValue();
+        index = 0;
+
+        if (!isMultiValue() && records.size() > 1)
+          throw new ORecordDuplicatedException("Found duplicated key '" + key + "' on unique index '" + name + "' for record "
+              + records.get(1) + ". The record already present in the index is " + records.get(0), records.get(0));
+      }
+      return new AbstractMap.SimpleImmutableEntry<Object, ORID>(key, records.get(index++));
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove()");
+    }
+  }
+
+  private static final class ValuesIterator implements Iterator<OIdentifiable> {
+    private final Iterator<Entry<Object, ORID>> entries;
+
+    private ValuesIterator(final Iterator<Entry<Object, ORID>> iEntries) {
+      entries = iEntries;
+    }
+
+    public boolean hasNext() {
+      return entries.hasNext();
+    }
+
+    public OIdentifiable next() {
+      return entries.next().getValue();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+}
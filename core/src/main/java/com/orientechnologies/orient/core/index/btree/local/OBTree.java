@@ -0,0 +1,749 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
+import com.orientechnologies.orient.core.storage.impl.local.OSingleFileSegment;
+
+/**
+ * B+tree stored in fixed size pages of a single file. The entries are kept only in the leaves, that are linked to their siblings
+ * so range scans read the pages in sequence without going up the tree again. In multi value mode the tree contains pairs of key
+ * and rid, ordered by key and then by rid, otherwise a key has only one rid.<br/>
+ * The pages are cached decoded up to the configured number of pages and written back when evicted or on {@link #flush()}. Pages
+ * emptied by removals are put in a free list and reused, but not merged with their siblings.<br/>
+ * Without file the tree is kept entirely in memory.<br/>
+ * The tree is not thread safe for writes: the caller must exclude the other threads while it changes. Reads can run concurrently.
+ */
+public class OBTree<K> {
+  public interface OEntryListener<K> {
+    /**
+     * Receives an entry found, returns false to stop the scan.
+     */
+    boolean addResult(K iKey, ORID iRid);
+  }
+
+  private static final int                    HEADER_PAGE_SIZE  = 0;
+  private static final int                    HEADER_ROOT       = OLongSerializer.LONG_SIZE;
+  private static final int                    HEADER_SIZE       = 2 * OLongSerializer.LONG_SIZE;
+  private static final int                    HEADER_PAGES      = 3 * OLongSerializer.LONG_SIZE;
+  private static final int                    HEADER_FREE_LIST  = 4 * OLongSerializer.LONG_SIZE;
+  private static final int                    HEADER_MULTIVALUE = 5 * OLongSerializer.LONG_SIZE;
+  private static final int                    HEADER_SERIALIZER = 6 * OLongSerializer.LONG_SIZE;
+
+  // A CHANGE LOADS AT MOST THE PATH FROM THE ROOT AND A FEW OTHER PAGES: THEY MUST STAY ALL IN CACHE WHILE THE CHANGE RUNS
+  private static final int                    MIN_CACHE_SIZE    = 16;
+
+  private final OSingleFileSegment            file;
+  private final int                           cacheSize;
+  private final Map<Long, OBTreeBucket<K>>    cache;
+
+  private OBinarySerializer<K>                keySerializer;
+  private boolean                             multiValue;
+  private int                                 pageSize;
+  private int                                 maxKeySize;
+  private byte[]                              pageBuffer;
+
+  private long                                root;
+  private long                                size;
+  private long                                pagesCount;
+  private long                                freeListHead      = -1;
+
+  private final List<OBTreeBucket<K>>         path              = new ArrayList<OBTreeBucket<K>>();
+  private final List<Integer>                 pathPositions     = new ArrayList<Integer>();
+
+  public OBTree(final OSingleFileSegment iFile, final int iPageSize, final int iCacheSize) {
+    file = iFile;
+    pageSize = iPageSize;
+    cacheSize = Math.max(MIN_CACHE_SIZE, iCacheSize);
+
+    cache = new LinkedHashMap<Long, OBTreeBucket<K>>(file != null ? cacheSize : 16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Long, OBTreeBucket<K>> iEldest) {
+        if (file == null || size() <= cacheSize)
+          return false;
+
+        if (iEldest.getValue().dirty)
+          writeBucket(iEldest.getValue());
+        return true;
+      }
+    };
+  }
+
+  public void create(final OBinarySerializer<K> iKeySerializer, final boolean iMultiValue) throws IOException {
+    keySerializer = iKeySerializer;
+    multiValue = iMultiValue;
+    init();
+
+    if (file != null)
+      file.create(pageSize * MIN_CACHE_SIZE);
+
+    pagesCount = 0;
+    freeListHead = -1;
+    size = 0;
+    root = newBucket(OBTreeBucket.LEAF).getPageIndex();
+
+    flush();
+  }
+
+  public boolean exists() {
+    return file != null && file.exists();
+  }
+
+  /**
+   * Opens the tree from its file. The keys are read with the serializer used when the tree was created, if it's not the one
+   * passed.
+   *
+   * @return false if the file was not closed correctly last time, so its content could be not valid
+   */
+  @SuppressWarnings("unchecked")
+  public boolean open(final OBinarySerializer<K> iKeySerializer) throws IOException {
+    final boolean softClosed = file.open();
+
+    final byte serializerId = (byte) file.getFile().readHeaderLong(HEADER_SERIALIZER);
+    keySerializer = iKeySerializer;
+    if (iKeySerializer.getId() != serializerId && OBinarySerializerFactory.INSTANCE.getObjectSerializer(serializerId) != null)
+      keySerializer = (OBinarySerializer<K>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(serializerId);
+
+    pageSize = (int) file.getFile().readHeaderLong(HEADER_PAGE_SIZE);
+    root = file.getFile().readHeaderLong(HEADER_ROOT);
+    size = file.getFile().readHeaderLong(HEADER_SIZE);
+    pagesCount = file.getFile().readHeaderLong(HEADER_PAGES);
+    freeListHead = file.getFile().readHeaderLong(HEADER_FREE_LIST);
+    multiValue = file.getFile().readHeaderLong(HEADER_MULTIVALUE) == 1;
+    init();
+
+    return softClosed;
+  }
+
+  /**
+   * Writes the changed pages and the header in the file.
+   */
+  public void flush() throws IOException {
+    if (file == null)
+      return;
+
+    synchronized (cache) {
+      for (OBTreeBucket<K> bucket : cache.values())
+        if (bucket.dirty)
+          writeBucket(bucket);
+
+      file.getFile().writeHeaderLong(HEADER_PAGE_SIZE, pageSize);
+      file.getFile().writeHeaderLong(HEADER_ROOT, root);
+      file.getFile().writeHeaderLong(HEADER_SIZE, size);
+      file.getFile().writeHeaderLong(HEADER_PAGES, pagesCount);
+      file.getFile().writeHeaderLong(HEADER_FREE_LIST, freeListHead);
+      file.getFile().writeHeaderLong(HEADER_MULTIVALUE, multiValue ? 1 : 0);
+      file.getFile().writeHeaderLong(HEADER_SERIALIZER, keySerializer.getId());
+    }
+  }
+
+  public void close() throws IOException {
+    if (file == null)
+      return;
+
+    flush();
+    file.setSoftlyClosed(true);
+    file.close();
+    cache.clear();
+  }
+
+  public void delete() throws IOException {
+    if (file != null)
+      file.delete();
+    cache.clear();
+  }
+
+  /**
+   * Removes all the entries, releasing all the pages.
+   */
+  public void clear() throws IOException {
+    synchronized (cache) {
+      cache.clear();
+      if (file != null)
+        file.truncate();
+    }
+
+    pagesCount = 0;
+    freeListHead = -1;
+    size = 0;
+    root = newBucket(OBTreeBucket.LEAF).getPageIndex();
+  }
+
+  /**
+   * Fills the empty tree with the entries passed, that must be sorted and without duplicates: by key and then by rid in multi
+   * value mode, by key otherwise. The leaves are filled from left to right and every leaf completed adds its separator to the last
+   * page of the level above, so every page is written once and the pages are full, as after sequential inserts.
+   */
+  public void bulkLoad(final Iterator<? extends Map.Entry<K, ORID>> iEntries) throws IOException {
+    if (size > 0)
+      throw new OIndexException("Cannot bulk load the tree because it is not empty");
+
+    // THE LAST PAGE OF EVERY LEVEL, FROM THE LEAVES UP TO THE ROOT
+    final List<OBTreeBucket<K>> levels = new ArrayList<OBTreeBucket<K>>();
+    levels.add(loadBucket(root));
+
+    while (iEntries.hasNext()) {
+      final Map.Entry<K, ORID> entry = iEntries.next();
+      final K key = entry.getKey();
+      final byte[] serializedKey = serializeKey(key);
+      final ORID rid = entry.getValue().copy();
+
+      OBTreeBucket<K> leaf = levels.get(0);
+      if (leaf.size() > 0 && leaf.getUsedBytes() + leaf.entrySize(leaf.getSerializedKey(leaf.size() - 1), serializedKey) > pageSize) {
+        // THE ENTRY STARTS THE NEXT LEAF AND IS ITS SEPARATOR
+        final OBTreeBucket<K> next = newBucket(OBTreeBucket.LEAF);
+        next.setLeftSibling(leaf.getPageIndex());
+        leaf.setRightSibling(next.getPageIndex());
+        saveBucket(leaf);
+
+        addSeparator(levels, 1, key, serializedKey, rid, next.getPageIndex());
+        levels.set(0, next);
+        leaf = next;
+      }
+
+      leaf.insert(leaf.size(), key, serializedKey, rid, -1);
+      size++;
+    }
+
+    for (OBTreeBucket<K> bucket : levels)
+      saveBucket(bucket);
+    root = levels.get(levels.size() - 1).getPageIndex();
+  }
+
+  /**
+   * Drops the clean pages from the cache.
+   */
+  public void unload() {
+    if (file == null)
+      return;
+
+    synchronized (cache) {
+      for (Iterator<OBTreeBucket<K>> it = cache.values().iterator(); it.hasNext();)
+        if (!it.next().dirty)
+          it.remove();
+    }
+  }
+
+  public boolean isMultiValue() {
+    return multiValue;
+  }
+
+  public OBinarySerializer<K> getKeySerializer() {
+    return keySerializer;
+  }
+
+  /**
+   * Returns the number of entries.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the rid of the key, the first one in multi value mode.
+   */
+  public ORID get(final K iKey) {
+    final Position position = ceiling(iKey, null, true);
+    if (position == null || compare(position.bucket.getKey(position.index), null, iKey, null) != 0)
+      return null;
+    return position.bucket.getRid(position.index);
+  }
+
+  /**
+   * Tells if the entry is in the tree. In single value mode the rid is ignored.
+   */
+  public boolean contains(final K iKey, final ORID iRid) {
+    final Position position = ceiling(iKey, multiValue ? iRid : null, true);
+    return position != null
+        && compare(position.bucket.getKey(position.index), position.bucket.getRid(position.index), iKey, multiValue ? iRid : null) == 0;
+  }
+
+  /**
+   * Puts the entry in the tree. In single value mode the rid of a key already present is replaced.
+   *
+   * @return true if a new entry has been added
+   */
+  public boolean put(final K iKey, final ORID iRid) throws IOException {
+    final byte[] serializedKey = serializeKey(iKey);
+    final ORID rid = iRid.copy();
+
+    final OBTreeBucket<K> leaf = findLeaf(iKey, multiValue ? rid : null);
+    final int index = search(leaf, iKey, multiValue ? rid : null, false);
+
+    if (index < leaf.size() && compare(leaf.getKey(index), leaf.getRid(index), iKey, multiValue ? rid : null) == 0) {
+      if (multiValue)
+        return false;
+
+      leaf.setRid(index, rid);
+      saveBucket(leaf);
+      return false;
+    }
+
+    leaf.insert(index, iKey, serializedKey, rid, -1);
+    size++;
+
+    if (leaf.getUsedBytes() > pageSize)
+      split(leaf, path.size(), index == leaf.size() - 1 && leaf.getRightSibling() == -1);
+
+    saveBucket(leaf);
+    return true;
+  }
+
+  /**
+   * Removes the key, with all its rids in multi value mode.
+   *
+   * @return the number of entries removed
+   */
+  public int remove(final K iKey) throws IOException {
+    if (!multiValue)
+      return remove(iKey, null) ? 1 : 0;
+
+    int removed = 0;
+    while (true) {
+      final Position position = ceiling(iKey, null, true);
+      if (position == null || compare(position.bucket.getKey(position.index), null, iKey, null) != 0)
+        return removed;
+
+      remove(position.bucket.getKey(position.index), position.bucket.getRid(position.index));
+      removed++;
+    }
+  }
+
+  /**
+   * Removes the entry. In single value mode the rid is ignored.
+   *
+   * @return true if the entry was found
+   */
+  public boolean remove(final K iKey, final ORID iRid) throws IOException {
+    final ORID rid = multiValue ? iRid : null;
+
+    final OBTreeBucket<K> leaf = findLeaf(iKey, rid);
+    final int index = search(leaf, iKey, rid, false);
+    if (index >= leaf.size() || compare(leaf.getKey(index), leaf.getRid(index), iKey, rid) != 0)
+      return false;
+
+    leaf.remove(index, false);
+    size--;
+
+    if (leaf.size() == 0 && leaf.getPageIndex() != root)
+      removeBucket(leaf, path.size());
+    else
+      saveBucket(leaf);
+
+    return true;
+  }
+
+  /**
+   * Scans the entries between the keys passed, in ascending or descending order. A null key leaves the range open on that side.
+   * Composite keys with only the first fields match all the keys starting with them.
+   */
+  public void range(final K iFrom, final boolean iFromInclusive, final K iTo, final boolean iToInclusive, final boolean iAscending,
+      final OEntryListener<K> iListener) {
+    if (iAscending) {
+      Position position = iFrom != null ? ceiling(iFrom, null, iFromInclusive) : first();
+      while (position != null) {
+        final K key = position.bucket.getKey(position.index);
+        if (iTo != null) {
+          final int result = compare(key, null, iTo, null);
+          if (result > 0 || result == 0 && !iToInclusive)
+            return;
+        }
+
+        if (!iListener.addResult(key, position.bucket.getRid(position.index)))
+          return;
+
+        position = next(position);
+      }
+    } else {
+      Position position = iTo != null ? floor(iTo, null, iToInclusive) : last();
+      while (position != null) {
+        final K key = position.bucket.getKey(position.index);
+        if (iFrom != null) {
+          final int result = compare(key, null, iFrom, null);
+          if (result < 0 || result == 0 && !iFromInclusive)
+            return;
+        }
+
+        if (!iListener.addResult(key, position.bucket.getRid(position.index)))
+          return;
+
+        position = previous(position);
+      }
+    }
+  }
+
+  /**
+   * Returns the first or the last leaf.
+   */
+  public long getEdgeLeaf(final boolean iFirst) {
+    OBTreeBucket<K> bucket = loadBucket(root);
+    while (!bucket.isLeaf())
+      bucket = loadBucket(bucket.getChild(iFirst ? 0 : bucket.size()));
+    return bucket.getPageIndex();
+  }
+
+  /**
+   * Copies the entries of the leaf in the lists, in ascending or descending order.
+   *
+   * @return the next leaf in the order requested, or -1 at the end
+   */
+  public long readLeaf(final long iPageIndex, final boolean iAscending, final List<K> iKeys, final List<ORID> iRids) {
+    final OBTreeBucket<K> bucket = loadBucket(iPageIndex);
+    if (!bucket.isLeaf())
+      // THE PAGE HAS BEEN FREED AFTER THE PREVIOUS ONE WAS READ
+      return -1;
+
+    if (iAscending) {
+      for (int i = 0; i < bucket.size(); ++i) {
+        iKeys.add(bucket.getKey(i));
+        iRids.add(bucket.getRid(i));
+      }
+      return bucket.getRightSibling();
+    }
+
+    for (int i = bucket.size() - 1; i >= 0; --i) {
+      iKeys.add(bucket.getKey(i));
+      iRids.add(bucket.getRid(i));
+    }
+    return bucket.getLeftSibling();
+  }
+
+  private void init() {
+    maxKeySize = OBTreeBucket.getMaxKeySize(pageSize);
+    pageBuffer = new byte[pageSize];
+  }
+
+  private byte[] serializeKey(final K iKey) {
+    final int keySize = keySerializer.getObjectSize(iKey);
+    if (keySize > maxKeySize)
+      throw new OIndexException("Key '" + iKey + "' is too big: " + keySize + " bytes, the maximum for pages of " + pageSize
+          + " bytes is " + maxKeySize);
+
+    final byte[] serializedKey = new byte[keySize];
+    keySerializer.serialize(iKey, serializedKey, 0);
+    return serializedKey;
+  }
+
+  private int compare(final K iKey, final ORID iRid, final K iOtherKey, final ORID iOtherRid) {
+    final int result = ODefaultComparator.INSTANCE.compare(iKey, iOtherKey);
+    if (result != 0 || iRid == null || iOtherRid == null)
+      return result;
+    return iRid.compareTo(iOtherRid);
+  }
+
+  /**
+   * Returns the number of entries lower than the key, or lower or equal if requested.
+   */
+  private int search(final OBTreeBucket<K> iBucket, final K iKey, final ORID iRid, final boolean iEqualsBefore) {
+    int low = 0;
+    int high = iBucket.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      final int result = compare(iBucket.getKey(middle), iBucket.getRid(middle), iKey, iRid);
+      if (result < 0 || result == 0 && iEqualsBefore)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Goes down to the leaf that contains the entry, remembering the path for the changes.
+   */
+  private OBTreeBucket<K> findLeaf(final K iKey, final ORID iRid) {
+    path.clear();
+    pathPositions.clear();
+
+    OBTreeBucket<K> bucket = loadBucket(root);
+    while (!bucket.isLeaf()) {
+      final int index = search(bucket, iKey, iRid, true);
+      path.add(bucket);
+      pathPositions.add(index);
+      bucket = loadBucket(bucket.getChild(index));
+    }
+    return bucket;
+  }
+
+  /**
+   * Returns the first entry greater or equal than the key passed, or only greater.
+   */
+  private Position ceiling(final K iKey, final ORID iRid, final boolean iInclusive) {
+    // WITH PARTIAL KEYS THE EQUAL ENTRIES CAN BE ALSO AT THE LEFT OF AN EQUAL SEPARATOR
+    OBTreeBucket<K> bucket = loadBucket(root);
+    while (!bucket.isLeaf())
+      bucket = loadBucket(bucket.getChild(search(bucket, iKey, iRid, !iInclusive)));
+
+    final int index = search(bucket, iKey, iRid, !iInclusive);
+    if (index < bucket.size())
+      return new Position(bucket, index);
+    return bucket.getRightSibling() > -1 ? new Position(loadBucket(bucket.getRightSibling()), 0) : null;
+  }
+
+  /**
+   * Returns the last entry lower or equal than the key passed, or only lower.
+   */
+  private Position floor(final K iKey, final ORID iRid, final boolean iInclusive) {
+    OBTreeBucket<K> bucket = loadBucket(root);
+    while (!bucket.isLeaf())
+      bucket = loadBucket(bucket.getChild(search(bucket, iKey, iRid, iInclusive)));
+
+    final int index = search(bucket, iKey, iRid, iInclusive) - 1;
+    if (index >= 0)
+      return new Position(bucket, index);
+    if (bucket.getLeftSibling() == -1)
+      return null;
+
+    final OBTreeBucket<K> left = loadBucket(bucket.getLeftSibling());
+    return new Position(left, left.size() - 1);
+  }
+
+  private Position first() {
+    final OBTreeBucket<K> bucket = loadBucket(getEdgeLeaf(true));
+    return bucket.size() > 0 ? new Position(bucket, 0) : null;
+  }
+
+  private Position last() {
+    final OBTreeBucket<K> bucket = loadBucket(getEdgeLeaf(false));
+    return bucket.size() > 0 ? new Position(bucket, bucket.size() - 1) : null;
+  }
+
+  private Position next(final Position iPosition) {
+    if (iPosition.index + 1 < iPosition.bucket.size())
+      return new Position(iPosition.bucket, iPosition.index + 1);
+    if (iPosition.bucket.getRightSibling() == -1)
+      return null;
+    return new Position(loadBucket(iPosition.bucket.getRightSibling()), 0);
+  }
+
+  private Position previous(final Position iPosition) {
+    if (iPosition.index > 0)
+      return new Position(iPosition.bucket, iPosition.index - 1);
+    if (iPosition.bucket.getLeftSibling() == -1)
+      return null;
+
+    final OBTreeBucket<K> left = loadBucket(iPosition.bucket.getLeftSibling());
+    return new Position(left, left.size() - 1);
+  }
+
+  /**
+   * Splits the page in two, adding the separator to the parent. The page at the end of the tree that received the entry at its
+   * end is split leaving only that entry at the right, so sequential inserts fill the pages.
+   */
+  private void split(final OBTreeBucket<K> iBucket, final int iLevel, final boolean iAppend) throws IOException {
+    final OBTreeBucket<K> right = newBucket(iBucket.getType());
+    final int middle = iAppend ? iBucket.size() - 1 : iBucket.getMiddle();
+
+    final K separator = iBucket.getKey(middle);
+    final byte[] serializedSeparator = iBucket.getSerializedKey(middle);
+    final ORID separatorRid = iBucket.getRid(middle);
+
+    iBucket.moveTo(middle, right);
+
+    if (iBucket.isLeaf()) {
+      right.setLeftSibling(iBucket.getPageIndex());
+      right.setRightSibling(iBucket.getRightSibling());
+      if (iBucket.getRightSibling() > -1) {
+        final OBTreeBucket<K> next = loadBucket(iBucket.getRightSibling());
+        next.setLeftSibling(right.getPageIndex());
+        saveBucket(next);
+      }
+      iBucket.setRightSibling(right.getPageIndex());
+    }
+
+    saveBucket(right);
+    saveBucket(iBucket);
+
+    if (iLevel == 0) {
+      final OBTreeBucket<K> newRoot = newBucket(OBTreeBucket.INTERNAL);
+      newRoot.setChild(0, iBucket.getPageIndex());
+      newRoot.insert(0, separator, serializedSeparator, separatorRid, right.getPageIndex());
+      saveBucket(newRoot);
+      root = newRoot.getPageIndex();
+      return;
+    }
+
+    final OBTreeBucket<K> parent = path.get(iLevel - 1);
+    final int index = pathPositions.get(iLevel - 1);
+    parent.insert(index, separator, serializedSeparator, separatorRid, right.getPageIndex());
+
+    if (parent.getUsedBytes() > pageSize)
+      split(parent, iLevel - 1, iAppend && index == parent.size() - 1);
+
+    saveBucket(parent);
+  }
+
+  /**
+   * Appends the separator of a new page to the last page of the level passed, completing it and going up if it's full. The root is
+   * created when the level below gets its second page.
+   */
+  private void addSeparator(final List<OBTreeBucket<K>> iLevels, final int iLevel, final K iKey, final byte[] iSerializedKey,
+      final ORID iRid, final long iRightChild) throws IOException {
+    if (iLevel == iLevels.size()) {
+      final OBTreeBucket<K> newRoot = newBucket(OBTreeBucket.INTERNAL);
+      newRoot.setChild(0, iLevels.get(iLevel - 1).getPageIndex());
+      newRoot.insert(0, iKey, iSerializedKey, iRid, iRightChild);
+      iLevels.add(newRoot);
+      return;
+    }
+
+    final OBTreeBucket<K> bucket = iLevels.get(iLevel);
+    final byte[] previous = bucket.size() > 0 ? bucket.getSerializedKey(bucket.size() - 1) : null;
+    if (bucket.size() > 0 && bucket.getUsedBytes() + bucket.entrySize(previous, iSerializedKey) > pageSize) {
+      // THE SEPARATOR GOES UP: ITS CHILD STARTS THE NEXT PAGE OF THE LEVEL
+      final OBTreeBucket<K> next = newBucket(OBTreeBucket.INTERNAL);
+      next.setChild(0, iRightChild);
+      saveBucket(bucket);
+
+      addSeparator(iLevels, iLevel + 1, iKey, iSerializedKey, iRid, next.getPageIndex());
+      iLevels.set(iLevel, next);
+      return;
+    }
+
+    bucket.insert(bucket.size(), iKey, iSerializedKey, iRid, iRightChild);
+  }
+
+  /**
+   * Frees the empty page removing it from its parent, and the parent too if it remains without children.
+   */
+  private void removeBucket(final OBTreeBucket<K> iBucket, final int iLevel) throws IOException {
+    if (iBucket.isLeaf()) {
+      if (iBucket.getLeftSibling() > -1) {
+        final OBTreeBucket<K> left = loadBucket(iBucket.getLeftSibling());
+        left.setRightSibling(iBucket.getRightSibling());
+        saveBucket(left);
+      }
+      if (iBucket.getRightSibling() > -1) {
+        final OBTreeBucket<K> right = loadBucket(iBucket.getRightSibling());
+        right.setLeftSibling(iBucket.getLeftSibling());
+        saveBucket(right);
+      }
+    }
+    freeBucket(iBucket);
+
+    final OBTreeBucket<K> parent = path.get(iLevel - 1);
+    final int index = pathPositions.get(iLevel - 1);
+
+    if (parent.size() == 0) {
+      // THE ONLY CHILD: THE PARENT IS EMPTY TOO. THE ROOT HAS ALWAYS AT LEAST 2 CHILDREN
+      removeBucket(parent, iLevel - 1);
+      return;
+    }
+
+    if (index == 0)
+      parent.remove(0, true);
+    else
+      parent.remove(index - 1, false);
+    saveBucket(parent);
+
+    // SHRINK THE TREE WHILE THE ROOT HAS ONLY ONE CHILD
+    OBTreeBucket<K> rootBucket = loadBucket(root);
+    while (!rootBucket.isLeaf() && rootBucket.size() == 0) {
+      root = rootBucket.getChild(0);
+      freeBucket(rootBucket);
+      rootBucket = loadBucket(root);
+    }
+  }
+
+  private OBTreeBucket<K> newBucket(final byte iType) {
+    final OBTreeBucket<K> bucket;
+    if (freeListHead > -1) {
+      bucket = loadBucket(freeListHead);
+      freeListHead = bucket.getRightSibling();
+      bucket.setType(iType);
+    } else
+      bucket = new OBTreeBucket<K>(pagesCount++, iType);
+
+    saveBucket(bucket);
+    return bucket;
+  }
+
+  private void freeBucket(final OBTreeBucket<K> iBucket) {
+    iBucket.setType(OBTreeBucket.FREE);
+    iBucket.setRightSibling(freeListHead);
+    freeListHead = iBucket.getPageIndex();
+    saveBucket(iBucket);
+  }
+
+  private OBTreeBucket<K> loadBucket(final long iPageIndex) {
+    synchronized (cache) {
+      OBTreeBucket<K> bucket = cache.get(iPageIndex);
+      if (bucket == null) {
+        if (file == null)
+          throw new OIndexException("Page " + iPageIndex + " not found in the tree");
+
+        try {
+          final byte[] stream = new byte[pageSize];
+          file.getFile().read(iPageIndex * pageSize, stream, pageSize);
+          bucket = new OBTreeBucket<K>(iPageIndex, stream, keySerializer);
+        } catch (IOException e) {
+          throw new OIndexException("Error on reading the page " + iPageIndex + " of the tree", e);
+        }
+        cache.put(iPageIndex, bucket);
+      }
+      return bucket;
+    }
+  }
+
+  /**
+   * Marks the page as changed, putting it back in cache if it has been evicted meanwhile.
+   */
+  private void saveBucket(final OBTreeBucket<K> iBucket) {
+    iBucket.dirty = true;
+    synchronized (cache) {
+      cache.put(iBucket.getPageIndex(), iBucket);
+    }
+  }
+
+  private void writeBucket(final OBTreeBucket<K> iBucket) {
+    try {
+      final long end = (iBucket.getPageIndex() + 1) * pageSize;
+      final int filledUpTo = file.getFile().getFilledUpTo();
+      if (filledUpTo < end)
+        file.getFile().allocateSpace((int) (end - filledUpTo));
+
+      iBucket.toStream(pageBuffer);
+      file.getFile().write(iBucket.getPageIndex() * pageSize, pageBuffer);
+      iBucket.dirty = false;
+    } catch (IOException e) {
+      throw new OIndexException("Error on writing the page " + iBucket.getPageIndex() + " of the tree", e);
+    }
+  }
+
+  private final class Position {
+    private final OBTreeBucket<K> bucket;
+    private final int             index;
+
+    private Position(final OBTreeBucket<K> iBucket, final int iIndex) {
+      bucket = iBucket;
+      index = iIndex;
+    }
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.common.serialization.types.OShortSerializer;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Page of an {@link OBTree} kept in memory. A leaf contains the entries of the tree, sorted, and is linked to the sibling leaves.
+ * An internal page contains the separators of its children: the child at position i + 1 contains the entries greater or equal
+ * than the separator at position i.<br/>
+ * The keys are stored serialized in the page with the prefix they share with the previous key removed:
+ *
+ * <pre>
+ * +------+------+--------------+---------------+-----------------+
+ * | type | size | left sibling | right sibling | leftmost child  |
+ * +------+------+--------------+---------------+-----------------+
+ * | prefix length | suffix length | suffix | cluster id | cluster position | [ child ] | ...
+ * +---------------+---------------+--------+------------+------------------+-----------+
+ * </pre>
+ *
+ * The keys are deserialized once, when the page is loaded.
+ */
+public class OBTreeBucket<K> {
+  public static final byte    LEAF            = 0;
+  public static final byte    INTERNAL        = 1;
+  public static final byte    FREE            = 2;
+
+  public static final int     HEADER_SIZE     = 1 + OIntegerSerializer.INT_SIZE + 3 * OLongSerializer.LONG_SIZE;
+
+  private static final int    CAPACITY        = 32;
+  private static final int    RID_SIZE        = OShortSerializer.SHORT_SIZE + OClusterPositionFactory.INSTANCE.getSerializedSize();
+  private static final int    ENTRY_OVERHEAD  = 2 * OShortSerializer.SHORT_SIZE + RID_SIZE;
+  private static final int    MAX_PREFIX      = 0xFFFF;
+
+  private final long          pageIndex;
+  private byte                type;
+  private long                leftSibling     = -1;
+  private long                rightSibling    = -1;
+
+  private int                 size;
+  private Object[]            keys            = new Object[CAPACITY];
+  private byte[][]            serializedKeys  = new byte[CAPACITY][];
+  private ORID[]              rids            = new ORID[CAPACITY];
+  // INTERNAL PAGES ONLY: SIZE + 1 CHILDREN
+  private long[]              children;
+
+  private int                 usedBytes       = HEADER_SIZE;
+  boolean                     dirty;
+
+  public OBTreeBucket(final long iPageIndex, final byte iType) {
+    pageIndex = iPageIndex;
+    setType(iType);
+  }
+
+  /**
+   * Reads the page from its stream.
+   */
+  public OBTreeBucket(final long iPageIndex, final byte[] iStream, final OBinarySerializer<K> iKeySerializer) {
+    pageIndex = iPageIndex;
+
+    int offset = 0;
+    setType(iStream[offset++]);
+
+    final int entries = OIntegerSerializer.INSTANCE.deserialize(iStream, offset);
+    offset += OIntegerSerializer.INT_SIZE;
+    leftSibling = OLongSerializer.INSTANCE.deserialize(iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+    rightSibling = OLongSerializer.INSTANCE.deserialize(iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+    if (type == INTERNAL)
+      children[0] = OLongSerializer.INSTANCE.deserialize(iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+
+    ensureCapacity(entries);
+
+    byte[] previous = null;
+    for (int i = 0; i < entries; ++i) {
+      final int prefix = OShortSerializer.INSTANCE.deserialize(iStream, offset) & MAX_PREFIX;
+      offset += OShortSerializer.SHORT_SIZE;
+      final int suffix = OShortSerializer.INSTANCE.deserialize(iStream, offset) & MAX_PREFIX;
+      offset += OShortSerializer.SHORT_SIZE;
+
+      final byte[] serializedKey = new byte[prefix + suffix];
+      if (prefix > 0)
+        System.arraycopy(previous, 0, serializedKey, 0, prefix);
+      System.arraycopy(iStream, offset, serializedKey, prefix, suffix);
+      offset += suffix;
+
+      final int clusterId = OShortSerializer.INSTANCE.deserialize(iStream, offset);
+      offset += OShortSerializer.SHORT_SIZE;
+      rids[i] = new ORecordId(clusterId, OClusterPositionFactory.INSTANCE.fromStream(iStream, offset));
+      offset += OClusterPositionFactory.INSTANCE.getSerializedSize();
+
+      if (type == INTERNAL) {
+        children[i + 1] = OLongSerializer.INSTANCE.deserialize(iStream, offset);
+        offset += OLongSerializer.LONG_SIZE;
+      }
+
+      serializedKeys[i] = serializedKey;
+      keys[i] = iKeySerializer.deserialize(serializedKey, 0);
+      previous = serializedKey;
+    }
+
+    size = entries;
+    usedBytes = offset;
+  }
+
+  /**
+   * Writes the page in the stream, that must be as big as the page.
+   */
+  public void toStream(final byte[] iStream) {
+    int offset = 0;
+    iStream[offset++] = type;
+
+    OIntegerSerializer.INSTANCE.serialize(size, iStream, offset);
+    offset += OIntegerSerializer.INT_SIZE;
+    OLongSerializer.INSTANCE.serialize(leftSibling, iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+    OLongSerializer.INSTANCE.serialize(rightSibling, iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+    OLongSerializer.INSTANCE.serialize(type == INTERNAL ? children[0] : -1, iStream, offset);
+    offset += OLongSerializer.LONG_SIZE;
+
+    byte[] previous = null;
+    for (int i = 0; i < size; ++i) {
+      final byte[] serializedKey = serializedKeys[i];
+      final int prefix = commonPrefix(previous, serializedKey);
+      final int suffix = serializedKey.length - prefix;
+
+      OShortSerializer.INSTANCE.serialize((short) prefix, iStream, offset);
+      offset += OShortSerializer.SHORT_SIZE;
+      OShortSerializer.INSTANCE.serialize((short) suffix, iStream, offset);
+      offset += OShortSerializer.SHORT_SIZE;
+      System.arraycopy(serializedKey, prefix, iStream, offset, suffix);
+      offset += suffix;
+
+      OShortSerializer.INSTANCE.serialize((short) rids[i].getClusterId(), iStream, offset);
+      offset += OShortSerializer.SHORT_SIZE;
+      final byte[] position = rids[i].getClusterPosition().toStream();
+      System.arraycopy(position, 0, iStream, offset, position.length);
+      offset += position.length;
+
+      if (type == INTERNAL) {
+        OLongSerializer.INSTANCE.serialize(children[i + 1], iStream, offset);
+        offset += OLongSerializer.LONG_SIZE;
+      }
+
+      previous = serializedKey;
+    }
+  }
+
+  public long getPageIndex() {
+    return pageIndex;
+  }
+
+  public byte getType() {
+    return type;
+  }
+
+  public boolean isLeaf() {
+    return type == LEAF;
+  }
+
+  /**
+   * Reuses the page for another type, removing all the entries.
+   */
+  public void setType(final byte iType) {
+    type = iType;
+    size = 0;
+    leftSibling = -1;
+    rightSibling = -1;
+    children = type == INTERNAL ? new long[keys.length + 1] : null;
+    usedBytes = HEADER_SIZE;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the bytes the page takes once written.
+   */
+  public int getUsedBytes() {
+    return usedBytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  public K getKey(final int iIndex) {
+    return (K) keys[iIndex];
+  }
+
+  public byte[] getSerializedKey(final int iIndex) {
+    return serializedKeys[iIndex];
+  }
+
+  public ORID getRid(final int iIndex) {
+    return rids[iIndex];
+  }
+
+  public void setRid(final int iIndex, final ORID iRid) {
+    rids[iIndex] = iRid;
+  }
+
+  public long getChild(final int iIndex) {
+    return children[iIndex];
+  }
+
+  public void setChild(final int iIndex, final long iPageIndex) {
+    children[iIndex] = iPageIndex;
+  }
+
+  public long getLeftSibling() {
+    return leftSibling;
+  }
+
+  public void setLeftSibling(final long iPageIndex) {
+    leftSibling = iPageIndex;
+  }
+
+  /**
+   * Returns the next page of the free list for free pages.
+   */
+  public long getRightSibling() {
+    return rightSibling;
+  }
+
+  public void setRightSibling(final long iPageIndex) {
+    rightSibling = iPageIndex;
+  }
+
+  /**
+   * Inserts an entry. In internal pages the child passed is placed at the right of the new separator.
+   */
+  public void insert(final int iIndex, final K iKey, final byte[] iSerializedKey, final ORID iRid, final long iRightChild) {
+    ensureCapacity(size + 1);
+
+    final byte[] previous = iIndex > 0 ? serializedKeys[iIndex - 1] : null;
+    usedBytes += entrySize(previous, iSerializedKey);
+    if (iIndex < size)
+      usedBytes += entrySize(iSerializedKey, serializedKeys[iIndex]) - entrySize(previous, serializedKeys[iIndex]);
+
+    final int moved = size - iIndex;
+    if (moved > 0) {
+      System.arraycopy(keys, iIndex, keys, iIndex + 1, moved);
+      System.arraycopy(serializedKeys, iIndex, serializedKeys, iIndex + 1, moved);
+      System.arraycopy(rids, iIndex, rids, iIndex + 1, moved);
+      if (type == INTERNAL)
+        System.arraycopy(children, iIndex + 1, children, iIndex + 2, moved);
+    }
+
+    keys[iIndex] = iKey;
+    serializedKeys[iIndex] = iSerializedKey;
+    rids[iIndex] = iRid;
+    if (type == INTERNAL)
+      children[iIndex + 1] = iRightChild;
+
+    size++;
+  }
+
+  /**
+   * Removes an entry. In internal pages the child at the right of the separator is removed too, or the child at its left if
+   * requested.
+   */
+  public void remove(final int iIndex, final boolean iLeftChild) {
+    final byte[] previous = iIndex > 0 ? serializedKeys[iIndex - 1] : null;
+    usedBytes -= entrySize(previous, serializedKeys[iIndex]);
+    if (iIndex < size - 1)
+      usedBytes += entrySize(previous, serializedKeys[iIndex + 1]) - entrySize(serializedKeys[iIndex], serializedKeys[iIndex + 1]);
+
+    final int moved = size - iIndex - 1;
+    if (moved > 0) {
+      System.arraycopy(keys, iIndex + 1, keys, iIndex, moved);
+      System.arraycopy(serializedKeys, iIndex + 1, serializedKeys, iIndex, moved);
+      System.arraycopy(rids, iIndex + 1, rids, iIndex, moved);
+    }
+    if (type == INTERNAL) {
+      final int child = iLeftChild ? iIndex : iIndex + 1;
+      System.arraycopy(children, child + 1, children, child, size - child);
+    }
+
+    size--;
+    keys[size] = null;
+    serializedKeys[size] = null;
+    rids[size] = null;
+  }
+
+  /**
+   * Returns the position where to split the page in two halves of about the same size in bytes.
+   */
+  public int getMiddle() {
+    final int half = (usedBytes - HEADER_SIZE) / 2;
+    int bytes = 0;
+    for (int i = 0; i < size; ++i) {
+      bytes += entrySize(i > 0 ? serializedKeys[i - 1] : null, serializedKeys[i]);
+      if (bytes >= half)
+        return Math.max(1, Math.min(i, size - 1));
+    }
+    return size / 2;
+  }
+
+  /**
+   * Moves the entries from the position passed to the end into the new page. In internal pages the separator at the position is
+   * removed and returned, and its right child becomes the leftmost child of the new page.
+   */
+  public void moveTo(final int iFrom, final OBTreeBucket<K> iNewBucket) {
+    int from = iFrom;
+    if (type == INTERNAL) {
+      iNewBucket.children[0] = children[from + 1];
+      from++;
+    }
+
+    for (int i = from; i < size; ++i)
+      iNewBucket.insert(i - from, getKey(i), serializedKeys[i], rids[i], type == INTERNAL ? children[i + 1] : -1);
+
+    for (int i = size - 1; i >= iFrom; --i) {
+      usedBytes -= entrySize(i > 0 ? serializedKeys[i - 1] : null, serializedKeys[i]);
+      keys[i] = null;
+      serializedKeys[i] = null;
+      rids[i] = null;
+    }
+    size = iFrom;
+  }
+
+  /**
+   * Returns the size of the biggest key that can be stored, so that a split always leaves room for it.
+   */
+  public static int getMaxKeySize(final int iPageSize) {
+    return (iPageSize - HEADER_SIZE) / 8 - ENTRY_OVERHEAD - OLongSerializer.LONG_SIZE;
+  }
+
+  /**
+   * Returns the bytes taken in this page by the key passed once compressed against the previous one.
+   */
+  public int entrySize(final byte[] iPrevious, final byte[] iSerializedKey) {
+    return ENTRY_OVERHEAD + (type == INTERNAL ? OLongSerializer.LONG_SIZE : 0) + iSerializedKey.length
+        - commonPrefix(iPrevious, iSerializedKey);
+  }
+
+  private static int commonPrefix(final byte[] iPrevious, final byte[] iSerializedKey) {
+    if (iPrevious == null)
+      return 0;
+
+    final int max = Math.min(MAX_PREFIX, Math.min(iPrevious.length, iSerializedKey.length));
+    int i = 0;
+    while (i < max && iPrevious[i] == iSerializedKey[i])
+      i++;
+    return i;
+  }
+
+  private void ensureCapacity(final int iSize) {
+    if (iSize <= keys.length)
+      return;
+
+    final int capacity = Math.max(iSize, keys.length * 2);
+
+    final Object[] newKeys = new Object[capacity];
+    System.arraycopy(keys, 0, newKeys, 0, size);
+    keys = newKeys;
+
+    final byte[][] newSerializedKeys = new byte[capacity][];
+    System.arraycopy(serializedKeys, 0, newSerializedKeys, 0, size);
+    serializedKeys = newSerializedKeys;
+
+    final ORID[] newRids = new ORID[capacity];
+    System.arraycopy(rids, 0, newRids, 0, size);
+    rids = newRids;
+
+    if (children != null) {
+      final long[] newChildren = new long[capacity + 1];
+      System.arraycopy(children, 0, newChildren, 0, size + 1);
+      children = newChildren;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.index.OIndexFactory;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+
+/**
+ * Creates the indexes stored in a {@link OBTree}.
+ */
+public class OBTreeIndexFactory implements OIndexFactory {
+  public static final Set<String> SUPPORTED_TYPES;
+  static {
+    final Set<String> types = new HashSet<String>();
+    types.add(OUniqueBTreeIndex.TYPE_ID);
+    types.add(ONotUniqueBTreeIndex.TYPE_ID);
+    SUPPORTED_TYPES = Collections.unmodifiableSet(types);
+  }
+
+  public Set<String> getTypes() {
+    return SUPPORTED_TYPES;
+  }
+
+  public OIndexInternal<?> createIndex(final ODatabaseRecord iDatabase, final String iIndexType) throws OConfigurationException {
+    if (OUniqueBTreeIndex.TYPE_ID.equals(iIndexType))
+      return new OUniqueBTreeIndex();
+    else if (ONotUniqueBTreeIndex.TYPE_ID.equals(iIndexType))
+      return new ONotUniqueBTreeIndex();
+
+    throw new OConfigurationException("Unsupported type : " + iIndexType);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+
+/**
+ * B+tree index that supports multiple values for the same key. Every value is a separate entry of the tree, so adding or removing
+ * a value doesn't rewrite the others.
+ */
+public class ONotUniqueBTreeIndex extends OAbstractBTreeIndex<Set<OIdentifiable>> {
+  public static final String TYPE_ID = OClass.INDEX_TYPE.NOTUNIQUE_BTREE.toString();
+
+  public ONotUniqueBTreeIndex() {
+    super(TYPE_ID);
+  }
+
+  @Override
+  protected boolean isMultiValue() {
+    return true;
+  }
+
+  public Set<OIdentifiable> get(final Object iKey) {
+    final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+
+    acquireSharedLock();
+    try {
+
+      tree.range(iKey, true, iKey, true, true, new OBTree.OEntryListener<Object>() {
+        public boolean addResult(final Object iEntryKey, final ORID iRid) {
+          result.add(iRid);
+          return true;
+        }
+      });
+      return result;
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public ONotUniqueBTreeIndex put(final Object iKey, final OIdentifiable iSingleValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+
+        putEntry(iKey, iSingleValue);
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  public Iterator<Entry<Object, Set<OIdentifiable>>> iterator() {
+    return new GroupIterator(entryIterator(true));
+  }
+
+  public Iterator<Entry<Object, Set<OIdentifiable>>> inverseIterator() {
+    return new GroupIterator(entryIterator(false));
+  }
+
+  /**
+   * Groups the consecutive entries with the same key.
+   */
+  private static final class GroupIterator implements Iterator<Entry<Object, Set<OIdentifiable>>> {
+    private final Iterator<Entry<Object, ORID>> entries;
+    private Entry<Object, ORID>                 pending;
+
+    private GroupIterator(final Iterator<Entry<Object, ORID>> iEntries) {
+      entries = iEntries;
+    }
+
+    public boolean hasNext() {
+      return pending != null || entries.hasNext();
+    }
+
+    public Entry<Object, Set<OIdentifiable>> next() {
+      if (pending == null)
+        pending = entries.next();
+
+      final Object key = pending.getKey();
+      final Set<OIdentifiable> values = new HashSet<OIdentifiable>();
+      values.add(pending.getValue());
+      pending = null;
+
+      while (entries.hasNext()) {
+        final Entry<Object, ORID> entry = entries.next();
+        if (ODefaultComparator.INSTANCE.compare(key, entry.getKey()) != 0) {
+          pending = entry;
+          break;
+        }
+        values.add(entry.getValue());
+      }
+
+      return new AbstractMap.SimpleImmutableEntry<Object, Set<OIdentifiable>>(key, values);
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey.OTransactionIndexEntry;
+
+/**
+ * B+tree index that allows only one value for a key.
+ */
+public class OUniqueBTreeIndex extends OAbstractBTreeIndex<OIdentifiable> {
+  public static final String TYPE_ID = OClass.INDEX_TYPE.UNIQUE_BTREE.toString();
+
+  public OUniqueBTreeIndex() {
+    super(TYPE_ID);
+  }
+
+  @Override
+  protected boolean isMultiValue() {
+    return false;
+  }
+
+  public OIdentifiable get(final Object iKey) {
+    acquireSharedLock();
+    try {
+
+      return tree.get(iKey);
+
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  public OUniqueBTreeIndex put(final Object iKey, final OIdentifiable iSingleValue) {
+    modificationLock.requestModificationLock();
+
+    try {
+      acquireExclusiveLock();
+      try {
+        final ORID value = tree.get(iKey);
+
+        if (value != null) {
+          // CHECK IF THE ID IS THE SAME OF CURRENT: THIS IS THE UPDATE CASE
+          if (!value.equals(iSingleValue.getIdentity()))
+            throw new ORecordDuplicatedException("Found duplicated key '" + iKey + "' on unique index '" + name + "' for record "
+                + iSingleValue.getIdentity() + ". The record already present in the index is " + value, value);
+          else
+            return this;
+        }
+
+        putEntry(iKey, iSingleValue);
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public void checkEntry(final OIdentifiable iRecord, final Object iKey) {
+    // CHECK IF ALREADY EXIST
+    final OIdentifiable indexedRID = get(iKey);
+    if (indexedRID != null && !indexedRID.getIdentity().equals(iRecord.getIdentity())) {
+      // CHECK IF IN THE SAME TX THE ENTRY WAS DELETED
+      final OTransactionIndexChanges indexChanges = ODatabaseRecordThreadLocal.INSTANCE.get().getTransaction()
+          .getIndexChanges(getName());
+      if (indexChanges != null) {
+        final OTransactionIndexChangesPerKey keyChanges = indexChanges.getChangesPerKey(iKey);
+        if (keyChanges != null) {
+          for (OTransactionIndexEntry entry : keyChanges.entries) {
+            if (entry.operation == OPERATION.REMOVE)
+              // WAS DELETED, OK!
+              return;
+          }
+        }
+      }
+
+      OLogManager.instance().exception("Found duplicated key '%s' previously assigned to the record %s", null,
+          OIndexException.class, iKey, indexedRID);
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public Iterator<Entry<Object, OIdentifiable>> iterator() {
+    return (Iterator) entryIterator(true);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public Iterator<Entry<Object, OIdentifiable>> inverseIterator() {
+    return (Iterator) entryIterator(false);
+  }
+}
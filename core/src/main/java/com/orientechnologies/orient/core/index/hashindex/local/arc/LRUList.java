@@ -15,20 +15,14 @@
  */
 package com.orientechnologies.orient.core.index.hashindex.local.arc;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import com.orientechnologies.common.hash.OMurmurHash3;
-import com.orientechnologies.common.serialization.types.OLongSerializer;
-
 /**
  * @author Andrey Lomakin
  * @since 25.02.13
  */
 class LRUList implements Iterable<LRUEntry> {
-  private static final int SEED = 362498820;
-
   private LRUEntry         head;
   private LRUEntry         tail;
 
@@ -89,6 +83,8 @@ class LRUList implements Iterable<LRUEntry> {
     else
       prevEntry.next = lruEntry.next;
 
+    lruEntry.before = lruEntry.after = lruEntry.next = null;
+
     size--;
 
     return lruEntry;
@@ -128,20 +124,27 @@ class LRUList implements Iterable<LRUEntry> {
     LRUEntry before = lruEntry.before;
     LRUEntry after = lruEntry.after;
 
+    if (tail == lruEntry)
+      // ALREADY THE MRU
+      return lruEntry;
+
     if (before != null)
       before.after = after;
     if (after != null)
       after.before = before;
+    if (head == lruEntry)
+      head = after;
+
+    lruEntry.after = null;
 
     if (head == null) {
+      lruEntry.before = null;
       head = lruEntry;
       tail = lruEntry;
     } else {
-      if (tail != lruEntry) {
-        tail.after = lruEntry;
-        lruEntry.before = tail;
-        tail = lruEntry;
-      }
+      tail.after = lruEntry;
+      lruEntry.before = tail;
+      tail = lruEntry;
     }
 
     if (size >= nextThreshold)
@@ -208,6 +211,9 @@ class LRUList implements Iterable<LRUEntry> {
   }
 
   public LRUEntry removeLRU() {
+    if (head == null)
+      return null;
+
     return remove(head.fileName, head.pageIndex);
   }
 
@@ -225,17 +231,15 @@ class LRUList implements Iterable<LRUEntry> {
   }
 
   private long hashCode(String fileName, long filePosition) {
-    final byte[] stringBytes;
-    try {
-      stringBytes = fileName.getBytes("UTF-8");
-      final byte[] result = new byte[stringBytes.length + OLongSerializer.LONG_SIZE];
-      System.arraycopy(stringBytes, 0, result, 0, stringBytes.length);
-      OLongSerializer.INSTANCE.serialize(filePosition, result, stringBytes.length);
-
-      return OMurmurHash3.murmurHash3_x64_64(result, SEED);
-    } catch (UnsupportedEncodingException e) {
-      throw new IllegalStateException("Exception during hash code calculation", e);
-    }
+    // MIX THE CACHED STRING HASH WITH THE PAGE INDEX (MURMUR3 FINALIZER): IT'S CALLED ON EVERY PAGE ACCESS, SO AVOID TO ENCODE
+    // THE FILE NAME EVERY TIME
+    long hashCode = fileName.hashCode() * 31L + filePosition;
+    hashCode ^= hashCode >>> 33;
+    hashCode *= 0xff51afd7ed558ccdL;
+    hashCode ^= hashCode >>> 33;
+    hashCode *= 0xc4ceb9fe1a85ec53L;
+    hashCode ^= hashCode >>> 33;
+    return hashCode;
   }
 
   private final class MRUEntryIterator implements Iterator<LRUEntry> {
@@ -16,8 +16,10 @@
 package com.orientechnologies.orient.core.index.hashindex.local.arc;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.orientechnologies.common.concur.lock.OLockManager;
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -28,37 +30,40 @@ import com.orientechnologies.orient.core.storage.impl.local.OMultiFileSegment;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
 
 /**
+ * ARC page buffer. The pages can be split in stripes by file and page index: every stripe is an ARC buffer on its own, with its
+ * share of the pages and its own lock, so threads working on pages of different stripes don't wait for each other.
+ *
  * @author Andrey Lomakin
  * @since 25.02.13
  */
 public class OARCBuffer {
-  private final int                                 maxSize;
-  private final int                                 pageSize;
-
-  private long                                      p = 0;
+  private final int                                        maxSize;
+  private final int                                        pageSize;
 
-  private final LRUList                             fetchedOnce;
-  private final LRUList                             fetchedOnceEvicted;
+  private final Stripe[]                                   stripes;
 
-  private final LRUList                             fetchedSeveralTimes;
-  private final LRUList                             fetchedSeveralTimesEvicted;
+  private final ODirectMemory                              directMemory;
 
-  private final ODirectMemory                       directMemory;
+  private final ConcurrentMap<String, OMultiFileSegment>   openFiles;
+  private final ConcurrentMap<String, OPageFile>           pageFiles;
 
-  private final Map<String, OMultiFileSegment>      openFiles;
+  private final OLockManager<FileLockKey, Runnable>        lockManager;
+  private final OStorageLocal                              storageLocal;
 
-  private final OLockManager<FileLockKey, Runnable> lockManager;
-  private final Object                              syncObject;
-  private final OStorageLocal                       storageLocal;
-
-  private final boolean                             syncOnPageFlush;
+  private final boolean                                    syncOnPageFlush;
 
   public OARCBuffer(long maxMemory, ODirectMemory directMemory, int pageSize, OStorageLocal storageLocal, boolean syncOnPageFlush) {
+    this(maxMemory, directMemory, pageSize, storageLocal, syncOnPageFlush, 1);
+  }
+
+  public OARCBuffer(long maxMemory, ODirectMemory directMemory, int pageSize, OStorageLocal storageLocal,
+      boolean syncOnPageFlush, int stripeCount) {
     this.directMemory = directMemory;
     this.pageSize = pageSize;
     this.storageLocal = storageLocal;
     this.syncOnPageFlush = syncOnPageFlush;
-    this.openFiles = new HashMap<String, OMultiFileSegment>();
+    this.openFiles = new ConcurrentHashMap<String, OMultiFileSegment>();
+    this.pageFiles = new ConcurrentHashMap<String, OPageFile>();
 
     this.lockManager = new OLockManager<FileLockKey, Runnable>(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(),
         1000);
@@ -69,17 +74,15 @@ public class OARCBuffer {
     else
       maxSize = (int) tmpMaxSize;
 
-    fetchedOnce = new LRUList();
-    fetchedOnceEvicted = new LRUList();
-
-    fetchedSeveralTimes = new LRUList();
-    fetchedSeveralTimesEvicted = new LRUList();
-
-    syncObject = new Object();
+    // EVERY STRIPE KEEPS AT LEAST ONE PAGE
+    final int count = Math.max(1, Math.min(stripeCount, maxSize));
+    stripes = new Stripe[count];
+    for (int i = 0; i < count; ++i)
+      stripes[i] = new Stripe(maxSize / count + (i < maxSize % count ? 1 : 0));
   }
 
   public void openFile(OStorageSegmentConfiguration fileConfiguration, String fileExtension) throws IOException {
-    synchronized (syncObject) {
+    synchronized (openFiles) {
       if (!openFiles.containsKey(fileConfiguration.name)) {
         final OMultiFileSegment multiFileSegment = new OMultiFileSegment(storageLocal, fileConfiguration, fileExtension, pageSize);
         if (multiFileSegment.getFile(0).exists())
@@ -93,10 +96,60 @@ public class OARCBuffer {
     }
   }
 
+  /**
+   * Registers a file whose pages are read and written by the file itself. The pages are addressed by the full name passed.
+   */
+  public void openFile(String fullName, OPageFile pageFile) {
+    pageFiles.put(fullName, pageFile);
+  }
+
+  /**
+   * Removes all the pages of a file from the buffer, writing back the dirty ones if requested.
+   */
+  public void closeFile(String fullName, boolean flush) throws IOException {
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        if (flush) {
+          flushFile(stripe.fetchedOnce, fullName);
+          flushFile(stripe.fetchedSeveralTimes, fullName);
+        }
+
+        for (LRUEntry entry : entriesOf(stripe.fetchedOnce, fullName)) {
+          stripe.fetchedOnce.remove(entry.fileName, entry.pageIndex);
+          directMemory.free(entry.dataPointer);
+        }
+        for (LRUEntry entry : entriesOf(stripe.fetchedSeveralTimes, fullName)) {
+          stripe.fetchedSeveralTimes.remove(entry.fileName, entry.pageIndex);
+          directMemory.free(entry.dataPointer);
+        }
+        for (LRUEntry entry : entriesOf(stripe.fetchedOnceEvicted, fullName))
+          stripe.fetchedOnceEvicted.remove(entry.fileName, entry.pageIndex);
+        for (LRUEntry entry : entriesOf(stripe.fetchedSeveralTimesEvicted, fullName))
+          stripe.fetchedSeveralTimesEvicted.remove(entry.fileName, entry.pageIndex);
+      }
+
+    pageFiles.remove(fullName);
+  }
+
+  /**
+   * Writes back the dirty pages of a file. The file is not synchronized on disk.
+   */
+  public void flushFile(String fullName) throws IOException {
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        flushFile(stripe.fetchedOnce, fullName);
+        flushFile(stripe.fetchedSeveralTimes, fullName);
+      }
+  }
+
   public long loadAndLockForWrite(String fileName, String fileExtension, long pageIndex) throws IOException {
-    synchronized (syncObject) {
-      final String fullName = fileName + fileExtension;
-      final LRUEntry lruEntry = load(fullName, pageIndex);
+    return loadAndLockForWrite(fileName + fileExtension, pageIndex);
+  }
+
+  public long loadAndLockForWrite(String fullName, long pageIndex) throws IOException {
+    final Stripe stripe = stripeOf(fullName, pageIndex);
+    synchronized (stripe) {
+      final LRUEntry lruEntry = load(stripe, fullName, pageIndex);
 
       lockManager.acquireLock(Thread.currentThread(), new FileLockKey(fullName, pageIndex), OLockManager.LOCK.EXCLUSIVE);
       lruEntry.isDirty = true;
@@ -106,9 +159,13 @@ public class OARCBuffer {
   }
 
   public long loadAndLockForRead(String fileName, String fileExtension, long pageIndex) throws IOException {
-    synchronized (syncObject) {
-      final String fullName = fileName + fileExtension;
-      final LRUEntry lruEntry = load(fullName, pageIndex);
+    return loadAndLockForRead(fileName + fileExtension, pageIndex);
+  }
+
+  public long loadAndLockForRead(String fullName, long pageIndex) throws IOException {
+    final Stripe stripe = stripeOf(fullName, pageIndex);
+    synchronized (stripe) {
+      final LRUEntry lruEntry = load(stripe, fullName, pageIndex);
 
       lockManager.acquireLock(Thread.currentThread(), new FileLockKey(fullName, pageIndex), OLockManager.LOCK.SHARED);
       return lruEntry.dataPointer;
@@ -116,20 +173,24 @@ public class OARCBuffer {
   }
 
   public void releaseReadLock(String fileName, String fileExtension, long pageIndex) {
-    final String fullName = fileName + fileExtension;
+    releaseReadLock(fileName + fileExtension, pageIndex);
+  }
+
+  public void releaseReadLock(String fullName, long pageIndex) {
     lockManager.releaseLock(Thread.currentThread(), new FileLockKey(fullName, pageIndex), OLockManager.LOCK.SHARED);
   }
 
   public void releaseWriteLock(String fileName, String fileExtension, long pageIndex) {
-    final String fullName = fileName + fileExtension;
+    releaseWriteLock(fileName + fileExtension, pageIndex);
+  }
+
+  public void releaseWriteLock(String fullName, long pageIndex) {
     lockManager.releaseLock(Thread.currentThread(), new FileLockKey(fullName, pageIndex), OLockManager.LOCK.EXCLUSIVE);
   }
 
   public long getFilledUpTo(String fileName, String fileExtension) {
-    synchronized (syncObject) {
-      final String fullName = fileName + fileExtension;
-      return openFiles.get(fullName).getFilledUpTo() / pageSize;
-    }
+    final String fullName = fileName + fileExtension;
+    return openFiles.get(fullName).getFilledUpTo() / pageSize;
   }
 
   public void flush() throws IOException {
@@ -139,135 +200,187 @@ public class OARCBuffer {
   public void flush(boolean writeLock) throws IOException {
     OLockManager.LOCK lock = writeLock ? OLockManager.LOCK.EXCLUSIVE : OLockManager.LOCK.SHARED;
 
-    synchronized (syncObject) {
-      for (LRUEntry entry : fetchedOnce) {
-        lockManager.acquireLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
-        try {
-          if (entry.isDirty) {
-            flushData(entry.fileName, entry.pageIndex, entry.dataPointer);
-            entry.isDirty = false;
-          }
-        } finally {
-          lockManager.releaseLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
-        }
-      }
-
-      for (LRUEntry entry : fetchedSeveralTimes) {
-        lockManager.acquireLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
-        try {
-          if (entry.isDirty) {
-            flushData(entry.fileName, entry.pageIndex, entry.dataPointer);
-            entry.isDirty = false;
-          }
-        } finally {
-          lockManager.releaseLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
-        }
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        flush(stripe.fetchedOnce, lock);
+        flush(stripe.fetchedSeveralTimes, lock);
       }
 
+    synchronized (openFiles) {
       for (OMultiFileSegment multiFileSegment : openFiles.values())
         multiFileSegment.synch();
     }
   }
 
   public void clear() throws IOException {
-    synchronized (syncObject) {
-      flush(true);
+    flush(true);
 
-      p = 0;
-      fetchedOnce.clear();
-      fetchedOnceEvicted.clear();
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        stripe.p = 0;
+        stripe.fetchedOnce.clear();
+        stripe.fetchedOnceEvicted.clear();
 
-      fetchedSeveralTimes.clear();
-      fetchedSeveralTimesEvicted.clear();
-    }
+        stripe.fetchedSeveralTimes.clear();
+        stripe.fetchedSeveralTimesEvicted.clear();
+      }
   }
 
   public void close() throws IOException {
-    synchronized (syncObject) {
-      clear();
+    clear();
+
+    synchronized (openFiles) {
       for (OMultiFileSegment multiFileSegment : openFiles.values())
         multiFileSegment.close();
     }
   }
 
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public long getMaxMemory() {
+    return (long) maxSize * pageSize;
+  }
+
+  public int getCachedPages() {
+    int cachedPages = 0;
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        cachedPages += stripe.fetchedOnce.size() + stripe.fetchedSeveralTimes.size();
+      }
+    return cachedPages;
+  }
+
+  public long getHits() {
+    long hits = 0;
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        hits += stripe.hits;
+      }
+    return hits;
+  }
+
+  public long getMisses() {
+    long misses = 0;
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        misses += stripe.misses;
+      }
+    return misses;
+  }
+
   long minSingleLRUSize() {
+    long p = 0;
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        p += stripe.p;
+      }
     return p;
   }
 
   boolean inFetchedOnceLRU(String fileName, long pageIndex) {
-    return fetchedOnce.contains(fileName, pageIndex);
+    final Stripe stripe = stripeOf(fileName, pageIndex);
+    synchronized (stripe) {
+      return stripe.fetchedOnce.contains(fileName, pageIndex);
+    }
   }
 
   boolean inFetchedOnceEvictedLRU(String fileName, long pageIndex) {
-    return fetchedOnceEvicted.contains(fileName, pageIndex);
+    final Stripe stripe = stripeOf(fileName, pageIndex);
+    synchronized (stripe) {
+      return stripe.fetchedOnceEvicted.contains(fileName, pageIndex);
+    }
   }
 
   boolean inFetchedSeveralTimesLRU(String fileName, long pageIndex) {
-    return fetchedSeveralTimes.contains(fileName, pageIndex);
+    final Stripe stripe = stripeOf(fileName, pageIndex);
+    synchronized (stripe) {
+      return stripe.fetchedSeveralTimes.contains(fileName, pageIndex);
+    }
   }
 
   boolean inFetchedSeveralTimesEvictedLRU(String fileName, long pageIndex) {
-    return fetchedSeveralTimesEvicted.contains(fileName, pageIndex);
+    final Stripe stripe = stripeOf(fileName, pageIndex);
+    synchronized (stripe) {
+      return stripe.fetchedSeveralTimesEvicted.contains(fileName, pageIndex);
+    }
   }
 
-  private LRUEntry load(final String fileName, long pageIndex) throws IOException {
-    LRUEntry lruEntry = fetchedOnce.get(fileName, pageIndex);
-    if (lruEntry != null) {
-      fetchedOnce.remove(fileName, pageIndex);
+  private Stripe stripeOf(String fileName, long pageIndex) {
+    if (stripes.length == 1)
+      return stripes[0];
 
-      fetchedSeveralTimes.putToMRU(fileName, pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
+    int hash = fileName.hashCode() * 31 + (int) (pageIndex ^ (pageIndex >>> 32));
+    // SPREAD THE BITS: CONSECUTIVE PAGES OF THE SAME FILE MUST NOT END ALL IN THE SAME STRIPE
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+    return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+  }
 
-      return lruEntry;
+  private LRUEntry load(final Stripe stripe, final String fileName, long pageIndex) throws IOException {
+    final int maxSize = stripe.maxSize;
+
+    LRUEntry lruEntry = stripe.fetchedOnce.get(fileName, pageIndex);
+    if (lruEntry != null) {
+      stripe.hits++;
+      stripe.fetchedOnce.remove(fileName, pageIndex);
+
+      // RETURN THE NEW ENTRY: THE DIRTY FLAG SET BY THE CALLER MUST NOT BE LOST
+      return stripe.fetchedSeveralTimes.putToMRU(fileName, pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
     }
 
-    lruEntry = fetchedSeveralTimes.get(fileName, pageIndex);
+    lruEntry = stripe.fetchedSeveralTimes.get(fileName, pageIndex);
     if (lruEntry != null) {
-      fetchedSeveralTimes.putToMRU(fileName, pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
+      stripe.hits++;
+      stripe.fetchedSeveralTimes.putToMRU(fileName, pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
       return lruEntry;
     }
 
-    if (fetchedOnceEvicted.contains(fileName, pageIndex)) {
-      int onceSize = fetchedOnceEvicted.size();
-      int severalTimesSize = fetchedSeveralTimesEvicted.size();
+    stripe.misses++;
+
+    if (stripe.fetchedOnceEvicted.contains(fileName, pageIndex)) {
+      int onceSize = stripe.fetchedOnceEvicted.size();
+      int severalTimesSize = stripe.fetchedSeveralTimesEvicted.size();
 
       long delta = onceSize >= severalTimesSize ? 1 : severalTimesSize / onceSize;
-      p = Math.min(p + delta, maxSize);
+      stripe.p = Math.min(stripe.p + delta, maxSize);
 
       long dataPointer = cacheFileContent(fileName, pageIndex);
 
-      replace(false);
+      replace(stripe, false);
 
-      fetchedOnceEvicted.remove(fileName, pageIndex);
+      stripe.fetchedOnceEvicted.remove(fileName, pageIndex);
 
-      return fetchedSeveralTimes.putToMRU(fileName, pageIndex, dataPointer, false);
+      return stripe.fetchedSeveralTimes.putToMRU(fileName, pageIndex, dataPointer, false);
     }
 
-    if (fetchedSeveralTimesEvicted.contains(fileName, pageIndex)) {
-      int onceSize = fetchedOnceEvicted.size();
-      int severalTimesSize = fetchedSeveralTimesEvicted.size();
+    if (stripe.fetchedSeveralTimesEvicted.contains(fileName, pageIndex)) {
+      int onceSize = stripe.fetchedOnceEvicted.size();
+      int severalTimesSize = stripe.fetchedSeveralTimesEvicted.size();
 
       long delta = severalTimesSize >= onceSize ? 1 : onceSize / severalTimesSize;
-      p = Math.max(p - delta, 0);
+      stripe.p = Math.max(stripe.p - delta, 0);
 
-      replace(true);
+      replace(stripe, true);
 
-      fetchedSeveralTimesEvicted.remove(fileName, pageIndex);
+      stripe.fetchedSeveralTimesEvicted.remove(fileName, pageIndex);
 
       long dataPointer = cacheFileContent(fileName, pageIndex);
 
-      return fetchedSeveralTimes.putToMRU(fileName, pageIndex, dataPointer, false);
+      return stripe.fetchedSeveralTimes.putToMRU(fileName, pageIndex, dataPointer, false);
     }
 
-    if (fetchedOnce.size() + fetchedOnceEvicted.size() == maxSize) {
-      if (fetchedOnce.size() < maxSize) {
-        fetchedOnceEvicted.removeLRU();
-        replace(false);
+    if (stripe.fetchedOnce.size() + stripe.fetchedOnceEvicted.size() == maxSize) {
+      if (stripe.fetchedOnce.size() < maxSize) {
+        stripe.fetchedOnceEvicted.removeLRU();
+        replace(stripe, false);
       } else {
-        LRUEntry removedEntry = fetchedOnce.getLRU();
+        LRUEntry removedEntry = stripe.fetchedOnce.getLRU();
         lockManager.acquireLock(Thread.currentThread(), new FileLockKey(removedEntry.fileName, removedEntry.pageIndex),
             OLockManager.LOCK.EXCLUSIVE);
         try {
-          fetchedOnce.removeLRU();
+          stripe.fetchedOnce.removeLRU();
           evictFileContent(removedEntry.fileName, removedEntry.pageIndex, removedEntry.dataPointer, removedEntry.isDirty);
         } finally {
           lockManager.releaseLock(Thread.currentThread(), new FileLockKey(removedEntry.fileName, removedEntry.pageIndex),
@@ -275,44 +388,53 @@ public class OARCBuffer {
         }
       }
     } else {
-      int totalSize = fetchedOnce.size() + fetchedSeveralTimes.size() + fetchedOnceEvicted.size()
-          + fetchedSeveralTimesEvicted.size();
+      int totalSize = stripe.fetchedOnce.size() + stripe.fetchedSeveralTimes.size() + stripe.fetchedOnceEvicted.size()
+          + stripe.fetchedSeveralTimesEvicted.size();
       if (totalSize >= maxSize) {
         if (totalSize == 2 * maxSize)
-          fetchedSeveralTimesEvicted.removeLRU();
+          stripe.fetchedSeveralTimesEvicted.removeLRU();
 
-        replace(false);
+        replace(stripe, false);
       }
     }
 
     long dataPointer = cacheFileContent(fileName, pageIndex);
 
-    return fetchedOnce.putToMRU(fileName, pageIndex, dataPointer, false);
+    return stripe.fetchedOnce.putToMRU(fileName, pageIndex, dataPointer, false);
   }
 
   private long cacheFileContent(String fileName, long pageIndex) throws IOException {
-    final OMultiFileSegment multiFileSegment = openFiles.get(fileName);
-
     final long startPosition = pageIndex * pageSize;
     final long endPosition = startPosition + pageSize;
 
     byte[] content = new byte[pageSize];
-    if (multiFileSegment.getFilledUpTo() >= endPosition) {
-      final long[] pos = multiFileSegment.getRelativePosition(pageIndex);
 
-      final OFile file = multiFileSegment.getFile((int) pos[0]);
-      file.read(pos[1], content, content.length);
-    } else if (multiFileSegment.getFilledUpTo() > startPosition) {
-      int dif = (int) (multiFileSegment.getFilledUpTo() - startPosition);
+    final OPageFile pageFile = pageFiles.get(fileName);
+    if (pageFile != null) {
+      pageFile.readPage(startPosition, content);
+      return directMemory.allocate(content);
+    }
 
-      final long[] pos = multiFileSegment.getRelativePosition(startPosition);
+    final OMultiFileSegment multiFileSegment = openFiles.get(fileName);
+    // THE SEGMENT IS SHARED BY THE STRIPES: GROW IT ONE PAGE AT A TIME
+    synchronized (multiFileSegment) {
+      if (multiFileSegment.getFilledUpTo() >= endPosition) {
+        final long[] pos = multiFileSegment.getRelativePosition(startPosition);
 
-      final OFile file = multiFileSegment.getFile((int) pos[0]);
-      file.read(pos[1], content, dif);
+        final OFile file = multiFileSegment.getFile((int) pos[0]);
+        file.read(pos[1], content, content.length);
+      } else if (multiFileSegment.getFilledUpTo() > startPosition) {
+        int dif = (int) (multiFileSegment.getFilledUpTo() - startPosition);
 
-      multiFileSegment.allocateSpace((int) (endPosition - dif));
-    } else {
-      multiFileSegment.allocateSpace((int) (endPosition - multiFileSegment.getFilledUpTo()));
+        final long[] pos = multiFileSegment.getRelativePosition(startPosition);
+
+        final OFile file = multiFileSegment.getFile((int) pos[0]);
+        file.read(pos[1], content, dif);
+
+        multiFileSegment.allocateSpace(pageSize - dif);
+      } else {
+        multiFileSegment.allocateSpace((int) (endPosition - multiFileSegment.getFilledUpTo()));
+      }
     }
 
     long dataPointer;
@@ -330,9 +452,15 @@ public class OARCBuffer {
 
   private void flushData(String fileName, long pageIndex, long dataPointer) throws IOException {
     final long filePosition = pageIndex * pageSize;
+    final byte[] content = directMemory.get(dataPointer, pageSize);
+
+    final OPageFile pageFile = pageFiles.get(fileName);
+    if (pageFile != null) {
+      pageFile.writePage(filePosition, content);
+      return;
+    }
 
     final OMultiFileSegment multiFileSegment = openFiles.get(fileName);
-    final byte[] content = directMemory.get(dataPointer, pageSize);
 
     final long[] pos = multiFileSegment.getRelativePosition(filePosition);
     final OFile file = multiFileSegment.getFile((int) pos[0]);
@@ -342,8 +470,14 @@ public class OARCBuffer {
       file.synch();
   }
 
-  private void replace(boolean dataEvictedSeveralTimes) throws IOException {
-    if (fetchedOnce.size() > 0 && fetchedOnce.size() > p || (dataEvictedSeveralTimes && fetchedOnce.size() == p)) {
+  private void replace(Stripe stripe, boolean dataEvictedSeveralTimes) throws IOException {
+    final LRUList fetchedOnce = stripe.fetchedOnce;
+    final LRUList fetchedSeveralTimes = stripe.fetchedSeveralTimes;
+
+    // FALL BACK ON THE OTHER LIST WHEN THE CHOSEN ONE IS EMPTY, OTHERWISE THE BUFFER WOULD GROW OVER ITS SIZE
+    if (fetchedOnce.size() > 0
+        && (fetchedOnce.size() > stripe.p || (dataEvictedSeveralTimes && fetchedOnce.size() == stripe.p) || fetchedSeveralTimes
+            .size() == 0)) {
       LRUEntry lruEntry = fetchedOnce.getLRU();
       if (lruEntry == null)
         return;
@@ -353,7 +487,7 @@ public class OARCBuffer {
       try {
         fetchedOnce.removeLRU();
         evictFileContent(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
-        fetchedOnceEvicted.putToMRU(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, false);
+        stripe.fetchedOnceEvicted.putToMRU(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, false);
       } finally {
         lockManager.releaseLock(Thread.currentThread(), new FileLockKey(lruEntry.fileName, lruEntry.pageIndex),
             OLockManager.LOCK.EXCLUSIVE);
@@ -368,7 +502,7 @@ public class OARCBuffer {
       try {
         fetchedSeveralTimes.removeLRU();
         evictFileContent(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, lruEntry.isDirty);
-        fetchedSeveralTimesEvicted.putToMRU(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, false);
+        stripe.fetchedSeveralTimesEvicted.putToMRU(lruEntry.fileName, lruEntry.pageIndex, lruEntry.dataPointer, false);
       } finally {
         lockManager.releaseLock(Thread.currentThread(), new FileLockKey(lruEntry.fileName, lruEntry.pageIndex),
             OLockManager.LOCK.EXCLUSIVE);
@@ -376,6 +510,65 @@ public class OARCBuffer {
     }
   }
 
+  private void flush(LRUList list, OLockManager.LOCK lock) throws IOException {
+    for (LRUEntry entry : list) {
+      lockManager.acquireLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
+      try {
+        if (entry.isDirty) {
+          flushData(entry.fileName, entry.pageIndex, entry.dataPointer);
+          entry.isDirty = false;
+        }
+      } finally {
+        lockManager.releaseLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), lock);
+      }
+    }
+  }
+
+  private void flushFile(LRUList list, String fullName) throws IOException {
+    for (LRUEntry entry : list) {
+      if (!entry.isDirty || !entry.fileName.equals(fullName))
+        continue;
+
+      lockManager.acquireLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), OLockManager.LOCK.SHARED);
+      try {
+        flushData(entry.fileName, entry.pageIndex, entry.dataPointer);
+        entry.isDirty = false;
+      } finally {
+        lockManager.releaseLock(Thread.currentThread(), new FileLockKey(entry.fileName, entry.pageIndex), OLockManager.LOCK.SHARED);
+      }
+    }
+  }
+
+  private static List<LRUEntry> entriesOf(LRUList list, String fullName) {
+    final List<LRUEntry> result = new ArrayList<LRUEntry>();
+    for (LRUEntry entry : list)
+      if (entry.fileName.equals(fullName))
+        result.add(entry);
+    return result;
+  }
+
+  /**
+   * ARC state of a stripe. All the fields are guarded by the stripe itself.
+   */
+  private static final class Stripe {
+    private final int     maxSize;
+
+    private long          p = 0;
+
+    private final LRUList fetchedOnce                = new LRUList();
+    private final LRUList fetchedOnceEvicted         = new LRUList();
+
+    private final LRUList fetchedSeveralTimes        = new LRUList();
+    private final LRUList fetchedSeveralTimesEvicted = new LRUList();
+
+    private long          hits;
+    private long          misses;
+
+    private Stripe(int maxSize) {
+      this.maxSize = maxSize;
+    }
+  }
+
   private final class FileLockKey {
     private final String fileName;
     private final long   pageIndex;
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local.arc;
+
+import java.io.IOException;
+
+/**
+ * File whose pages are cached by {@link OARCBuffer}. The buffer loads a page on the first access and writes it back when it's
+ * evicted or flushed.
+ */
+public interface OPageFile {
+  /**
+   * Reads the page starting at the given position. The part of the page beyond the end of the file must be left as is.
+   */
+  public void readPage(long iPosition, byte[] iContent) throws IOException;
+
+  public void writePage(long iPosition, byte[] iContent) throws IOException;
+}
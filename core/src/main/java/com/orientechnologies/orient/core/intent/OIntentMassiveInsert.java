@@ -1,9 +1,12 @@
 package com.orientechnologies.orient.core.intent;
 
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseComplex;
 import com.orientechnologies.orient.core.db.object.ODatabaseObject;
 import com.orientechnologies.orient.core.db.raw.ODatabaseRaw;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.hook.ORecordHook;
+import com.orientechnologies.orient.core.index.OClassIndexManager;
 
 public class OIntentMassiveInsert implements OIntent {
 	private boolean	previousLevel1CacheEnabled;
@@ -24,6 +27,10 @@ public class OIntentMassiveInsert implements OIntent {
 			((ODatabaseRecord) ownerDb).setRetainRecords(false);
 		}
 
+		final OClassIndexManager indexManager = getClassIndexManager(ownerDb);
+		if (indexManager != null)
+			indexManager.beginBatch(OGlobalConfiguration.INDEX_MASSIVE_INSERT_BATCH_SIZE.getValueAsInteger());
+
 		while (ownerDb.getDatabaseOwner() != ownerDb)
 			ownerDb = ownerDb.getDatabaseOwner();
 
@@ -42,10 +49,21 @@ public class OIntentMassiveInsert implements OIntent {
 		if (ownerDb instanceof ODatabaseRecord)
 			((ODatabaseRecord) ownerDb).setRetainRecords(previousRetainRecords);
 
+		final OClassIndexManager indexManager = getClassIndexManager(ownerDb);
+		if (indexManager != null)
+			indexManager.endBatch();
+
 		while (ownerDb.getDatabaseOwner() != ownerDb)
 			ownerDb = ownerDb.getDatabaseOwner();
 
 		if (ownerDb instanceof ODatabaseObject)
 			((ODatabaseObject) ownerDb).setRetainObjects(previousRetainObjects);
 	}
+
+	private static OClassIndexManager getClassIndexManager(final ODatabaseComplex<?> iDatabase) {
+		for (ORecordHook hook : iDatabase.getHooks())
+			if (hook instanceof OClassIndexManager)
+				return (OClassIndexManager) hook;
+		return null;
+	}
 }
@@ -54,6 +54,10 @@ public class ORecordIteratorClusters<REC extends ORecordInternal<?>> extends OId
     super(iDatabase, iLowLevelDatabase, iUseCache, iterateThroughTombstones);
   }
 
+  public int[] getClusterIds() {
+    return clusterIds;
+  }
+
   public ORecordIteratorClusters<REC> setRange(final ORID iBegin, final ORID iEnd) {
     beginRange = iBegin;
     endRange = iEnd;
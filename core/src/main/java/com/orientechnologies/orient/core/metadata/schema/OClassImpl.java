@@ -1077,6 +1077,10 @@ public class OClassImpl extends ODocumentWrapperNoClass implements OClass {
     owner.saveInternal();
   }
 
+  public OSchemaShared getOwner() {
+    return owner;
+  }
+
   public OIndex<?> createIndex(final String iName, final INDEX_TYPE iType, final String... fields) {
     return createIndex(iName, iType.name(), fields);
   }
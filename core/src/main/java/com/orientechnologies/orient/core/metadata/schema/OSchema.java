@@ -91,4 +91,23 @@ public interface OSchema {
    *          Cluster name
    */
   public Set<OClass> getClassesRelyOnCluster(String iClusterName);
+
+  /**
+   * Returns the id the field name is interned with. The names of the properties are interned when the schema is saved and are
+   * written as ids by the binary record format.
+   * 
+   * @param iFieldName
+   *          Field name, case sensitive
+   * @return The id of the field name or -1 if it's not interned
+   */
+  public int getFieldId(String iFieldName);
+
+  /**
+   * Returns the field name interned with the id.
+   * 
+   * @param iFieldId
+   *          Id of the field name as returned by {@link #getFieldId(String)}
+   * @return The field name or null if the id is unknown
+   */
+  public String getFieldName(int iFieldId);
 }
\ No newline at end of file
@@ -182,6 +182,14 @@ public class OSchemaProxy extends OProxedResource<OSchemaShared> implements OSch
     return delegate.toString();
   }
 
+  public int getFieldId(final String iFieldName) {
+    return delegate.getFieldId(iFieldName);
+  }
+
+  public String getFieldName(final int iFieldId) {
+    return delegate.getFieldName(iFieldId);
+  }
+
   @Override
   public Set<OClass> getClassesRelyOnCluster(final String iClusterName) {
     return delegate.getClassesRelyOnCluster(iClusterName);
@@ -15,12 +15,17 @@
  */
 package com.orientechnologies.orient.core.metadata.schema;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.orientechnologies.common.concur.resource.OCloseable;
 import com.orientechnologies.common.log.OLogManager;
@@ -60,6 +65,10 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
   private static final String   DROP_INDEX_QUERY       = "drop index ";
   protected Map<String, OClass> classes                = new HashMap<String, OClass>();
 
+  // FIELD NAMES OF THE PROPERTIES INTERNED AS NUMBERS BY THE BINARY RECORD FORMAT. IDS ARE NEVER REUSED
+  private volatile String[]     fieldNames             = new String[0];
+  private Map<String, Integer>  fieldIds               = new ConcurrentHashMap<String, Integer>();
+
   public OSchemaShared(final int schemaClusterId) {
     super(new ODocument());
   }
@@ -440,6 +449,16 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
     return cls;
   }
 
+  public int getFieldId(final String iFieldName) {
+    final Integer id = fieldIds.get(iFieldName);
+    return id != null ? id.intValue() : -1;
+  }
+
+  public String getFieldName(final int iFieldId) {
+    final String[] names = fieldNames;
+    return iFieldId >= 0 && iFieldId < names.length ? names[iFieldId] : null;
+  }
+
   public void changeClassName(String iOldName, String iNewName) {
     OClass clazz = classes.remove(iOldName.toLowerCase());
     classes.put(iNewName.toLowerCase(), clazz);
@@ -465,6 +484,15 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
           "Database schema is different. Please export your old database with the previous version of OrientDB and reimport it using the current one.");
     }
 
+    // LOAD THE INTERNED FIELD NAMES: THE ID IS THE POSITION IN THE LIST
+    final List<String> storedFieldNames = document.field("fieldNames");
+    final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    if (storedFieldNames != null)
+      for (int i = 0; i < storedFieldNames.size(); ++i)
+        ids.put(storedFieldNames.get(i), i);
+    fieldNames = storedFieldNames != null ? storedFieldNames.toArray(new String[storedFieldNames.size()]) : new String[0];
+    fieldIds = ids;
+
     // REGISTER ALL THE CLASSES
     classes.clear();
     OClassImpl cls;
@@ -516,6 +544,10 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
 
       document.field("classes", cc, OType.EMBEDDEDSET);
 
+      // INTERN THE NAMES OF THE NEW PROPERTIES: THEY ARE STORED TOGETHER WITH THE CLASSES SO THE IDS ARE NEVER USED BEFORE BEING SAVED
+      internFieldNames();
+      document.field("fieldNames", new ArrayList<String>(Arrays.asList(fieldNames)), OType.EMBEDDEDLIST);
+
     } finally {
       document.setInternalStatus(ORecordElement.STATUS.LOADED);
     }
@@ -645,9 +677,31 @@ public class OSchemaShared extends ODocumentWrapperNoClass implements OSchema, O
 
   public void close() {
     classes.clear();
+    fieldNames = new String[0];
+    fieldIds.clear();
     document.clear();
   }
 
+  private synchronized void internFieldNames() {
+    final Set<String> newNames = new LinkedHashSet<String>();
+    for (OClass c : classes.values())
+      for (OProperty p : c.declaredProperties())
+        if (!fieldIds.containsKey(p.getName()))
+          newNames.add(p.getName());
+
+    if (newNames.isEmpty())
+      return;
+
+    final int registered = fieldNames.length;
+    final List<String> names = new ArrayList<String>(Arrays.asList(fieldNames));
+    names.addAll(newNames);
+
+    // PUBLISH THE NAMES BEFORE THE IDS TO ALWAYS RESOLVE THE IDS IN USE
+    fieldNames = names.toArray(new String[names.size()]);
+    for (int i = registered; i < names.size(); ++i)
+      fieldIds.put(names.get(i), i);
+  }
+
   private void saveInternal(final String iClusterName) {
     document.setDirty();
     super.save(OMetadata.CLUSTER_INTERNAL_NAME);
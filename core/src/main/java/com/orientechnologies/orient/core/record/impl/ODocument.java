@@ -37,6 +37,7 @@ import java.util.Set;
 
 import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OStorageConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.ODetachable;
@@ -266,9 +267,7 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
    */
   @Override
   public ORecordAbstract<Object> copyTo(final ORecordAbstract<Object> iDestination) {
-    // TODO: REMOVE THIS
-    checkForFields();
-
+    // THE FIELDS NOT UNMARSHALLED YET ARE NOT LOADED HERE: THE COPY SHARES THE SOURCE BUFFER AND UNMARSHALLS THEM ON ACCESS
     ODocument destination = (ODocument) iDestination;
 
     super.copyTo(iDestination);
@@ -1263,7 +1262,17 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
   @Override
   protected void setup() {
     super.setup();
-    _recordFormat = ORecordSerializerFactory.instance().getFormat(ORecordSerializerSchemaAware2CSV.NAME);
+
+    // USE THE RECORD FORMAT CONFIGURED IN THE CURRENT DATABASE IF ANY
+    final ODatabaseRecord db = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    if (db != null && !db.isClosed()) {
+      final OStorageConfiguration configuration = db.getStorage().getConfiguration();
+      if (configuration != null && configuration.getRecordFormat() != null)
+        _recordFormat = ORecordSerializerFactory.instance().getFormat(configuration.getRecordFormat());
+    }
+
+    if (_recordFormat == null)
+      _recordFormat = ORecordSerializerFactory.instance().getFormat(ORecordSerializerSchemaAware2CSV.NAME);
   }
 
   /**
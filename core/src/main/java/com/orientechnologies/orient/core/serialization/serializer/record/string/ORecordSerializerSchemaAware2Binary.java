@@ -0,0 +1,668 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.serialization.serializer.record.string;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Set;
+
+import com.orientechnologies.common.collection.OMultiValue;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.OUserObject2RecordHandler;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.exception.OSerializationException;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OClassImpl;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.serialization.OMemoryStream;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.OSerializationLongIdThreadLocal;
+
+/**
+ * Binary format of documents. The record starts with a header containing, for each field, the name and the offset of the value,
+ * so a single field can be read without parsing the others. Names of the schema properties are written as the id they are
+ * interned with in the schema. Numbers are written as variable length integers, links as binary RIDs and embedded documents
+ * in the same binary format. The other values (collections, maps and custom types) are written in the CSV format.<br/>
+ * Layout:
+ *
+ * <pre>
+ * MAGIC VERSION CLASS-NAME FIELD-COUNT HEADER-SIZE (FIELD-KEY [FIELD-NAME] TYPE [VALUE-OFFSET])* VALUES
+ * </pre>
+ *
+ * The field key is the interned id * 2 + 1 or, if the name is written, its length * 2. The records written with this format are
+ * recognized by the CSV serializer and vice versa, so a database can contain records in both the formats.
+ *
+ * @see ORecordSerializerSchemaAware2CSV
+ */
+public class ORecordSerializerSchemaAware2Binary implements ORecordSerializer {
+  public static final String                              NAME              = "ORecordDocument2binaryV1";
+  public static final ORecordSerializerSchemaAware2Binary INSTANCE          = new ORecordSerializerSchemaAware2Binary();
+
+  // THE CSV FORMAT IS TEXT SO IT NEVER STARTS WITH A ZERO
+  private static final byte                               MAGIC             = 0;
+  private static final byte                               VERSION           = 1;
+
+  private static final byte                               NULL_VALUE        = -1;
+  private static final byte                               CSV_VALUE         = 0x40;
+
+  private static final boolean                            LONG_POSITIONS    = OClusterPositionFactory.INSTANCE instanceof OClusterPositionFactory.OClusterPositionFactoryLong;
+  private static final OType[]                            TYPES_BY_ID;
+  private static final OJVMProfiler                       PROFILER          = Orient.instance().getProfiler();
+
+  static {
+    int max = 0;
+    for (OType t : OType.values())
+      max = Math.max(max, t.getId());
+    TYPES_BY_ID = new OType[max + 1];
+    for (OType t : OType.values())
+      TYPES_BY_ID[t.getId()] = t;
+  }
+
+  private final ORecordSerializerSchemaAware2CSV          csv               = ORecordSerializerSchemaAware2CSV.INSTANCE;
+
+  /**
+   * Tells if the record content has been written by this serializer.
+   */
+  public static boolean isBinary(final byte[] iSource) {
+    return iSource != null && iSource.length > 1 && iSource[0] == MAGIC;
+  }
+
+  public ORecordInternal<?> fromStream(final byte[] iSource, final ORecordInternal<?> iRecord, final String[] iFields) {
+    if (iSource == null || iSource.length == 0)
+      return iRecord;
+
+    if (!isBinary(iSource))
+      // WRITTEN BY A DATABASE CONFIGURED WITH THE CSV FORMAT
+      return csv.fromStream(iSource, iRecord, iFields);
+
+    final long timer = PROFILER.startChrono();
+    try {
+      fromStream(new OInput(iSource, 0), (ODocument) iRecord, iFields);
+      return iRecord;
+    } finally {
+      PROFILER.stopChrono(PROFILER.getProcessMetric("serializer.record.binary.fromStream"), "Deserialize record from stream", timer);
+    }
+  }
+
+  public byte[] toStream(final ORecordInternal<?> iRecord, final boolean iOnlyDelta) {
+    if (iRecord == null)
+      throw new OSerializationException("Expected a record but was null");
+
+    if (!(iRecord instanceof ODocument))
+      throw new OSerializationException("Cannot marshall a record of type " + iRecord.getClass().getSimpleName());
+
+    final long timer = PROFILER.startChrono();
+    try {
+      final ODocument record = (ODocument) iRecord;
+      final OMemoryStream output = new OMemoryStream(record.getSize() > 0 ? record.getSize() : OMemoryStream.DEF_SIZE);
+      toStream(record, output, null, OSerializationLongIdThreadLocal.INSTANCE.get(), iOnlyDelta);
+
+      // GET THE OVERSIZE IF ANY
+      final float overSize = record.getSchemaClass() != null ? record.getSchemaClass().getOverSize() : 0;
+
+      // APPEND ZEROS IF NEEDED: THEY ARE AFTER THE LAST VALUE SO THEY ARE NEVER READ
+      final int newSize;
+      if (record.hasOwners() || record.getSize() == output.size())
+        newSize = output.size();
+      else if (record.getSize() > output.size())
+        // FILL ALL THE AVAILABLE SPACE TO AVOID FRAGMENTATION
+        newSize = record.getSize();
+      else if (overSize > 0)
+        newSize = (int) (output.size() * overSize);
+      else
+        newSize = output.size();
+
+      if (newSize > output.size())
+        output.fill(newSize - output.size(), (byte) 0);
+
+      return output.toByteArray();
+    } finally {
+      PROFILER.stopChrono(PROFILER.getProcessMetric("serializer.record.binary.toStream"), "Serialize record to stream", timer);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+
+  protected void toStream(final ODocument iRecord, final OMemoryStream iOutput, OUserObject2RecordHandler iObjHandler,
+      final Set<Long> iMarshalledRecords, final boolean iOnlyDelta) {
+    // CHECK IF THE RECORD IS PENDING TO BE MARSHALLED
+    if (iRecord.getSerializationId() < 0)
+      iRecord.setSerializationId(ORecordSerializerSchemaAware2CSV.nextSerializationId.getAndIncrement());
+
+    final Long identityRecord = iRecord.getSerializationId();
+    if (iMarshalledRecords != null)
+      if (iMarshalledRecords.contains(identityRecord))
+        return;
+      else
+        iMarshalledRecords.add(identityRecord);
+
+    iOutput.write(MAGIC);
+    iOutput.write(VERSION);
+
+    final OClass cls = iRecord.getSchemaClass();
+    writeString(iOutput, !iOnlyDelta && cls != null ? cls.getStreamableName() : "");
+
+    // ONLY THE DOCUMENTS OF A CLASS USE THE INTERNED NAMES: THE SCHEMA ITSELF IS A DOCUMENT WITHOUT CLASS
+    final OSchema schema = cls instanceof OClassImpl ? ((OClassImpl) cls).getOwner() : null;
+
+    if (iObjHandler == null && ODatabaseRecordThreadLocal.INSTANCE.isDefined())
+      iObjHandler = ODatabaseRecordThreadLocal.INSTANCE.get();
+
+    final String[] fieldNames = iOnlyDelta && iRecord.isTrackingChanges() ? iRecord.getDirtyFields() : iRecord.fieldNames();
+
+    final OMemoryStream header = new OMemoryStream(fieldNames.length * 8);
+    final OMemoryStream values = new OMemoryStream();
+    final ORecordSerializerSchemaAware2CSV.OFieldType fieldType = new ORecordSerializerSchemaAware2CSV.OFieldType();
+    int fields = 0;
+
+    for (String fieldName : fieldNames) {
+      final Object fieldValue = iRecord.rawField(fieldName);
+
+      csv.getFieldType(iRecord, fieldName, fieldValue, true, fieldType);
+      if (fieldType.type == OType.TRANSIENT)
+        // TRANSIENT FIELD
+        continue;
+
+      if (fieldType.type == null)
+        // THE CSV FORMAT GUESSES THE BOOLEANS FROM THEIR CONTENT: HERE THE TYPE MUST BE EXPLICIT
+        fieldType.type = fieldValue instanceof Boolean ? OType.BOOLEAN : OType.EMBEDDED;
+
+      final int fieldId = schema != null ? schema.getFieldId(fieldName) : -1;
+      if (fieldId > -1)
+        writeVarInt(header, ((long) fieldId << 1) | 1);
+      else {
+        final byte[] name = OBinaryProtocol.string2bytes(fieldName);
+        writeVarInt(header, (long) name.length << 1);
+        header.write(name, 0, name.length);
+      }
+
+      final int offset = values.getPosition();
+      final byte type = fieldValue != null ? fieldToStream(iRecord, values, iObjHandler, fieldType.type,
+          fieldType.linkedClass, fieldType.linkedType, fieldName, fieldValue, iMarshalledRecords) : NULL_VALUE;
+
+      header.write(type);
+      if (type != NULL_VALUE)
+        writeVarInt(header, offset);
+
+      fields++;
+    }
+
+    if (iMarshalledRecords != null)
+      iMarshalledRecords.remove(identityRecord);
+
+    writeVarInt(iOutput, fields);
+    writeVarInt(iOutput, header.size());
+    iOutput.write(header.getInternalBuffer(), 0, header.size());
+    iOutput.write(values.getInternalBuffer(), 0, values.size());
+  }
+
+  /**
+   * Writes the value in binary if the type and the Java class of the value are supported, otherwise writes it in the CSV format.
+   *
+   * @return The type id to write in the header
+   */
+  protected byte fieldToStream(final ODocument iRecord, final OMemoryStream iOutput, final OUserObject2RecordHandler iObjHandler,
+      final OType iType, final OClass iLinkedClass, final OType iLinkedType, final String iName, final Object iValue,
+      final Set<Long> iMarshalledRecords) {
+    switch (iType) {
+    case BOOLEAN:
+      if (iValue instanceof Boolean) {
+        iOutput.write(((Boolean) iValue).booleanValue() ? 1 : 0);
+        return (byte) iType.getId();
+      }
+      break;
+
+    case BYTE:
+      if (iValue instanceof Byte) {
+        iOutput.write(((Byte) iValue).byteValue());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case SHORT:
+      if (iValue instanceof Short) {
+        writeSignedVarInt(iOutput, ((Short) iValue).shortValue());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case INTEGER:
+      if (iValue instanceof Integer) {
+        writeSignedVarInt(iOutput, ((Integer) iValue).intValue());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case LONG:
+      if (iValue instanceof Long) {
+        writeSignedVarInt(iOutput, ((Long) iValue).longValue());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case FLOAT:
+      if (iValue instanceof Float) {
+        iOutput.set(Float.floatToIntBits(((Float) iValue).floatValue()));
+        return (byte) iType.getId();
+      }
+      break;
+
+    case DOUBLE:
+      if (iValue instanceof Double) {
+        iOutput.set(Double.doubleToLongBits(((Double) iValue).doubleValue()));
+        return (byte) iType.getId();
+      }
+      break;
+
+    case DECIMAL:
+      if (iValue instanceof BigDecimal) {
+        final BigDecimal decimal = (BigDecimal) iValue;
+        writeSignedVarInt(iOutput, decimal.scale());
+        final byte[] unscaled = decimal.unscaledValue().toByteArray();
+        writeVarInt(iOutput, unscaled.length);
+        iOutput.write(unscaled, 0, unscaled.length);
+        return (byte) iType.getId();
+      }
+      break;
+
+    case STRING:
+      if (iValue instanceof String) {
+        writeString(iOutput, (String) iValue);
+        return (byte) iType.getId();
+      }
+      break;
+
+    case BINARY:
+      if (iValue instanceof byte[]) {
+        final byte[] bytes = (byte[]) iValue;
+        writeVarInt(iOutput, bytes.length);
+        iOutput.write(bytes, 0, bytes.length);
+        return (byte) iType.getId();
+      }
+      break;
+
+    case DATE:
+      if (iValue instanceof Date) {
+        // RESET HOURS, MINUTES, SECONDS AND MILLISECONDS AS THE CSV FORMAT
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTime((Date) iValue);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        writeSignedVarInt(iOutput, calendar.getTimeInMillis());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case DATETIME:
+      if (iValue instanceof Date) {
+        writeSignedVarInt(iOutput, ((Date) iValue).getTime());
+        return (byte) iType.getId();
+      }
+      break;
+
+    case LINK:
+      if (iValue instanceof ORID && ((ORID) iValue).isPersistent()) {
+        writeRID(iOutput, (ORID) iValue);
+        return (byte) iType.getId();
+      }
+
+      // LET THE CSV FORMAT SAVE THE NEW RECORDS AND REPLACE THEM WITH THEIR RID
+      final StringBuilder link = new StringBuilder();
+      csv.fieldToStream(iRecord, link, iObjHandler, iType, iLinkedClass, iLinkedType, iName, iValue, iMarshalledRecords, true);
+      if (link.length() == 0)
+        return NULL_VALUE;
+      if (link.charAt(0) == OStringSerializerHelper.LINK) {
+        writeRID(iOutput, new ORecordId(link.toString()));
+        return (byte) iType.getId();
+      }
+
+      // NOT SAVED DOCUMENT: WRITTEN AS EMBEDDED
+      writeString(iOutput, link.toString());
+      return (byte) (OType.EMBEDDED.getId() | CSV_VALUE);
+
+    case EMBEDDED:
+      if (iValue instanceof ODocument) {
+        final OMemoryStream embedded = new OMemoryStream();
+        toStream((ODocument) iValue, embedded, iObjHandler, iMarshalledRecords, false);
+        writeVarInt(iOutput, embedded.size());
+        iOutput.write(embedded.getInternalBuffer(), 0, embedded.size());
+        return (byte) iType.getId();
+      }
+      break;
+    }
+
+    // NOT SUPPORTED IN BINARY: WRITE IT AS CSV
+    final StringBuilder buffer = new StringBuilder();
+    csv.fieldToStream(iRecord, buffer, iObjHandler, iType, iLinkedClass, iLinkedType, iName, iValue, iMarshalledRecords, true);
+    writeString(iOutput, buffer.toString());
+    return (byte) (iType.getId() | CSV_VALUE);
+  }
+
+  protected void fromStream(final OInput iInput, final ODocument iRecord, final String[] iFields) {
+    iInput.position += 2;
+
+    final String className = iInput.readString();
+    iRecord.setClassNameIfExists(className.length() > 0 ? className : null);
+
+    if (iFields != null && iFields.length == 1 && iFields[0].equals("@class"))
+      // ONLY THE CLASS NAME HAS BEEN REQUESTED: RETURN NOW WITHOUT UNMARSHALL THE ENTIRE RECORD
+      return;
+
+    final int fields = (int) iInput.readVarInt();
+    final int headerSize = (int) iInput.readVarInt();
+    final OInput values = new OInput(iInput.buffer, iInput.position + headerSize);
+    final int valuesBegin = values.position;
+
+    // WITH A PARTIAL UNMARSHALLING STOP AS SOON AS THE REQUESTED FIELDS ARE FOUND
+    int fieldsToFind = -1;
+    if (iFields != null && iFields.length > 0) {
+      fieldsToFind = 0;
+      for (String f : iFields)
+        if (!f.startsWith("@"))
+          fieldsToFind++;
+    }
+
+    OSchema schema = null;
+    boolean schemaReloaded = false;
+
+    for (int i = 0; i < fields && fieldsToFind != 0; ++i) {
+      final long key = iInput.readVarInt();
+
+      final String fieldName;
+      if ((key & 1) == 1) {
+        // INTERNED NAME
+        if (schema == null)
+          schema = getSchema(iRecord);
+
+        final int fieldId = (int) (key >>> 1);
+        String name = schema.getFieldName(fieldId);
+        if (name == null && !schemaReloaded) {
+          // INTERNED BY ANOTHER CLIENT: RELOAD THE SCHEMA
+          schema.reload();
+          schemaReloaded = true;
+          name = schema.getFieldName(fieldId);
+        }
+        if (name == null)
+          throw new OSerializationException("Cannot unmarshall the record " + iRecord.getIdentity() + ": field id " + fieldId
+              + " is not interned in the schema");
+        fieldName = name;
+      } else {
+        final int length = (int) (key >>> 1);
+        fieldName = OBinaryProtocol.bytes2string(iInput.buffer, iInput.position, length);
+        iInput.position += length;
+      }
+
+      final byte type = iInput.buffer[iInput.position++];
+      final int offset = type != NULL_VALUE ? (int) iInput.readVarInt() : -1;
+
+      if (fieldsToFind > 0) {
+        // CHECK IF THE FIELD IS REQUESTED TO BEING UNMARSHALLED
+        boolean found = false;
+        for (String f : iFields)
+          if (f.equals(fieldName)) {
+            found = true;
+            break;
+          }
+
+        if (!found)
+          // SKIP IT
+          continue;
+
+        fieldsToFind--;
+      }
+
+      if (iRecord.containsField(fieldName))
+        // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
+        continue;
+
+      if (type == NULL_VALUE) {
+        iRecord.field(fieldName, (Object) null);
+        continue;
+      }
+
+      try {
+        values.position = valuesBegin + offset;
+        fieldFromStream(values, iRecord, fieldName, type);
+      } catch (OSerializationException e) {
+        throw e;
+      } catch (Exception e) {
+        OLogManager.instance().exception("Error on unmarshalling field '%s' in record %s", e, OSerializationException.class,
+            fieldName, iRecord.getIdentity());
+      }
+    }
+  }
+
+  protected void fieldFromStream(final OInput iInput, final ODocument iRecord, final String iFieldName, final byte iType) {
+    final OType type = TYPES_BY_ID[iType & ~CSV_VALUE];
+    final OProperty prop = iRecord.getSchemaClass() != null ? iRecord.getSchemaClass().getProperty(iFieldName) : null;
+    final boolean setFieldType = prop == null && iRecord.fieldType(iFieldName) != null;
+
+    final Object value;
+    if ((iType & CSV_VALUE) != 0) {
+      final String content = iInput.readString();
+      value = csv.fieldFromStream(iRecord, type, prop != null ? prop.getLinkedClass() : null, prop != null ? prop.getLinkedType()
+          : null, iFieldName, content);
+
+      if (prop == null && !setFieldType && (type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET)
+          && OMultiValue.getSize(value) == 0) {
+        // EMPTY COLLECTION: THE TYPE OF THE ITEMS IS UNKNOWN
+        iRecord.field(iFieldName, value);
+        iRecord.setFieldType(iFieldName, null);
+        return;
+      }
+    } else
+      value = valueFromStream(iInput, iRecord, type);
+
+    if (setFieldType || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDMAP
+        || type == OType.EMBEDDED)
+      // SAVE THE TYPE AS EMBEDDED
+      iRecord.field(iFieldName, value, type);
+    else
+      iRecord.field(iFieldName, value);
+  }
+
+  protected Object valueFromStream(final OInput iInput, final ODocument iRecord, final OType iType) {
+    switch (iType) {
+    case BOOLEAN:
+      return iInput.buffer[iInput.position++] != 0;
+    case BYTE:
+      return iInput.buffer[iInput.position++];
+    case SHORT:
+      return (short) iInput.readSignedVarInt();
+    case INTEGER:
+      return (int) iInput.readSignedVarInt();
+    case LONG:
+      return iInput.readSignedVarInt();
+    case FLOAT:
+      return Float.intBitsToFloat(iInput.readInt());
+    case DOUBLE:
+      return Double.longBitsToDouble(iInput.readLong());
+    case DECIMAL: {
+      final int scale = (int) iInput.readSignedVarInt();
+      return new BigDecimal(new BigInteger(iInput.readBytes()), scale);
+    }
+    case STRING:
+      return iInput.readString();
+    case BINARY:
+      return iInput.readBytes();
+    case DATE:
+    case DATETIME:
+      return new Date(iInput.readSignedVarInt());
+    case LINK:
+      return iInput.readRID();
+    case EMBEDDED: {
+      final int length = (int) iInput.readVarInt();
+      final ODocument embedded = new ODocument().fromStream(Arrays.copyOfRange(iInput.buffer, iInput.position, iInput.position
+          + length));
+      iInput.position += length;
+      return embedded.addOwner(iRecord);
+    }
+    default:
+      throw new OSerializationException("Type " + iType + " is not supported by the binary record format");
+    }
+  }
+
+  private static OSchema getSchema(final ODocument iRecord) {
+    final OClass cls = iRecord.getSchemaClass();
+    if (cls instanceof OClassImpl)
+      return ((OClassImpl) cls).getOwner();
+
+    // CLASS DROPPED: USE THE SCHEMA OF THE CURRENT DATABASE
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.get();
+    return database.getMetadata().getSchema();
+  }
+
+  private static void writeRID(final OMemoryStream iOutput, final ORID iRid) {
+    writeSignedVarInt(iOutput, iRid.getClusterId());
+    if (LONG_POSITIONS)
+      writeSignedVarInt(iOutput, iRid.getClusterPosition().longValue());
+    else {
+      final byte[] position = iRid.getClusterPosition().toStream();
+      iOutput.write(position, 0, position.length);
+    }
+  }
+
+  private static void writeString(final OMemoryStream iOutput, final String iValue) {
+    final int length = iValue.length();
+
+    int bytes = length;
+    for (int i = 0; i < length; ++i) {
+      final char c = iValue.charAt(i);
+      if (c >= 0x800)
+        bytes += 2;
+      else if (c >= 0x80)
+        bytes++;
+    }
+    writeVarInt(iOutput, bytes);
+
+    // SAME ENCODING OF OBinaryProtocol.string2bytes()
+    for (int i = 0; i < length; ++i) {
+      final char c = iValue.charAt(i);
+      if (c < 0x80)
+        iOutput.write(c);
+      else if (c < 0x800) {
+        iOutput.write(0xC0 | c >> 6);
+        iOutput.write(0x80 | c & 0x3F);
+      } else {
+        iOutput.write(0xE0 | c >> 12);
+        iOutput.write(0x80 | c >> 6 & 0x3F);
+        iOutput.write(0x80 | c & 0x3F);
+      }
+    }
+  }
+
+  private static void writeSignedVarInt(final OMemoryStream iOutput, final long iValue) {
+    // ZIG-ZAG ENCODING: SMALL NEGATIVE NUMBERS TAKE FEW BYTES TOO
+    writeVarInt(iOutput, (iValue << 1) ^ (iValue >> 63));
+  }
+
+  private static void writeVarInt(final OMemoryStream iOutput, long iValue) {
+    while ((iValue & ~0x7FL) != 0) {
+      iOutput.write((int) ((iValue & 0x7F) | 0x80));
+      iValue >>>= 7;
+    }
+    iOutput.write((int) iValue);
+  }
+
+  /**
+   * Position in the buffer of the record to read.
+   */
+  protected static class OInput {
+    protected final byte[] buffer;
+    protected int          position;
+
+    protected OInput(final byte[] iBuffer, final int iPosition) {
+      buffer = iBuffer;
+      position = iPosition;
+    }
+
+    protected long readVarInt() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    protected long readSignedVarInt() {
+      final long value = readVarInt();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    protected int readInt() {
+      final int value = OBinaryProtocol.bytes2int(buffer, position);
+      position += OBinaryProtocol.SIZE_INT;
+      return value;
+    }
+
+    protected long readLong() {
+      final long value = OBinaryProtocol.bytes2long(buffer, position);
+      position += OBinaryProtocol.SIZE_LONG;
+      return value;
+    }
+
+    protected String readString() {
+      final int length = (int) readVarInt();
+      final String value = OBinaryProtocol.bytes2string(buffer, position, length);
+      position += length;
+      return value;
+    }
+
+    protected byte[] readBytes() {
+      final int length = (int) readVarInt();
+      final byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return value;
+    }
+
+    protected ORecordId readRID() {
+      final int clusterId = (int) readSignedVarInt();
+      final OClusterPosition clusterPosition;
+      if (LONG_POSITIONS)
+        clusterPosition = OClusterPositionFactory.INSTANCE.valueOf(readSignedVarInt());
+      else {
+        clusterPosition = OClusterPositionFactory.INSTANCE.fromStream(buffer, position);
+        position += OClusterPositionFactory.INSTANCE.getSerializedSize();
+      }
+      return new ORecordId(clusterId, clusterPosition);
+    }
+  }
+}
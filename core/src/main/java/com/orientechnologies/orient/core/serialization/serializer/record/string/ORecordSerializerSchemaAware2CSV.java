@@ -19,7 +19,6 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -48,7 +47,8 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
   public static final String                           NAME                = "ORecordDocument2csv";
   public static final ORecordSerializerSchemaAware2CSV INSTANCE            = new ORecordSerializerSchemaAware2CSV();
 
-  private static final AtomicLong                      nextSerializationId = new AtomicLong(0);
+  static final AtomicLong                              nextSerializationId = new AtomicLong(0);
+  private static final char[]                          FIELD_SEPARATORS    = new char[] { OStringSerializerHelper.RECORD_SEPARATOR };
 
   @Override
   public ORecordSchemaAware<?> newObject(String iClassName) {
@@ -93,11 +93,7 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
       iOutput.append(OStringSerializerHelper.CLASS_SEPARATOR);
     }
 
-    OProperty prop;
-    OType type;
-    OClass linkedClass;
-    OType linkedType;
-    String fieldClassName;
+    final OFieldType fieldType = new OFieldType();
     int i = 0;
 
     final String[] fieldNames = iOnlyDelta && record.isTrackingChanges() ? record.getDirtyFields() : record.fieldNames();
@@ -111,185 +107,16 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
       if (i > 0)
         iOutput.append(OStringSerializerHelper.RECORD_SEPARATOR);
 
-      // SEARCH FOR A CONFIGURED PROPERTY
-      prop = record.getSchemaClass() != null ? record.getSchemaClass().getProperty(fieldName) : null;
-      fieldClassName = getClassName(fieldValue);
-
-      type = record.fieldType(fieldName);
-      linkedClass = null;
-      linkedType = null;
-
-      if (prop != null) {
-        // RECOGNIZED PROPERTY
-        type = prop.getType();
-        linkedClass = prop.getLinkedClass();
-        linkedType = prop.getLinkedType();
-
-      } else if (fieldValue != null) {
-        // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
-        if (type == null) {
-          if (fieldValue.getClass() == byte[].class)
-            type = OType.BINARY;
-          else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined() && fieldValue instanceof ORecord<?>) {
-            if (type == null)
-              // DETERMINE THE FIELD TYPE
-              if (fieldValue instanceof ODocument && ((ODocument) fieldValue).hasOwners())
-                type = OType.EMBEDDED;
-              else
-                type = OType.LINK;
-
-            linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
-          } else if (fieldValue instanceof ORID)
-            // DETERMINE THE FIELD TYPE
-            type = OType.LINK;
-
-          else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-              && ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject
-              && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner()).getEntityManager()
-                  .getEntityClass(fieldClassName) != null) {
-            // DETERMINE THE FIELD TYPE
-            type = OType.LINK;
-            linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
-          } else if (fieldValue instanceof Date)
-            type = OType.DATETIME;
-          else if (fieldValue instanceof String)
-            type = OType.STRING;
-          else if (fieldValue instanceof Integer || fieldValue instanceof BigInteger)
-            type = OType.INTEGER;
-          else if (fieldValue instanceof Long)
-            type = OType.LONG;
-          else if (fieldValue instanceof Float)
-            type = OType.FLOAT;
-          else if (fieldValue instanceof Short)
-            type = OType.SHORT;
-          else if (fieldValue instanceof Byte)
-            type = OType.BYTE;
-          else if (fieldValue instanceof Double)
-            type = OType.DOUBLE;
-          else if (fieldValue instanceof BigDecimal)
-            type = OType.DECIMAL;
-        }
-
-        if (fieldValue instanceof Collection<?> || fieldValue.getClass().isArray()) {
-          final int size = OMultiValue.getSize(fieldValue);
-
-          Boolean autoConvertLinks = null;
-          if (fieldValue instanceof ORecordLazyMultiValue) {
-            autoConvertLinks = ((ORecordLazyMultiValue) fieldValue).isAutoConvertToRecord();
-            if (autoConvertLinks)
-              // DISABLE AUTO CONVERT
-              ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(false);
-          }
-
-          if (autoDetectCollectionType)
-            if (size > 0) {
-              final Object firstValue = OMultiValue.getFirstValue(fieldValue);
-
-              if (firstValue != null) {
-                if (firstValue instanceof ORID) {
-                  linkedClass = null;
-                  linkedType = OType.LINK;
-                  if (fieldValue instanceof Set<?>)
-                    type = OType.LINKSET;
-                  else
-                    type = OType.LINKLIST;
-                } else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-                    && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
-                    && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
-                        .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
-                  linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
-                  if (type == null) {
-                    // LINK: GET THE CLASS
-                    linkedType = OType.LINK;
-
-                    if (fieldValue instanceof Set<?>)
-                      type = OType.LINKSET;
-                    else
-                      type = OType.LINKLIST;
-                  } else
-                    linkedType = OType.EMBEDDED;
-                } else {
-                  // EMBEDDED COLLECTION
-                  if (firstValue instanceof ODocument
-                      && ((((ODocument) firstValue).hasOwners()) || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDMAP))
-                    linkedType = OType.EMBEDDED;
-                  else if (firstValue instanceof Enum<?>)
-                    linkedType = OType.STRING;
-                  else {
-                    linkedType = OType.getTypeByClass(firstValue.getClass());
-
-                    if (linkedType != OType.LINK) {
-                      // EMBEDDED FOR SURE SINCE IT CONTAINS JAVA TYPES
-                      if (linkedType == null) {
-                        linkedType = OType.EMBEDDED;
-                        // linkedClass = new OClass(firstValue.getClass());
-                      }
-                    }
-                  }
-
-                  if (type == null)
-                    if (fieldValue instanceof Set<?>)
-                      type = OType.EMBEDDEDSET;
-                    else
-                      type = OType.EMBEDDEDLIST;
-                }
-              }
-            } else if (type == null)
-              type = OType.EMBEDDEDLIST;
+      getFieldType(record, fieldName, fieldValue, autoDetectCollectionType, fieldType);
 
-          if (fieldValue instanceof ORecordLazyMultiValue && autoConvertLinks) {
-            // REPLACE PREVIOUS SETTINGS
-            ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(true);
-          }
-
-        } else if (fieldValue instanceof Map<?, ?> && type == null) {
-          final int size = OMultiValue.getSize(fieldValue);
-
-          Boolean autoConvertLinks = null;
-          if (fieldValue instanceof ORecordLazyMap) {
-            autoConvertLinks = ((ORecordLazyMap) fieldValue).isAutoConvertToRecord();
-            if (autoConvertLinks)
-              // DISABLE AUTO CONVERT
-              ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(false);
-          }
-
-          if (size > 0) {
-            final Object firstValue = OMultiValue.getFirstValue(fieldValue);
-
-            if (firstValue != null) {
-              if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-                  && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
-                  && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
-                      .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
-                linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
-                // LINK: GET THE CLASS
-                linkedType = OType.LINK;
-                type = OType.LINKMAP;
-              } else {
-                type = OType.EMBEDDEDMAP;
-              }
-            }
-          } else
-            type = OType.EMBEDDEDMAP;
-
-          if (fieldValue instanceof ORecordLazyMap && autoConvertLinks) {
-            // REPLACE PREVIOUS SETTINGS
-            ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(true);
-          }
-        }
-      }
-
-      if (type == OType.TRANSIENT)
+      if (fieldType.type == OType.TRANSIENT)
         // TRANSIENT FIELD
         continue;
 
-      if (type == null)
-        type = OType.EMBEDDED;
-
       iOutput.append(fieldName);
       iOutput.append(FIELD_VALUE_SEPARATOR);
-      fieldToStream((ODocument) iRecord, iOutput, iObjHandler, type, linkedClass, linkedType, fieldName, fieldValue,
-          iMarshalledRecords, true);
+      fieldToStream((ODocument) iRecord, iOutput, iObjHandler, fieldType.type == null ? OType.EMBEDDED : fieldType.type,
+          fieldType.linkedClass, fieldType.linkedType, fieldName, fieldValue, iMarshalledRecords, true);
 
       i++;
     }
@@ -332,6 +159,188 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     return iOutput;
   }
 
+  /**
+   * Determines the type of the field to marshall by the schema property if any, otherwise by the type set in the document or by the
+   * value.
+   * 
+   * @param iResult
+   *          Receives the type of the field and the linked class and type if any
+   */
+  protected void getFieldType(final ODocument iRecord, final String iFieldName, final Object iFieldValue,
+      final boolean iAutoDetectCollectionType, final OFieldType iResult) {
+    // SEARCH FOR A CONFIGURED PROPERTY
+    final OProperty prop = iRecord.getSchemaClass() != null ? iRecord.getSchemaClass().getProperty(iFieldName) : null;
+    final String fieldClassName = getClassName(iFieldValue);
+
+    OType type = iRecord.fieldType(iFieldName);
+    OClass linkedClass = null;
+    OType linkedType = null;
+
+    if (prop != null) {
+      // RECOGNIZED PROPERTY
+      type = prop.getType();
+      linkedClass = prop.getLinkedClass();
+      linkedType = prop.getLinkedType();
+
+    } else if (iFieldValue != null) {
+      // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
+      if (type == null) {
+        if (iFieldValue.getClass() == byte[].class)
+          type = OType.BINARY;
+        else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined() && iFieldValue instanceof ORecord<?>) {
+          if (type == null)
+            // DETERMINE THE FIELD TYPE
+            if (iFieldValue instanceof ODocument && ((ODocument) iFieldValue).hasOwners())
+              type = OType.EMBEDDED;
+            else
+              type = OType.LINK;
+
+          linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
+        } else if (iFieldValue instanceof ORID)
+          // DETERMINE THE FIELD TYPE
+          type = OType.LINK;
+
+        else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+            && ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject
+            && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner()).getEntityManager()
+                .getEntityClass(fieldClassName) != null) {
+          // DETERMINE THE FIELD TYPE
+          type = OType.LINK;
+          linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
+        } else if (iFieldValue instanceof Date)
+          type = OType.DATETIME;
+        else if (iFieldValue instanceof String)
+          type = OType.STRING;
+        else if (iFieldValue instanceof Integer || iFieldValue instanceof BigInteger)
+          type = OType.INTEGER;
+        else if (iFieldValue instanceof Long)
+          type = OType.LONG;
+        else if (iFieldValue instanceof Float)
+          type = OType.FLOAT;
+        else if (iFieldValue instanceof Short)
+          type = OType.SHORT;
+        else if (iFieldValue instanceof Byte)
+          type = OType.BYTE;
+        else if (iFieldValue instanceof Double)
+          type = OType.DOUBLE;
+        else if (iFieldValue instanceof BigDecimal)
+          type = OType.DECIMAL;
+      }
+
+      if (iFieldValue instanceof Collection<?> || iFieldValue.getClass().isArray()) {
+        final int size = OMultiValue.getSize(iFieldValue);
+
+        Boolean autoConvertLinks = null;
+        if (iFieldValue instanceof ORecordLazyMultiValue) {
+          autoConvertLinks = ((ORecordLazyMultiValue) iFieldValue).isAutoConvertToRecord();
+          if (autoConvertLinks)
+            // DISABLE AUTO CONVERT
+            ((ORecordLazyMultiValue) iFieldValue).setAutoConvertToRecord(false);
+        }
+
+        if (iAutoDetectCollectionType)
+          if (size > 0) {
+            final Object firstValue = OMultiValue.getFirstValue(iFieldValue);
+
+            if (firstValue != null) {
+              if (firstValue instanceof ORID) {
+                linkedClass = null;
+                linkedType = OType.LINK;
+                if (iFieldValue instanceof Set<?>)
+                  type = OType.LINKSET;
+                else
+                  type = OType.LINKLIST;
+              } else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+                  && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
+                  && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
+                      .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
+                linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
+                if (type == null) {
+                  // LINK: GET THE CLASS
+                  linkedType = OType.LINK;
+
+                  if (iFieldValue instanceof Set<?>)
+                    type = OType.LINKSET;
+                  else
+                    type = OType.LINKLIST;
+                } else
+                  linkedType = OType.EMBEDDED;
+              } else {
+                // EMBEDDED COLLECTION
+                if (firstValue instanceof ODocument
+                    && ((((ODocument) firstValue).hasOwners()) || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDMAP))
+                  linkedType = OType.EMBEDDED;
+                else if (firstValue instanceof Enum<?>)
+                  linkedType = OType.STRING;
+                else {
+                  linkedType = OType.getTypeByClass(firstValue.getClass());
+
+                  if (linkedType != OType.LINK) {
+                    // EMBEDDED FOR SURE SINCE IT CONTAINS JAVA TYPES
+                    if (linkedType == null) {
+                      linkedType = OType.EMBEDDED;
+                      // linkedClass = new OClass(firstValue.getClass());
+                    }
+                  }
+                }
+
+                if (type == null)
+                  if (iFieldValue instanceof Set<?>)
+                    type = OType.EMBEDDEDSET;
+                  else
+                    type = OType.EMBEDDEDLIST;
+              }
+            }
+          } else if (type == null)
+            type = OType.EMBEDDEDLIST;
+
+        if (iFieldValue instanceof ORecordLazyMultiValue && autoConvertLinks) {
+          // REPLACE PREVIOUS SETTINGS
+          ((ORecordLazyMultiValue) iFieldValue).setAutoConvertToRecord(true);
+        }
+
+      } else if (iFieldValue instanceof Map<?, ?> && type == null) {
+        final int size = OMultiValue.getSize(iFieldValue);
+
+        Boolean autoConvertLinks = null;
+        if (iFieldValue instanceof ORecordLazyMap) {
+          autoConvertLinks = ((ORecordLazyMap) iFieldValue).isAutoConvertToRecord();
+          if (autoConvertLinks)
+            // DISABLE AUTO CONVERT
+            ((ORecordLazyMap) iFieldValue).setAutoConvertToRecord(false);
+        }
+
+        if (size > 0) {
+          final Object firstValue = OMultiValue.getFirstValue(iFieldValue);
+
+          if (firstValue != null) {
+            if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+                && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
+                && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
+                    .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
+              linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
+              // LINK: GET THE CLASS
+              linkedType = OType.LINK;
+              type = OType.LINKMAP;
+            } else {
+              type = OType.EMBEDDEDMAP;
+            }
+          }
+        } else
+          type = OType.EMBEDDEDMAP;
+
+        if (iFieldValue instanceof ORecordLazyMap && autoConvertLinks) {
+          // REPLACE PREVIOUS SETTINGS
+          ((ORecordLazyMap) iFieldValue).setAutoConvertToRecord(true);
+        }
+      }
+    }
+
+    iResult.type = type;
+    iResult.linkedClass = linkedClass;
+    iResult.linkedType = linkedType;
+  }
+
   private String getClassName(final Object iValue) {
     if (iValue instanceof ORecordSchemaAware<?>)
       return ((ORecordSchemaAware<?>) iValue).getClassName();
@@ -380,7 +389,17 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
       // ONLY THE CLASS NAME HAS BEEN REQUESTED: RETURN NOW WITHOUT UNMARSHALL THE ENTIRE RECORD
       return iRecord;
 
-    final List<String> fields = OStringSerializerHelper.smartSplit(iContent, OStringSerializerHelper.RECORD_SEPARATOR);
+    // WITH A PARTIAL UNMARSHALLING THE FIELDS ARE SPLIT ONE BY ONE TO STOP AS SOON AS THE REQUESTED ONES ARE FOUND
+    int fieldsToFind = -1;
+    if (iFields != null && iFields.length > 0) {
+      fieldsToFind = 0;
+      for (String f : iFields)
+        if (!f.startsWith("@"))
+          fieldsToFind++;
+    }
+
+    final StringBuilder buffer = new StringBuilder();
+    int beginIndex = 0;
 
     String field;
     String fieldName = null;
@@ -391,8 +410,10 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     OProperty prop;
 
     // UNMARSHALL ALL THE FIELDS
-    for (int i = 0; i < fields.size(); ++i) {
-      field = fields.get(i).trim();
+    while (beginIndex > -1 && fieldsToFind != 0) {
+      beginIndex = OStringSerializerHelper.parse(iContent, buffer, beginIndex, -1, FIELD_SEPARATORS, false, true);
+      field = buffer.toString().trim();
+      buffer.setLength(0);
       boolean uncertainType = false;
 
       try {
@@ -401,11 +422,7 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
           // GET THE FIELD NAME
           fieldName = field.substring(0, pos);
 
-          if (record.containsField(fieldName))
-            // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
-            continue;
-
-          if (iFields != null && iFields.length > 0) {
+          if (fieldsToFind > 0) {
             // CHECK IF THE FIELS IS REQUESTED TO BEING UNMARSHALLED
             boolean found = false;
             for (String f : iFields)
@@ -417,8 +434,14 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
             if (!found)
               // SKIP IT
               continue;
+
+            fieldsToFind--;
           }
 
+          if (record.containsField(fieldName))
+            // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
+            continue;
+
           // GET THE FIELD VALUE
           fieldValue = field.length() > pos + 1 ? field.substring(pos + 1) : null;
 
@@ -511,6 +534,15 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     return iRecord;
   }
 
+  @Override
+  public ORecordInternal<?> fromStream(final byte[] iSource, final ORecordInternal<?> iRecord, final String[] iFields) {
+    if (ORecordSerializerSchemaAware2Binary.isBinary(iSource))
+      // WRITTEN BY A DATABASE CONFIGURED WITH THE BINARY FORMAT
+      return ORecordSerializerSchemaAware2Binary.INSTANCE.fromStream(iSource, iRecord, iFields);
+
+    return super.fromStream(iSource, iRecord, iFields);
+  }
+
   @Override
   public byte[] toStream(ORecordInternal<?> iRecord, boolean iOnlyDelta) {
     byte[] result = super.toStream(iRecord, iOnlyDelta);
@@ -525,4 +557,13 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
 
     return result;
   }
+
+  /**
+   * Type of a field to marshall as determined by {@link ORecordSerializerSchemaAware2CSV#getFieldType}.
+   */
+  protected static class OFieldType {
+    public OType  type;
+    public OClass linkedClass;
+    public OType  linkedType;
+  }
 }
@@ -109,10 +109,26 @@ public class OCommandExecutorSQLCreateEdge extends OCommandExecutorSQLSetAware {
     final ORecordId[] fromIds = parseTarget(database, from);
     final ORecordId[] toIds = parseTarget(database, to);
 
+    // EDGES WITHOUT PROPERTIES OF THE BASE CLASS DON'T NEED A DOCUMENT
+    final boolean lightweight = fields == null && clusterName == null
+        && clazz.getName().equals(OGraphDatabase.EDGE_CLASS_NAME) && ((OGraphDatabase) database).isUseLightweightEdges();
+
     // CREATE EDGES
     List<ODocument> edges = new ArrayList<ODocument>();
     for (ORecordId from : fromIds) {
       for (ORecordId to : toIds) {
+        if (lightweight) {
+          final ODocument outVertex = database.load(from);
+          final ODocument inVertex = database.load(to);
+          ((OGraphDatabase) database).createLightweightEdge(outVertex, inVertex);
+          outVertex.save();
+          inVertex.save();
+
+          // THE LIGHTWEIGHT EDGE IS THE LINK TO THE VERTEX
+          edges.add(inVertex);
+          continue;
+        }
+
         final ODocument edge = ((OGraphDatabase) database).createEdge(from, to, clazz.getName());
         OSQLHelper.bindParameters(edge, fields, new OCommandParameters(iArgs));
 
@@ -130,6 +130,7 @@ public class OCommandExecutorSQLDeleteEdge extends OCommandExecutorSQLSetAware i
       if (((OGraphDatabase) database).removeEdge(rid))
         removed = 1;
     } else {
+      final OGraphDatabase graph = (OGraphDatabase) database;
       // MULTIPLE EDGES
       final Set<OIdentifiable> edges;
 
@@ -151,15 +152,19 @@ public class OCommandExecutorSQLDeleteEdge extends OCommandExecutorSQLSetAware i
           // ADDITIONAL FILTERING
           for (Iterator<OIdentifiable> it = edges.iterator(); it.hasNext();) {
             final OIdentifiable edge = it.next();
-            if (!(Boolean) compiledFilter.evaluate((ODocument) edge.getRecord(), null, context))
+            if (graph.isLightweightEdge(edge) || !(Boolean) compiledFilter.evaluate((ODocument) edge.getRecord(), null, context))
+              // LIGHTWEIGHT EDGES HAVE NO FIELDS TO MATCH
               it.remove();
           }
         }
 
         // DELETE THE FOUND EDGES
-        removed = edges.size();
         for (OIdentifiable edge : edges)
-          ((OGraphDatabase) database).removeEdge(edge);
+          if (graph.isLightweightEdge(edge))
+            // THE EDGE IS THE VERTEX AT THE OTHER END
+            removed += removeLightweightEdges(graph, edge);
+          else if (graph.removeEdge(edge))
+            removed++;
       } else if (query != null)
         // TARGET IS A CLASS + OPTIONAL CONDITION
         query.execute(iArgs);
@@ -170,6 +175,21 @@ public class OCommandExecutorSQLDeleteEdge extends OCommandExecutorSQLSetAware i
     return removed;
   }
 
+  private int removeLightweightEdges(final OGraphDatabase iGraph, final OIdentifiable iOtherVertex) {
+    final ODocument otherVertex = iOtherVertex.getRecord();
+
+    int count = 0;
+    if (from != null && iGraph.removeLightweightEdge((ODocument) from.getRecord(), otherVertex))
+      count++;
+    if (from != null && to != null) {
+      // THE EDGES BETWEEN THE VERTEXES ARE REMOVED IN BOTH DIRECTIONS
+      if (iGraph.removeLightweightEdge(otherVertex, (ODocument) from.getRecord()))
+        count++;
+    } else if (to != null && iGraph.removeLightweightEdge(otherVertex, (ODocument) to.getRecord()))
+      count++;
+    return count;
+  }
+
   /**
    * Delete the current edge.
    */
@@ -398,11 +398,22 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
       if (tempResult instanceof List<?>) {
         final List<OIdentifiable> t = (List<OIdentifiable>) tempResult;
         final int start = Math.min(skip, t.size());
-        final int tot = Math.min(limit + start, t.size());
+        final int tot = limit > -1 ? Math.min(limit + start, t.size()) : t.size();
         for (int i = start; i < tot; ++i)
           newList.add(t.get(i));
 
         t.clear();
+      } else {
+        // RESULT BROWSABLE ONLY ONCE, LIKE THE MERGE OF AN EXTERNAL SORT
+        int toSkip = skip;
+        for (OIdentifiable id : tempResult) {
+          if (toSkip > 0)
+            toSkip--;
+          else if (limit == -1 || newList.size() < limit)
+            newList.add(id);
+          else
+            break;
+        }
       }
 
       tempResult = newList;
@@ -17,6 +17,7 @@ package com.orientechnologies.orient.core.sql;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -31,19 +32,25 @@ import java.util.Set;
 
 import com.orientechnologies.common.collection.OCompositeKey;
 import com.orientechnologies.common.collection.OMultiValue;
+import com.orientechnologies.common.concur.resource.OCloseable;
 import com.orientechnologies.common.concur.resource.OSharedResource;
 import com.orientechnologies.common.util.OPair;
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.command.OCommandRequest;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.OQueryParsingException;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OFlattenIterator;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexDefinitionMultiValue;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OPropertyIndexDefinition;
+import com.orientechnologies.orient.core.iterator.ORecordIteratorClusters;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.security.ODatabaseSecurityResources;
@@ -72,6 +79,7 @@ import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinor;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinorEquals;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorOr;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
@@ -101,6 +109,12 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   private int                         fetchLimit           = -1;
   private OIdentifiable               lastRecord;
   private Iterator<OIdentifiable>     subIterator;
+  private boolean                     parallelScanAllowed  = true;
+  private OSQLOrderByBuffer           orderByBuffer;
+  private final List<OCloseable>      temporaryResults = new ArrayList<OCloseable>();
+  private OSQLGroupBySpill            groupBySpill;
+  private int                         groupBySpillSize;
+  private List<OIdentifiable>         sortedGroups;
 
   /**
    * Compile the filter conditions only the first time.
@@ -210,6 +224,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       return this;
     }
 
+    // THE WORKERS OF THE PARALLEL SCAN PARSE THE FILTER AGAIN: THE NODE CONDITION WOULD BE LOST
+    parallelScanAllowed = false;
+
     final OSQLFilterCondition nodeCondition;
     if (fromId < toId) {
       nodeCondition = getConditionForRidPosRange(fromId, toId);
@@ -308,17 +325,24 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       for (Entry<Object, Object> arg : iArgs.entrySet())
         context.setVariable(arg.getKey().toString(), arg.getValue());
 
-    if (!optimizeExecution()) {
-      fetchLimit = getQueryFetchLimit();
+    try {
+      if (!optimizeExecution()) {
+        fetchLimit = getQueryFetchLimit();
+        prepareGroupBy();
+        prepareOrderBy();
 
-      executeSearch(iArgs);
-      applyFlatten();
-      handleNoTarget();
-      handleGroupBy();
-      applyOrderBy();
-      applyLimitAndSkip();
+        executeSearch(iArgs);
+        applyFlatten();
+        handleNoTarget();
+        handleGroupBy();
+        applyOrderBy();
+        applyLimitAndSkip();
+      }
+      return getResult();
+    } finally {
+      // THE RESULT MAY NOT HAVE BEEN BROWSED TILL THE END
+      closeTemporaryResults();
     }
-    return getResult();
   }
 
   protected void executeSearch(final Map<Object, Object> iArgs) {
@@ -333,10 +357,20 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       return;
     }
 
-    // BROWSE ALL THE RECORDS
-    while (target.hasNext())
-      if (!executeSearchRecord(target.next()))
-        break;
+    if (target instanceof ORecordIteratorClusters<?> && canScanInParallel())
+      target = new OSQLParallelClusterScan(getDatabase(), ((ORecordIteratorClusters<?>) target).getClusterIds(), compiledFilter,
+          parameters, parsedTarget.getTargetClasses(), context, request.isUseCache());
+
+    try {
+      // BROWSE ALL THE RECORDS
+      while (target.hasNext())
+        if (!executeSearchRecord(target.next()))
+          break;
+    } finally {
+      if (target instanceof OSQLParallelClusterScan)
+        // STOP THE WORKERS IF THE LIMIT HAS BEEN REACHED
+        ((OSQLParallelClusterScan) target).close();
+    }
 
     if (request.getResultListener() != null)
       request.getResultListener().end();
@@ -357,6 +391,12 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   protected boolean executeSearchRecord(final OIdentifiable id) {
     final ORecordInternal<?> record = id.getRecord();
 
+    if (target instanceof OSQLParallelClusterScan) {
+      // ALREADY READ AND FILTERED BY THE WORKERS
+      context.setVariable("current", record);
+      return handleResult(record);
+    }
+
     context.updateMetric("recordReads", +1);
 
     if (record == null || record.getRecordType() != ODocument.RECORD_TYPE)
@@ -409,12 +449,12 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
         Object fieldValue = null;
         if (groupByFields != null && !groupByFields.isEmpty()) {
           if (groupByFields.size() > 1) {
-            // MULTI-FIELD FROUP BY
+            // MULTI-FIELD FROUP BY: THE LIST IS HASHED BY CONTENT
             final Object[] fields = new Object[groupByFields.size()];
             for (int i = 0; i < groupByFields.size(); ++i)
               fields[i] = doc.field(groupByFields.get(i));
 
-            fieldValue = fields;
+            fieldValue = Arrays.asList(fields);
           } else
             fieldValue = doc.field(groupByFields.get(0));
         }
@@ -432,6 +472,11 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     } else {
 
       // COLLECT ALL THE RECORDS AND ORDER THEM AT THE END
+      if (orderByBuffer != null) {
+        orderByBuffer.add(iRecord);
+        return;
+      }
+
       if (tempResult == null)
         tempResult = new ArrayList<OIdentifiable>();
       ((Collection<OIdentifiable>) tempResult).add(iRecord);
@@ -474,12 +519,30 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     }
 
     if (group == null) {
+      if (sortedGroups != null)
+        // RECORDS BROWSED BY THE GROUP BY FIELD: THE PREVIOUS GROUPS ARE COMPLETE
+        completeSortedGroups();
+      else if (groupBySpill != null && groupedResult.size() >= groupBySpillSize) {
+        groupBySpill.spill(groupedResult);
+        groupedResult.clear();
+      }
+
       group = new ORuntimeResult(createProjectionFromDefinition(), resultCount, context);
       groupedResult.put(fieldValue, group);
     }
     return group;
   }
 
+  private void completeSortedGroups() {
+    for (Entry<Object, ORuntimeResult> g : groupedResult.entrySet())
+      if (g.getKey() != null) {
+        final ODocument doc = g.getValue().getResult();
+        if (doc != null && !doc.isEmpty())
+          sortedGroups.add(doc);
+      }
+    groupedResult.clear();
+  }
+
   private int getQueryFetchLimit() {
     if (orderedFields != null) {
       return -1;
@@ -903,9 +966,16 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       return new LinkedHashMap<String, Object>();
 
     final Map<String, Object> projections = new LinkedHashMap<String, Object>(projectionDefinition.size());
+    final Set<String> projectedFields = new HashSet<String>();
     for (Entry<String, String> p : projectionDefinition.entrySet()) {
       final Object projectionValue = OSQLHelper.parseValue(this, p.getValue(), context);
       projections.put(p.getKey(), projectionValue);
+
+      if (projectionValue instanceof OSQLFilterItemField && ((OSQLFilterItemField) projectionValue).getRoot().charAt(0) != '@') {
+        // UNMARSHALL ALL THE PROJECTED FIELDS AT THE FIRST ACCESS
+        ((OSQLFilterItemField) projectionValue).setPreLoadedFields(projectedFields);
+        projectedFields.add(((OSQLFilterItemField) projectionValue).getRoot());
+      }
     }
     return projections;
   }
@@ -935,11 +1005,97 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return endPos;
   }
 
+  /**
+   * Chooses how to aggregate the groups of a GROUP BY. If the records can be browsed by an index on the only GROUP BY field, every
+   * group is complete when the next one begins and only one group is kept in memory. The index is browsed whole, so it's used
+   * only without WHERE: a selective condition is better served by its own index. Otherwise, if all the aggregating functions can
+   * be merged, the groups are written in temporary files when they are too many.
+   */
+  private void prepareGroupBy() {
+    if (groupedResult == null || groupByFields == null || groupByFields.isEmpty())
+      return;
+
+    if (groupByFields.size() == 1 && target == null && (orderedFields == null || orderedFields.isEmpty())
+        && (compiledFilter == null || compiledFilter.getRootCondition() == null) && parsedTarget.getTargetClasses() != null) {
+      final OClass cls = parsedTarget.getTargetClasses().keySet().iterator().next();
+      if (cls.getProperty(groupByFields.get(0)) != null)
+        // THE INDEXES OF THE SUPER CLASSES CONTAIN THE RECORDS OF OTHER CLASSES TOO
+        for (OIndex<?> idx : cls.getClassInvolvedIndexes(groupByFields.get(0))) {
+          final OIndexDefinition definition = idx.getDefinition();
+          // THE RECORDS WITHOUT VALUE ARE NOT INDEXED: THEIR GROUP IS RETURNED ONLY WHEN IT'S THE ONLY ONE, SO WHEN THE INDEX IS EMPTY
+          if (idx.getKeyTypes().length == 1 && idx.supportsOrderedIterations() && definition instanceof OPropertyIndexDefinition
+              && !(definition instanceof OIndexDefinitionMultiValue) && idx.getKeySize() > 0) {
+            target = (Iterator<? extends OIdentifiable>) idx.valuesIterator();
+            sortedGroups = new ArrayList<OIdentifiable>();
+            context.setVariable("groupBy", "index");
+            return;
+          }
+        }
+    }
+
+    groupBySpillSize = OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.getValueAsInteger();
+    if (groupBySpillSize > 0 && OSQLGroupBySpill.canSpill(projections)) {
+      groupBySpill = new OSQLGroupBySpill() {
+        @Override
+        protected ORuntimeResult createGroup(final int iProgressive) {
+          return new ORuntimeResult(createProjectionFromDefinition(), iProgressive, context);
+        }
+      };
+      temporaryResults.add(groupBySpill);
+    }
+  }
+
+  /**
+   * Chooses how to sort the result when the ORDER BY can't be served by an index. With a limit only the first SKIP + LIMIT records
+   * are kept, otherwise big results are sorted in temporary files. So are the results whose SKIP + LIMIT doesn't fit in an int.
+   */
+  private void prepareOrderBy() {
+    if (orderedFields == null || orderedFields.isEmpty() || flattenTarget != null)
+      return;
+
+    int queryLimit = limit;
+    if (request.getLimit() > -1 && (queryLimit == -1 || request.getLimit() < queryLimit))
+      queryLimit = request.getLimit();
+
+    final int bufferSize = OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.getValueAsInteger();
+
+    final long topK = (long) skip + queryLimit;
+
+    if (queryLimit > -1 && topK <= Integer.MAX_VALUE)
+      orderByBuffer = new OSQLOrderByTopK(orderedFields, (int) topK);
+    else if (bufferSize > 0) {
+      orderByBuffer = new OSQLOrderByExternalSort(orderedFields, bufferSize);
+      temporaryResults.add((OCloseable) orderByBuffer);
+    }
+  }
+
+  /**
+   * Deletes the temporary files of the ORDER BY and GROUP BY not deleted yet.
+   */
+  private void closeTemporaryResults() {
+    for (OCloseable r : temporaryResults)
+      r.close();
+    temporaryResults.clear();
+  }
+
   private void applyOrderBy() {
     if (orderedFields == null)
       return;
 
-    ODocumentHelper.sort((List<? extends OIdentifiable>) tempResult, orderedFields);
+    if (orderByBuffer != null && tempResult == null) {
+      // RECORDS ALREADY COLLECTED IN ORDER
+      tempResult = orderByBuffer.getResult();
+      context.setVariable("orderBy", orderByBuffer.getName());
+
+      if (orderByBuffer instanceof OSQLOrderByExternalSort) {
+        context.updateMetric("sortRuns", ((OSQLOrderByExternalSort) orderByBuffer).getRuns());
+        context.updateMetric("sortSpilledRecords", ((OSQLOrderByExternalSort) orderByBuffer).getSpilledRecords());
+      }
+      orderByBuffer = null;
+    } else {
+      ODocumentHelper.sort((List<? extends OIdentifiable>) tempResult, orderedFields);
+      context.setVariable("orderBy", "memory");
+    }
     orderedFields.clear();
   }
 
@@ -1194,6 +1350,32 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return doc;
   }
 
+  /**
+   * Returns true if the clusters of the target can be scanned by more threads: the scan must be big enough and its records must
+   * be visible to other database instances. LET clauses are evaluated in the context of the caller, so they need a sequential
+   * scan.
+   */
+  private boolean canScanInParallel() {
+    if (OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger() < 1 || !parallelScanAllowed
+        || (let != null && !let.isEmpty()))
+      return false;
+
+    final ODatabaseRecord database = getDatabase();
+    if (!(database.getStorage() instanceof OStorageEmbedded) || database.getTransaction().isActive())
+      // REMOTE STORAGES AND TRANSACTIONS ARE NOT VISIBLE TO OTHER DATABASE INSTANCES
+      return false;
+
+    final ORID[] range = getRange();
+    if (range[0] != null || range[1] != null)
+      return false;
+
+    long records = 0;
+    for (int clusterId : ((ORecordIteratorClusters<?>) target).getClusterIds())
+      records += database.countClusterElements(clusterId);
+
+    return records >= OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.getValueAsLong();
+  }
+
   private void handleNoTarget() {
     if (parsedTarget == null)
       // ONLY LET, APPLY TO THEM
@@ -1202,15 +1384,40 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
 
   private void handleGroupBy() {
     if (groupedResult != null && tempResult == null) {
-      tempResult = new ArrayList<OIdentifiable>();
+      final Iterable<OIdentifiable> groups;
+
+      if (groupBySpill != null && groupBySpill.isSpilled()) {
+        groupBySpill.spill(groupedResult);
+        groupedResult.clear();
+        groups = groupBySpill;
+
+        context.setVariable("groupBy", "spill");
+        context.updateMetric("groupBySpills", groupBySpill.getSpills());
+        context.updateMetric("groupBySpilledGroups", groupBySpill.getSpilledGroups());
+      } else {
+        final List<OIdentifiable> list = sortedGroups != null ? sortedGroups : new ArrayList<OIdentifiable>();
 
-      for (Entry<Object, ORuntimeResult> g : groupedResult.entrySet()) {
-        if (g.getKey() != null || groupedResult.size() == 1) {
-          final ODocument doc = g.getValue().getResult();
-          if (doc != null && !doc.isEmpty())
-            ((List<OIdentifiable>) tempResult).add(doc);
+        for (Entry<Object, ORuntimeResult> g : groupedResult.entrySet()) {
+          if (g.getKey() != null || groupedResult.size() == 1 && list.isEmpty()) {
+            final ODocument doc = g.getValue().getResult();
+            if (doc != null && !doc.isEmpty())
+              list.add(doc);
+          }
         }
+        groups = list;
+
+        if (sortedGroups == null)
+          context.setVariable("groupBy", "hash");
       }
+      groupBySpill = null;
+      sortedGroups = null;
+
+      if (orderByBuffer != null)
+        // SORT THE GROUPS WITHOUT KEEPING THEM ALL IN MEMORY
+        for (OIdentifiable g : groups)
+          orderByBuffer.add(g);
+      else
+        tempResult = groups;
     }
   }
 
@@ -1283,6 +1490,7 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
                 else
                   target = (Iterator<? extends OIdentifiable>) idx.valuesInverseIterator();
                 orderedFields = null;
+                context.setVariable("orderBy", "index");
 
                 fetchLimit = getQueryFetchLimit();
                 break;
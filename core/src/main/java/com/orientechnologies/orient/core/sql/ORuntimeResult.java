@@ -63,6 +63,17 @@ public class ORuntimeResult {
     return getResult(value, projections);
   }
 
+  public Map<String, Object> getProjections() {
+    return projections;
+  }
+
+  /**
+   * Returns the document with the values computed so far, before the results of the aggregating functions are set.
+   */
+  public ODocument getValue() {
+    return value;
+  }
+
   public static ODocument createProjectionDocument(final int iProgressive) {
     final ODocument doc = new ODocument().setOrdered(true);
     // ASSIGN A TEMPORARY RID TO ALLOW PAGINATION IF ANY
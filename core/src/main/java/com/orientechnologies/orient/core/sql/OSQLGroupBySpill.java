@@ -0,0 +1,279 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.orientechnologies.common.concur.resource.OCloseable;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionMergeable;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
+
+/**
+ * Writes the groups of a GROUP BY in temporary files when they are too many to be kept in memory. Every group is written with the
+ * values of its projections and the partial results of its aggregating functions in one of the partitions, chosen by the hash of
+ * its key. Once all the records have been grouped, the partitions are read back one at a time and the partial results of the same
+ * group are merged, so only the groups of one partition are in memory at the same time.<br/>
+ * The groups are returned partition by partition, not in the order they have been found. The partitions left by a merge not
+ * browsed till the end are deleted by {@link #close()}.
+ *
+ * @see OSQLFunctionMergeable
+ * @see com.orientechnologies.orient.core.config.OGlobalConfiguration#QUERY_GROUP_BY_BUFFER_SIZE
+ */
+public abstract class OSQLGroupBySpill implements Iterable<OIdentifiable>, OCloseable {
+  private static final int         PARTITIONS = 16;
+
+  private final File[]             files      = new File[PARTITIONS];
+  private final DataOutputStream[] outputs    = new DataOutputStream[PARTITIONS];
+  private int                      spills;
+  private long                     spilledGroups;
+  private int                      mergedGroups;
+
+  /**
+   * Returns true if all the aggregating functions of the projections can be merged.
+   */
+  public static boolean canSpill(final Map<String, Object> iProjections) {
+    if (iProjections == null)
+      return false;
+
+    for (Object p : iProjections.values())
+      if (p instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) p).aggregateResults()
+          && !(((OSQLFunctionRuntime) p).getFunction() instanceof OSQLFunctionMergeable))
+        return false;
+    return true;
+  }
+
+  /**
+   * Writes the groups in the partitions. The caller removes them from memory.
+   */
+  public void spill(final Map<Object, ORuntimeResult> iGroups) {
+    try {
+      for (Entry<Object, ORuntimeResult> group : iGroups.entrySet()) {
+        final int partition = (hash(group.getKey()) & Integer.MAX_VALUE) % PARTITIONS;
+
+        if (outputs[partition] == null) {
+          files[partition] = File.createTempFile("orientdb-group-", ".tmp");
+          outputs[partition] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[partition])));
+        }
+
+        final byte[] content = toDocument(group.getKey(), group.getValue()).toStream();
+        outputs[partition].writeInt(content.length);
+        outputs[partition].write(content);
+      }
+    } catch (IOException e) {
+      throw new OCommandExecutionException("Error on writing the groups in a temporary file", e);
+    }
+
+    spills++;
+    spilledGroups += iGroups.size();
+  }
+
+  public boolean isSpilled() {
+    return spills > 0;
+  }
+
+  public int getSpills() {
+    return spills;
+  }
+
+  public long getSpilledGroups() {
+    return spilledGroups;
+  }
+
+  /**
+   * Deletes the partitions not read yet.
+   */
+  public void close() {
+    for (int i = 0; i < PARTITIONS; ++i) {
+      try {
+        if (outputs[i] != null)
+          outputs[i].close();
+      } catch (IOException e) {
+        // IGNORE IT: THE FILE IS DELETED ANYWAY
+      }
+      outputs[i] = null;
+
+      if (files[i] != null) {
+        files[i].delete();
+        files[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Merges the groups partition by partition. Can be browsed only once: every partition is deleted as soon as it has been read.
+   */
+  public Iterator<OIdentifiable> iterator() {
+    for (DataOutputStream out : outputs)
+      try {
+        if (out != null)
+          out.close();
+      } catch (IOException e) {
+        throw new OCommandExecutionException("Error on writing the groups in a temporary file", e);
+      }
+
+    return new Iterator<OIdentifiable>() {
+      private int                     partition = 0;
+      private Iterator<OIdentifiable> current   = Collections.<OIdentifiable> emptyList().iterator();
+
+      public boolean hasNext() {
+        while (!current.hasNext()) {
+          if (partition >= PARTITIONS)
+            return false;
+          current = mergePartition(partition++).iterator();
+        }
+        return true;
+      }
+
+      public OIdentifiable next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        return current.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove()");
+      }
+    };
+  }
+
+  /**
+   * Creates a new group with its own instances of the projections.
+   * 
+   * @param iProgressive
+   *          Progressive number of the group, used as temporary identity of its result
+   */
+  protected abstract ORuntimeResult createGroup(int iProgressive);
+
+  private List<OIdentifiable> mergePartition(final int iPartition) {
+    final List<OIdentifiable> result = new ArrayList<OIdentifiable>();
+    if (files[iPartition] == null)
+      return result;
+
+    final Map<Object, ORuntimeResult> groups = new LinkedHashMap<Object, ORuntimeResult>();
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[iPartition])));
+      try {
+        while (true) {
+          final int length;
+          try {
+            length = in.readInt();
+          } catch (EOFException e) {
+            break;
+          }
+
+          final byte[] content = new byte[length];
+          in.readFully(content);
+          merge(groups, (ODocument) new ODocument().fromStream(content));
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new OCommandExecutionException("Error on reading the groups from the temporary file " + files[iPartition], e);
+    } finally {
+      files[iPartition].delete();
+      files[iPartition] = null;
+    }
+
+    for (Entry<Object, ORuntimeResult> g : groups.entrySet())
+      // THE GROUP OF THE RECORDS WITHOUT VALUE IS RETURNED ONLY WHEN IT'S THE ONLY ONE, NEVER THE CASE HERE
+      if (g.getKey() != null) {
+        final ODocument doc = g.getValue().getResult();
+        if (doc != null && !doc.isEmpty())
+          result.add(doc);
+      }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void merge(final Map<Object, ORuntimeResult> iGroups, final ODocument iSpilled) {
+    final Object key = iSpilled.field("key");
+
+    ORuntimeResult group = iGroups.get(key);
+    if (group == null) {
+      group = createGroup(mergedGroups++);
+      iGroups.put(key, group);
+    }
+
+    // THE VALUES OF THE LAST RECORDS OVERWRITE THE PREVIOUS ONES, AS WITHOUT SPILLING
+    final ODocument values = iSpilled.field("values");
+    if (values != null)
+      for (String f : values.fieldNames())
+        group.getValue().field(f, values.field(f));
+
+    final Map<String, Object> partials = iSpilled.field("partials");
+    if (partials != null)
+      for (Entry<String, Object> p : partials.entrySet())
+        ((OSQLFunctionMergeable) ((OSQLFunctionRuntime) group.getProjections().get(p.getKey())).getFunction())
+            .mergePartialResult(p.getValue());
+  }
+
+  private static int hash(final Object iKey) {
+    if (iKey == null)
+      return 0;
+
+    if (!iKey.getClass().isArray())
+      return iKey.hashCode();
+
+    // ARRAYS ARE GROUPED BY CONTENT
+    int hash = 1;
+    for (int i = 0; i < Array.getLength(iKey); ++i) {
+      final Object item = Array.get(iKey, i);
+      hash = 31 * hash + (item != null ? item.hashCode() : 0);
+    }
+    return hash;
+  }
+
+  private static ODocument toDocument(final Object iKey, final ORuntimeResult iGroup) {
+    final ODocument values = iGroup.getValue().copy();
+    final Map<String, Object> partials = new HashMap<String, Object>();
+
+    for (Entry<String, Object> p : iGroup.getProjections().entrySet())
+      if (p.getValue() instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) p.getValue()).aggregateResults()) {
+        partials.put(p.getKey(), ((OSQLFunctionMergeable) ((OSQLFunctionRuntime) p.getValue()).getFunction()).getPartialResult());
+        // THE RESULT IS SET AGAIN AFTER THE MERGE
+        values.removeField(p.getKey());
+      }
+
+    final ODocument doc = new ODocument();
+    doc.field("key", iKey);
+    doc.field("values", values, OType.EMBEDDED);
+    doc.field("partials", partials, OType.EMBEDDEDMAP);
+    return doc;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocumentComparator;
+
+/**
+ * Collects the records of a query with ORDER BY and returns them sorted. Used instead of sorting the whole result in memory when
+ * the query has a limit or its result can be too big to be kept in memory.
+ *
+ * @see OSQLOrderByTopK
+ * @see OSQLOrderByExternalSort
+ */
+public abstract class OSQLOrderByBuffer {
+  protected final ODocumentComparator comparator;
+
+  protected OSQLOrderByBuffer(final List<OPair<String, String>> iOrderCriteria) {
+    // COPY THE CRITERIA: THE RESULT CAN BE SORTED AFTER THE COMMAND HAS CLEARED THEM
+    comparator = new ODocumentComparator(new ArrayList<OPair<String, String>>(iOrderCriteria));
+  }
+
+  /**
+   * Collects a record of the result.
+   */
+  public abstract void add(OIdentifiable iRecord);
+
+  /**
+   * Returns the collected records sorted. Records with the same values of the ORDER BY fields are returned in the order they have
+   * been collected, as the sort in memory does.
+   */
+  public abstract Iterable<OIdentifiable> getResult();
+
+  /**
+   * Returns the name of the strategy, reported by EXPLAIN.
+   */
+  public abstract String getName();
+}
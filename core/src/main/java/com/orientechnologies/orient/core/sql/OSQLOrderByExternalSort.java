@@ -0,0 +1,275 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.orientechnologies.common.concur.resource.OCloseable;
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+/**
+ * Sorts the result of an ORDER BY without LIMIT in temporary files when it's bigger than the buffer. Every time the buffer is full
+ * its records are sorted and written in a new file (a run), then the runs are merged while the result is browsed. If the buffer
+ * is never filled the records are sorted in memory. The files left by a merge not browsed till the end are deleted by
+ * {@link #close()}.
+ *
+ * @see com.orientechnologies.orient.core.config.OGlobalConfiguration#QUERY_ORDER_BY_BUFFER_SIZE
+ */
+public class OSQLOrderByExternalSort extends OSQLOrderByBuffer implements Iterable<OIdentifiable>, OCloseable {
+  private static final byte         TYPE_RID    = 0;
+  private static final byte         TYPE_RECORD = 1;
+
+  private final int                 bufferSize;
+  private final List<OIdentifiable> buffer      = new ArrayList<OIdentifiable>();
+  private final List<Run>           runs        = new ArrayList<Run>();
+  private long                      spilled;
+
+  public OSQLOrderByExternalSort(final List<OPair<String, String>> iOrderCriteria, final int iBufferSize) {
+    super(iOrderCriteria);
+    bufferSize = iBufferSize;
+  }
+
+  @Override
+  public void add(final OIdentifiable iRecord) {
+    buffer.add(iRecord);
+    if (buffer.size() >= bufferSize)
+      spill();
+  }
+
+  @Override
+  public Iterable<OIdentifiable> getResult() {
+    Collections.sort(buffer, comparator);
+    if (runs.isEmpty())
+      return buffer;
+
+    // THE LAST RECORDS ARE MERGED FROM MEMORY
+    return this;
+  }
+
+  @Override
+  public String getName() {
+    return runs.isEmpty() ? "memory" : "externalSort";
+  }
+
+  public int getRuns() {
+    return runs.size();
+  }
+
+  public long getSpilledRecords() {
+    return spilled;
+  }
+
+  /**
+   * Deletes the temporary files not read yet.
+   */
+  public void close() {
+    for (Run r : runs)
+      r.close();
+  }
+
+  /**
+   * Merges the runs with the records in memory. Can be browsed only once: the temporary files are deleted as soon as they have
+   * been read.
+   */
+  public Iterator<OIdentifiable> iterator() {
+    final PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size() + 1, new Comparator<Run>() {
+      public int compare(final Run r1, final Run r2) {
+        final int result = comparator.compare(r1.current, r2.current);
+        if (result != 0)
+          return result;
+        // SAME VALUES: THE RUN WRITTEN FIRST CONTAINS THE RECORDS COLLECTED FIRST
+        return r1.index - r2.index;
+      }
+    });
+
+    for (Run r : runs)
+      if (r.advance())
+        queue.add(r);
+
+    final Run memory = new Run(runs.size(), buffer.iterator());
+    if (memory.advance())
+      queue.add(memory);
+
+    return new Iterator<OIdentifiable>() {
+      public boolean hasNext() {
+        return !queue.isEmpty();
+      }
+
+      public OIdentifiable next() {
+        final Run run = queue.poll();
+        if (run == null)
+          throw new NoSuchElementException();
+
+        final OIdentifiable result = run.current;
+        if (run.advance())
+          queue.add(run);
+        return result;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException("remove()");
+      }
+    };
+  }
+
+  private void spill() {
+    Collections.sort(buffer, comparator);
+
+    File file = null;
+    boolean written = false;
+    try {
+      file = File.createTempFile("orientdb-sort-", ".tmp");
+
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        for (OIdentifiable record : buffer)
+          writeRecord(out, record);
+      } finally {
+        out.close();
+      }
+
+      runs.add(new Run(runs.size(), file, buffer.size()));
+      spilled += buffer.size();
+      buffer.clear();
+      written = true;
+
+    } catch (IOException e) {
+      throw new OCommandExecutionException("Error on writing the records to sort in a temporary file", e);
+    } finally {
+      if (!written && file != null)
+        file.delete();
+    }
+  }
+
+  private static void writeRecord(final DataOutputStream iOut, final OIdentifiable iRecord) throws IOException {
+    if (!(iRecord instanceof ORecordInternal<?>)) {
+      iOut.writeByte(TYPE_RID);
+      iOut.writeUTF(iRecord.getIdentity().toString());
+      return;
+    }
+
+    final ORecordInternal<?> record = (ORecordInternal<?>) iRecord;
+    final byte[] content = record.toStream();
+
+    iOut.writeByte(TYPE_RECORD);
+    iOut.writeByte(record.getRecordType());
+    iOut.writeUTF(record.getIdentity().toString());
+    record.getRecordVersion().getSerializer().writeTo((DataOutput) iOut, record.getRecordVersion());
+    iOut.writeInt(content.length);
+    iOut.write(content);
+  }
+
+  private static OIdentifiable readRecord(final DataInputStream iIn) throws IOException {
+    if (iIn.readByte() == TYPE_RID)
+      return new ORecordId(iIn.readUTF());
+
+    final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(iIn.readByte());
+    final ORecordId rid = new ORecordId(iIn.readUTF());
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    version.getSerializer().readFrom((DataInput) iIn, version);
+
+    final byte[] content = new byte[iIn.readInt()];
+    iIn.readFully(content);
+
+    record.fill(rid, version, content, false);
+    return record;
+  }
+
+  /**
+   * Sorted sequence of records, read from a temporary file or from the buffer.
+   */
+  private static class Run {
+    private final int                     index;
+    private final File                    file;
+    private int                           remaining;
+    private DataInputStream               in;
+    private final Iterator<OIdentifiable> iterator;
+    private OIdentifiable                 current;
+
+    private Run(final int iIndex, final File iFile, final int iRecords) {
+      index = iIndex;
+      file = iFile;
+      remaining = iRecords;
+      iterator = null;
+    }
+
+    private Run(final int iIndex, final Iterator<OIdentifiable> iIterator) {
+      index = iIndex;
+      file = null;
+      iterator = iIterator;
+    }
+
+    private boolean advance() {
+      if (iterator != null) {
+        current = iterator.hasNext() ? iterator.next() : null;
+        return current != null;
+      }
+
+      try {
+        if (remaining == 0) {
+          close();
+          current = null;
+          return false;
+        }
+
+        if (in == null)
+          in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        current = readRecord(in);
+        remaining--;
+        return true;
+
+      } catch (IOException e) {
+        close();
+        throw new OCommandExecutionException("Error on reading the sorted records from the temporary file " + file, e);
+      }
+    }
+
+    private void close() {
+      try {
+        if (in != null)
+          in.close();
+      } catch (IOException e) {
+        // IGNORE IT: THE FILE IS DELETED ANYWAY
+      }
+      in = null;
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+
+/**
+ * Keeps only the first K records of an ORDER BY, where K is SKIP + LIMIT. The records are kept in a heap with the worst record on
+ * top, so every record of the result costs log(K) comparisons and the memory used doesn't depend on the size of the result. With K
+ * not positive no record is kept.
+ */
+public class OSQLOrderByTopK extends OSQLOrderByBuffer {
+  private final int                  size;
+  private final PriorityQueue<Entry> heap;
+  private final Comparator<Entry>    entryComparator;
+  private long                       serial;
+
+  public OSQLOrderByTopK(final List<OPair<String, String>> iOrderCriteria, final int iSize) {
+    super(iOrderCriteria);
+    size = iSize;
+    entryComparator = new Comparator<Entry>() {
+      public int compare(final Entry e1, final Entry e2) {
+        final int result = comparator.compare(e1.record, e2.record);
+        if (result != 0)
+          return result;
+        // SAME VALUES: THE FIRST COLLECTED WINS
+        return e1.serial < e2.serial ? -1 : (e1.serial == e2.serial ? 0 : 1);
+      }
+    };
+    heap = new PriorityQueue<Entry>(Math.max(0, Math.min(iSize, 1024)) + 1, Collections.reverseOrder(entryComparator));
+  }
+
+  @Override
+  public void add(final OIdentifiable iRecord) {
+    if (size <= 0)
+      return;
+
+    final Entry entry = new Entry(iRecord, serial++);
+
+    if (heap.size() < size)
+      heap.offer(entry);
+    else if (entryComparator.compare(entry, heap.peek()) < 0) {
+      // BETTER THAN THE WORST RECORD KEPT: REPLACE IT
+      heap.poll();
+      heap.offer(entry);
+    }
+  }
+
+  @Override
+  public List<OIdentifiable> getResult() {
+    final List<Entry> entries = new ArrayList<Entry>(heap);
+    heap.clear();
+    Collections.sort(entries, entryComparator);
+
+    final List<OIdentifiable> result = new ArrayList<OIdentifiable>(entries.size());
+    for (Entry e : entries)
+      result.add(e.record);
+    return result;
+  }
+
+  @Override
+  public String getName() {
+    return "topK";
+  }
+
+  private static class Entry {
+    private final OIdentifiable record;
+    private final long          serial;
+
+    private Entry(final OIdentifiable iRecord, final long iSerial) {
+      record = iRecord;
+      serial = iSerial;
+    }
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.filter.OSQLFilter;
+
+/**
+ * Scans clusters in parallel and returns the records that match the filter. The position range of every cluster is split in
+ * chunks scanned by the pool of threads shared by all the queries ({@link Orient#getParallelScanExecutor()}), each one with its own
+ * database instance opened as the user of the caller, while the caller consumes the results.<br/>
+ * The chunks are consumed in the order they would be browsed sequentially, so SKIP, LIMIT and ORDER BY applied by the caller give
+ * the same results of the sequential scan. At most two chunks per thread are scanned in advance: {@link #close()} stops the scan
+ * when the caller doesn't need more records.
+ *
+ * @see OGlobalConfiguration#QUERY_PARALLEL_SCAN_THREADS
+ */
+public class OSQLParallelClusterScan implements Iterator<OIdentifiable> {
+  private final ExecutorService                           executor;
+  private final String                                    url;
+  private final OUser                                     user;
+  private final boolean                                   useCache;
+  private final String                                    filterText;
+  private final Map<Object, Object>                       parameters;
+  private final Map<OClass, String>                       targetClasses;
+  private final OCommandContext                           context;
+  private final Map<String, Object>                       variables;
+
+  private final Iterator<Chunk>                           chunks;
+  private final LinkedList<Future<ChunkResult>>           running = new LinkedList<Future<ChunkResult>>();
+  private final Queue<Worker>                             workers = new ConcurrentLinkedQueue<Worker>();
+  private final List<Worker>                              opened  = Collections.synchronizedList(new ArrayList<Worker>());
+  private final int                                       maxRunning;
+  private volatile boolean                                closed;
+  private Iterator<ORecordInternal<?>>                    current;
+
+  /**
+   * @param iDatabase
+   *          Database of the caller, used to open the database instances of the workers
+   * @param iClusterIds
+   *          Clusters to scan in order
+   * @param iFilter
+   *          Filter to apply or null to return all the records. Every worker parses its own copy
+   * @param iParameters
+   *          Parameters to bind to the filter
+   * @param iTargetClasses
+   *          Classes the documents must belong to, or null
+   * @param iContext
+   *          Context of the caller: its variables are copied in the contexts of the workers
+   */
+  public OSQLParallelClusterScan(final ODatabaseRecord iDatabase, final int[] iClusterIds, final OSQLFilter iFilter,
+      final Map<Object, Object> iParameters, final Map<OClass, String> iTargetClasses, final OCommandContext iContext,
+      final boolean iUseCache) {
+    url = iDatabase.getURL();
+    user = iDatabase.getUser();
+    useCache = iUseCache;
+    filterText = iFilter != null ? iFilter.parserText : null;
+    parameters = iParameters;
+    targetClasses = iTargetClasses;
+    context = iContext;
+    variables = iContext.getVariables();
+
+    chunks = splitInChunks(iDatabase, iClusterIds).iterator();
+
+    executor = Orient.instance().getParallelScanExecutor();
+    maxRunning = Math.max(1, OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger()) * 2;
+
+    while (running.size() < maxRunning && submitNext())
+      ;
+  }
+
+  public boolean hasNext() {
+    while (current == null || !current.hasNext()) {
+      if (running.isEmpty()) {
+        close();
+        return false;
+      }
+
+      final ChunkResult result = waitFor(running.removeFirst());
+      submitNext();
+
+      context.updateMetric("recordReads", result.recordReads);
+      context.updateMetric("documentReads", result.documentReads);
+      current = result.records.iterator();
+    }
+    return true;
+  }
+
+  public OIdentifiable next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return current.next();
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove()");
+  }
+
+  /**
+   * Stops the scan and closes the database instances of the workers. Called automatically when all the records have been
+   * returned.
+   */
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+
+    // WAIT FOR THE CHUNKS IN PROGRESS: THEY STOP AS SOON AS THEY SEE THE SCAN CLOSED
+    for (Future<ChunkResult> f : running)
+      try {
+        f.get();
+      } catch (Exception e) {
+        // IGNORE IT: THE RESULT IS NOT NEEDED ANYMORE
+      }
+    running.clear();
+
+    final ODatabaseRecord callerDatabase = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    try {
+      for (Worker w : opened)
+        w.database.close();
+    } finally {
+      ODatabaseRecordThreadLocal.INSTANCE.set(callerDatabase);
+    }
+  }
+
+  private boolean submitNext() {
+    if (closed || !chunks.hasNext())
+      return false;
+
+    final Chunk chunk = chunks.next();
+    running.add(executor.submit(new Callable<ChunkResult>() {
+      public ChunkResult call() throws Exception {
+        return scan(chunk);
+      }
+    }));
+    return true;
+  }
+
+  private ChunkResult waitFor(final Future<ChunkResult> iFuture) {
+    try {
+      return iFuture.get();
+    } catch (ExecutionException e) {
+      close();
+      throw new OCommandExecutionException("Error on scanning clusters in parallel", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new OCommandExecutionException("Interrupted while scanning clusters in parallel", e);
+    }
+  }
+
+  private ChunkResult scan(final Chunk iChunk) {
+    final ChunkResult result = new ChunkResult();
+    if (closed)
+      return result;
+
+    final Worker worker = acquireWorker();
+    try {
+      final ODatabaseRecordAbstract database = worker.database.getUnderlying();
+      final ORecordIteratorCluster<ORecordInternal<?>> iterator = new ORecordIteratorCluster<ORecordInternal<?>>(database, database,
+          iChunk.clusterId, iChunk.first, iChunk.last, useCache, false);
+
+      while (iterator.hasNext() && !closed) {
+        final ORecordInternal<?> record = iterator.next();
+        result.recordReads++;
+
+        if (record == null || record.getRecordType() != ODocument.RECORD_TYPE)
+          continue;
+        result.documentReads++;
+
+        if (worker.matches((ODocument) record))
+          result.records.add(record);
+      }
+    } finally {
+      workers.add(worker);
+    }
+    return result;
+  }
+
+  private Worker acquireWorker() {
+    Worker worker = workers.poll();
+    if (worker == null) {
+      worker = new Worker();
+      opened.add(worker);
+    } else {
+      final ODatabaseRecord database = worker.database.getUnderlying();
+      ODatabaseRecordThreadLocal.INSTANCE.set(database);
+    }
+    return worker;
+  }
+
+  private static List<Chunk> splitInChunks(final ODatabaseRecord iDatabase, final int[] iClusterIds) {
+    final List<Chunk> result = new ArrayList<Chunk>();
+    final long chunkSize = OGlobalConfiguration.QUERY_PARALLEL_SCAN_CHUNK_SIZE.getValueAsInteger();
+    final boolean positionsAreLong = OClusterPositionFactory.INSTANCE instanceof OClusterPositionFactory.OClusterPositionFactoryLong;
+
+    for (int clusterId : iClusterIds) {
+      final OClusterPosition[] range = iDatabase.getStorage().getClusterDataRange(clusterId);
+      if (!range[0].isValid() || !range[1].isValid())
+        // EMPTY
+        continue;
+
+      if (!positionsAreLong) {
+        // POSITIONS CAN'T BE SPLIT: ONE CHUNK PER CLUSTER
+        result.add(new Chunk(clusterId, range[0], range[1]));
+        continue;
+      }
+
+      for (long first = range[0].longValue(); first <= range[1].longValue(); first += chunkSize)
+        result.add(new Chunk(clusterId, OClusterPositionFactory.INSTANCE.valueOf(first), OClusterPositionFactory.INSTANCE
+            .valueOf(Math.min(first + chunkSize - 1, range[1].longValue()))));
+    }
+    return result;
+  }
+
+  /**
+   * Database instance and filter used by one thread at a time.
+   */
+  private class Worker {
+    private final ODatabaseDocumentTx database;
+    private final OSQLFilter          filter;
+    private final OCommandContext     workerContext;
+
+    private Worker() {
+      database = new ODatabaseDocumentTx(url);
+      if (user != null)
+        // THE CALLER IS ALREADY AUTHENTICATED: ACT AS THE SAME USER, WITH THE SAME PERMISSIONS
+        database.open(user);
+      else {
+        // THE CALLER RUNS WITHOUT SECURITY
+        database.setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+        database.open(null, null);
+      }
+      // THE INSTANCE LIVES FOR ONE QUERY ONLY: THE SHARED LEVEL-2 CACHE IS ENOUGH
+      database.getLevel1Cache().setEnable(false);
+
+      workerContext = new OBasicCommandContext();
+      for (Entry<String, Object> v : variables.entrySet())
+        workerContext.setVariable(v.getKey(), v.getValue());
+
+      if (filterText != null) {
+        filter = OSQLEngine.getInstance().parseCondition(filterText, workerContext, OCommandExecutorSQLAbstract.KEYWORD_WHERE);
+        if (parameters != null && !parameters.isEmpty())
+          filter.bindParameters(parameters);
+      } else
+        filter = null;
+    }
+
+    private boolean matches(final ODocument iRecord) {
+      workerContext.setVariable("current", iRecord);
+
+      if (targetClasses != null)
+        for (OClass targetClass : targetClasses.keySet())
+          if (!targetClass.isSuperClassOf(iRecord.getSchemaClass()))
+            return false;
+
+      return filter == null || (Boolean) filter.evaluate(iRecord, null, workerContext);
+    }
+  }
+
+  private static class Chunk {
+    private final int              clusterId;
+    private final OClusterPosition first;
+    private final OClusterPosition last;
+
+    private Chunk(final int iClusterId, final OClusterPosition iFirst, final OClusterPosition iLast) {
+      clusterId = iClusterId;
+      first = iFirst;
+      last = iLast;
+    }
+  }
+
+  private static class ChunkResult {
+    private final List<ORecordInternal<?>> records = new ArrayList<ORecordInternal<?>>();
+    private long                           recordReads;
+    private long                           documentReads;
+  }
+}
@@ -48,13 +48,15 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
 
     final ODocument doc = (ODocument) iRecord.getRecord();
 
-    if (preLoadedFieldsArray == null && preLoadedFields != null && preLoadedFields.size() > 0 && preLoadedFields.size() < 5) {
-      // TRANSFORM THE SET IN ARRAY ONLY THE FIRST TIME AND IF FIELDS ARE MORE THAN ONE, OTHERWISE GO WITH THE DEFAULT BEHAVIOR
-      preLoadedFieldsArray = new String[preLoadedFields.size()];
-      preLoadedFields.toArray(preLoadedFieldsArray);
-    }
-
-    // UNMARSHALL THE SINGLE FIELD
+    if (preLoadedFieldsArray == null)
+      if (preLoadedFields != null && preLoadedFields.size() > 0) {
+        // TRANSFORM THE SET IN ARRAY ONLY THE FIRST TIME
+        preLoadedFieldsArray = new String[preLoadedFields.size()];
+        preLoadedFields.toArray(preLoadedFieldsArray);
+      } else
+        preLoadedFieldsArray = new String[] { name };
+
+    // UNMARSHALL ONLY THE FIELDS INVOLVED: THE OTHERS ARE LEFT IN THE RECORD BUFFER UNTIL ACCESSED
     if (doc.deserializeFields(preLoadedFieldsArray))
       // FIELD FOUND
       return transformValue(iRecord, iContext,  ODocumentHelper.getFieldValue(doc, name));
@@ -141,5 +143,6 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
 
   public void setPreLoadedFields(final Set<String> iPrefetchedFieldList) {
     this.preLoadedFields = iPrefetchedFieldList;
+    this.preLoadedFieldsArray = null;
   }
 }
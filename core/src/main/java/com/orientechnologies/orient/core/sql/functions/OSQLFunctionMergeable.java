@@ -0,0 +1,32 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.functions;
+
+/**
+ * Aggregating function whose state can be saved and merged into another instance of the same function. Allows to compute an
+ * aggregation on separate sets of records, like the groups of a GROUP BY written in temporary files when they don't fit in memory.
+ */
+public interface OSQLFunctionMergeable {
+  /**
+   * Returns the state of the aggregation. It can contain only types that can be stored in a document field.
+   */
+  public Object getPartialResult();
+
+  /**
+   * Merges the state of another instance of the same function, as returned by {@link #getPartialResult()}.
+   */
+  public void mergePartialResult(Object iPartialResult);
+}
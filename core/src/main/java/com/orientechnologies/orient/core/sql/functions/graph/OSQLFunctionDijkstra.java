@@ -15,87 +15,209 @@
  */
 package com.orientechnologies.orient.core.sql.functions.graph;
 
-import java.util.Set;
+import java.util.Arrays;
+import java.util.LinkedList;
 
 import com.orientechnologies.orient.core.command.OCommandContext;
-import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
-import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase.DIRECTION;
-import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
-import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 
 /**
- * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph.
+ * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph. The
+ * unsettled vertexes are kept in a binary heap ordered by distance that supports the decrease of the distance of a queued vertex,
+ * and the search stops as soon as the destination is settled.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
-  public static final String NAME = "dijkstra";
-  private static final Float MIN  = new Float(0f);
+public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder {
+  public static final String NAME     = "dijkstra";
+  private static final int   UNQUEUED = -1;
+  private static final int   SETTLED  = -2;
 
   private String             paramWeightFieldName;
 
+  private double[]           distances;
+  private int[]              depths;
+  private int[]              queue;
+  private int[]              queuePositions;
+  private int                queueSize;
+
   public OSQLFunctionDijkstra() {
-    super(NAME, 3, 4);
+    super(NAME, 3, 5);
   }
 
   public Object execute(OIdentifiable iCurrentRecord, ODocument iCurrentResult, final Object[] iParameters, OCommandContext iContext) {
-    final ODatabaseRecord currentDatabase = ODatabaseRecordThreadLocal.INSTANCE.get();
-    db = (OGraphDatabase) (currentDatabase instanceof OGraphDatabase ? currentDatabase : new OGraphDatabase(
-        (ODatabaseRecordTx) currentDatabase));
+    setDatabase();
 
     final ORecordInternal<?> record = (ORecordInternal<?>) (iCurrentRecord != null ? iCurrentRecord.getRecord() : null);
 
     paramSourceVertex = (OIdentifiable) OSQLHelper.getValue(iParameters[0], record, iContext);
     paramDestinationVertex = (OIdentifiable) OSQLHelper.getValue(iParameters[1], record, iContext);
-    paramWeightFieldName = (String) OSQLHelper.getValue(iParameters[2], record, iContext);
+    // THE FIELD NAME ARRIVES WITHOUT QUOTES: RESOLVING IT AGAINST THE CURRENT RECORD WOULD RETURN THE VALUE OF THE FIELD
+    paramWeightFieldName = iParameters[2] instanceof String ? (String) iParameters[2] : (String) OSQLHelper.getValue(
+        iParameters[2], record, iContext);
     if (iParameters.length > 3)
-      paramDirection = DIRECTION.valueOf(iParameters[3].toString().toUpperCase());
+      paramDirection = parseDirection(iParameters[3]);
+    if (iParameters.length > 4)
+      paramMaxDepth = parseMaxDepth(OSQLHelper.getValue(iParameters[4], record, iContext));
 
     return super.execute(iParameters, iContext);
   }
 
   public String getSyntax() {
-    return "Syntax error: dijkstra(<sourceVertex>, <destinationVertex>, <weightEdgeFieldName>, [<direction>])";
+    return "Syntax error: dijkstra(<sourceVertex>, <destinationVertex>, <weightEdgeFieldName>, [<direction>], [<maxDepth>])";
   }
 
   @Override
-  protected Float getShortestDistance(final OIdentifiable destination) {
-    if (destination == null)
-      return Float.MAX_VALUE;
+  protected LinkedList<OIdentifiable> findPath(final ORID iSource, final ORID iDestination) {
+    distances = new double[vertexes.capacity()];
+    depths = new int[vertexes.capacity()];
+    queue = new int[vertexes.capacity()];
+    queuePositions = new int[vertexes.capacity()];
+    queueSize = 0;
+
+    final int source = addVertex(iSource);
+    distances[source] = 0;
+    push(source);
+
+    while (queueSize > 0) {
+      final int vertex = poll();
+      if (vertexes.getRid(vertex).equals(iDestination))
+        return getPath(vertex);
 
-    final Float d = distance.get(destination);
-    return d == null ? Float.MAX_VALUE : d;
+      if (paramMaxDepth > -1 && depths[vertex] >= paramMaxDepth)
+        // DON'T GO DEEPER ALONG THIS PATH
+        continue;
+
+      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.OUT)
+        relaxEdges(vertex, true);
+      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.IN)
+        relaxEdges(vertex, false);
+    }
+
+    return null;
   }
 
   @Override
-  protected Float getMinimumDistance() {
-    return MIN;
+  protected int addVertex(final ORID iVertex) {
+    final int size = vertexes.size();
+    final int id = super.addVertex(iVertex);
+    if (id == size) {
+      distances[id] = Double.MAX_VALUE;
+      depths[id] = 0;
+      queuePositions[id] = UNQUEUED;
+    }
+    return id;
   }
 
-  protected Float getDistance(final OIdentifiable node, final OIdentifiable target) {
-    final Set<OIdentifiable> edges = db.getEdgesBetweenVertexes(node, target);
-    if (!edges.isEmpty()) {
-      final ODocument e = edges.iterator().next().getRecord();
-      if (e != null) {
-        final Object fieldValue = e.field(paramWeightFieldName);
-        if (fieldValue != null)
-          if (fieldValue instanceof Float)
-            return (Float) fieldValue;
-          else if (fieldValue instanceof Number)
-            return ((Number) fieldValue).floatValue();
+  @Override
+  protected void resize(final int iCapacity) {
+    super.resize(iCapacity);
+    distances = Arrays.copyOf(distances, iCapacity);
+    depths = Arrays.copyOf(depths, iCapacity);
+    queue = Arrays.copyOf(queue, iCapacity);
+    queuePositions = Arrays.copyOf(queuePositions, iCapacity);
+  }
+
+  /**
+   * Updates the distances of the neighbours of a settled vertex. The weight is read from the same edge that leads to the
+   * neighbour.
+   */
+  protected void relaxEdges(final int iVertex, final boolean iOut) {
+    for (OIdentifiable e : getEdges(iVertex, iOut)) {
+      final ORID neighbor = getOtherVertex(e, iOut);
+      if (neighbor == null)
+        continue;
+
+      final int id = addVertex(neighbor);
+      if (queuePositions[id] == SETTLED)
+        continue;
+
+      final double distance = distances[iVertex] + getWeight(e);
+      if (distance < distances[id]) {
+        distances[id] = distance;
+        depths[id] = depths[iVertex] + 1;
+        predecessors[id] = iVertex;
+
+        if (queuePositions[id] == UNQUEUED)
+          push(id);
+        else
+          siftUp(queuePositions[id]);
       }
     }
-    return MIN;
   }
 
-  @Override
-  protected Float sumDistances(final Float iDistance1, final Float iDistance2) {
-    return iDistance1.floatValue() + iDistance2.floatValue();
+  protected double getWeight(final OIdentifiable iEdge) {
+    if (db.isLightweightEdge(iEdge))
+      // NO PROPERTIES: LIKE AN EDGE WITHOUT THE WEIGHT FIELD
+      return 0d;
+
+    final ODocument edge = iEdge.getRecord();
+    final Object fieldValue = edge.field(paramWeightFieldName);
+    return fieldValue instanceof Number ? ((Number) fieldValue).doubleValue() : 0d;
+  }
+
+  private void push(final int iVertex) {
+    queue[queueSize] = iVertex;
+    siftUp(queueSize++);
+  }
+
+  private int poll() {
+    final int min = queue[0];
+    queuePositions[min] = SETTLED;
+
+    if (--queueSize > 0) {
+      queue[0] = queue[queueSize];
+      siftDown(0);
+    }
+    return min;
+  }
+
+  private void siftUp(int iPosition) {
+    final int vertex = queue[iPosition];
+    final double distance = distances[vertex];
+
+    while (iPosition > 0) {
+      final int parentPosition = (iPosition - 1) >>> 1;
+      final int parent = queue[parentPosition];
+      if (distances[parent] <= distance)
+        break;
+
+      queue[iPosition] = parent;
+      queuePositions[parent] = iPosition;
+      iPosition = parentPosition;
+    }
+
+    queue[iPosition] = vertex;
+    queuePositions[vertex] = iPosition;
+  }
+
+  private void siftDown(int iPosition) {
+    final int vertex = queue[iPosition];
+    final double distance = distances[vertex];
+
+    while (true) {
+      int childPosition = iPosition * 2 + 1;
+      if (childPosition >= queueSize)
+        break;
+      if (childPosition + 1 < queueSize && distances[queue[childPosition + 1]] < distances[queue[childPosition]])
+        childPosition++;
+
+      final int child = queue[childPosition];
+      if (distances[child] >= distance)
+        break;
+
+      queue[iPosition] = child;
+      queuePositions[child] = iPosition;
+      iPosition = childPosition;
+    }
+
+    queue[iPosition] = vertex;
+    queuePositions[vertex] = iPosition;
   }
 }
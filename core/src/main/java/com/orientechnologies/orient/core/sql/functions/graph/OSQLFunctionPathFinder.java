@@ -15,146 +15,179 @@
  */
 package com.orientechnologies.orient.core.sql.functions.graph;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
 import com.orientechnologies.orient.core.db.graph.OGraphDatabase.DIRECTION;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
+import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
- * Abstract class to find paths between nodes.
+ * Abstract class to find paths between nodes. The visited vertexes are numbered by an {@link OVertexTable} and their state is
+ * kept in arrays indexed by vertex id. The neighbours are read from the RIDs stored in the edges, so the vertexes are loaded only
+ * when their edges are followed.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OSQLFunctionMathAbstract {
-  protected OGraphDatabase                    db;
-  protected Set<OIdentifiable>                settledNodes;
-  protected Set<OIdentifiable>                unSettledNodes;
-  protected Map<OIdentifiable, OIdentifiable> predecessors;
-  protected Map<OIdentifiable, T>             distance;
-
-  protected OIdentifiable                     paramSourceVertex;
-  protected OIdentifiable                     paramDestinationVertex;
-  protected OGraphDatabase.DIRECTION          paramDirection = DIRECTION.OUT;
+public abstract class OSQLFunctionPathFinder extends OSQLFunctionMathAbstract {
+  protected OGraphDatabase           db;
+  protected OVertexTable             vertexes;
+  protected int[]                    predecessors;
+  protected int                      maxVisited;
+  protected boolean                  lightweightEdges;
+
+  protected OIdentifiable            paramSourceVertex;
+  protected OIdentifiable            paramDestinationVertex;
+  protected OGraphDatabase.DIRECTION paramDirection = DIRECTION.OUT;
+  protected int                      paramMaxDepth  = -1;
 
   public OSQLFunctionPathFinder(final String iName, final int iMinParams, final int iMaxParams) {
     super(iName, iMinParams, iMaxParams);
   }
 
-  protected abstract T getDistance(OIdentifiable node, OIdentifiable target);
-
-  protected abstract T getShortestDistance(OIdentifiable destination);
-
-  protected abstract T getMinimumDistance();
-
-  protected abstract T sumDistances(T iDistance1, T iDistance2);
+  /**
+   * Searches the path between the source and the destination vertexes, that are different.
+   * 
+   * @return The vertexes of the path from the source to the destination or null if no path exists
+   */
+  protected abstract LinkedList<OIdentifiable> findPath(ORID iSource, ORID iDestination);
 
   public Object execute(final Object[] iParameters, final OCommandContext iContext) {
-    settledNodes = new HashSet<OIdentifiable>();
-    unSettledNodes = new HashSet<OIdentifiable>();
-    distance = new HashMap<OIdentifiable, T>();
-    predecessors = new HashMap<OIdentifiable, OIdentifiable>();
-    distance.put(paramSourceVertex, getMinimumDistance());
-    unSettledNodes.add(paramSourceVertex);
-
-    while (continueTraversing()) {
-      final OIdentifiable node = getMinimum(unSettledNodes);
-      settledNodes.add(node);
-      unSettledNodes.remove(node);
-      findMinimalDistances(node);
-    }
+    if (paramSourceVertex == null || paramDestinationVertex == null)
+      return null;
 
-    return getPath(paramDestinationVertex);
-  }
+    final ORID source = paramSourceVertex.getIdentity();
+    final ORID destination = paramDestinationVertex.getIdentity();
+    if (source.equals(destination))
+      return new LinkedList<OIdentifiable>(Collections.singletonList(source));
 
-  /*
-   * This method returns the path from the source to the selected target and NULL if no path exists
-   */
-  public LinkedList<OIdentifiable> getPath(final OIdentifiable target) {
-    final LinkedList<OIdentifiable> path = new LinkedList<OIdentifiable>();
-    OIdentifiable step = target;
-    // Check if a path exists
-    if (predecessors.get(step) == null) {
-      return null;
-    }
-    path.add(step);
-    while (predecessors.get(step) != null) {
-      step = predecessors.get(step);
-      path.add(step);
-    }
-    // Put it into the correct order
-    Collections.reverse(path);
-    return path;
+    vertexes = new OVertexTable();
+    predecessors = new int[vertexes.capacity()];
+    maxVisited = OGlobalConfiguration.QUERY_GRAPH_MAX_VISITED.getValueAsInteger();
+    lightweightEdges = db.isUseLightweightEdges();
+
+    return findPath(source, destination);
   }
 
   public boolean aggregateResults() {
     return false;
   }
 
-  @Override
-  public Object getResult() {
-    return settledNodes;
+  protected void setDatabase() {
+    final ODatabaseRecord currentDatabase = ODatabaseRecordThreadLocal.INSTANCE.get();
+    db = (OGraphDatabase) (currentDatabase instanceof OGraphDatabase ? currentDatabase : new OGraphDatabase(
+        (ODatabaseRecordTx) currentDatabase));
   }
 
-  protected void findMinimalDistances(final OIdentifiable node) {
-    final List<OIdentifiable> adjacentNodes = getNeighbors(node);
-    for (OIdentifiable target : adjacentNodes) {
-      final T d = sumDistances(getShortestDistance(node), getDistance(node, target));
-
-      if (getShortestDistance(target).compareTo(d) > 0) {
-        distance.put(target, d);
-        predecessors.put(target, node);
-        unSettledNodes.add(target);
-      }
+  /**
+   * Adds a vertex to the visited ones. A new vertex has no predecessor.
+   * 
+   * @return The id of the vertex: if it's equal to the number of vertexes visited before the call the vertex is new
+   */
+  protected int addVertex(final ORID iVertex) {
+    final int size = vertexes.size();
+    final int id = vertexes.add(iVertex);
+    if (id == size) {
+      if (maxVisited > 0 && vertexes.size() > maxVisited)
+        throw new OCommandExecutionException("Function " + name + "() visited more than " + maxVisited
+            + " vertexes without finding the path. Set " + OGlobalConfiguration.QUERY_GRAPH_MAX_VISITED.getKey()
+            + " to change the limit");
+
+      if (predecessors.length < vertexes.capacity())
+        resize(vertexes.capacity());
+
+      predecessors[id] = -1;
     }
+    return id;
+  }
 
+  /**
+   * Grows the arrays indexed by vertex id. The path finders that keep more state per vertex grow their arrays too.
+   */
+  protected void resize(final int iCapacity) {
+    predecessors = Arrays.copyOf(predecessors, iCapacity);
   }
 
-  protected List<OIdentifiable> getNeighbors(final OIdentifiable node) {
-    final List<OIdentifiable> neighbors = new ArrayList<OIdentifiable>();
-    if (node != null) {
-      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.OUT)
-        for (OIdentifiable edge : db.getOutEdges(node)) {
-          final ODocument inVertex = db.getInVertex(edge);
-          if (inVertex != null && !isSettled(inVertex))
-            neighbors.add(inVertex);
+  /**
+   * Returns the edges of a vertex in one direction. If lightweight edges are enabled the edges are browsed as RIDs: a lightweight
+   * edge is never loaded because it's the vertex at the other end. Otherwise they are loaded while browsed, so the loaded edges
+   * stay in the set of the vertex for the next searches.
+   * 
+   * @param iOut
+   *          true for the outgoing edges, false for the incoming ones
+   * @return The edges or an empty set if the vertex doesn't exist anymore
+   */
+  @SuppressWarnings("unchecked")
+  protected Iterable<OIdentifiable> getEdges(final int iVertex, final boolean iOut) {
+    final ODocument vertex = vertexes.getRid(iVertex).getRecord();
+    if (vertex == null)
+      return Collections.emptySet();
+
+    if (!lightweightEdges)
+      return iOut ? db.getOutEdges(vertex) : db.getInEdges(vertex);
+
+    final Object edges = vertex.field(iOut ? OGraphDatabase.VERTEX_FIELD_OUT : OGraphDatabase.VERTEX_FIELD_IN);
+    if (edges instanceof OMVRBTreeRIDSet)
+      return new Iterable<OIdentifiable>() {
+        public Iterator<OIdentifiable> iterator() {
+          return ((OMVRBTreeRIDSet) edges).iterator(false);
         }
+      };
+    else if (edges instanceof Collection<?>)
+      return (Collection<OIdentifiable>) edges;
 
-      if (paramDirection == DIRECTION.BOTH || paramDirection == DIRECTION.IN)
-        for (OIdentifiable edge : db.getInEdges(node)) {
-          final ODocument outVertex = db.getOutVertex(edge);
-          if (outVertex != null && !isSettled(outVertex))
-            neighbors.add(outVertex);
-        }
-    }
-    return neighbors;
+    return Collections.emptySet();
   }
 
-  protected OIdentifiable getMinimum(final Set<OIdentifiable> vertexes) {
-    OIdentifiable minimum = null;
-    for (OIdentifiable vertex : vertexes) {
-      if (minimum == null || getShortestDistance(vertex).compareTo(getShortestDistance(minimum)) < 0)
-        minimum = vertex;
-    }
-    return minimum;
+  /**
+   * Returns the vertex at the other end of an edge without loading it. A lightweight edge is not loaded either: it's the RID of the
+   * vertex.
+   * 
+   * @param iOut
+   *          true if the edge is an outgoing one
+   * @return The vertex or null if the edge doesn't exist anymore
+   */
+  protected ORID getOtherVertex(final OIdentifiable iEdge, final boolean iOut) {
+    if (db.isLightweightEdge(iEdge))
+      return iEdge.getIdentity();
+
+    final ODocument edge = iEdge.getRecord();
+    if (edge == null)
+      return null;
+
+    final Object vertex = edge.rawField(iOut ? OGraphDatabase.EDGE_FIELD_IN : OGraphDatabase.EDGE_FIELD_OUT);
+    return vertex instanceof OIdentifiable ? ((OIdentifiable) vertex).getIdentity() : null;
+  }
+
+  /**
+   * Returns the path from the source to a vertex following the predecessors.
+   */
+  protected LinkedList<OIdentifiable> getPath(final int iVertex) {
+    final LinkedList<OIdentifiable> path = new LinkedList<OIdentifiable>();
+    for (int step = iVertex; step > -1; step = predecessors[step])
+      path.addFirst(vertexes.getRid(step));
+    return path;
   }
 
-  protected boolean isSettled(final OIdentifiable vertex) {
-    return settledNodes.contains(vertex);
+  protected DIRECTION parseDirection(final Object iValue) {
+    return DIRECTION.valueOf(iValue.toString().toUpperCase());
   }
 
-  protected boolean continueTraversing() {
-    return unSettledNodes.size() > 0;
+  protected int parseMaxDepth(final Object iValue) {
+    return iValue instanceof Number ? ((Number) iValue).intValue() : Integer.parseInt(iValue.toString());
   }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+/**
+ * Numbers the vertexes met by the path finders with consecutive ids starting from 0, so the state of every vertex can be kept in
+ * arrays of primitives indexed by id instead of maps of boxed values. The RIDs are stored in an open addressing hash table: no
+ * entry object is created per vertex.
+ */
+public class OVertexTable {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private ORID[]           keys;
+  private int[]            ids;
+  private ORID[]           rids;
+  private int              size;
+
+  public OVertexTable() {
+    keys = new ORID[INITIAL_CAPACITY * 2];
+    ids = new int[INITIAL_CAPACITY * 2];
+    rids = new ORID[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the id of a vertex.
+   *
+   * @return The id or -1 if the vertex has never been added
+   */
+  public int getId(final ORID iRid) {
+    final int mask = keys.length - 1;
+    for (int i = hash(iRid) & mask; keys[i] != null; i = (i + 1) & mask)
+      if (keys[i].equals(iRid))
+        return ids[i];
+    return -1;
+  }
+
+  /**
+   * Adds a vertex if it isn't in the table yet.
+   *
+   * @return The id of the vertex: if it's equal to size() - 1 the vertex has just been added
+   */
+  public int add(final ORID iRid) {
+    if (size == rids.length)
+      grow();
+
+    final int mask = keys.length - 1;
+    int i = hash(iRid) & mask;
+    for (; keys[i] != null; i = (i + 1) & mask)
+      if (keys[i].equals(iRid))
+        return ids[i];
+
+    keys[i] = iRid;
+    ids[i] = size;
+    rids[size] = iRid;
+    return size++;
+  }
+
+  public ORID getRid(final int iId) {
+    return rids[iId];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of vertexes the table can hold before growing: the arrays indexed by id must be at least as long.
+   */
+  public int capacity() {
+    return rids.length;
+  }
+
+  private void grow() {
+    final ORID[] newRids = new ORID[rids.length * 2];
+    System.arraycopy(rids, 0, newRids, 0, size);
+    rids = newRids;
+
+    // KEEP THE LOAD FACTOR OF THE HASH TABLE UNDER 0.5
+    keys = new ORID[rids.length * 2];
+    ids = new int[rids.length * 2];
+    final int mask = keys.length - 1;
+    for (int id = 0; id < size; ++id) {
+      int i = hash(rids[id]) & mask;
+      while (keys[i] != null)
+        i = (i + 1) & mask;
+      keys[i] = rids[id];
+      ids[i] = id;
+    }
+  }
+
+  private static int hash(final ORID iRid) {
+    // SPREAD THE BITS: THE RIDS OF A CLUSTER HAVE CONSECUTIVE HASH CODES
+    final int h = iRid.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
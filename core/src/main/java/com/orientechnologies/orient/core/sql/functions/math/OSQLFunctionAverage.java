@@ -25,6 +25,7 @@ import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionMergeable;
 
 /**
  * Compute the average value for a field. Uses the context to save the last average number. When different Number class are used,
@@ -33,7 +34,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
+public class OSQLFunctionAverage extends OSQLFunctionMathAbstract implements OSQLFunctionMergeable {
   public static final String NAME  = "avg";
 
   private Number             sum;
@@ -78,10 +79,7 @@ public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
   @Override
   public Object getResult() {
     if (returnDistributedResult()) {
-      final Map<String, Object> doc = new HashMap<String, Object>();
-      doc.put("sum", sum);
-      doc.put("total", total);
-      return doc;
+      return getPartialResult();
     } else {
       if (sum instanceof Integer)
         return sum.intValue() / total;
@@ -97,6 +95,22 @@ public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
     return null;
   }
 
+  public Object getPartialResult() {
+    final Map<String, Object> doc = new HashMap<String, Object>();
+    doc.put("sum", sum);
+    doc.put("total", total);
+    return doc;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void mergePartialResult(final Object iPartialResult) {
+    final Map<String, Object> item = (Map<String, Object>) iPartialResult;
+    final Number partialSum = (Number) item.get("sum");
+    if (partialSum != null)
+      sum = sum == null ? partialSum : OType.increment(sum, partialSum);
+    total += ((Number) item.get("total")).intValue();
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object mergeDistributedResult(List<Object> resultsToMerge) {
@@ -20,6 +20,7 @@ import java.util.List;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionMergeable;
 
 /**
  * Compute the maximum value for a field. Uses the context to save the last maximum number. When different Number class are used,
@@ -28,7 +29,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionMax extends OSQLFunctionMathAbstract {
+public class OSQLFunctionMax extends OSQLFunctionMathAbstract implements OSQLFunctionMergeable {
   public static final String NAME = "max";
 
   private Comparable<Object> context;
@@ -78,6 +79,16 @@ public class OSQLFunctionMax extends OSQLFunctionMathAbstract {
     return context;
   }
 
+  public Object getPartialResult() {
+    return context;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void mergePartialResult(final Object iPartialResult) {
+    if (iPartialResult != null && (context == null || context.compareTo(iPartialResult) < 0))
+      context = (Comparable<Object>) iPartialResult;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object mergeDistributedResult(List<Object> resultsToMerge) {
@@ -22,6 +22,7 @@ import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionMergeable;
 
 /**
  * Computes the sum of field. Uses the context to save the last sum number. When different Number class are used, take the class
@@ -30,7 +31,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionSum extends OSQLFunctionMathAbstract {
+public class OSQLFunctionSum extends OSQLFunctionMathAbstract implements OSQLFunctionMergeable {
   public static final String NAME = "sum";
 
   private Number             sum;
@@ -79,6 +80,14 @@ public class OSQLFunctionSum extends OSQLFunctionMathAbstract {
     return sum;
   }
 
+  public Object getPartialResult() {
+    return sum;
+  }
+
+  public void mergePartialResult(final Object iPartialResult) {
+    sum((Number) iPartialResult);
+  }
+
   @Override
   public Object mergeDistributedResult(List<Object> resultsToMerge) {
     Number sum = null;
@@ -20,6 +20,7 @@ import java.util.List;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionMergeable;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
 
 /**
@@ -29,7 +30,7 @@ import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbst
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionCount extends OSQLFunctionMathAbstract {
+public class OSQLFunctionCount extends OSQLFunctionMathAbstract implements OSQLFunctionMergeable {
   public static final String NAME  = "count";
 
   private long               total = 0;
@@ -63,6 +64,14 @@ public class OSQLFunctionCount extends OSQLFunctionMathAbstract {
     total = ((Number) iResult).longValue();
   }
 
+  public Object getPartialResult() {
+    return total;
+  }
+
+  public void mergePartialResult(final Object iPartialResult) {
+    total += ((Number) iPartialResult).longValue();
+  }
+
   @Override
   public Object mergeDistributedResult(List<Object> resultsToMerge) {
     long total = 0;
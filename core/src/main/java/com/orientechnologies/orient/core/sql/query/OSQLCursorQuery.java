@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.query;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+
+/**
+ * SQL query that streams its result to the listener a page at a time. Against a remote database the server keeps the query open in
+ * a cursor and the client asks for the next page only when the listener consumed the previous one, so neither the server nor the
+ * client hold the whole result in memory. Unlike OSQLAsynchQuery the listener is called with the network channel unlocked, so it
+ * can use the database. Against a local database it works as OSQLAsynchQuery.
+ *
+ * @param <T>
+ * @see OSQLAsynchQuery
+ */
+public class OSQLCursorQuery<T extends Object> extends OSQLAsynchQuery<T> {
+  private static final long serialVersionUID  = 1L;
+  public static final int   DEFAULT_PAGE_SIZE = 1000;
+
+  protected int             pageSize          = DEFAULT_PAGE_SIZE;
+
+  /**
+   * Empty constructor for unmarshalling.
+   */
+  public OSQLCursorQuery() {
+  }
+
+  public OSQLCursorQuery(final String iText, final OCommandResultListener iResultListener) {
+    super(iText, iResultListener);
+  }
+
+  public OSQLCursorQuery(final String iText, final int iPageSize, final OCommandResultListener iResultListener) {
+    super(iText, iResultListener);
+    pageSize = iPageSize;
+  }
+
+  /**
+   * Returns the number of records fetched from the server with each request.
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public OSQLCursorQuery<T> setPageSize(final int iPageSize) {
+    pageSize = iPageSize;
+    return this;
+  }
+}
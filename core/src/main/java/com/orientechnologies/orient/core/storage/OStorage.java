@@ -17,6 +17,7 @@ package com.orientechnologies.orient.core.storage;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -87,6 +88,13 @@ public interface OStorage extends OSharedContainer {
   public OStorageOperationResult<ORawBuffer> readRecord(ORecordId iRid, String iFetchPlan, boolean iIgnoreCache,
       ORecordCallback<ORawBuffer> iCallback, boolean loadTombstones);
 
+  /**
+   * Reads a set of records at once. Remote storages read them with a single request.
+   * 
+   * @return The records in the same order of the ids, with null for the records not found
+   */
+  public List<ORawBuffer> readRecords(List<ORecordId> iRids, String iFetchPlan, boolean iIgnoreCache);
+
   public OStorageOperationResult<ORecordVersion> updateRecord(ORecordId iRecordId, byte[] iContent, ORecordVersion iVersion,
       byte iRecordType, int iMode, ORecordCallback<ORecordVersion> iCallback);
 
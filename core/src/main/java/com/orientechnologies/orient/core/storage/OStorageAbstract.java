@@ -15,6 +15,8 @@
  */
 package com.orientechnologies.orient.core.storage;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
@@ -30,6 +32,7 @@ import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.exception.OSecurityException;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.metadata.OMetadata;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
@@ -187,6 +190,13 @@ public abstract class OStorageAbstract extends OSharedContainerImpl implements O
     return status;
   }
 
+  public List<ORawBuffer> readRecords(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    final List<ORawBuffer> result = new ArrayList<ORawBuffer>(iRids.size());
+    for (ORecordId rid : iRids)
+      result.add(readRecord(rid, iFetchPlan, iIgnoreCache, null, false).getResult());
+    return result;
+  }
+
   public void checkForClusterPermissions(final String iClusterName) {
     // CHECK FOR ORESTRICTED
     OMetadata metaData = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata();
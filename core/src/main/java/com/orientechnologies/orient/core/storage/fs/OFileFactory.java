@@ -18,6 +18,7 @@ package com.orientechnologies.orient.core.storage.fs;
 import java.io.IOException;
 
 import com.orientechnologies.common.factory.ODynamicFactory;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
 
 /**
@@ -29,15 +30,21 @@ import com.orientechnologies.orient.core.exception.OConfigurationException;
 public class OFileFactory extends ODynamicFactory<String, Class<? extends OFile>> {
 	public static final String					MMAP			= "mmap";
 	public static final String					CLASSIC		= "classic";
+	public static final String					PAGED			= "paged";
 
 	protected static final OFileFactory	instance	= new OFileFactory();
 
 	public OFileFactory() {
 		register(MMAP, OFileMMap.class);
 		register(CLASSIC, OFileClassic.class);
+		register(PAGED, OFilePaged.class);
 	}
 
-	public OFile create(final String iType, final String iFileName, final String iOpenMode) throws IOException {
+	public OFile create(String iType, final String iFileName, final String iOpenMode) throws IOException {
+		if (MMAP.equals(iType) && OGlobalConfiguration.FILE_PAGE_CACHE_ENABLED.getValueAsBoolean())
+			// SAME HEADER LAYOUT: THE MEMORY MAPPED FILES CAN BE ACCESSED THROUGH THE PAGE CACHE
+			iType = PAGED;
+
 		final Class<? extends OFile> fileClass = registry.get(iType);
 
 		if (fileClass == null)
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.index.hashindex.local.arc.OARCBuffer;
+import com.orientechnologies.orient.core.index.hashindex.local.arc.OPageFile;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+
+/**
+ * File accessed through a page cache shared by all the paged files of the JVM. The cache is an {@link OARCBuffer} bounded by
+ * {@link OGlobalConfiguration#FILE_PAGE_CACHE_SIZE}: pages are loaded on first access and written back when evicted or on
+ * synch, so the memory used doesn't depend on the size of the database as it happens with memory mapping. A page is locked
+ * while it's copied, so it can't be evicted meanwhile.<br/>
+ * The header has the same layout of {@link OFileMMap}, so the files can be opened with both the types. Need to be synchronized
+ * by the external. Multiple Reader, Single Writer.
+ */
+public class OFilePaged extends OAbstractFile implements OPageFile {
+  public final static String        NAME = "paged";
+
+  private static volatile OARCBuffer pageCache;
+
+  protected int                     filledUpTo;                                       // PART OF HEADER (4 bytes)
+  protected ByteBuffer              headerBuffer;
+  private String                    cacheKey;
+  private OARCBuffer                cache;
+  private ODirectMemory             directMemory;
+
+  static {
+    Orient.instance().getProfiler()
+        .registerHookValue("system.file.pageCache.hits", "Number of pages found in the page cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return pageCache != null ? pageCache.getHits() : 0;
+              }
+            });
+    Orient.instance().getProfiler()
+        .registerHookValue("system.file.pageCache.misses", "Number of pages loaded from disk in the page cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return pageCache != null ? pageCache.getMisses() : 0;
+              }
+            });
+    Orient.instance().getProfiler()
+        .registerHookValue("system.file.pageCache.size", "Memory used by the pages in the page cache", METRIC_TYPE.SIZE,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return pageCache != null ? (long) pageCache.getCachedPages() * pageCache.getPageSize() : 0;
+              }
+            });
+  }
+
+  /**
+   * Returns the page cache shared by all the paged files, creating it at the first call.
+   */
+  public static OARCBuffer getPageCache() {
+    if (pageCache == null)
+      synchronized (OFilePaged.class) {
+        if (pageCache == null) {
+          final ODirectMemory directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+          if (directMemory == null)
+            throw new OConfigurationException("Cannot create the page cache because direct memory is not available on this JVM");
+
+          pageCache = new OARCBuffer(OFileUtils.getSizeAsNumber(OGlobalConfiguration.FILE_PAGE_CACHE_SIZE.getValue()), directMemory,
+              OGlobalConfiguration.FILE_PAGE_CACHE_PAGE_SIZE.getValueAsInteger(), null, false,
+              OGlobalConfiguration.FILE_PAGE_CACHE_STRIPES.getValueAsInteger());
+        }
+      }
+    return pageCache;
+  }
+
+  @Override
+  public OFilePaged init(final String iFileName, final String iMode) {
+    super.init(iFileName, iMode);
+    cacheKey = osFile.getAbsolutePath();
+    cache = getPageCache();
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+    return this;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      cache.closeFile(cacheKey, true);
+      setSoftlyClosed(true);
+    }
+    super.close();
+  }
+
+  @Override
+  public void delete() throws IOException {
+    // THE CONTENT IS LOST: DON'T WRITE BACK THE DIRTY PAGES
+    cache.closeFile(cacheKey, false);
+    super.delete();
+  }
+
+  @Override
+  public boolean renameTo(final File newFile) {
+    try {
+      cache.closeFile(cacheKey, true);
+    } catch (IOException e) {
+      return false;
+    }
+    final boolean renamed = super.renameTo(newFile);
+    cache.openFile(cacheKey, this);
+    return renamed;
+  }
+
+  public int getFileSize() {
+    return size;
+  }
+
+  public int getFilledUpTo() {
+    return filledUpTo;
+  }
+
+  public void read(final long iOffset, final byte[] iDestBuffer, final int iLenght) throws IOException {
+    read(iOffset, iDestBuffer, iLenght, 0);
+  }
+
+  public void read(long iOffset, final byte[] iData, int iLength, int iArrayOffset) throws IOException {
+    iOffset = checkRegions(iOffset, iLength);
+
+    final int pageSize = cache.getPageSize();
+    while (iLength > 0) {
+      final long pageIndex = iOffset / pageSize;
+      final int pageOffset = (int) (iOffset % pageSize);
+      final int chunkSize = Math.min(pageSize - pageOffset, iLength);
+
+      final long pointer = cache.loadAndLockForRead(cacheKey, pageIndex);
+      try {
+        System.arraycopy(directMemory.get(pointer + pageOffset, chunkSize), 0, iData, iArrayOffset, chunkSize);
+      } finally {
+        cache.releaseReadLock(cacheKey, pageIndex);
+      }
+
+      iOffset += chunkSize;
+      iArrayOffset += chunkSize;
+      iLength -= chunkSize;
+    }
+  }
+
+  public void write(final long iOffset, final byte[] iSourceBuffer) throws IOException {
+    if (iSourceBuffer != null)
+      write(iOffset, iSourceBuffer, iSourceBuffer.length, 0);
+  }
+
+  public void write(long iOffset, final byte[] iData, int iSize, int iArrayOffset) throws IOException {
+    if (iData == null || iData.length == 0 || iSize == 0)
+      return;
+
+    iOffset = checkRegions(iOffset, iSize);
+
+    final int pageSize = cache.getPageSize();
+    while (iSize > 0) {
+      final long pageIndex = iOffset / pageSize;
+      final int pageOffset = (int) (iOffset % pageSize);
+      final int chunkSize = Math.min(pageSize - pageOffset, iSize);
+
+      final byte[] chunk;
+      if (iArrayOffset == 0)
+        chunk = iData;
+      else {
+        chunk = new byte[chunkSize];
+        System.arraycopy(iData, iArrayOffset, chunk, 0, chunkSize);
+      }
+
+      final long pointer = cache.loadAndLockForWrite(cacheKey, pageIndex);
+      try {
+        directMemory.set(pointer + pageOffset, chunk, chunkSize);
+      } finally {
+        cache.releaseWriteLock(cacheKey, pageIndex);
+      }
+
+      iOffset += chunkSize;
+      iArrayOffset += chunkSize;
+      iSize -= chunkSize;
+    }
+  }
+
+  public short readShort(final long iOffset) throws IOException {
+    return OBinaryProtocol.bytes2short(readData(iOffset, OBinaryProtocol.SIZE_SHORT));
+  }
+
+  public int readInt(final long iOffset) throws IOException {
+    return OBinaryProtocol.bytes2int(readData(iOffset, OBinaryProtocol.SIZE_INT));
+  }
+
+  public long readLong(final long iOffset) throws IOException {
+    return OBinaryProtocol.bytes2long(readData(iOffset, OBinaryProtocol.SIZE_LONG));
+  }
+
+  public byte readByte(final long iOffset) throws IOException {
+    return readData(iOffset, OBinaryProtocol.SIZE_BYTE)[0];
+  }
+
+  public void writeShort(final long iOffset, final short iValue) throws IOException {
+    write(iOffset, OBinaryProtocol.short2bytes(iValue));
+  }
+
+  public void writeInt(final long iOffset, final int iValue) throws IOException {
+    write(iOffset, OBinaryProtocol.int2bytes(iValue));
+  }
+
+  public void writeLong(final long iOffset, final long iValue) throws IOException {
+    write(iOffset, OBinaryProtocol.long2bytes(iValue));
+  }
+
+  public void writeByte(final long iOffset, final byte iValue) throws IOException {
+    write(iOffset, new byte[] { iValue });
+  }
+
+  /**
+   * Writes back the dirty pages of the file and synchronizes it on disk.
+   */
+  @Override
+  public void synch() throws IOException {
+    cache.flushFile(cacheKey);
+    flushHeader();
+    if (dirty) {
+      dirty = false;
+      channel.force(false);
+    }
+  }
+
+  public void readPage(final long iPosition, final byte[] iContent) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(iContent);
+    // THE PAGES BEYOND THE END OF THE OS FILE ARE LEFT EMPTY
+    while (buffer.hasRemaining() && channel.read(buffer, HEADER_SIZE + iPosition + buffer.position()) > -1)
+      ;
+  }
+
+  public void writePage(final long iPosition, final byte[] iContent) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(iContent);
+    while (buffer.hasRemaining())
+      channel.write(buffer, HEADER_SIZE + iPosition + buffer.position());
+    setDirty();
+  }
+
+  @Override
+  public void writeHeaderLong(final int iPosition, final long iValue) {
+    if (headerBuffer != null) {
+      headerBuffer.putLong(HEADER_DATA_OFFSET + iPosition, iValue);
+      setHeaderDirty();
+    }
+  }
+
+  @Override
+  public long readHeaderLong(final int iPosition) {
+    return headerBuffer.getLong(HEADER_DATA_OFFSET + iPosition);
+  }
+
+  public boolean isSoftlyClosed() {
+    return headerBuffer.get(SOFTLY_CLOSED_OFFSET) == 1;
+  }
+
+  public void setSoftlyClosed(final boolean iValue) throws IOException {
+    if (headerBuffer == null || channel == null)
+      return;
+
+    headerBuffer.put(SOFTLY_CLOSED_OFFSET, (byte) (iValue ? 1 : 0));
+    setHeaderDirty();
+    flushHeader();
+    if (iValue)
+      // THE FLAG IS VALID ONLY IF ALL THE PAGES WRITTEN BEFORE ARE ON DISK
+      channel.force(false);
+  }
+
+  @Override
+  public void setSize(final int iSize) throws IOException {
+    if (maxSize > 0 && iSize > maxSize)
+      throw new IllegalArgumentException("Cannot extend the file to " + OFileUtils.getSizeAsString(iSize) + " because the max is "
+          + OFileUtils.getSizeAsString(maxSize));
+    if (iSize != size) {
+      checkSize(iSize);
+      size = iSize;
+      headerBuffer.putInt(SIZE_OFFSET, size);
+      setHeaderDirty();
+    }
+  }
+
+  @Override
+  protected void openChannel(final int iNewSize) throws IOException {
+    super.openChannel(iNewSize);
+
+    headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+    while (headerBuffer.hasRemaining() && channel.read(headerBuffer, headerBuffer.position()) > -1)
+      ;
+
+    cache.openFile(cacheKey, this);
+  }
+
+  @Override
+  protected void init() {
+    size = headerBuffer.getInt(SIZE_OFFSET);
+    filledUpTo = headerBuffer.getInt(FILLEDUPTO_OFFSET);
+  }
+
+  @Override
+  protected void setFilledUpTo(final int iHow) {
+    if (iHow != filledUpTo) {
+      filledUpTo = iHow;
+      headerBuffer.putInt(FILLEDUPTO_OFFSET, filledUpTo);
+      setHeaderDirty();
+    }
+  }
+
+  @Override
+  protected void flushHeader() throws IOException {
+    if (headerDirty) {
+      headerDirty = false;
+
+      final ByteBuffer buffer = (ByteBuffer) headerBuffer.duplicate().clear();
+      while (buffer.hasRemaining())
+        channel.write(buffer, buffer.position());
+      setDirty();
+    }
+  }
+
+  private byte[] readData(final long iOffset, final int iSize) throws IOException {
+    final byte[] content = new byte[iSize];
+    read(iOffset, content, iSize, 0);
+    return content;
+  }
+}
@@ -37,6 +37,7 @@ public class OMMapBufferEntry extends OSharedResourceAbstract implements Compara
   final long                        beginOffset;
   final int                         size;
   volatile boolean                  dirty;
+  private volatile long             dirtySince;
   private volatile long             lastUsed;
 
   static {
@@ -73,6 +74,10 @@ public class OMMapBufferEntry extends OSharedResourceAbstract implements Compara
     acquireExclusiveLock();
     try {
 
+      if (!dirty || buffer == null)
+        // FLUSHED OR CLOSED MEANWHILE
+        return true;
+
       final long timer = PROFILER.startChrono();
 
       // FORCE THE WRITE OF THE BUFFER
@@ -155,7 +160,17 @@ public class OMMapBufferEntry extends OSharedResourceAbstract implements Compara
   }
 
   void setDirty() {
-    this.dirty = true;
+    if (!dirty) {
+      dirtySince = System.currentTimeMillis();
+      this.dirty = true;
+    }
+  }
+
+  /**
+   * Returns the time the buffer has been changed the first time after the last flush.
+   */
+  long getDirtySince() {
+    return dirtySince;
   }
 
   void acquireWriteLock() {
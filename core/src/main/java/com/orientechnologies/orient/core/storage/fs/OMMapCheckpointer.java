@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.fs;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.orientechnologies.common.thread.OSoftThread;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+
+/**
+ * Flushes the dirty memory mapped blocks of {@link OMMapManagerNew} in background at a constant rate, starting from the blocks
+ * dirty since more time. The I/O is spread over time instead of being concentrated when all the blocks are flushed together.<br/>
+ * Every cycle the checkpointer gains the bytes allowed by the rate and spends them flushing blocks: a block bigger than the bytes
+ * available is flushed anyway and the debt is paid back in the next cycles.
+ *
+ * @see OGlobalConfiguration#FILE_MMAP_CHECKPOINT_RATE
+ */
+public class OMMapCheckpointer extends OSoftThread {
+  private static final long         CYCLE_TIME   = 100;
+  private static final OJVMProfiler PROFILER     = Orient.instance().getProfiler();
+
+  private final OMMapManagerNew     manager;
+  private final long                bytesPerCycle;
+  private long                      available;
+
+  private volatile int              dirtyBlocks;
+  private volatile long             dirtyBytes;
+  private volatile long             flushLag;
+
+  public OMMapCheckpointer(final OMMapManagerNew iManager, final int iRate) {
+    super("OrientDB MMapCheckpointer");
+    manager = iManager;
+    bytesPerCycle = Math.max(1, (long) iRate * 1024 * 1024 * CYCLE_TIME / 1000);
+  }
+
+  @Override
+  protected void execute() throws Exception {
+    if (!pauseCurrentThread(CYCLE_TIME))
+      // SHUTDOWN
+      return;
+
+    checkpoint();
+  }
+
+  /**
+   * Flushes the oldest dirty blocks up to the bytes available in this cycle.
+   *
+   * @return the number of blocks flushed
+   */
+  public int checkpoint() {
+    final long timer = PROFILER.startChrono();
+
+    // TAKE THE DIRTY TIME BEFORE TO SORT: IT CHANGES IF THE BLOCK IS FLUSHED MEANWHILE
+    final List<OMMapBufferEntry> dirtyEntries = manager.getDirtyEntries();
+    final DirtyBlock[] entries = new DirtyBlock[dirtyEntries.size()];
+    for (int k = 0; k < entries.length; ++k)
+      entries[k] = new DirtyBlock(dirtyEntries.get(k));
+    Arrays.sort(entries);
+
+    // DON'T ACCUMULATE MORE THAN A CYCLE TO AVOID BURSTS AFTER IDLE PERIODS
+    available = Math.min(available + bytesPerCycle, bytesPerCycle);
+
+    int flushed = 0;
+    int i = 0;
+    for (; i < entries.length && available > 0; ++i) {
+      final OMMapBufferEntry entry = entries[i].entry;
+      if (entry.flush()) {
+        available -= entry.size;
+        flushed++;
+      }
+    }
+
+    // UPDATE THE STATISTICS WITH THE BLOCKS LEFT DIRTY
+    long bytes = 0;
+    for (int k = i; k < entries.length; ++k)
+      bytes += entries[k].entry.size;
+    dirtyBlocks = entries.length - i;
+    dirtyBytes = bytes;
+    flushLag = i < entries.length ? System.currentTimeMillis() - entries[i].dirtySince : 0;
+
+    if (flushed > 0)
+      PROFILER.stopChrono(PROFILER.getProcessMetric("file.mmap.checkpoint"), "Background flush of memory mapped blocks", timer);
+
+    return flushed;
+  }
+
+  /**
+   * Returns the number of blocks left dirty by the last cycle.
+   */
+  public int getDirtyBlocks() {
+    return dirtyBlocks;
+  }
+
+  public long getDirtyBytes() {
+    return dirtyBytes;
+  }
+
+  /**
+   * Returns the time in ms since the oldest block left dirty by the last cycle has been changed.
+   */
+  public long getFlushLag() {
+    return flushLag;
+  }
+
+  private static class DirtyBlock implements Comparable<DirtyBlock> {
+    private final OMMapBufferEntry entry;
+    private final long             dirtySince;
+
+    private DirtyBlock(final OMMapBufferEntry iEntry) {
+      entry = iEntry;
+      dirtySince = iEntry.getDirtySince();
+    }
+
+    public int compareTo(final DirtyBlock o) {
+      return dirtySince < o.dirtySince ? -1 : (dirtySince == o.dirtySince ? 0 : 1);
+    }
+  }
+}
@@ -16,7 +16,9 @@
 package com.orientechnologies.orient.core.storage.fs;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
@@ -54,6 +56,13 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
 
   private int                                                         autoFlushUnusedTime;
 
+  private OMMapCheckpointer                                           checkpointer;
+
+  /**
+   * Max size of a new mapped block. Blocks are smaller than the file only with the background checkpoint.
+   */
+  private int                                                         maxBlockSize            = Integer.MAX_VALUE;
+
   public void init() {
     Orient
         .instance()
@@ -88,6 +97,14 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
 
       Orient.getTimer().schedule(autoFlushTask, autoFlushTimer, autoFlushTimer);
     }
+
+    final int checkpointRate = OGlobalConfiguration.FILE_MMAP_CHECKPOINT_RATE.getValueAsInteger();
+    if (checkpointRate > 0) {
+      maxBlockSize = OGlobalConfiguration.FILE_MMAP_CHECKPOINT_BLOCK_SIZE.getValueAsInteger();
+      checkpointer = new OMMapCheckpointer(this, checkpointRate);
+      installCheckpointerHooks();
+      checkpointer.start();
+    }
   }
 
   /**
@@ -126,7 +143,7 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
     }
 
     // map new entry
-    final OMMapBufferEntry newMappedEntry;
+    OMMapBufferEntry newMappedEntry;
 
     lockManager.acquireLock(Thread.currentThread(), iFile, OLockManager.LOCK.EXCLUSIVE);
     try {
@@ -142,16 +159,24 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
         totalMappedSize = lastEntry.beginOffset + lastEntry.size;
       }
 
-      try {
-        newMappedEntry = mapNew(iFile, totalMappedSize);
-      } catch (IOException ex) {
-        return null;
-      }
-      final OMMapBufferEntry[] newEntries = addEntry(fileEntries, newMappedEntry);
-      bufferPoolPerFile.put(iFile, newEntries);
+      OMMapBufferEntry[] newEntries = fileEntries;
+      OMMapBufferEntry[] resultEntries = foundEntries;
+      do {
+        // MAP NEW BLOCKS UNTIL THE REQUESTED RANGE IS COVERED
+        try {
+          newMappedEntry = mapNew(iFile, totalMappedSize);
+        } catch (IOException ex) {
+          return null;
+        }
+        newEntries = addEntry(newEntries, newMappedEntry);
+        totalMappedSize += newMappedEntry.size;
+
+        // add new entry to previously found
+        if (totalMappedSize > iBeginOffset)
+          resultEntries = addEntry(resultEntries, newMappedEntry);
+      } while (totalMappedSize < iBeginOffset + iSize && totalMappedSize < iFile.getFileSize());
 
-      // add new entry to previously found
-      final OMMapBufferEntry[] resultEntries = addEntry(foundEntries, newMappedEntry);
+      bufferPoolPerFile.put(iFile, newEntries);
       acquireLocksOnEntries(resultEntries, iOperationType);
 
       return resultEntries;
@@ -215,6 +240,12 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
    * Removes mapped entries for all existing files.
    */
   public void shutdown() {
+    if (checkpointer != null) {
+      checkpointer.sendShutdown();
+      uninstallCheckpointerHooks();
+      checkpointer = null;
+    }
+
     for (Map.Entry<OFileMMap, OMMapBufferEntry[]> entries : bufferPoolPerFile.entrySet()) {
       OFileMMap file;
       file = entries.getKey();
@@ -384,8 +415,8 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
    */
   private OMMapBufferEntry mapNew(final OFileMMap file, final long beginOffset) throws IOException {
     metricMappedPages++;
-    return new OMMapBufferEntry(file, file.map(beginOffset, file.getFileSize() - (int) beginOffset), beginOffset,
-        file.getFileSize() - (int) beginOffset);
+    final int size = Math.min(file.getFileSize() - (int) beginOffset, maxBlockSize);
+    return new OMMapBufferEntry(file, file.map(beginOffset, size), beginOffset, size);
   }
 
   private OMMapBufferEntry[] addEntry(final OMMapBufferEntry[] sourceEntries, final OMMapBufferEntry newEntry) {
@@ -489,6 +520,55 @@ public class OMMapManagerNew extends OMMapManagerAbstract implements OMMapManage
     }
   }
 
+  /**
+   * Returns the mapped blocks changed since their last flush.
+   */
+  List<OMMapBufferEntry> getDirtyEntries() {
+    final List<OMMapBufferEntry> result = new ArrayList<OMMapBufferEntry>();
+    for (OMMapBufferEntry[] fileEntries : bufferPoolPerFile.values())
+      for (OMMapBufferEntry entry : fileEntries)
+        if (entry.isDirty() && entry.isValid())
+          result.add(entry);
+    return result;
+  }
+
+  private void installCheckpointerHooks() {
+    final OMMapCheckpointer current = checkpointer;
+    Orient
+        .instance()
+        .getProfiler()
+        .registerHookValue("system.file.mmap.dirtyPages", "Number of memory mapped pages not flushed on disk yet",
+            METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+              public Object getValue() {
+                return current.getDirtyBlocks();
+              }
+            });
+    Orient
+        .instance()
+        .getProfiler()
+        .registerHookValue("system.file.mmap.dirtySize", "Size of the memory mapped pages not flushed on disk yet",
+            METRIC_TYPE.SIZE, new OProfilerHookValue() {
+              public Object getValue() {
+                return current.getDirtyBytes();
+              }
+            });
+    Orient
+        .instance()
+        .getProfiler()
+        .registerHookValue("system.file.mmap.flushLag", "Time in ms since the oldest memory mapped page not flushed was changed",
+            METRIC_TYPE.CHRONO, new OProfilerHookValue() {
+              public Object getValue() {
+                return current.getFlushLag();
+              }
+            });
+  }
+
+  private void uninstallCheckpointerHooks() {
+    Orient.instance().getProfiler().unregisterHookValue("system.file.mmap.dirtyPages");
+    Orient.instance().getProfiler().unregisterHookValue("system.file.mmap.dirtySize");
+    Orient.instance().getProfiler().unregisterHookValue("system.file.mmap.flushLag");
+  }
+
   private static final class LastMMapEntrySearchInfo {
     private final int  foundMmapIndex;
     private final long requestedPosition;
@@ -40,6 +40,7 @@ public class OClusterLocalHole extends OSingleFileSegment {
   public OClusterLocalHole(final OClusterLocal iClusterLocal, final OStorageLocal iStorage, final OStorageFileConfiguration iConfig)
       throws IOException {
     super(iStorage, iConfig);
+    file = iStorage.wrapFile(file);
     owner = iClusterLocal;
   }
 
@@ -72,7 +72,7 @@ public class ODataLocal extends OMultiFileSegment implements ODataSegment {
                                                                      0, true);
 
   public ODataLocal(final OStorageLocal iStorage, final OStorageDataConfiguration iConfig, final int iId) throws IOException {
-    super(iStorage, iConfig, DEF_EXTENSION, 0);
+    super(iStorage, iConfig, DEF_EXTENSION, 0, true);
     id = iId;
 
     OFileUtils.checkValidName(iConfig.name);
@@ -58,6 +58,7 @@ public class ODataLocalHole extends OSingleFileSegment {
 
   public ODataLocalHole(final OStorageLocal iStorage, final OStorageFileConfiguration iConfig) throws IOException {
     super(iStorage, iConfig);
+    file = iStorage.wrapFile(file);
 
     PROFILER_DATA_RECYCLED_COMPLETE = "db." + storage.getName() + ".data.recycled.complete";
     PROFILER_DATA_RECYCLED_PARTIAL = "db." + storage.getName() + ".data.recycled.partial";
@@ -310,6 +311,13 @@ public class ODataLocalHole extends OSingleFileSegment {
   }
 
   private void loadHolesInMemory() throws IOException {
+    // THE SEGMENT COULD BE REOPENED
+    freeHoles.clear();
+    availableHolesList.clear();
+    availableHolesBySize.clear();
+    availableHolesByPosition.clear();
+    maxHoleSize = -1;
+
     final int holes = getHoles();
 
     for (int pos = 0; pos < holes; ++pos) {
@@ -39,12 +39,23 @@ public class OMultiFileSegment extends OSegment {
   private int                            fileStartSize;
   final private int                      fileMaxSize;
   private final int                      fileIncrementSize;
+  private final boolean                  logged;
   private boolean                        wasSoftlyClosedAtPreviousTime = true;
 
   public OMultiFileSegment(final OStorageLocal iStorage, final OStorageSegmentConfiguration iConfig, final String iFileExtension,
       final int iRoundMaxSize) throws IOException {
+    this(iStorage, iConfig, iFileExtension, iRoundMaxSize, false);
+  }
+
+  /**
+   * @param iLogged
+   *          if true the changes to the files are logged in the write ahead log of the storage, if enabled
+   */
+  public OMultiFileSegment(final OStorageLocal iStorage, final OStorageSegmentConfiguration iConfig, final String iFileExtension,
+      final int iRoundMaxSize, final boolean iLogged) throws IOException {
     super(iStorage, iConfig.name);
 
+    logged = iLogged;
     config = iConfig;
     fileExtension = iFileExtension;
     type = iConfig.fileType;
@@ -65,9 +76,8 @@ public class OMultiFileSegment extends OSegment {
     if (iConfig.infoFiles.length == 0) {
       // EMPTY FILE: CREATE THE FIRST FILE BY DEFAULT
       files = new OFile[1];
-      files[0] = OFileFactory.instance().create(type,
-          iStorage.getVariableParser().resolveVariables(config.getLocation() + "/" + name + "." + 0 + fileExtension),
-          iStorage.getMode());
+      files[0] = createFile(iStorage.getVariableParser().resolveVariables(
+          config.getLocation() + "/" + name + "." + 0 + fileExtension));
       perFileMaxSize = fileMaxSize;
       files[0].setMaxSize(perFileMaxSize);
       files[0].setIncrementSize(fileIncrementSize);
@@ -75,8 +85,7 @@ public class OMultiFileSegment extends OSegment {
     } else {
       files = new OFile[iConfig.infoFiles.length];
       for (int i = 0; i < files.length; ++i) {
-        files[i] = OFileFactory.instance().create(type, iStorage.getVariableParser().resolveVariables(iConfig.infoFiles[i].path),
-            iStorage.getMode());
+        files[i] = createFile(iStorage.getVariableParser().resolveVariables(iConfig.infoFiles[i].path));
         perFileMaxSize = fileMaxSize;
 
         files[i].setMaxSize(perFileMaxSize);
@@ -274,8 +283,7 @@ public class OMultiFileSegment extends OSegment {
   private OFile createNewFile() throws IOException {
     final int num = files.length - 1;
 
-    final OFile file = OFileFactory.instance().create(type, config.getLocation() + "/" + name + "." + num + fileExtension,
-        storage.getMode());
+    final OFile file = createFile(config.getLocation() + "/" + name + "." + num + fileExtension);
     file.setMaxSize(fileMaxSize);
     file.create(fileStartSize);
     files[num] = file;
@@ -285,6 +293,11 @@ public class OMultiFileSegment extends OSegment {
     return file;
   }
 
+  private OFile createFile(final String iPath) throws IOException {
+    final OFile file = OFileFactory.instance().create(type, iPath, storage.getMode());
+    return logged ? storage.wrapFile(file) : file;
+  }
+
   private void addInfoFileConfigEntry(final OFile file) throws IOException {
     OStorageFileConfiguration[] newConfigFiles = new OStorageFileConfiguration[config.infoFiles.length + 1];
     for (int i = 0; i < config.infoFiles.length; ++i)
@@ -20,12 +20,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimerTask;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.orientechnologies.common.concur.lock.OLockManager.LOCK;
 import com.orientechnologies.common.concur.lock.OModificationLock;
@@ -66,8 +69,11 @@ import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.storage.OStorageOperationResult;
+import com.orientechnologies.orient.core.storage.fs.OFile;
 import com.orientechnologies.orient.core.storage.fs.OMMapManagerLocator;
 import com.orientechnologies.orient.core.storage.impl.local.eh.OClusterLocalEH;
+import com.orientechnologies.orient.core.storage.impl.local.wal.OWALFile;
+import com.orientechnologies.orient.core.storage.impl.local.wal.OWriteAheadLog;
 import com.orientechnologies.orient.core.tx.OTransaction;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
@@ -86,14 +92,28 @@ public class OStorageLocal extends OStorageEmbedded {
   private int                           defaultClusterId          = -1;
 
   private static String[]               ALL_FILE_EXTENSIONS       = { "ocf", ".och", ".ocl", ".oda", ".odh", ".otx", ".oco",
-      ".ocs", ".oef", ".oem", ".oet"                             };
+      ".ocs", ".oef", ".oem", ".oet", OWriteAheadLog.EXTENSION   };
 
-  private long                          positionGenerator         = 1;
+  private final AtomicLong              positionGenerator         = new AtomicLong(1);
 
   private OModificationLock             modificationLock          = new OModificationLock();
 
   private final Set<String>             clustersToSyncImmediately = new HashSet<String>();
 
+  /**
+   * If true record operations and commits get the storage lock in shared mode and lock only the involved data segment (clusters
+   * are locked internally), otherwise they lock the entire storage in exclusive mode.
+   */
+  private final boolean                 lockPerCluster;
+
+  /**
+   * Write ahead log of clusters and data segments, null if disabled.
+   */
+  private OWriteAheadLog                wal;
+  private TimerTask                     walCheckpointTask;
+  private boolean                       walRecovered;
+  private final boolean                 walSynch;
+
   public OStorageLocal(final String iName, final String iFilePath, final String iMode) throws IOException {
     super(iName, iFilePath, iMode);
 
@@ -120,6 +140,9 @@ public class OStorageLocal extends OStorageEmbedded {
         .split("\\s*,\\s*");
     clustersToSyncImmediately.addAll(Arrays.asList(clustersToSync));
 
+    lockPerCluster = OGlobalConfiguration.STORAGE_LOCK_PER_CLUSTER.getValueAsBoolean();
+    walSynch = OGlobalConfiguration.STORAGE_WAL_SYNCH.getValueAsBoolean();
+
     installProfilerHooks();
   }
 
@@ -141,6 +164,8 @@ public class OStorageLocal extends OStorageEmbedded {
 
       status = STATUS.OPEN;
 
+      final boolean walExists = openWAL(false);
+
       // OPEN BASIC SEGMENTS
       int pos;
       pos = registerDataSegment(new OStorageDataConfiguration(configuration, OStorage.DATA_DEFAULT_NAME, 0, getStoragePath()));
@@ -207,6 +232,13 @@ public class OStorageLocal extends OStorageEmbedded {
         }
       }
 
+      if (walExists) {
+        walRecovered = true;
+        if (wal.recover() > 0)
+          // THE STORAGE WASN'T CLOSED PROPERLY: RELOAD THE CONTENT OF THE SEGMENTS CACHED IN MEMORY
+          reopenSegments();
+      }
+
       txManager.open();
 
     } catch (Exception e) {
@@ -269,6 +301,8 @@ public class OStorageLocal extends OStorageEmbedded {
 
       status = STATUS.OPEN;
 
+      openWAL(true);
+
       addDataSegment(OStorage.DATA_DEFAULT_NAME);
 
       // ADD THE METADATA CLUSTER TO STORE INTERNAL STUFF
@@ -325,6 +359,10 @@ public class OStorageLocal extends OStorageEmbedded {
 
       status = STATUS.CLOSING;
 
+      if (wal != null)
+        // NOTHING TO RECOVER AT NEXT OPEN
+        wal.checkpoint();
+
       for (OCluster cluster : clusters)
         if (cluster != null)
           cluster.close();
@@ -338,6 +376,8 @@ public class OStorageLocal extends OStorageEmbedded {
 
       txManager.close();
 
+      closeWAL();
+
       if (configuration != null)
         configuration.close();
 
@@ -1224,8 +1264,10 @@ public class OStorageLocal extends OStorageEmbedded {
   public void commit(final OTransaction iTx) {
     modificationLock.requestModificationLock();
     try {
-      lock.acquireExclusiveLock();
+      acquireWriteLock();
       try {
+        // TRANSACTIONS COMMIT CONCURRENTLY WHEN THE STORAGE IS LOCKED PER CLUSTER: LOCK THE RECORDS THEY TOUCH
+        final List<ORID> lockedRecords = lockPerCluster ? lockTxRecords(iTx) : null;
         try {
           txManager.clearLogEntries(iTx);
           txManager.commitAllPendingRecords(iTx);
@@ -1249,9 +1291,12 @@ public class OStorageLocal extends OStorageEmbedded {
             // IF WE THROW EXCEPTION, A ROLLBACK WILL BE DONE AT DB LEVEL BUT NOT AT STORAGE LEVEL
             OLogManager.instance().error(this, "Clear tx log entries failed", e);
           }
+
+          if (lockedRecords != null)
+            unlockTxRecords(lockedRecords);
         }
       } finally {
-        lock.releaseExclusiveLock();
+        releaseWriteLock();
       }
     } finally {
       modificationLock.releaseModificationLock();
@@ -1277,7 +1322,7 @@ public class OStorageLocal extends OStorageEmbedded {
 
     final long timer = Orient.instance().getProfiler().startChrono();
 
-    lock.acquireExclusiveLock();
+    acquireWriteLock();
     try {
       for (OCluster cluster : clusters)
         if (cluster != null)
@@ -1294,7 +1339,7 @@ public class OStorageLocal extends OStorageEmbedded {
       throw new OStorageException("Error on synch storage '" + name + "'", e);
 
     } finally {
-      lock.releaseExclusiveLock();
+      releaseWriteLock();
 
       Orient.instance().getProfiler().stopChrono("db." + name + ".synch", "Synch a local database", timer, "db.*.synch");
     }
@@ -1305,7 +1350,7 @@ public class OStorageLocal extends OStorageEmbedded {
 
     final long timer = Orient.instance().getProfiler().startChrono();
 
-    lock.acquireExclusiveLock();
+    acquireWriteLock();
     try {
       cluster.synch();
 
@@ -1319,7 +1364,7 @@ public class OStorageLocal extends OStorageEmbedded {
       throw new OStorageException("Error on synch storage '" + name + "'", e);
 
     } finally {
-      lock.releaseExclusiveLock();
+      releaseWriteLock();
 
       Orient.instance().getProfiler()
           .stopChrono("db." + name + "record.synch", "Synch a record to local database", timer, "db.*.record.synch");
@@ -1639,7 +1684,7 @@ public class OStorageLocal extends OStorageEmbedded {
         if (OGlobalConfiguration.USE_NODE_ID_CLUSTER_POSITION.getValueAsBoolean()) {
           ppos.clusterPosition = OClusterPositionFactory.INSTANCE.generateUniqueClusterPosition();
         } else {
-          ppos.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf(positionGenerator++);
+          ppos.clusterPosition = OClusterPositionFactory.INSTANCE.valueOf(positionGenerator.getAndIncrement());
         }
       } else {
         ppos.clusterPosition = rid.clusterPosition;
@@ -1653,27 +1698,32 @@ public class OStorageLocal extends OStorageEmbedded {
 
       rid.clusterPosition = ppos.clusterPosition;
 
-      lock.acquireExclusiveLock();
+      acquireWriteLock();
       try {
         lockManager.acquireLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
         try {
-          ppos.dataSegmentId = dataSegment.getId();
-          ppos.dataSegmentPos = dataSegment.addRecord(rid, content);
+          acquireDataSegmentLock(dataSegment, true);
+          try {
+            ppos.dataSegmentId = dataSegment.getId();
+            ppos.dataSegmentPos = dataSegment.addRecord(rid, content);
 
-          cluster.updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId, ppos.dataSegmentPos);
+            cluster.updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId, ppos.dataSegmentPos);
 
-          if (recordVersion.getCounter() > -1 && recordVersion.compareTo(ppos.recordVersion) > 0) {
-            // OVERWRITE THE VERSION
-            cluster.updateVersion(rid.clusterPosition, recordVersion);
-            ppos.recordVersion = recordVersion;
-          }
+            if (recordVersion.getCounter() > -1 && recordVersion.compareTo(ppos.recordVersion) > 0) {
+              // OVERWRITE THE VERSION
+              cluster.updateVersion(rid.clusterPosition, recordVersion);
+              ppos.recordVersion = recordVersion;
+            }
 
-          return ppos;
+            return ppos;
+          } finally {
+            releaseDataSegmentLock(dataSegment, true);
+          }
         } finally {
           lockManager.releaseLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
         }
       } finally {
-        lock.releaseExclusiveLock();
+        releaseWriteLock();
       }
     } catch (IOException ioe) {
       try {
@@ -1715,6 +1765,110 @@ public class OStorageLocal extends OStorageEmbedded {
     }
   }
 
+  /**
+   * Acquires the storage lock for record write operations: in exclusive mode by default, in shared mode if the storage is locked
+   * per cluster. In this case the involved data segment must be locked too.
+   * 
+   * @see #acquireDataSegmentLock(ODataLocal, boolean)
+   */
+  protected void acquireWriteLock() {
+    if (lockPerCluster)
+      lock.acquireSharedLock();
+    else
+      lock.acquireExclusiveLock();
+  }
+
+  protected void releaseWriteLock() {
+    if (walSynch && wal != null)
+      wal.synch();
+
+    if (lockPerCluster)
+      lock.releaseSharedLock();
+    else
+      lock.releaseExclusiveLock();
+  }
+
+  /**
+   * Locks the data segment when the storage is locked per cluster. Record content and position in cluster are updated under this
+   * lock, so the defrag, that moves records holding the data segment lock, always finds them consistent. Clusters are always
+   * locked after the data segment.
+   */
+  protected void acquireDataSegmentLock(final ODataLocal iDataSegment, final boolean iExclusive) {
+    if (!lockPerCluster || iDataSegment == null)
+      return;
+
+    if (iExclusive)
+      iDataSegment.acquireExclusiveLock();
+    else
+      iDataSegment.acquireSharedLock();
+  }
+
+  /**
+   * Locks the data segment containing the record when the storage is locked per cluster. The record must be already locked, so its
+   * data segment cannot change in the meanwhile.
+   * 
+   * @return The locked data segment, or null if nothing has been locked
+   */
+  protected ODataLocal acquireDataSegmentLock(final OCluster iCluster, final ORecordId iRid, final boolean iExclusive)
+      throws IOException {
+    if (!lockPerCluster)
+      return null;
+
+    final OPhysicalPosition ppos = iCluster.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
+    if (ppos == null || ppos.dataSegmentId < 0)
+      return null;
+
+    final ODataLocal dataSegment = getDataSegmentById(ppos.dataSegmentId);
+    acquireDataSegmentLock(dataSegment, iExclusive);
+    return dataSegment;
+  }
+
+  protected void releaseDataSegmentLock(final ODataLocal iDataSegment, final boolean iExclusive) {
+    if (!lockPerCluster || iDataSegment == null)
+      return;
+
+    if (iExclusive)
+      iDataSegment.releaseExclusiveLock();
+    else
+      iDataSegment.releaseSharedLock();
+  }
+
+  /**
+   * Locks in exclusive mode all the persistent records touched by the transaction. Records are locked in order to avoid deadlocks
+   * with other transactions committing at the same time.
+   */
+  protected List<ORID> lockTxRecords(final OTransaction iTx) {
+    final List<ORID> rids = new ArrayList<ORID>();
+    for (ORecordOperation txEntry : iTx.getAllRecordEntries()) {
+      final ORID rid = txEntry.getRecord().getIdentity();
+      if (rid.isPersistent())
+        rids.add(rid.copy());
+    }
+
+    Collections.sort(rids);
+
+    final List<ORID> locked = new ArrayList<ORID>(rids.size());
+    try {
+      for (ORID rid : rids) {
+        lockManager.acquireLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
+        locked.add(rid);
+      }
+    } catch (RuntimeException e) {
+      unlockTxRecords(locked);
+      throw e;
+    }
+    return locked;
+  }
+
+  protected void unlockTxRecords(final List<ORID> iLocked) {
+    for (ORID rid : iLocked)
+      lockManager.releaseLock(Thread.currentThread(), rid, LOCK.EXCLUSIVE);
+  }
+
+  public boolean isLockPerCluster() {
+    return lockPerCluster;
+  }
+
   @Override
   public boolean isHashClustersAreUsed() {
     return OGlobalConfiguration.USE_LHPEPS_CLUSTER.getValueAsBoolean();
@@ -1739,18 +1893,24 @@ public class OStorageLocal extends OStorageEmbedded {
     try {
       lockManager.acquireLock(Thread.currentThread(), iRid, LOCK.SHARED);
       try {
-        final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
+        // NON ATOMIC READS ALREADY HOLD THE CLUSTER LOCK THAT PREVENTS THE DEFRAG TO MOVE THEIR RECORDS
+        final ODataLocal lockedData = iAtomicLock ? acquireDataSegmentLock(iClusterSegment, iRid, false) : null;
+        try {
+          final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
 
-        if (ppos != null && loadTombstones && ppos.recordVersion.isTombstone())
-          return new ORawBuffer(null, ppos.recordVersion, ppos.recordType);
+          if (ppos != null && loadTombstones && ppos.recordVersion.isTombstone())
+            return new ORawBuffer(null, ppos.recordVersion, ppos.recordType);
 
-        if (ppos == null || !checkForRecordValidity(ppos))
-          // DELETED
-          return null;
+          if (ppos == null || !checkForRecordValidity(ppos))
+            // DELETED
+            return null;
 
-        final ODataLocal data = getDataSegmentById(ppos.dataSegmentId);
-        return new ORawBuffer(data.getRecord(ppos.dataSegmentPos), ppos.recordVersion, ppos.recordType);
+          final ODataLocal data = getDataSegmentById(ppos.dataSegmentId);
+          return new ORawBuffer(data.getRecord(ppos.dataSegmentPos), ppos.recordVersion, ppos.recordType);
 
+        } finally {
+          releaseDataSegmentLock(lockedData, false);
+        }
       } finally {
         lockManager.releaseLock(Thread.currentThread(), iRid, LOCK.SHARED);
       }
@@ -1774,67 +1934,72 @@ public class OStorageLocal extends OStorageEmbedded {
 
     final long timer = Orient.instance().getProfiler().startChrono();
 
-    lock.acquireExclusiveLock();
+    acquireWriteLock();
     try {
 
       // GET THE SHARED LOCK AND GET AN EXCLUSIVE LOCK AGAINST THE RECORD
       lockManager.acquireLock(Thread.currentThread(), iRid, LOCK.EXCLUSIVE);
       try {
+        final ODataLocal lockedData = acquireDataSegmentLock(iClusterSegment, iRid, true);
+        try {
 
-        // UPDATE IT
-        final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
-        if (!checkForRecordValidity(ppos))
-          return null;
-
-        // VERSION CONTROL CHECK
-        switch (iVersion.getCounter()) {
-        // DOCUMENT UPDATE, NO VERSION CONTROL
-        case -1:
-          ppos.recordVersion.increment();
-          iClusterSegment.updateVersion(iRid.clusterPosition, ppos.recordVersion);
-          break;
-
-        // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
-        case -2:
-          break;
-
-        default:
-          // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
-          if (iVersion.getCounter() > -1) {
-            // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-            if (!iVersion.equals(ppos.recordVersion))
-              if (OFastConcurrentModificationException.enabled())
-                throw OFastConcurrentModificationException.instance();
-              else
-                throw new OConcurrentModificationException(iRid, ppos.recordVersion, iVersion, ORecordOperation.UPDATED);
+          // UPDATE IT
+          final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
+          if (!checkForRecordValidity(ppos))
+            return null;
+
+          // VERSION CONTROL CHECK
+          switch (iVersion.getCounter()) {
+          // DOCUMENT UPDATE, NO VERSION CONTROL
+          case -1:
             ppos.recordVersion.increment();
             iClusterSegment.updateVersion(iRid.clusterPosition, ppos.recordVersion);
-          } else {
-            // DOCUMENT ROLLBACKED
-            iVersion.clearRollbackMode();
-            ppos.recordVersion.copyFrom(iVersion);
-            iClusterSegment.updateVersion(iRid.clusterPosition, ppos.recordVersion);
+            break;
+
+          // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
+          case -2:
+            break;
+
+          default:
+            // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
+            if (iVersion.getCounter() > -1) {
+              // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+              if (!iVersion.equals(ppos.recordVersion))
+                if (OFastConcurrentModificationException.enabled())
+                  throw OFastConcurrentModificationException.instance();
+                else
+                  throw new OConcurrentModificationException(iRid, ppos.recordVersion, iVersion, ORecordOperation.UPDATED);
+              ppos.recordVersion.increment();
+              iClusterSegment.updateVersion(iRid.clusterPosition, ppos.recordVersion);
+            } else {
+              // DOCUMENT ROLLBACKED
+              iVersion.clearRollbackMode();
+              ppos.recordVersion.copyFrom(iVersion);
+              iClusterSegment.updateVersion(iRid.clusterPosition, ppos.recordVersion);
+            }
           }
-        }
 
-        if (ppos.recordType != iRecordType)
-          iClusterSegment.updateRecordType(iRid.clusterPosition, iRecordType);
+          if (ppos.recordType != iRecordType)
+            iClusterSegment.updateRecordType(iRid.clusterPosition, iRecordType);
 
-        final long newDataSegmentOffset;
+          final long newDataSegmentOffset;
 
-        if (ppos.dataSegmentPos == -1)
-          // WAS EMPTY FIRST TIME, CREATE IT NOW
-          newDataSegmentOffset = getDataSegmentById(ppos.dataSegmentId).addRecord(iRid, iContent);
-        else
-          newDataSegmentOffset = getDataSegmentById(ppos.dataSegmentId).setRecord(ppos.dataSegmentPos, iRid, iContent);
+          if (ppos.dataSegmentPos == -1)
+            // WAS EMPTY FIRST TIME, CREATE IT NOW
+            newDataSegmentOffset = getDataSegmentById(ppos.dataSegmentId).addRecord(iRid, iContent);
+          else
+            newDataSegmentOffset = getDataSegmentById(ppos.dataSegmentId).setRecord(ppos.dataSegmentPos, iRid, iContent);
 
-        if (newDataSegmentOffset != ppos.dataSegmentPos) {
-          // UPDATE DATA SEGMENT OFFSET WITH THE NEW PHYSICAL POSITION
-          iClusterSegment.updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId, newDataSegmentOffset);
-          ppos.dataSegmentPos = newDataSegmentOffset;
-        }
+          if (newDataSegmentOffset != ppos.dataSegmentPos) {
+            // UPDATE DATA SEGMENT OFFSET WITH THE NEW PHYSICAL POSITION
+            iClusterSegment.updateDataSegmentPosition(ppos.clusterPosition, ppos.dataSegmentId, newDataSegmentOffset);
+            ppos.dataSegmentPos = newDataSegmentOffset;
+          }
 
-        return ppos;
+          return ppos;
+        } finally {
+          releaseDataSegmentLock(lockedData, true);
+        }
 
       } finally {
         lockManager.releaseLock(Thread.currentThread(), iRid, LOCK.EXCLUSIVE);
@@ -1845,7 +2010,7 @@ public class OStorageLocal extends OStorageEmbedded {
       OLogManager.instance().error(this, "Error on updating record " + iRid + " (cluster: " + iClusterSegment + ")", e);
 
     } finally {
-      lock.releaseExclusiveLock();
+      releaseWriteLock();
 
       Orient.instance().getProfiler()
           .stopChrono(PROFILER_UPDATE_RECORD, "Update a record to local database", timer, "db.*.updateRecord");
@@ -1858,38 +2023,43 @@ public class OStorageLocal extends OStorageEmbedded {
       boolean useTombstones) {
     final long timer = Orient.instance().getProfiler().startChrono();
 
-    lock.acquireExclusiveLock();
+    acquireWriteLock();
     try {
       lockManager.acquireLock(Thread.currentThread(), iRid, LOCK.EXCLUSIVE);
       try {
+        final ODataLocal lockedData = acquireDataSegmentLock(iClusterSegment, iRid, true);
+        try {
 
-        final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
+          final OPhysicalPosition ppos = iClusterSegment.getPhysicalPosition(new OPhysicalPosition(iRid.clusterPosition));
 
-        if (ppos == null || ppos.dataSegmentId < 0 || (useTombstones && ppos.recordVersion.isTombstone()))
-          // ALREADY DELETED
-          return null;
+          if (ppos == null || ppos.dataSegmentId < 0 || (useTombstones && ppos.recordVersion.isTombstone()))
+            // ALREADY DELETED
+            return null;
 
-        // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-        if (iVersion.getCounter() > -1 && !ppos.recordVersion.equals(iVersion))
-          if (OFastConcurrentModificationException.enabled())
-            throw OFastConcurrentModificationException.instance();
-          else
-            throw new OConcurrentModificationException(iRid, ppos.recordVersion, iVersion, ORecordOperation.DELETED);
+          // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+          if (iVersion.getCounter() > -1 && !ppos.recordVersion.equals(iVersion))
+            if (OFastConcurrentModificationException.enabled())
+              throw OFastConcurrentModificationException.instance();
+            else
+              throw new OConcurrentModificationException(iRid, ppos.recordVersion, iVersion, ORecordOperation.DELETED);
 
-        if (!ppos.recordVersion.isTombstone() && ppos.dataSegmentPos > -1) {
-          try {
-            getDataSegmentById(ppos.dataSegmentId).deleteRecord(ppos.dataSegmentPos);
-          } catch (OIOException e) {
-            OLogManager.instance().error(this, "Cannot remove the record in data segment, however remove it from cluster", e);
+          if (!ppos.recordVersion.isTombstone() && ppos.dataSegmentPos > -1) {
+            try {
+              getDataSegmentById(ppos.dataSegmentId).deleteRecord(ppos.dataSegmentPos);
+            } catch (OIOException e) {
+              OLogManager.instance().error(this, "Cannot remove the record in data segment, however remove it from cluster", e);
+            }
           }
-        }
 
-        if (useTombstones && iClusterSegment.hasTombstonesSupport())
-          iClusterSegment.convertToTombstone(iRid.clusterPosition);
-        else
-          iClusterSegment.removePhysicalPosition(iRid.clusterPosition);
+          if (useTombstones && iClusterSegment.hasTombstonesSupport())
+            iClusterSegment.convertToTombstone(iRid.clusterPosition);
+          else
+            iClusterSegment.removePhysicalPosition(iRid.clusterPosition);
 
-        return ppos;
+          return ppos;
+        } finally {
+          releaseDataSegmentLock(lockedData, true);
+        }
 
       } finally {
         lockManager.releaseLock(Thread.currentThread(), iRid, LOCK.EXCLUSIVE);
@@ -1897,7 +2067,7 @@ public class OStorageLocal extends OStorageEmbedded {
     } catch (IOException e) {
       OLogManager.instance().error(this, "Error on deleting record " + iRid + "( cluster: " + iClusterSegment + ")", e);
     } finally {
-      lock.releaseExclusiveLock();
+      releaseWriteLock();
       Orient.instance().getProfiler()
           .stopChrono(PROFILER_DELETE_RECORD, "Delete a record from local database", timer, "db.*.deleteRecord");
     }
@@ -1929,6 +2099,105 @@ public class OStorageLocal extends OStorageEmbedded {
     }
   }
 
+  /**
+   * Wraps the file to log its changes in the write ahead log, if enabled.
+   */
+  public OFile wrapFile(final OFile iFile) {
+    return wal != null ? new OWALFile(iFile, wal) : iFile;
+  }
+
+  public OWriteAheadLog getWriteAheadLog() {
+    return wal;
+  }
+
+  /**
+   * Tells if the index trees stored in the clusters must save every change instead of keeping it in memory, so the write ahead log
+   * receives it and recovers the indexes after a crash together with the records.
+   */
+  public boolean isLoggingIndexChanges() {
+    return wal != null;
+  }
+
+  /**
+   * Opens the write ahead log, if enabled.
+   * 
+   * @return true if a log existed, so it must be recovered once all the files have been registered
+   */
+  private boolean openWAL(final boolean iCreate) throws IOException {
+    walRecovered = false;
+
+    if (!OGlobalConfiguration.STORAGE_WAL_ENABLED.getValueAsBoolean()) {
+      // A LOG LEFT BY A PREVIOUS USE WOULD OVERWRITE THE CHANGES DONE MEANWHILE WHEN ENABLED AGAIN
+      new OWriteAheadLog(name, storagePath, 0).delete();
+      return false;
+    }
+
+    wal = new OWriteAheadLog(name, storagePath, OGlobalConfiguration.STORAGE_WAL_SEGMENT_SIZE.getValueAsInteger());
+    if (iCreate)
+      wal.delete();
+    final boolean exists = wal.open();
+
+    final int checkpointSize = OGlobalConfiguration.STORAGE_WAL_CHECKPOINT_SIZE.getValueAsInteger();
+    final int checkpointInterval = OGlobalConfiguration.STORAGE_WAL_CHECKPOINT_INTERVAL.getValueAsInteger();
+
+    walCheckpointTask = new TimerTask() {
+      @Override
+      public void run() {
+        final OWriteAheadLog log = wal;
+        if (log == null || !log.isActive())
+          return;
+
+        if (log.getSizeSinceCheckpoint() < checkpointSize
+            && (log.getSizeSinceCheckpoint() == 0 || System.currentTimeMillis() - log.getLastCheckpointTime() < checkpointInterval))
+          return;
+
+        final long timer = Orient.instance().getProfiler().startChrono();
+        lock.acquireExclusiveLock();
+        try {
+          if (wal != null)
+            wal.checkpoint();
+        } catch (IOException e) {
+          OLogManager.instance().error(this, "Error on checkpoint of the write ahead log of storage '%s'", e, name);
+        } finally {
+          lock.releaseExclusiveLock();
+          Orient.instance().getProfiler().stopChrono("db." + name + ".wal.checkpoint",
+              "Checkpoint of the write ahead log of a local database", timer, "db.*.wal.checkpoint");
+        }
+      }
+    };
+    Orient.getTimer().schedule(walCheckpointTask, 1000, 1000);
+    return exists;
+  }
+
+  private void closeWAL() throws IOException {
+    if (walCheckpointTask != null) {
+      walCheckpointTask.cancel();
+      walCheckpointTask = null;
+    }
+
+    if (wal != null) {
+      wal.close();
+      wal = null;
+    }
+  }
+
+  /**
+   * Closes and opens again clusters and data segments to reload the information they keep in memory.
+   */
+  private void reopenSegments() throws IOException {
+    for (ODataLocal data : dataSegments)
+      if (data != null) {
+        data.close();
+        data.open();
+      }
+
+    for (OCluster cluster : clusters)
+      if (cluster != null) {
+        cluster.close();
+        cluster.open();
+      }
+  }
+
   private void installProfilerHooks() {
     Orient
         .instance()
@@ -2003,6 +2272,11 @@ public class OStorageLocal extends OStorageEmbedded {
   }
 
   public boolean isClusterSoftlyClosed(String clusterName) {
+    if (walRecovered)
+      // THE CLUSTERS HAVE BEEN RECOVERED FROM THE WRITE AHEAD LOG. THE INDEX TREES STORED IN THEM TOO: WHILE THE LOG IS ACTIVE THEY
+      // SAVE EVERY CHANGE, SO IT'S LOGGED (SEE isLoggingIndexChanges())
+      return true;
+
     final OCluster indexCluster = clusterMap.get(clusterName);
     return !(indexCluster instanceof OClusterLocal) || ((OClusterLocal) indexCluster).isSoftlyClosed();
   }
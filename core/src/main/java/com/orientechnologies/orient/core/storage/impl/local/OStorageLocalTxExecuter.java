@@ -42,9 +42,9 @@ import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
 
 public class OStorageLocalTxExecuter {
-  private final OStorageLocal storage;
-  private final OTxSegment    txSegment;
-  private OTransaction        currentTransaction;
+  private final OStorageLocal              storage;
+  private final OTxSegment                 txSegment;
+  private final ThreadLocal<OTransaction> currentTransaction = new ThreadLocal<OTransaction>();
 
   public OStorageLocalTxExecuter(final OStorageLocal iStorage, final OStorageTxConfiguration iConfig) throws IOException {
     storage = iStorage;
@@ -166,7 +166,7 @@ public class OStorageLocalTxExecuter {
   }
 
   public void commitAllPendingRecords(final OTransaction iTx) throws IOException {
-    currentTransaction = iTx;
+    currentTransaction.set(iTx);
     try {
       // COPY ALL THE ENTRIES IN SEPARATE COLLECTION SINCE DURING THE COMMIT PHASE SOME NEW ENTRIES COULD BE CREATED AND
       // CONCURRENT-EXCEPTION MAY OCCURS
@@ -188,7 +188,7 @@ public class OStorageLocalTxExecuter {
       // UPDATE THE CACHE ONLY IF THE ITERATOR ALLOWS IT
       OTransactionAbstract.updateCacheFromEntries(storage, iTx, iTx.getAllRecordEntries(), true);
     } finally {
-      currentTransaction = null;
+      currentTransaction.remove();
     }
   }
 
@@ -314,11 +314,14 @@ public class OStorageLocalTxExecuter {
       ((OTxListener) txEntry.getRecord()).onEvent(txEntry, OTxListener.EVENT.AFTER_COMMIT);
   }
 
+  /**
+   * Tells if the current thread is committing a transaction. Record operations executed by other threads are not part of it.
+   */
   public boolean isCommitting() {
-    return currentTransaction != null;
+    return currentTransaction.get() != null;
   }
 
   public OTransaction getCurrentTransaction() {
-    return currentTransaction;
+    return currentTransaction.get();
   }
 }
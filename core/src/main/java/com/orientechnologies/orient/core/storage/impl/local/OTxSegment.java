@@ -17,8 +17,10 @@ package com.orientechnologies.orient.core.storage.impl.local;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
@@ -52,7 +54,12 @@ import com.orientechnologies.orient.core.version.OVersionFactory;
  * At commit time all the changes are written in the TX log file with status = STATUS_COMMITTING. Once all records have been
  * written, then the status of all the records is changed in STATUS_FREE. If a transactions has at least a STATUS_FREE means that
  * has been successfully committed. This is the reason why on startup all the pending transactions will be recovered, but those with
- * at least one record with status = STATUS_FREE.
+ * at least one record with status = STATUS_FREE.<br/>
+ * <br/>
+ * Transactions can commit concurrently (see {@link OGlobalConfiguration#STORAGE_LOCK_PER_CLUSTER}): the file is truncated only
+ * when no other transaction has entries in it, otherwise the entries of the committed transaction are set to STATUS_FREE. With
+ * {@link OGlobalConfiguration#TX_LOG_GROUP_COMMIT} the entries of concurrent transactions are synchronized together by the
+ * {@link OTxSegmentGroupCommitter}.
  */
 public class OTxSegment extends OSingleFileSegment {
   public static final byte                STATUS_FREE           = 0;
@@ -72,6 +79,9 @@ public class OTxSegment extends OSingleFileSegment {
                                                                     + OVersionFactory.instance().getVersionSize();
 
   private final boolean                   synchEnabled;
+  private final boolean                   groupCommitEnabled;
+  private OTxSegmentGroupCommitter        groupCommitter;
+  private final Map<Integer, List<Long>>  txEntries             = new HashMap<Integer, List<Long>>();
   private OSharedResourceAdaptiveExternal lock                  = new OSharedResourceAdaptiveExternal(
                                                                     OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(),
                                                                     0, true);
@@ -79,6 +89,7 @@ public class OTxSegment extends OSingleFileSegment {
   public OTxSegment(final OStorageLocal iStorage, final OStorageTxConfiguration iConfig) throws IOException {
     super(iStorage, iConfig, OGlobalConfiguration.TX_LOG_TYPE.getValueAsString());
     synchEnabled = OGlobalConfiguration.TX_LOG_SYNCH.getValueAsBoolean();
+    groupCommitEnabled = synchEnabled && OGlobalConfiguration.TX_LOG_GROUP_COMMIT.getValueAsBoolean();
   }
 
   /**
@@ -95,6 +106,8 @@ public class OTxSegment extends OSingleFileSegment {
       // CHECK FOR PENDING TRANSACTION ENTRIES TO RECOVER
       recoverTransactions();
 
+      startGroupCommit();
+
       return true;
 
     } finally {
@@ -109,6 +122,40 @@ public class OTxSegment extends OSingleFileSegment {
 
       super.create(iStartSize > -1 ? iStartSize : DEF_START_SIZE);
 
+      startGroupCommit();
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    final OTxSegmentGroupCommitter committer;
+    lock.acquireExclusiveLock();
+    try {
+      committer = groupCommitter;
+      groupCommitter = null;
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+
+    if (committer != null) {
+      // THE LAST BATCH IS SYNCHRONIZED BEFORE THE THREAD EXITS
+      committer.sendShutdown();
+      try {
+        committer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    lock.acquireExclusiveLock();
+    try {
+
+      txEntries.clear();
+      super.close();
+
     } finally {
       lock.releaseExclusiveLock();
     }
@@ -124,11 +171,21 @@ public class OTxSegment extends OSingleFileSegment {
     final int contentSize = iRecordContent != null ? iRecordContent.length : 0;
     final int size = OFFSET_RECORD_CONTENT + contentSize;
 
+    final OTxSegmentGroupCommitter committer;
+    final long ticket;
+
     lock.acquireExclusiveLock();
     try {
 
       int offset = file.allocateSpace(size);
 
+      List<Long> entries = txEntries.get(iTxId);
+      if (entries == null) {
+        entries = new ArrayList<Long>();
+        txEntries.put(iTxId, entries);
+      }
+      entries.add((long) offset);
+
       file.writeByte(offset, STATUS_COMMITTING);
       offset += OBinaryProtocol.SIZE_BYTE;
 
@@ -159,16 +216,44 @@ public class OTxSegment extends OSingleFileSegment {
       file.write(offset, iRecordContent);
       offset += contentSize;
 
-      if (synchEnabled)
-        file.synch();
+      committer = groupCommitter;
+      if (committer != null)
+        ticket = committer.entryAppended();
+      else {
+        ticket = -1;
+        if (synchEnabled)
+          file.synch();
+      }
 
     } finally {
       lock.releaseExclusiveLock();
     }
+
+    if (committer != null)
+      // WAIT OUTSIDE THE LOCK TO LET OTHER TRANSACTIONS JOIN THE SAME BATCH
+      committer.waitForSynch(ticket);
   }
 
   /**
-   * Clears the entire file.
+   * Synchronizes the log file. Called by the group committer.
+   * 
+   * @return The ticket of the last entry synchronized
+   */
+  protected long synchLog(final OTxSegmentGroupCommitter iCommitter) throws IOException {
+    lock.acquireExclusiveLock();
+    try {
+
+      final long upTo = iCommitter.getAppended();
+      file.synch();
+      return upTo;
+
+    } finally {
+      lock.releaseExclusiveLock();
+    }
+  }
+
+  /**
+   * Clears the entries of the transaction. The entire file is truncated if no other transaction has entries in it.
    * 
    * @param iTxId
    *          The id of transaction
@@ -179,7 +264,13 @@ public class OTxSegment extends OSingleFileSegment {
     lock.acquireExclusiveLock();
     try {
 
-      truncate();
+      final List<Long> entries = txEntries.remove(iTxId);
+      if (txEntries.isEmpty())
+        truncate();
+      else if (entries != null)
+        // OTHER TRANSACTIONS ARE COMMITTING: JUST MARK THE ENTRIES OF THIS ONE AS FREE
+        for (Long offset : entries)
+          file.writeByte(offset, STATUS_FREE);
 
     } finally {
       lock.releaseExclusiveLock();
@@ -197,6 +288,13 @@ public class OTxSegment extends OSingleFileSegment {
     }
   }
 
+  private void startGroupCommit() {
+    if (groupCommitEnabled && groupCommitter == null) {
+      groupCommitter = new OTxSegmentGroupCommitter(this, storage.getName());
+      groupCommitter.start();
+    }
+  }
+
   private void recoverTransactions() throws IOException {
     if (file.getFilledUpTo() == 0)
       return;
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.orientechnologies.common.thread.OSoftThread;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+
+/**
+ * Synchronizes the TX log on behalf of the committers. Each committer appends its entry and then waits until the batch containing
+ * it has been synchronized: a single synch releases all the waiters together. A batch is closed when it reaches the maximum number
+ * of entries or when the configured window expires.
+ * 
+ * @see OGlobalConfiguration#TX_LOG_GROUP_COMMIT
+ */
+public class OTxSegmentGroupCommitter extends OSoftThread {
+  private final OTxSegment segment;
+  private final long       windowNanos;
+  private final int        maxBatch;
+  private final Object     batchLock = new Object();
+  private long             appended  = 0;
+  private long             synched   = 0;
+  private IOException      lastError;
+  private volatile boolean running   = true;
+  private boolean          stopped   = false;
+
+  private final String     PROFILER_SYNCH;
+  private final String     PROFILER_BATCH;
+
+  public OTxSegmentGroupCommitter(final OTxSegment iSegment, final String iStorageName) {
+    super("OrientDB TxLogGroupCommit " + iStorageName);
+    segment = iSegment;
+    windowNanos = TimeUnit.MICROSECONDS.toNanos(OGlobalConfiguration.TX_LOG_GROUP_COMMIT_WINDOW.getValueAsInteger());
+    maxBatch = Math.max(1, OGlobalConfiguration.TX_LOG_GROUP_COMMIT_MAX_BATCH.getValueAsInteger());
+
+    PROFILER_SYNCH = "db." + iStorageName + ".txLog.groupCommit.synch";
+    PROFILER_BATCH = "db." + iStorageName + ".txLog.groupCommit.batchSize";
+  }
+
+  /**
+   * Registers a new entry written in the log. Must be called by the writer holding the segment lock, so the returned ticket is
+   * assigned in the same order of the writes.
+   * 
+   * @return The ticket to pass to {@link #waitForSynch(long)}
+   */
+  public long entryAppended() {
+    synchronized (batchLock) {
+      final long ticket = ++appended;
+      if (appended - synched == 1 || appended - synched >= maxBatch)
+        // FIRST ENTRY OF THE BATCH (STARTS THE WINDOW) OR BATCH FULL
+        batchLock.notifyAll();
+      return ticket;
+    }
+  }
+
+  /**
+   * Waits until the entry with the ticket received has been synchronized on disk.
+   */
+  public void waitForSynch(final long iTicket) throws IOException {
+    synchronized (batchLock) {
+      while (synched < iTicket) {
+        if (lastError != null)
+          throw lastError;
+        if (stopped)
+          throw new IOException("Group commit of TX log has been shut down before to synch the entry");
+
+        try {
+          batchLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for the synch of the TX log");
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the ticket of the last entry appended.
+   */
+  public long getAppended() {
+    synchronized (batchLock) {
+      return appended;
+    }
+  }
+
+  @Override
+  protected void execute() throws Exception {
+    boolean pending;
+    synchronized (batchLock) {
+      try {
+        while (appended == synched && running)
+          batchLock.wait();
+
+        // WAIT FOR OTHER COMMITTERS TO JOIN THE BATCH
+        final long deadline = System.nanoTime() + windowNanos;
+        long remaining = windowNanos;
+        while (appended - synched < maxBatch && remaining > 0 && running) {
+          TimeUnit.NANOSECONDS.timedWait(batchLock, remaining);
+          remaining = deadline - System.nanoTime();
+        }
+      } catch (InterruptedException e) {
+        // THE FLAG IS ALREADY CLEARED: THE LAST SYNCH CAN'T BE INTERRUPTED AND CLOSE THE LOG
+        running = false;
+      }
+      pending = appended != synched;
+    }
+
+    // ON SHUTDOWN SYNCH THE PENDING ENTRIES BEFORE TO EXIT
+    if (pending)
+      synch();
+
+    if (!running) {
+      synchronized (batchLock) {
+        stopped = true;
+        batchLock.notifyAll();
+      }
+      // ENDS THE LOOP OF THE THREAD, NOW THAT NO MORE I/O IS DONE
+      interrupt();
+    }
+  }
+
+  /**
+   * Stops the thread after the synch of the pending entries. The thread is not interrupted: an interrupted force() would close the
+   * log.
+   */
+  @Override
+  public void sendShutdown() {
+    synchronized (batchLock) {
+      running = false;
+      batchLock.notifyAll();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    sendShutdown();
+  }
+
+  private void synch() {
+    final long timer = Orient.instance().getProfiler().startChrono();
+
+    long upTo = -1;
+    IOException error = null;
+    try {
+      upTo = segment.synchLog(this);
+    } catch (IOException e) {
+      error = e;
+    }
+
+    synchronized (batchLock) {
+      if (error != null)
+        lastError = error;
+      else {
+        Orient.instance().getProfiler()
+            .updateStat(PROFILER_BATCH, "Number of TX log entries synchronized together", upTo - synched);
+        synched = upTo;
+        lastError = null;
+      }
+      batchLock.notifyAll();
+    }
+
+    Orient.instance().getProfiler()
+        .stopChrono(PROFILER_SYNCH, "Synch of a batch of TX log entries", timer, "db.*.txLog.groupCommit.synch");
+  }
+}
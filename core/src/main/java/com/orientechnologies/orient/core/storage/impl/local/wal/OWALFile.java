@@ -0,0 +1,277 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.storage.fs.OFile;
+
+/**
+ * File that logs every change in the {@link OWriteAheadLog} before to apply it to the underlying file. Changes to the content are
+ * logged as the bytes written, changes to the space used as the new filled-up-to position. The file registers itself in the log
+ * when opened or created, so it can be recovered by name.
+ */
+public class OWALFile implements OFile {
+  private final OFile          file;
+  private final OWriteAheadLog wal;
+  private String               name;
+  private byte[]               nameBytes;
+
+  public OWALFile(final OFile iFile, final OWriteAheadLog iWAL) {
+    file = iFile;
+    wal = iWAL;
+    setName(iFile.getName());
+  }
+
+  public OFile getUnderlying() {
+    return file;
+  }
+
+  public OFile init(final String iFileName, final String iOpenMode) {
+    file.init(iFileName, iOpenMode);
+    setName(file.getName());
+    return this;
+  }
+
+  public boolean open() throws IOException {
+    final boolean softlyClosed = file.open();
+    wal.registerFile(name, file);
+    return softlyClosed;
+  }
+
+  public void create(final int iStartSize) throws IOException {
+    file.create(iStartSize);
+    wal.registerFile(name, file);
+  }
+
+  public void close() throws IOException {
+    wal.unregisterFile(name);
+    file.close();
+  }
+
+  public void delete() throws IOException {
+    // THE RECORDS OF THE DELETED FILE WILL BE IGNORED ON RECOVERY
+    wal.logDelete(nameBytes);
+    wal.unregisterFile(name);
+    file.delete();
+  }
+
+  public boolean renameTo(final File newFile) {
+    try {
+      // THE LOGGED CHANGES MUST BE ON DISK BEFORE THE FILE CHANGES NAME
+      file.synch();
+      final boolean renamed = file.renameTo(newFile);
+      if (renamed) {
+        wal.logDelete(nameBytes);
+        wal.unregisterFile(name);
+        setName(file.getName());
+        wal.logDelete(nameBytes);
+        wal.registerFile(name, file);
+      }
+      return renamed;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public void write(final long iOffset, final byte[] iSourceBuffer) throws IOException {
+    wal.logWrite(nameBytes, iOffset, iSourceBuffer, 0, iSourceBuffer.length);
+    file.write(iOffset, iSourceBuffer);
+  }
+
+  public void write(final long iOffset, final byte[] iData, final int iSize, final int iArrayOffset) throws IOException {
+    wal.logWrite(nameBytes, iOffset, iData, iArrayOffset, iSize);
+    file.write(iOffset, iData, iSize, iArrayOffset);
+  }
+
+  public void writeInt(final long iOffset, final int iValue) throws IOException {
+    final byte[] content = OBinaryProtocol.int2bytes(iValue);
+    wal.logWrite(nameBytes, iOffset, content, 0, content.length);
+    file.writeInt(iOffset, iValue);
+  }
+
+  public void writeLong(final long iOffset, final long iValue) throws IOException {
+    final byte[] content = OBinaryProtocol.long2bytes(iValue);
+    wal.logWrite(nameBytes, iOffset, content, 0, content.length);
+    file.writeLong(iOffset, iValue);
+  }
+
+  public void writeShort(final long iOffset, final short iValue) throws IOException {
+    final byte[] content = OBinaryProtocol.short2bytes(iValue);
+    wal.logWrite(nameBytes, iOffset, content, 0, content.length);
+    file.writeShort(iOffset, iValue);
+  }
+
+  public void writeByte(final long iOffset, final byte iValue) throws IOException {
+    wal.logWrite(nameBytes, iOffset, new byte[] { iValue }, 0, 1);
+    file.writeByte(iOffset, iValue);
+  }
+
+  public void writeHeaderLong(final int iPosition, final long iValue) throws IOException {
+    wal.logHeader(nameBytes, iPosition, iValue);
+    file.writeHeaderLong(iPosition, iValue);
+  }
+
+  public int allocateSpace(final int iSize) throws IOException {
+    final int offset = file.allocateSpace(iSize);
+    wal.logFilledUpTo(nameBytes, file.getFilledUpTo());
+    return offset;
+  }
+
+  public void removeTail(final int iSizeToShrink) throws IOException {
+    file.removeTail(iSizeToShrink);
+    wal.logFilledUpTo(nameBytes, file.getFilledUpTo());
+  }
+
+  public void shrink(final int iSize) throws IOException {
+    file.shrink(iSize);
+    wal.logFilledUpTo(nameBytes, file.getFilledUpTo());
+  }
+
+  public void setSize(final int iSize) throws IOException {
+    file.setSize(iSize);
+  }
+
+  public long readHeaderLong(final int iPosition) throws IOException {
+    return file.readHeaderLong(iPosition);
+  }
+
+  public void synch() throws IOException {
+    file.synch();
+  }
+
+  public void read(final long iOffset, final byte[] iDestBuffer, final int iLenght) throws IOException {
+    file.read(iOffset, iDestBuffer, iLenght);
+  }
+
+  public void read(final long iOffset, final byte[] iData, final int iLength, final int iArrayOffset) throws IOException {
+    file.read(iOffset, iData, iLength, iArrayOffset);
+  }
+
+  public short readShort(final long iLogicalPosition) throws IOException {
+    return file.readShort(iLogicalPosition);
+  }
+
+  public int readInt(final long iLogicalPosition) throws IOException {
+    return file.readInt(iLogicalPosition);
+  }
+
+  public long readLong(final long iOffset) throws IOException {
+    return file.readLong(iOffset);
+  }
+
+  public byte readByte(final long iOffset) throws IOException {
+    return file.readByte(iOffset);
+  }
+
+  public void setSoftlyClosed(final boolean b) throws IOException {
+    file.setSoftlyClosed(b);
+  }
+
+  public boolean isSoftlyClosed() throws IOException {
+    return file.isSoftlyClosed();
+  }
+
+  public void lock() throws IOException {
+    file.lock();
+  }
+
+  public FileLock lock(final long iRangeFrom, final long iRangeSize, final boolean iShared) throws IOException {
+    return file.lock(iRangeFrom, iRangeSize, iShared);
+  }
+
+  public OFile unlock(final FileLock iLock) throws IOException {
+    file.unlock(iLock);
+    return this;
+  }
+
+  public void unlock() throws IOException {
+    file.unlock();
+  }
+
+  public String getName() {
+    return file.getName();
+  }
+
+  public String getPath() {
+    return file.getPath();
+  }
+
+  public String getAbsolutePath() {
+    return file.getAbsolutePath();
+  }
+
+  public int getFreeSpace() {
+    return file.getFreeSpace();
+  }
+
+  public int getFileSize() {
+    return file.getFileSize();
+  }
+
+  public int getFilledUpTo() {
+    return file.getFilledUpTo();
+  }
+
+  public boolean canOversize(final int iRecordSize) {
+    return file.canOversize(iRecordSize);
+  }
+
+  public int getMaxSize() {
+    return file.getMaxSize();
+  }
+
+  public void setMaxSize(final int maxSize) {
+    file.setMaxSize(maxSize);
+  }
+
+  public int getIncrementSize() {
+    return file.getIncrementSize();
+  }
+
+  public void setIncrementSize(final int incrementSize) {
+    file.setIncrementSize(incrementSize);
+  }
+
+  public boolean isOpen() {
+    return file.isOpen();
+  }
+
+  public boolean exists() {
+    return file.exists();
+  }
+
+  public boolean isFailCheck() {
+    return file.isFailCheck();
+  }
+
+  public void setFailCheck(final boolean failCheck) {
+    file.setFailCheck(failCheck);
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+
+  private void setName(final String iName) {
+    name = iName;
+    nameBytes = OBinaryProtocol.string2bytes(iName);
+  }
+}
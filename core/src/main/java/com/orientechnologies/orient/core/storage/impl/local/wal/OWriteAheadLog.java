@@ -0,0 +1,500 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.wal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.storage.fs.OFile;
+
+/**
+ * Write-ahead log of the local storage. Every change to the files of clusters, data segments and their holes is appended to the log
+ * before it is applied to the file (see {@link OWALFile}), as a redo record containing the new content of the bytes changed. On open
+ * after a crash the records are replayed, in order, to bring the files back to the last logged state.<br/>
+ * The log is split in segment files named &lt;storage&gt;.&lt;number&gt;.wal. The current segment is memory mapped, so a record
+ * reaches the operating system as soon as it is appended and survives the crash of the process; {@link #synch()} forces it on
+ * disk. Every segment starts with the LSN (log sequence number, the position of the record in the whole log) of its first
+ * record.<br/>
+ * A checkpoint synchronizes all the logged files and starts a new segment with a CHECKPOINT record, then deletes the previous
+ * segments: the recovery always starts from the oldest segment left.<br/>
+ * Record format: [payload length:int][type:byte][payload][crc32 of type and payload:int]. A zero length marks the end of the log.
+ */
+public class OWriteAheadLog {
+  public static final String       EXTENSION           = ".wal";
+
+  static final byte                RECORD_WRITE        = 1;
+  static final byte                RECORD_HEADER       = 2;
+  static final byte                RECORD_FILLED_UP_TO = 3;
+  static final byte                RECORD_DELETE       = 4;
+  static final byte                RECORD_CHECKPOINT   = 5;
+
+  private static final int         SEGMENT_HEADER_SIZE = OBinaryProtocol.SIZE_LONG;
+  private static final int         RECORD_OVERHEAD     = OBinaryProtocol.SIZE_INT + OBinaryProtocol.SIZE_BYTE
+                                                           + OBinaryProtocol.SIZE_INT;
+  private static Method            cleanerMethod;
+
+  private final String             storageName;
+  private final File               directory;
+  private final int                segmentSize;
+  private final Map<String, OFile> files               = new ConcurrentHashMap<String, OFile>();
+  private final List<File>         segments            = new ArrayList<File>();
+  private final CRC32              crc                 = new CRC32();
+  private byte[]                   record              = new byte[1024];
+
+  private RandomAccessFile         segmentFile;
+  private MappedByteBuffer         segmentBuffer;
+  private int                      segmentNumber       = -1;
+  private long                     segmentFirstLsn;
+  private long                     sizeSinceCheckpoint;
+  private long                     lastCheckpointTime  = System.currentTimeMillis();
+  private boolean                  corrupted;
+
+  static {
+    // GET SUN JDK METHOD TO CLEAN MMAP BUFFERS
+    try {
+      final Class<?> sunClass = Class.forName("sun.nio.ch.DirectBuffer");
+      cleanerMethod = sunClass.getMethod("cleaner");
+    } catch (Exception e) {
+      // IGNORE IT AND USE GC TO FREE RESOURCES
+    }
+  }
+
+  public OWriteAheadLog(final String iStorageName, final String iDirectory, final int iSegmentSize) {
+    storageName = iStorageName;
+    directory = new File(iDirectory);
+    segmentSize = iSegmentSize;
+  }
+
+  /**
+   * Opens the log. If no log exists a new one is started, otherwise the existent records must be replayed by calling
+   * {@link #recover()} once all the logged files have been registered.
+   *
+   * @return true if a log existed, so the storage was using it and can be recovered from it
+   */
+  public synchronized boolean open() throws IOException {
+    loadSegments();
+
+    if (segments.isEmpty()) {
+      startSegment(0, RECORD_OVERHEAD);
+      appendCheckpoint();
+      return false;
+    }
+
+    segmentNumber = getSegmentNumber(segments.get(segments.size() - 1));
+    return true;
+  }
+
+  /**
+   * Replays the records of the log on the registered files, then executes a checkpoint. Records of files not registered are
+   * skipped, as well as the records of a file preceding its deletion.
+   *
+   * @return the number of records replayed
+   */
+  public synchronized int recover() throws IOException {
+    // FIRST PASS: FIND THE LAST DELETION OF EVERY FILE AND THE END OF THE LOG
+    final Map<String, Integer> lastDeletes = new HashMap<String, Integer>();
+    int index = 0;
+    corrupted = false;
+    for (int i = 0; i < segments.size() && !corrupted; ++i) {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segments.get(i))));
+      try {
+        long lsn = in.readLong();
+        byte[] payload;
+        while ((payload = readRecord(in)) != null) {
+          if (payload[0] == RECORD_DELETE)
+            lastDeletes.put(readName(payload), index);
+          index++;
+          lsn += RECORD_OVERHEAD + payload.length - OBinaryProtocol.SIZE_BYTE;
+        }
+        // NEW RECORDS WILL FOLLOW THE LAST VALID ONE
+        segmentFirstLsn = lsn;
+      } finally {
+        in.close();
+      }
+    }
+    final int totalRecords = index;
+
+    // SECOND PASS: REPLAY
+    int replayed = 0;
+    int skipped = 0;
+    index = 0;
+    for (File segment : segments) {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+      try {
+        in.readLong();
+        byte[] payload;
+        while (index < totalRecords && (payload = readRecord(in)) != null) {
+          final int recordIndex = index++;
+          if (payload[0] == RECORD_CHECKPOINT || payload[0] == RECORD_DELETE)
+            continue;
+
+          final String name = readName(payload);
+          final Integer lastDelete = lastDeletes.get(name);
+          final OFile file = files.get(name);
+          if (file == null || (lastDelete != null && lastDelete > recordIndex)) {
+            skipped++;
+            continue;
+          }
+
+          replay(file, payload, OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT + OBinaryProtocol.bytes2short(payload, 1));
+          replayed++;
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    OLogManager.instance().info(this, "Storage '%s' recovered from the write ahead log: %d records replayed, %d skipped",
+        storageName, replayed, skipped);
+
+    executeCheckpoint();
+    return replayed;
+  }
+
+  public void registerFile(final String iName, final OFile iFile) {
+    files.put(iName, iFile);
+  }
+
+  public void unregisterFile(final String iName) {
+    files.remove(iName);
+  }
+
+  public long logWrite(final byte[] iName, final long iOffset, final byte[] iData, final int iDataOffset, final int iLength)
+      throws IOException {
+    synchronized (this) {
+      int pos = beginRecord(RECORD_WRITE, iName, OBinaryProtocol.SIZE_LONG + OBinaryProtocol.SIZE_INT + iLength);
+      OBinaryProtocol.long2bytes(iOffset, record, pos);
+      pos += OBinaryProtocol.SIZE_LONG;
+      OBinaryProtocol.int2bytes(iLength, record, pos);
+      pos += OBinaryProtocol.SIZE_INT;
+      System.arraycopy(iData, iDataOffset, record, pos, iLength);
+      return endRecord(pos + iLength);
+    }
+  }
+
+  public long logHeader(final byte[] iName, final int iPosition, final long iValue) throws IOException {
+    synchronized (this) {
+      int pos = beginRecord(RECORD_HEADER, iName, OBinaryProtocol.SIZE_INT + OBinaryProtocol.SIZE_LONG);
+      OBinaryProtocol.int2bytes(iPosition, record, pos);
+      pos += OBinaryProtocol.SIZE_INT;
+      OBinaryProtocol.long2bytes(iValue, record, pos);
+      return endRecord(pos + OBinaryProtocol.SIZE_LONG);
+    }
+  }
+
+  public long logFilledUpTo(final byte[] iName, final int iFilledUpTo) throws IOException {
+    synchronized (this) {
+      final int pos = beginRecord(RECORD_FILLED_UP_TO, iName, OBinaryProtocol.SIZE_INT);
+      OBinaryProtocol.int2bytes(iFilledUpTo, record, pos);
+      return endRecord(pos + OBinaryProtocol.SIZE_INT);
+    }
+  }
+
+  public long logDelete(final byte[] iName) throws IOException {
+    synchronized (this) {
+      return endRecord(beginRecord(RECORD_DELETE, iName, 0));
+    }
+  }
+
+  /**
+   * Forces the log on disk.
+   */
+  public synchronized void synch() {
+    if (segmentBuffer != null)
+      segmentBuffer.force();
+  }
+
+  /**
+   * Synchronizes all the registered files and starts a new segment with a checkpoint record, then deletes the previous segments.
+   * The caller must assure no changes are done to the files meanwhile. A log not recovered yet is left untouched.
+   */
+  public synchronized void checkpoint() throws IOException {
+    if (segmentBuffer != null)
+      executeCheckpoint();
+  }
+
+  /**
+   * Returns true if the log is open and records the changes.
+   */
+  public synchronized boolean isActive() {
+    return segmentBuffer != null;
+  }
+
+  private void executeCheckpoint() throws IOException {
+    for (OFile file : files.values())
+      if (file.isOpen())
+        file.synch();
+
+    startSegment(segmentNumber + 1, RECORD_OVERHEAD);
+    appendCheckpoint();
+    segmentBuffer.force();
+
+    // THE RECORDS OF THE OLD SEGMENTS ARE ON DISK NOW
+    while (segments.size() > 1) {
+      final File old = segments.remove(0);
+      if (!old.delete())
+        OLogManager.instance().warn(this, "Cannot delete the write ahead log segment %s", old);
+    }
+
+    sizeSinceCheckpoint = 0;
+    lastCheckpointTime = System.currentTimeMillis();
+  }
+
+  public synchronized void close() throws IOException {
+    closeSegment();
+    files.clear();
+  }
+
+  /**
+   * Closes the log and deletes all its segments, even if the log has never been opened.
+   */
+  public synchronized void delete() throws IOException {
+    close();
+    loadSegments();
+    for (File segment : segments)
+      if (!segment.delete())
+        OLogManager.instance().warn(this, "Cannot delete the write ahead log segment %s", segment);
+    segments.clear();
+  }
+
+  /**
+   * Returns the bytes logged since the last checkpoint.
+   */
+  public synchronized long getSizeSinceCheckpoint() {
+    return sizeSinceCheckpoint;
+  }
+
+  public synchronized long getLastCheckpointTime() {
+    return lastCheckpointTime;
+  }
+
+  /**
+   * Returns the LSN the next record will get.
+   */
+  public synchronized long getEndLsn() {
+    return segmentBuffer != null ? segmentFirstLsn + segmentBuffer.position() : segmentFirstLsn;
+  }
+
+  private void loadSegments() {
+    segments.clear();
+
+    final File[] logFiles = directory.listFiles();
+    if (logFiles != null)
+      for (File f : logFiles)
+        if (f.getName().startsWith(storageName + ".") && f.getName().endsWith(EXTENSION) && getSegmentNumber(f) > -1)
+          segments.add(f);
+
+    Collections.sort(segments, new Comparator<File>() {
+      public int compare(final File o1, final File o2) {
+        return getSegmentNumber(o1) - getSegmentNumber(o2);
+      }
+    });
+  }
+
+  private void replay(final OFile iFile, final byte[] iPayload, int iPos) throws IOException {
+    switch (iPayload[0]) {
+    case RECORD_WRITE: {
+      final long offset = OBinaryProtocol.bytes2long(iPayload, iPos);
+      iPos += OBinaryProtocol.SIZE_LONG;
+      final int length = OBinaryProtocol.bytes2int(iPayload, iPos);
+      iPos += OBinaryProtocol.SIZE_INT;
+
+      final byte[] data = new byte[length];
+      System.arraycopy(iPayload, iPos, data, 0, length);
+
+      if (iFile.getFilledUpTo() < offset + length)
+        iFile.allocateSpace((int) (offset + length - iFile.getFilledUpTo()));
+      iFile.write(offset, data);
+      break;
+    }
+
+    case RECORD_HEADER:
+      iFile.writeHeaderLong(OBinaryProtocol.bytes2int(iPayload, iPos),
+          OBinaryProtocol.bytes2long(iPayload, iPos + OBinaryProtocol.SIZE_INT));
+      break;
+
+    case RECORD_FILLED_UP_TO: {
+      final int filledUpTo = OBinaryProtocol.bytes2int(iPayload, iPos);
+      final int current = iFile.getFilledUpTo();
+      if (filledUpTo > current)
+        iFile.allocateSpace(filledUpTo - current);
+      else if (filledUpTo < current)
+        iFile.shrink(filledUpTo);
+      break;
+    }
+    }
+  }
+
+  /**
+   * Writes the record header and the file name in the record buffer.
+   *
+   * @return the position where to write the rest of the payload
+   */
+  private int beginRecord(final byte iType, final byte[] iName, final int iContentSize) {
+    final int payloadSize = OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT + iName.length + iContentSize;
+    if (record.length < payloadSize + RECORD_OVERHEAD)
+      record = new byte[Math.max(payloadSize + RECORD_OVERHEAD, record.length << 1)];
+
+    OBinaryProtocol.int2bytes(payloadSize - OBinaryProtocol.SIZE_BYTE, record, 0);
+    record[OBinaryProtocol.SIZE_INT] = iType;
+
+    int pos = OBinaryProtocol.SIZE_INT + OBinaryProtocol.SIZE_BYTE;
+    OBinaryProtocol.short2bytes((short) iName.length, record, pos);
+    pos += OBinaryProtocol.SIZE_SHORT;
+    System.arraycopy(iName, 0, record, pos, iName.length);
+    return pos + iName.length;
+  }
+
+  /**
+   * Computes the CRC of the record in the buffer and appends it to the log.
+   *
+   * @return the LSN of the record
+   */
+  private long endRecord(final int iEnd) throws IOException {
+    crc.reset();
+    crc.update(record, OBinaryProtocol.SIZE_INT, iEnd - OBinaryProtocol.SIZE_INT);
+    OBinaryProtocol.int2bytes((int) crc.getValue(), record, iEnd);
+    return append(iEnd + OBinaryProtocol.SIZE_INT);
+  }
+
+  private long append(final int iSize) throws IOException {
+    if (segmentBuffer == null)
+      // CHANGES DONE WHILE OPENING THE FILES, BEFORE THE RECOVERY, ARE REPEATED AT EVERY OPEN: DON'T LOG THEM
+      return -1;
+
+    // KEEP ROOM FOR THE END MARKER
+    if (segmentBuffer.remaining() < iSize + OBinaryProtocol.SIZE_INT)
+      startSegment(segmentNumber + 1, iSize);
+
+    final long lsn = segmentFirstLsn + segmentBuffer.position();
+    segmentBuffer.put(record, 0, iSize);
+    sizeSinceCheckpoint += iSize;
+    return lsn;
+  }
+
+  private void appendCheckpoint() throws IOException {
+    final int size = OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_LONG;
+    OBinaryProtocol.int2bytes(size - OBinaryProtocol.SIZE_BYTE, record, 0);
+    record[OBinaryProtocol.SIZE_INT] = RECORD_CHECKPOINT;
+    OBinaryProtocol.long2bytes(getEndLsn(), record, OBinaryProtocol.SIZE_INT + OBinaryProtocol.SIZE_BYTE);
+    endRecord(OBinaryProtocol.SIZE_INT + size);
+  }
+
+  /**
+   * Closes the current segment and maps a new one big enough to contain at least a record of the size passed.
+   */
+  private void startSegment(final int iNumber, final int iMinRecordSize) throws IOException {
+    final long firstLsn = getEndLsn();
+    closeSegment();
+
+    final File file = new File(directory, storageName + "." + iNumber + EXTENSION);
+    final int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + iMinRecordSize + OBinaryProtocol.SIZE_INT);
+
+    segmentFile = new RandomAccessFile(file, "rw");
+    segmentFile.setLength(0);
+    segmentFile.setLength(size);
+    segmentBuffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    segmentBuffer.putLong(firstLsn);
+
+    segmentNumber = iNumber;
+    segmentFirstLsn = firstLsn - SEGMENT_HEADER_SIZE;
+    segments.add(file);
+  }
+
+  private void closeSegment() throws IOException {
+    if (segmentBuffer != null) {
+      segmentBuffer.force();
+
+      if (cleanerMethod != null) {
+        // USE SUN JVM SPECIAL METHOD TO FREE RESOURCES
+        try {
+          final Object cleaner = cleanerMethod.invoke(segmentBuffer);
+          if (cleaner != null)
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (Exception e) {
+          OLogManager.instance().error(this, "Error on calling Sun's MMap buffer clean", e);
+        }
+      }
+      segmentBuffer = null;
+    }
+
+    if (segmentFile != null) {
+      segmentFile.close();
+      segmentFile = null;
+    }
+  }
+
+  /**
+   * Reads the next record of the segment.
+   *
+   * @return the record type followed by the payload, or null if the end of the log has been reached or the record is corrupted
+   */
+  private byte[] readRecord(final DataInputStream in) throws IOException {
+    try {
+      final int length = in.readInt();
+      if (length <= 0)
+        return null;
+
+      final byte[] payload = new byte[length + OBinaryProtocol.SIZE_BYTE];
+      in.readFully(payload);
+
+      crc.reset();
+      crc.update(payload);
+      if (in.readInt() != (int) crc.getValue()) {
+        corrupted = true;
+        OLogManager.instance().warn(this, "Found a corrupted record in the write ahead log of storage '%s': recovery stops here",
+            storageName);
+        return null;
+      }
+      return payload;
+
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static String readName(final byte[] iPayload) {
+    final int length = OBinaryProtocol.bytes2short(iPayload, OBinaryProtocol.SIZE_BYTE);
+    return OBinaryProtocol.bytes2string(iPayload, OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT, length);
+  }
+
+  private int getSegmentNumber(final File iFile) {
+    final String name = iFile.getName();
+    try {
+      return Integer.parseInt(name.substring(storageName.length() + 1, name.length() - EXTENSION.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
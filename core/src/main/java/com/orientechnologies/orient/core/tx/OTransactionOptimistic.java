@@ -24,6 +24,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.orientechnologies.common.concur.resource.OSharedResourceAdaptiveExternal;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseComplex.OPERATION_MODE;
@@ -34,13 +35,15 @@ import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OIndex;
-import com.orientechnologies.orient.core.index.OIndexMVRBTreeAbstract;
+import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
+import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.storage.OStorageProxy;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocal;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 
 public class OTransactionOptimistic extends OTransactionRealAbstract {
@@ -69,14 +72,13 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
         Collections.sort(involvedIndexes);
 
       // LOCK INVOLVED INDEXES
-      List<OIndexMVRBTreeAbstract<?>> lockedIndexes = null;
+      List<OIndexInternal<?>> lockedIndexes = null;
       try {
         if (involvedIndexes != null)
           for (String indexName : involvedIndexes) {
-            final OIndexMVRBTreeAbstract<?> index = (OIndexMVRBTreeAbstract<?>) database.getMetadata().getIndexManager()
-                .getIndexInternal(indexName);
+            final OIndexInternal<?> index = database.getMetadata().getIndexManager().getIndexInternal(indexName).getInternal();
             if (lockedIndexes == null)
-              lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+              lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
             index.acquireModificationLock();
             lockedIndexes.add(index);
@@ -96,7 +98,7 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
 
         if (indexesToLock != null && !indexesToLock.isEmpty())
           if (lockedIndexes == null)
-            lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+            lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
         for (OIndex<?> index : indexesToLock) {
           for (Entry<ORID, ORecordOperation> entry : recordEntries.entrySet()) {
@@ -106,14 +108,15 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
               if (!lockedIndexes.contains(index.getInternal()) && doc.getSchemaClass() != null && index.getDefinition() != null
                   && doc.getSchemaClass().isSubClassOf(index.getDefinition().getClassName())) {
                 index.getInternal().acquireModificationLock();
-                lockedIndexes.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
+                lockedIndexes.add(index.getInternal());
               }
             }
           }
         }
 
-        for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-          index.acquireExclusiveLock();
+        for (OIndexInternal<?> index : lockedIndexes)
+          if (index instanceof OSharedResourceAdaptiveExternal)
+            ((OSharedResourceAdaptiveExternal) index).acquireExclusiveLock();
 
         database.getStorage().callInLock(new Callable<Void>() {
 
@@ -132,14 +135,15 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
             return null;
           }
 
-        }, true);
+        }, isStorageLockedOnCommit());
       } finally {
         // RELEASE INDEX LOCKS IF ANY
         if (lockedIndexes != null) {
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.releaseExclusiveLock();
+          for (OIndexInternal<?> index : lockedIndexes)
+            if (index instanceof OSharedResourceAdaptiveExternal)
+              ((OSharedResourceAdaptiveExternal) index).releaseExclusiveLock();
 
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
+          for (OIndexInternal<?> index : lockedIndexes)
             index.releaseModificationLock();
 
         }
@@ -147,6 +151,15 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
     }
   }
 
+  /**
+   * Returns false if the storage synchronizes the concurrent commits by itself (local storage locked per cluster), so the commit
+   * can get the storage lock in shared mode. Involved indexes are locked in exclusive mode in any case.
+   */
+  protected boolean isStorageLockedOnCommit() {
+    final OStorage storage = database.getStorage();
+    return !(storage instanceof OStorageLocal) || !((OStorageLocal) storage).isLockPerCluster();
+  }
+
   public void rollback() {
     checkTransaction();
 
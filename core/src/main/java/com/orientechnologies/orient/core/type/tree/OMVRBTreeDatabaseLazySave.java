@@ -70,6 +70,11 @@ public class OMVRBTreeDatabaseLazySave<K, V> extends OMVRBTreeDatabase<K, V> {
     return super.commitChanges();
   }
 
+  @Override
+  protected void flushBulkLoad() {
+    lazySave();
+  }
+
   @Override
   public int optimize(final boolean iForce) {
     if (optimization == -1)
@@ -73,12 +73,13 @@ import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeEntryDataPr
  * @param <V>
  */
 public class OMVRBTreeEntryPersistent<K, V> extends OMVRBTreeEntry<K, V> implements OIdentityChangedListener {
-  protected OMVRBTreeEntryDataProvider<K, V> dataProvider;
-  protected OMVRBTreePersistent<K, V>        pTree;
+  protected OMVRBTreeEntryDataProvider<K, V>        dataProvider;
+  protected OMVRBTreePersistent<K, V>               pTree;
 
-  protected OMVRBTreeEntryPersistent<K, V>   parent;
-  protected OMVRBTreeEntryPersistent<K, V>   left;
-  protected OMVRBTreeEntryPersistent<K, V>   right;
+  // VOLATILE BECAUSE THE NODES LOADED BY A READER ARE NAVIGATED BY THE OTHER READERS WITHOUT LOCKS
+  protected volatile OMVRBTreeEntryPersistent<K, V> parent;
+  protected volatile OMVRBTreeEntryPersistent<K, V> left;
+  protected volatile OMVRBTreeEntryPersistent<K, V> right;
 
   /**
    * Called upon unmarshalling.
@@ -364,20 +365,27 @@ public class OMVRBTreeEntryPersistent<K, V> extends OMVRBTreeEntry<K, V> impleme
     if (parent == null && dataProvider.getParent().isValid()) {
       // System.out.println("Node " + record.getIdentity() + " is loading PARENT node " + parentRid + "...");
 
-      // LAZY LOADING OF THE PARENT NODE
-      parent = pTree.loadEntry(null, dataProvider.getParent());
-
-      checkEntryStructure();
-
-      if (parent != null) {
-        // TRY TO ASSIGN IT FOLLOWING THE RID
-        if (parent.dataProvider.getLeft().isValid() && parent.dataProvider.getLeft().equals(dataProvider.getIdentity()))
-          parent.left = this;
-        else if (parent.dataProvider.getRight().isValid() && parent.dataProvider.getRight().equals(dataProvider.getIdentity()))
-          parent.right = this;
-        else {
-          OLogManager.instance().error(this, "getParent: Cannot assign node %s to parent. Nodes parent-left=%s, parent-right=%s",
-              dataProvider.getParent(), parent.dataProvider.getLeft(), parent.dataProvider.getRight());
+      // LAZY LOADING OF THE PARENT NODE: SEE getLeft()
+      synchronized (pTree) {
+        if (parent == null) {
+          final OMVRBTreeEntryPersistent<K, V> loaded = pTree.loadEntry(null, dataProvider.getParent());
+
+          checkEntryStructure();
+
+          if (loaded != null) {
+            // TRY TO ASSIGN IT FOLLOWING THE RID
+            final ORID rid = dataProvider.getIdentity();
+            if (loaded.dataProvider.getLeft().isValid() && loaded.dataProvider.getLeft().equals(rid))
+              loaded.left = this;
+            else if (loaded.dataProvider.getRight().isValid() && loaded.dataProvider.getRight().equals(rid))
+              loaded.right = this;
+            else {
+              OLogManager.instance().error(this,
+                  "getParent: Cannot assign node %s to parent. Nodes parent-left=%s, parent-right=%s", dataProvider.getParent(),
+                  loaded.dataProvider.getLeft(), loaded.dataProvider.getRight());
+            }
+          }
+          parent = loaded;
         }
       }
     }
@@ -417,8 +425,12 @@ public class OMVRBTreeEntryPersistent<K, V> extends OMVRBTreeEntry<K, V> impleme
     if (dataProvider == null)
       return null;
     if (left == null && dataProvider.getLeft().isValid()) {
-      // LAZY LOADING OF THE LEFT LEAF
-      left = pTree.loadEntry(this, dataProvider.getLeft());
+      // LAZY LOADING OF THE LEFT LEAF. THE READERS SHARING THE TREE LOAD ONE NODE AT A TIME, CHECKING AGAIN IF ANOTHER ONE HAS
+      // ALREADY LOADED IT MEANWHILE
+      synchronized (pTree) {
+        if (left == null)
+          left = pTree.loadEntry(this, dataProvider.getLeft());
+      }
       checkEntryStructure();
     }
     return left;
@@ -446,8 +458,11 @@ public class OMVRBTreeEntryPersistent<K, V> extends OMVRBTreeEntry<K, V> impleme
     if (dataProvider == null)
       return null;
     if (right == null && dataProvider.getRight().isValid()) {
-      // LAZY LOADING OF THE RIGHT LEAF
-      right = pTree.loadEntry(this, dataProvider.getRight());
+      // LAZY LOADING OF THE RIGHT LEAF: SEE getLeft()
+      synchronized (pTree) {
+        if (right == null)
+          right = pTree.loadEntry(this, dataProvider.getRight());
+      }
       checkEntryStructure();
     }
     return right;
@@ -22,8 +22,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.orientechnologies.common.collection.OMVRBTree;
 import com.orientechnologies.common.collection.OMVRBTreeEntry;
@@ -48,29 +49,32 @@ import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProvider;
 @SuppressWarnings("serial")
 public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
 
-  protected final OMVRBTreeProvider<K, V>                  dataProvider;
-  protected ORecord<?>                                     owner;
-  protected final Set<OMVRBTreeEntryPersistent<K, V>>      recordsToCommit    = new HashSet<OMVRBTreeEntryPersistent<K, V>>();
+  protected final OMVRBTreeProvider<K, V>                       dataProvider;
+  protected ORecord<?>                                          owner;
+  protected final Set<OMVRBTreeEntryPersistent<K, V>>           recordsToCommit    = new HashSet<OMVRBTreeEntryPersistent<K, V>>();
 
   // STORES IN MEMORY DIRECT REFERENCES TO PORTION OF THE TREE
-  protected int                                            optimizeThreshold;
-  protected volatile int                                   optimization       = 0;
-  private int                                              insertionCounter   = 0;
-  protected int                                            entryPointsSize;
+  protected int                                                 optimizeThreshold;
+  protected volatile int                                        optimization       = 0;
+  private int                                                   insertionCounter   = 0;
+  protected int                                                 entryPointsSize;
 
-  protected float                                          optimizeEntryPointsFactor;
-  private final TreeMap<K, OMVRBTreeEntryPersistent<K, V>> entryPoints;
-  private final Map<ORID, OMVRBTreeEntryPersistent<K, V>>  cache              = new HashMap<ORID, OMVRBTreeEntryPersistent<K, V>>();
-  protected static final OJVMProfiler                      PROFILER           = Orient.instance().getProfiler();
+  protected float                                               optimizeEntryPointsFactor;
+  // READ WITHOUT LOCKS BY THE CONCURRENT LOOKUPS, WHILE THE CACHE IS READ ONLY BY THE THREAD LOADING NODES
+  private final NavigableMap<K, OMVRBTreeEntryPersistent<K, V>> entryPoints;
+  private final Map<ORID, OMVRBTreeEntryPersistent<K, V>>       cache              = new HashMap<ORID, OMVRBTreeEntryPersistent<K, V>>();
+  protected static final OJVMProfiler                           PROFILER           = Orient.instance().getProfiler();
 
-  private static final int                                 OPTIMIZE_MAX_RETRY = 10;
+  private static final int                                      OPTIMIZE_MAX_RETRY = 10;
+  // MINIMUM PAGES OF A SUB-TREE TO UNLOAD IT DURING THE BULK LOADING
+  private static final int                                      BULK_UNLOAD_PAGES  = 256;
 
   public OMVRBTreePersistent(OMVRBTreeProvider<K, V> iProvider) {
     super();
     if (comparator != null)
-      entryPoints = new TreeMap<K, OMVRBTreeEntryPersistent<K, V>>(comparator);
+      entryPoints = new ConcurrentSkipListMap<K, OMVRBTreeEntryPersistent<K, V>>(comparator);
     else
-      entryPoints = new TreeMap<K, OMVRBTreeEntryPersistent<K, V>>();
+      entryPoints = new ConcurrentSkipListMap<K, OMVRBTreeEntryPersistent<K, V>>();
 
     pageLoadFactor = (Float) OGlobalConfiguration.MVRBTREE_LOAD_FACTOR.getValue();
     dataProvider = iProvider;
@@ -137,7 +141,8 @@ public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
   }
 
   /**
-   * Lazy loads a node.
+   * Lazy loads a node. Concurrent readers must call it while holding the lock of the tree: see
+   * {@link OMVRBTreeEntryPersistent#getLeft()}.
    */
   protected OMVRBTreeEntryPersistent<K, V> loadEntry(final OMVRBTreeEntryPersistent<K, V> iParent, final ORID iRecordId) {
     // SEARCH INTO THE CACHE
@@ -465,6 +470,102 @@ public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
     }
   }
 
+  /**
+   * Builds the tree bottom-up from entries sorted by key, without searching nor rotating nodes. The pages are filled up to the load
+   * factor, to leave room for the next insertions, and linked as a balanced red-black tree like the constructor from a sorted map
+   * does with single entries. The left sub-trees already built are saved and unloaded while the build goes on, so the nodes in
+   * memory depend on the depth of the tree and not on its size.
+   * 
+   * @param iEntries
+   *          Entries sorted by key, without duplicated keys
+   * @param iSize
+   *          Number of entries to read from the iterator
+   */
+  public void putAllSorted(final Iterator<? extends Map.Entry<K, V>> iEntries, final int iSize) {
+    if (root != null)
+      throw new IllegalStateException("Cannot bulk load the MVRBTree because it is not empty");
+
+    if (iSize == 0)
+      return;
+
+    final long timer = PROFILER.startChrono();
+    try {
+      config();
+      setLastSearchNode(null, null);
+
+      final int itemsPerPage = Math.max(1, (int) (getDefaultPageSize() * pageLoadFactor));
+      final int pages = (iSize - 1) / itemsPerPage + 1;
+
+      final OMVRBTreeEntry<K, V> newRoot = buildFromSorted(0, 0, pages - 1, computeRedLevel(pages), iEntries, iSize, pages);
+      setRoot(newRoot);
+      setSize(iSize);
+
+      flushBulkLoad();
+
+    } finally {
+      PROFILER.stopChrono(PROFILER.getProcessMetric("mvrbtree.putAllSorted"), "Bulk load sorted values into a MVRBTree", timer);
+    }
+  }
+
+  /**
+   * Builds the sub-tree of the pages from iLo to iHi and returns its root. The entries are spread evenly between the pages.
+   */
+  private OMVRBTreeEntryPersistent<K, V> buildFromSorted(final int iLevel, final int iLo, final int iHi, final int iRedLevel,
+      final Iterator<? extends Map.Entry<K, V>> iEntries, final int iSize, final int iPages) {
+    final int mid = (iLo + iHi) >>> 1;
+
+    OMVRBTreeEntryPersistent<K, V> left = null;
+    if (iLo < mid)
+      left = buildFromSorted(iLevel + 1, iLo, mid - 1, iRedLevel, iEntries, iSize, iPages);
+
+    final int items = iSize / iPages + (mid < iSize % iPages ? 1 : 0);
+
+    Map.Entry<K, V> entry = iEntries.next();
+    final OMVRBTreeEntryPersistent<K, V> middle = createEntry(entry.getKey(), entry.getValue());
+    for (int i = 1; i < items; ++i) {
+      entry = iEntries.next();
+      middle.insert(i, entry.getKey(), entry.getValue());
+    }
+
+    // COLOR RED THE NODES OF THE BOTTOM LEVEL IF NOT FULL
+    middle.setColor(iLevel == iRedLevel ? RED : BLACK);
+
+    if (left != null) {
+      middle.setLeft(left);
+
+      if (mid - iLo >= BULK_UNLOAD_PAGES) {
+        // THE LEFT SUB-TREE WON'T CHANGE ANYMORE: SAVE IT AND REMOVE IT FROM MEMORY
+        flushBulkLoad();
+        if (recordsToCommit.isEmpty()) {
+          unloadSubTree(left);
+          middle.left = null;
+        }
+      }
+    }
+
+    if (mid < iHi)
+      middle.setRight(buildFromSorted(iLevel + 1, mid + 1, iHi, iRedLevel, iEntries, iSize, iPages));
+
+    return middle;
+  }
+
+  /**
+   * Saves the nodes built by {@link #putAllSorted(Iterator, int)}. The sub-trees are unloaded only if this leaves no node to
+   * commit.
+   */
+  protected void flushBulkLoad() {
+    commitChanges();
+  }
+
+  private void unloadSubTree(final OMVRBTreeEntryPersistent<K, V> iNode) {
+    if (iNode.left != null)
+      unloadSubTree(iNode.left);
+    if (iNode.right != null)
+      unloadSubTree(iNode.right);
+
+    removeNodeFromMemory(iNode);
+  }
+
   @Override
   public V remove(final Object key) {
     optimize();
@@ -574,6 +675,16 @@ public abstract class OMVRBTreePersistent<K, V> extends OMVRBTree<K, V> {
     }
   }
 
+  @Override
+  public V getConcurrent(final Object iKey) {
+    final long timer = PROFILER.startChrono();
+    try {
+      return super.getConcurrent(iKey);
+    } finally {
+      PROFILER.stopChrono(PROFILER.getProcessMetric("mvrbtree.get"), "Get a value from a MVRBTree", timer);
+    }
+  }
+
   @Override
   public boolean containsKey(final Object iKey) {
     for (int i = 0; i < OPTIMIZE_MAX_RETRY; ++i) {
@@ -123,12 +123,12 @@ public class OMVRBTreeRIDSet implements Set<OIdentifiable>, OTrackedMultiValue<O
     return true;
   }
 
+  @SuppressWarnings("unchecked")
   public boolean addAll(final Collection<? extends OIdentifiable> c) {
-    boolean changed = false;
-    for (OIdentifiable o : c)
-      if (add(o) && !changed)
-        changed = true;
-    return changed;
+    // COMMIT THE TREE ONCE FOR ALL THE VALUES
+    final int previousSize = tree.size();
+    tree.putAll((Collection<OIdentifiable>) c);
+    return tree.size() != previousSize;
   }
 
   public boolean retainAll(final Collection<?> c) {
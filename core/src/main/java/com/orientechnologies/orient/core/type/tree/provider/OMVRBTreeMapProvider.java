@@ -71,6 +71,10 @@ public class OMVRBTreeMapProvider<K, V> extends OMVRBTreeProviderAbstract<K, V>
     return new OMVRBTreeMapEntryProvider<K, V>(this);
   }
 
+  public OBinarySerializer<K> getKeySerializer() {
+    return keySerializer;
+  }
+
   @Override
   protected void load(final ODatabaseRecord iDb) {
     ((ORecordBytesLazy) record).recycle(this);
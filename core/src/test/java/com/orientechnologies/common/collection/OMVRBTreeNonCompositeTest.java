@@ -1,6 +1,7 @@
 package com.orientechnologies.common.collection;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
@@ -29,6 +30,19 @@ public class OMVRBTreeNonCompositeTest {
 		assertNull(tree.get(10.0));
 	}
 
+	@Test
+	public void testGetConcurrent() {
+		for (double i = 1; i < 10; i++) {
+			assertEquals(tree.getConcurrent(i), i);
+			assertTrue(tree.containsKeyConcurrent(i));
+		}
+
+		assertNull(tree.getConcurrent(0.0));
+		assertNull(tree.getConcurrent(5.5));
+		assertNull(tree.getConcurrent(10.0));
+		assertFalse(tree.containsKeyConcurrent(5.5));
+	}
+
 	@Test
 	public void testSubMapInclusive() {
 		final ONavigableMap<Double, Double> navigableMap = tree.subMap(2.0, true, 7.0, true);
@@ -0,0 +1,126 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+
+@Test
+public class OOffHeapCacheTest {
+
+  public void doesNothingWhileDisabled() {
+    // Given cache created
+    // And not enabled
+    OCache sut = new OOffHeapCache(null, 10);
+
+    // When a record is put in
+    sut.put(newRecord(1, 100));
+
+    // Then it is not stored
+    assertNull(sut.get(newId(1)));
+    assertEquals(sut.size(), 0);
+  }
+
+  public void returnsDeserializedCopyOfRecord() {
+    // Given an enabled cache
+    OCache sut = enabledCache(10);
+
+    // When a record is put in
+    ORecordBytes record = newRecord(1, 100);
+    sut.put(record);
+
+    // Then a new instance with same identity, version and content is returned
+    ORecordInternal<?> cached = sut.get(newId(1));
+    assertNotNull(cached);
+    assertNotSame(cached, record);
+    assertEquals(cached.getIdentity(), record.getIdentity());
+    assertEquals(cached.getRecordVersion(), record.getRecordVersion());
+    assertTrue(Arrays.equals(cached.toStream(), record.toStream()));
+  }
+
+  public void accountsOffHeapMemory() {
+    // Given an enabled cache
+    OOffHeapCache sut = enabledCache(10);
+
+    // When records are put, replaced and removed
+    sut.put(newRecord(1, 100));
+    sut.put(newRecord(2, 200));
+    sut.put(newRecord(2, 300));
+    long usedAfterPut = sut.getUsedMemory();
+    ORecordInternal<?> removed = sut.remove(newId(1));
+    long usedAfterRemove = sut.getUsedMemory();
+    sut.clear();
+
+    // Then used memory follows the serialized content
+    assertEquals(usedAfterPut, 400);
+    assertEquals(removed.toStream().length, 100);
+    assertEquals(usedAfterRemove, 300);
+    assertEquals(sut.getUsedMemory(), 0);
+    assertEquals(sut.size(), 0);
+  }
+
+  public void storesNoMoreElementsThanSpecifiedLimit() {
+    // Given an enabled cache
+    OOffHeapCache sut = enabledCache(10);
+
+    // When stored more distinct elements than cache limit allows
+    for (int i = 1; i <= 30; i++)
+      sut.put(newRecord(i, 10));
+
+    // Then size of cache should be exactly as it's limit
+    assertEquals(sut.size(), sut.limit());
+    assertEquals(sut.keys().size(), sut.limit());
+    assertEquals(sut.getUsedMemory(), sut.limit() * 10);
+  }
+
+  public void storesNoMoreBytesThanMaxMemory() {
+    // Given an enabled cache limited to 1Kb of off-heap memory
+    final Object oldSize = OGlobalConfiguration.CACHE_LEVEL2_OFFHEAP_SIZE.getValue();
+    OGlobalConfiguration.CACHE_LEVEL2_OFFHEAP_SIZE.setValue("1Kb");
+    OOffHeapCache sut;
+    try {
+      sut = enabledCache(1000);
+    } finally {
+      OGlobalConfiguration.CACHE_LEVEL2_OFFHEAP_SIZE.setValue(oldSize);
+    }
+
+    // When more bytes are put
+    for (int i = 1; i <= 30; i++)
+      sut.put(newRecord(i, 100));
+
+    // Then the oldest records are evicted
+    assertEquals(sut.getMaxMemory(), 1024);
+    assertEquals(sut.getUsedMemory(), 1000);
+    assertEquals(sut.size(), 10);
+    assertNotNull(sut.get(newId(30)));
+  }
+
+  private static ORecordId newId(final int i) {
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(i));
+  }
+
+  private static ORecordBytes newRecord(final int i, final int length) {
+    final byte[] content = new byte[length];
+    Arrays.fill(content, (byte) i);
+    final ORecordBytes record = new ORecordBytes(content);
+    record.fill(newId(i), record.getRecordVersion(), content, false);
+    return record;
+  }
+
+  private OOffHeapCache enabledCache(final int limit) {
+    OOffHeapCache cache = new OOffHeapCache(null, limit);
+    cache.enable();
+    return cache;
+  }
+}
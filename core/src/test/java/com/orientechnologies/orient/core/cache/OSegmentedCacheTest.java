@@ -0,0 +1,183 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OSegmentedCacheTest {
+
+  public void doesNothingWhileDisabled() {
+    // Given cache created
+    // And not enabled
+    OCache sut = new OSegmentedCache(null, 1);
+
+    // When any operation called on it
+    ODocument record = new ODocument(newId(1));
+    sut.put(record);
+    ORecordInternal<?> recordGot = sut.get(record.getIdentity());
+    ORecordInternal<?> recordRemoved = sut.remove(record.getIdentity());
+
+    // Then it has no effect on cache's state
+    assertNull(recordGot, "Cache should return empty records while disabled");
+    assertNull(recordRemoved, "Cache should return empty records while disabled");
+    assertEquals(sut.size(), 0, "Cache should ignore insert while disabled");
+  }
+
+  public void hasZeroSizeAfterClear() {
+    // Given enabled non-empty cache
+    OCache sut = enabledNonEmptyCache();
+
+    // When cleared
+    sut.clear();
+
+    // Then size of cache should be zero
+    assertEquals(sut.size(), 0, "Cache was not cleaned up");
+    assertEquals(sut.keys().size(), 0, "Cache was not cleaned up");
+  }
+
+  public void providesAccessToAllKeysInCache() {
+    // Given enabled non-empty cache
+    OCache sut = enabledNonEmptyCache();
+
+    // When asked for keys
+    Collection<ORID> keys = sut.keys();
+
+    // Then keys count should be same as size of cache
+    // And records available for keys
+    assertEquals(keys.size(), sut.size(), "Cache provided not all keys?");
+    for (ORID key : keys)
+      assertNotNull(sut.get(key));
+  }
+
+  public void storesRecordsOnlyOnceForEveryIdentity() {
+    // Given an enabled cache
+    OCache sut = enabledCache();
+
+    // When some records with same identity put in several times
+    ODocument first = new ODocument(newId(1));
+    ODocument last = new ODocument(newId(1));
+    sut.put(first);
+    ORecordInternal<?> replaced = sut.put(last);
+
+    // Then cache ends up storing only the last one
+    assertEquals(sut.size(), 1);
+    assertEquals(replaced, first);
+    assertEquals(sut.get(newId(1)), last);
+  }
+
+  public void removesOnlyOnce() {
+    // Given an enabled cache with records in it
+    OCache sut = enabledCache();
+    ODocument record = new ODocument(newId(1));
+    sut.put(record);
+
+    // When removing the record twice
+    ORecordInternal<?> removedFirst = sut.remove(newId(1));
+    ORecordInternal<?> removedSecond = sut.remove(newId(1));
+
+    // Then only the first remove returns it
+    assertEquals(removedFirst, record);
+    assertNull(removedSecond);
+    assertEquals(sut.size(), 0);
+  }
+
+  public void storesNoMoreElementsThanSpecifiedLimit() {
+    // Given an enabled cache
+    OCache sut = enabledCache();
+
+    // When stored more distinct elements than cache limit allows
+    for (int i = sut.limit() * 3; i > 0; i--)
+      sut.put(new ODocument(newId(i)));
+
+    // Then size of cache should be exactly as it's limit
+    assertEquals(sut.size(), sut.limit(), "Cache doesn't meet limit requirements");
+    assertEquals(sut.keys().size(), sut.limit(), "Cache doesn't meet limit requirements");
+  }
+
+  public void keepsRecentlyReadRecords() {
+    // Given an enabled full cache
+    OCache sut = enabledCache();
+    for (int i = 1; i <= sut.limit(); i++)
+      sut.put(new ODocument(newId(i)));
+
+    // When a record is read while new records are put
+    for (int i = sut.limit() + 1; i < sut.limit() * 3; i++) {
+      sut.get(newId(1));
+      sut.put(new ODocument(newId(i)));
+    }
+
+    // Then the read record gets a second chance every time
+    assertNotNull(sut.get(newId(1)), "Referenced record has been evicted");
+  }
+
+  public void keepsLimitWithConcurrentPuts() throws InterruptedException {
+    // Given an enabled cache
+    final OCache sut = enabledCache();
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    // When many threads put and read records concurrently
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      final int offset = t * 10000;
+      workers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < 10000; ++i) {
+              sut.put(new ODocument(newId(offset + i)));
+              sut.get(newId(offset + i / 2));
+              if (i % 3 == 0)
+                sut.remove(newId(offset + i - 1));
+            }
+          } catch (Throwable e) {
+            error.set(e);
+          }
+        }
+      };
+      workers[t].start();
+    }
+    start.countDown();
+    for (Thread worker : workers)
+      worker.join();
+
+    // Then no error occurs and the size matches the content
+    // And the limit is exceeded at most by the last put of every thread, when it found the segments locked
+    assertNull(error.get());
+    assertEquals(sut.size(), sut.keys().size());
+    assertTrue(sut.size() <= sut.limit() + threads, "Cache doesn't meet limit requirements: " + sut.size());
+  }
+
+  private static ORecordId newId(final int i) {
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(i));
+  }
+
+  private OCache enabledCache() {
+    OSegmentedCache cache = new OSegmentedCache(null, 100);
+    cache.enable();
+    return cache;
+  }
+
+  private OCache enabledNonEmptyCache() {
+    OCache cache = enabledCache();
+    cache.put(new ODocument(newId(1)));
+    cache.put(new ODocument(newId(2)));
+    return cache;
+  }
+}
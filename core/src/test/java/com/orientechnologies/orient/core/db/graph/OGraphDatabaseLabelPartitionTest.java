@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.graph;
+
+import java.util.Collection;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OGraphDatabaseLabelPartitionTest {
+  private OGraphDatabase db;
+  private ODocument      a;
+  private ODocument      b;
+  private ODocument      c;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new OGraphDatabase("memory:graphDatabaseLabelPartitionTest");
+    db.create();
+
+    a = db.createVertex();
+    a.save();
+    b = db.createVertex();
+    b.save();
+    c = db.createVertex();
+    c.save();
+
+    db.createEdge(a, b).field("label", "knows").save();
+    db.createEdge(a, c).field("label", "likes").save();
+    db.createEdge(a, c).field("label", "is a").save();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testMigration() {
+    Assert.assertFalse(db.isEdgesPartitionedByLabel());
+    Assert.assertNull(a.field("out_knows"));
+
+    Assert.assertEquals(OGraphDatabaseMigration.partitionEdgesByLabel(db), 3);
+
+    Assert.assertTrue(db.isEdgesPartitionedByLabel());
+    Assert.assertEquals(((Collection<?>) a.field("out_knows")).size(), 1);
+    Assert.assertEquals(((Collection<?>) c.field("in_likes")).size(), 1);
+    Assert.assertEquals(db.getOutEdges(a, "likes").size(), 1);
+
+    // LABELS THAT CAN'T BE PART OF A FIELD NAME ARE NOT PARTITIONED
+    Assert.assertNull(a.field("out_is a"));
+    Assert.assertEquals(db.getOutEdges(a, "is a").size(), 1);
+  }
+
+  public void testLabelSetAfterCreation() {
+    OGraphDatabaseMigration.partitionEdgesByLabel(db);
+
+    final ODocument edge = db.createEdge(b, c);
+    edge.field("label", "knows");
+    edge.save();
+
+    Assert.assertEquals(db.getOutEdges(b, "knows").size(), 1);
+    Assert.assertEquals(db.getInEdges(c, "knows").size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(b, c, new String[] { "knows" }).size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(b, c, new String[] { "likes" }).size(), 0);
+  }
+
+  public void testLabelChange() {
+    OGraphDatabaseMigration.partitionEdgesByLabel(db);
+
+    final ODocument edge = db.getOutEdges(a, "knows").iterator().next().getRecord();
+    edge.field("label", "hates");
+    edge.save();
+
+    Assert.assertEquals(db.getOutEdges(a, "knows").size(), 0);
+    Assert.assertEquals(db.getOutEdges(a, "hates").size(), 1);
+    Assert.assertEquals(db.getInEdges(b, "knows").size(), 0);
+    Assert.assertEquals(db.getInEdges(b, "hates").size(), 1);
+  }
+
+  public void testRemove() {
+    OGraphDatabaseMigration.partitionEdgesByLabel(db);
+
+    db.removeEdge(db.getOutEdges(a, "knows").iterator().next());
+    Assert.assertEquals(db.getOutEdges(a, "knows").size(), 0);
+    Assert.assertEquals(db.getInEdges(b, "knows").size(), 0);
+
+    db.removeVertex(a);
+    Assert.assertEquals(db.getInEdges(c, "likes").size(), 0);
+    Assert.assertEquals(db.getInEdges(c).size(), 0);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.graph;
+
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OGraphDatabaseLightweightEdgeTest {
+  private OGraphDatabase db;
+  private ODocument      a;
+  private ODocument      b;
+  private ODocument      c;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new OGraphDatabase("memory:graphDatabaseLightweightEdgeTest");
+    db.create();
+    db.setUseLightweightEdges(true);
+
+    a = db.createVertex();
+    a.save();
+    b = db.createVertex();
+    b.save();
+    c = db.createVertex();
+    c.save();
+
+    // a -> b -> c WITH LIGHTWEIGHT EDGES, a -> c WITH A REGULAR ONE
+    db.createLightweightEdge(a, b);
+    db.createLightweightEdge(b, c);
+    a.save();
+    b.save();
+    c.save();
+    db.createEdge(a, c).field("label", "knows").save();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testBothRepresentations() {
+    final Set<OIdentifiable> edges = db.getOutEdges(a);
+    Assert.assertEquals(edges.size(), 2);
+
+    int lightweight = 0;
+    for (OIdentifiable edge : edges)
+      if (db.isLightweightEdge(edge)) {
+        lightweight++;
+        Assert.assertEquals(db.getInVertex(edge), b);
+      } else
+        Assert.assertEquals(db.getInVertex(edge), c);
+    Assert.assertEquals(lightweight, 1);
+
+    Assert.assertEquals(db.getOutEdges(a, "knows").size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(a, b).size(), 1);
+    Assert.assertEquals(db.getEdgesBetweenVertexes(a, b, new String[] { "knows" }).size(), 0);
+    Assert.assertEquals(db.countEdges(), 1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testDisabled() {
+    db.setUseLightweightEdges(false);
+    db.createLightweightEdge(c, a);
+  }
+
+  public void testPathFinders() {
+    List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select shortestPath(" + b.getIdentity() + ", "
+        + c.getIdentity() + ") as path"));
+    Assert.assertEquals(result.get(0).field("path"), java.util.Arrays.asList(b.getIdentity(), c.getIdentity()));
+
+    result = db.query(new OSQLSynchQuery<ODocument>("select dijkstra(" + a.getIdentity() + ", " + c.getIdentity()
+        + ", 'weight', 'out') as path"));
+    Assert.assertEquals(((List<?>) result.get(0).field("path")).size(), 2);
+  }
+
+  public void testTraverse() {
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("traverse OGraphVertex.out, OGraphEdge.in from "
+        + b.getIdentity()));
+    Assert.assertEquals(result.size(), 2);
+  }
+
+  public void testRemove() {
+    Assert.assertTrue(db.removeLightweightEdge(a, b));
+    Assert.assertFalse(db.removeLightweightEdge(a, b));
+    Assert.assertEquals(db.getOutEdges(a).size(), 1);
+    Assert.assertEquals(db.getInEdges(b).size(), 0);
+
+    db.removeVertex(c);
+    Assert.assertEquals(db.getOutEdges(b).size(), 0);
+    Assert.assertEquals(db.getOutEdges(a).size(), 0);
+    Assert.assertEquals(db.countVertexes(), 2);
+  }
+
+  public void testSQL() {
+    db.command(new OCommandSQL("create edge from " + c.getIdentity() + " to " + a.getIdentity())).execute();
+    Assert.assertEquals(db.countEdges(), 1);
+    Assert.assertEquals(db.getOutEdges(c.reload()).size(), 1);
+
+    final Number removed = db.command(new OCommandSQL("delete edge from " + c.getIdentity())).execute();
+    Assert.assertEquals(removed.intValue(), 1);
+    Assert.assertEquals(db.getOutEdges(c.reload()).size(), 0);
+    Assert.assertEquals(db.getInEdges(a.reload()).size(), 0);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OClassIndexManagerBatchTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:classIndexManagerBatchTest");
+    db.create();
+
+    final OClass account = db.getMetadata().getSchema().createClass("Account");
+    account.createProperty("code", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    account.createProperty("city", OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    db.drop();
+  }
+
+  public void uniqueKeyIsCheckedAgainstTheRecordsCreatedByAnotherDatabaseWhileBatching() {
+    final ODatabaseDocumentTx other = new ODatabaseDocumentTx(db.getURL()).open("admin", "admin");
+    try {
+      // GIVEN A RECORD CREATED BY ANOTHER DATABASE DURING A MASSIVE INSERT
+      other.declareIntent(new OIntentMassiveInsert());
+      new ODocument("Account").field("code", 1).field("city", "Rome").save();
+
+      // WHEN A RECORD WITH THE SAME UNIQUE KEY IS CREATED
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+      try {
+        new ODocument("Account").field("code", 1).save();
+        Assert.fail("The duplicated key has not been found");
+      } catch (OIndexException e) {
+        // THEN THE KEY IS FOUND, WHILE THE NOT UNIQUE ENTRY STILL WAITS FOR THE BATCH
+        Assert.assertEquals(db.getMetadata().getIndexManager().getIndex("Account.city").getSize(), 0);
+      }
+
+      ODatabaseRecordThreadLocal.INSTANCE.set(other);
+      other.declareIntent(null);
+      Assert.assertEquals(other.getMetadata().getIndexManager().getIndex("Account.city").getSize(), 1);
+    } finally {
+      ODatabaseRecordThreadLocal.INSTANCE.set(other);
+      other.close();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
+
+/**
+ * Rebuilds the automatic indexes with more threads on the paths that hold the locks of the storage: the reopen after a crash and
+ * CREATE INDEX. A deadlock makes the test fail by timeout.
+ */
+@Test
+public class OIndexRebuildTest {
+  private static final int     RECORDS = 30000;
+  private static final int     TIMEOUT = 60;
+
+  private boolean              oldStorageOpen;
+  private int                  oldRebuildThreads;
+  private int                  oldSortBufferSize;
+  private String               dbPath;
+  private ODatabaseDocumentTx  db;
+  private ExecutorService      executor;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    oldStorageOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValueAsBoolean();
+    oldRebuildThreads = OGlobalConfiguration.INDEX_REBUILD_THREADS.getValueAsInteger();
+    oldSortBufferSize = OGlobalConfiguration.INDEX_REBUILD_SORT_BUFFER_SIZE.getValueAsInteger();
+
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(false);
+    OGlobalConfiguration.INDEX_REBUILD_THREADS.setValue(4);
+    // THE KEYS ARE SORTED AND SPILLED IN MANY BUFFERS
+    OGlobalConfiguration.INDEX_REBUILD_SORT_BUFFER_SIZE.setValue(1000);
+
+    dbPath = System.getProperty("java.io.tmpdir");
+    if (!dbPath.endsWith(File.separator))
+      dbPath += "/";
+    dbPath += "orientdb/OIndexRebuildTest";
+    delTree(new File(dbPath));
+
+    db = new ODatabaseDocumentTx("local:" + dbPath);
+    db.create();
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    executor.shutdownNow();
+    if (!db.isClosed())
+      db.drop();
+    else
+      delTree(new File(dbPath));
+
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(oldStorageOpen);
+    OGlobalConfiguration.INDEX_REBUILD_THREADS.setValue(oldRebuildThreads);
+    OGlobalConfiguration.INDEX_REBUILD_SORT_BUFFER_SIZE.setValue(oldSortBufferSize);
+  }
+
+  public void rebuildOnReopenAfterCrash() throws Exception {
+    // Given an indexed class
+    final OClass person = db.getMetadata().getSchema().createClass("Person");
+    person.createProperty("name", OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    populate();
+    db.close();
+
+    // And an index cluster that was not closed softly
+    // THE FLAG IS THE BYTE AT OFFSET 8 OF THE FILE HEADER
+    final RandomAccessFile indexFile = new RandomAccessFile(dbPath + "/index.0.ocl", "rw");
+    try {
+      indexFile.seek(8);
+      indexFile.write(0);
+    } finally {
+      indexFile.close();
+    }
+
+    // When the database is reopened
+    runWithTimeout(new Callable<Void>() {
+      public Void call() {
+        db = new ODatabaseDocumentTx("local:" + dbPath).open("admin", "admin");
+        return null;
+      }
+    });
+
+    // Then the index has been rebuilt
+    assertIndexed();
+  }
+
+  public void rebuildOnCreateIndex() throws Exception {
+    createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+  }
+
+  public void rebuildBTreeOnCreateIndex() throws Exception {
+    createIndex(OClass.INDEX_TYPE.NOTUNIQUE_BTREE);
+  }
+
+  public void rebuildUniqueBTreeWithDuplicatedKeys() {
+    // Given a class with duplicated names
+    db.getMetadata().getSchema().createClass("Person").createProperty("name", OType.STRING);
+    populate();
+
+    // When a unique index is created
+    try {
+      db.command(new OCommandSQL("create index Person.name unique_btree")).execute();
+      Assert.fail("The duplicated keys must be rejected");
+    } catch (OIndexException e) {
+      // Then the duplicated key is reported
+      Assert.assertTrue(e.getCause() instanceof ORecordDuplicatedException, e.toString());
+    }
+  }
+
+  private void createIndex(final OClass.INDEX_TYPE iType) throws Exception {
+    // Given a class with records
+    db.getMetadata().getSchema().createClass("Person").createProperty("name", OType.STRING);
+    populate();
+
+    // When the index is created
+    runWithTimeout(new Callable<Void>() {
+      public Void call() {
+        ODatabaseRecordThreadLocal.INSTANCE.set(db);
+        db.command(new OCommandSQL("create index Person.name " + iType)).execute();
+        return null;
+      }
+    });
+
+    // Then all the records are indexed
+    assertIndexed();
+  }
+
+  private void populate() {
+    for (int i = 0; i < RECORDS; i++)
+      new ODocument("Person").field("name", "name" + (i % (RECORDS / 3))).save();
+  }
+
+  private void assertIndexed() {
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertNotNull(index);
+    Assert.assertEquals(index.getKeySize(), RECORDS / 3);
+    Assert.assertEquals(index.getSize(), RECORDS);
+    Assert.assertEquals(((Collection<?>) index.get("name7")).size(), 3);
+  }
+
+  private void runWithTimeout(final Callable<Void> iTask) throws Exception {
+    // THE DATABASE IS BOUND TO THE THREAD THAT OPENED IT
+    final Future<Void> future = executor.submit(new Callable<Void>() {
+      public Void call() throws Exception {
+        iTask.call();
+        db.close();
+        return null;
+      }
+    });
+
+    try {
+      future.get(TIMEOUT, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("The index rebuild is deadlocked");
+    }
+
+    db = new ODatabaseDocumentTx("local:" + dbPath).open("admin", "admin");
+  }
+
+  private static void delTree(final File iDirectory) {
+    final File[] files = iDirectory.listFiles();
+    if (files != null)
+      for (File file : files)
+        if (file.isDirectory())
+          delTree(file);
+        else
+          file.delete();
+    iDirectory.delete();
+  }
+}
@@ -0,0 +1,229 @@
+package com.orientechnologies.orient.core.index.btree.local;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.orient.core.id.OClusterPositionLong;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+
+/**
+ * Checks the B+tree in memory, with small pages to split and free many of them.
+ */
+@Test
+public class OBTreeTest {
+  private static final int      KEYS_COUNT = 20000;
+  private static final int      PAGE_SIZE  = 512;
+
+  private OBTree<Integer>       tree;
+
+  @BeforeMethod
+  public void beforeMethod() throws IOException {
+    tree = new OBTree<Integer>(null, PAGE_SIZE, 0);
+    tree.create(OIntegerSerializer.INSTANCE, false);
+  }
+
+  public void testPutGet() throws IOException {
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertTrue(tree.put(shuffle(i), rid(i)));
+
+    Assert.assertEquals(tree.size(), KEYS_COUNT);
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertEquals(tree.get(shuffle(i)), rid(i), i + " key is absent");
+
+    Assert.assertNull(tree.get(-1));
+    Assert.assertNull(tree.get(KEYS_COUNT));
+  }
+
+  public void testPutReplacesTheValue() throws IOException {
+    Assert.assertTrue(tree.put(1, rid(1)));
+    Assert.assertFalse(tree.put(1, rid(2)));
+
+    Assert.assertEquals(tree.size(), 1);
+    Assert.assertEquals(tree.get(1), rid(2));
+  }
+
+  public void testAppend() throws IOException {
+    for (int i = 0; i < KEYS_COUNT; i++)
+      tree.put(i, rid(i));
+
+    final List<Integer> keys = new ArrayList<Integer>();
+    for (long page = tree.getEdgeLeaf(true); page != -1;)
+      page = tree.readLeaf(page, true, keys, new ArrayList<ORID>());
+
+    Assert.assertEquals(keys.size(), KEYS_COUNT);
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertEquals(keys.get(i).intValue(), i);
+  }
+
+  public void testRemove() throws IOException {
+    for (int i = 0; i < KEYS_COUNT; i++)
+      tree.put(shuffle(i), rid(i));
+
+    for (int i = 0; i < KEYS_COUNT; i += 2)
+      Assert.assertEquals(tree.remove(shuffle(i)), 1);
+    Assert.assertEquals(tree.remove(-1), 0);
+
+    Assert.assertEquals(tree.size(), KEYS_COUNT / 2);
+    for (int i = 0; i < KEYS_COUNT; i++)
+      if (i % 2 == 0)
+        Assert.assertNull(tree.get(shuffle(i)));
+      else
+        Assert.assertEquals(tree.get(shuffle(i)), rid(i));
+
+    for (int i = 1; i < KEYS_COUNT; i += 2)
+      Assert.assertEquals(tree.remove(shuffle(i)), 1);
+
+    Assert.assertEquals(tree.size(), 0);
+    Assert.assertEquals(tree.readLeaf(tree.getEdgeLeaf(true), true, new ArrayList<Integer>(), new ArrayList<ORID>()), -1);
+
+    // THE FREED PAGES ARE REUSED
+    for (int i = 0; i < KEYS_COUNT; i++)
+      tree.put(i, rid(i));
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertEquals(tree.get(i), rid(i));
+  }
+
+  public void testRange() throws IOException {
+    for (int i = 0; i < KEYS_COUNT; i++)
+      tree.put(shuffle(i), rid(i));
+
+    Assert.assertEquals(range(100, true, 200, true, true), interval(100, 200, true));
+    Assert.assertEquals(range(100, false, 200, false, true), interval(101, 199, true));
+    Assert.assertEquals(range(100, true, 200, true, false), interval(100, 200, false));
+    Assert.assertEquals(range(100, false, 200, false, false), interval(101, 199, false));
+    Assert.assertEquals(range(null, true, 10, true, true), interval(0, 10, true));
+    Assert.assertEquals(range(KEYS_COUNT - 10, true, null, true, false), interval(KEYS_COUNT - 10, KEYS_COUNT - 1, false));
+    Assert.assertEquals(range(null, true, null, true, true).size(), KEYS_COUNT);
+  }
+
+  public void testMultiValue() throws IOException {
+    tree.create(OIntegerSerializer.INSTANCE, true);
+
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertTrue(tree.put(i % 100, rid(i)));
+    Assert.assertFalse(tree.put(0, rid(0)));
+
+    Assert.assertEquals(tree.size(), KEYS_COUNT);
+    Assert.assertTrue(tree.contains(5, rid(105)));
+    Assert.assertFalse(tree.contains(5, rid(106)));
+    Assert.assertEquals(range(5, true, 5, true, true).size(), KEYS_COUNT / 100);
+
+    Assert.assertTrue(tree.remove(5, rid(105)));
+    Assert.assertFalse(tree.remove(5, rid(105)));
+    Assert.assertEquals(tree.remove(5), KEYS_COUNT / 100 - 1);
+    Assert.assertNull(tree.get(5));
+    Assert.assertEquals(tree.size(), KEYS_COUNT - KEYS_COUNT / 100);
+  }
+
+  public void testBulkLoad() throws IOException {
+    final List<Map.Entry<Integer, ORID>> entries = new ArrayList<Map.Entry<Integer, ORID>>();
+    for (int i = 0; i < KEYS_COUNT; i++)
+      entries.add(new AbstractMap.SimpleImmutableEntry<Integer, ORID>(i * 2, rid(i)));
+
+    tree.bulkLoad(entries.iterator());
+
+    Assert.assertEquals(tree.size(), KEYS_COUNT);
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertEquals(tree.get(i * 2), rid(i), i * 2 + " key is absent");
+    Assert.assertNull(tree.get(1));
+    Assert.assertEquals(range(100, true, 200, false, false).size(), 50);
+    Assert.assertEquals(range(null, true, null, true, true).size(), KEYS_COUNT);
+
+    // THE FULL PAGES ARE SPLIT BY THE NEXT CHANGES
+    for (int i = 0; i < KEYS_COUNT; i++)
+      Assert.assertTrue(tree.put(i * 2 + 1, rid(i)));
+    Assert.assertEquals(range(null, true, null, true, true), interval(0, KEYS_COUNT * 2 - 1, true));
+
+    for (int i = 0; i < KEYS_COUNT * 2; i++)
+      Assert.assertEquals(tree.remove(i), 1);
+    Assert.assertEquals(tree.size(), 0);
+  }
+
+  public void testBulkLoadMultiValue() throws IOException {
+    tree.create(OIntegerSerializer.INSTANCE, true);
+
+    final List<Map.Entry<Integer, ORID>> entries = new ArrayList<Map.Entry<Integer, ORID>>();
+    for (int i = 0; i < KEYS_COUNT; i++)
+      entries.add(new AbstractMap.SimpleImmutableEntry<Integer, ORID>(i / 100, rid(i)));
+
+    tree.bulkLoad(entries.iterator());
+
+    Assert.assertEquals(tree.size(), KEYS_COUNT);
+    Assert.assertTrue(tree.contains(5, rid(505)));
+    Assert.assertFalse(tree.contains(5, rid(605)));
+    Assert.assertEquals(range(5, true, 5, true, true).size(), 100);
+    Assert.assertEquals(tree.remove(5), 100);
+    Assert.assertEquals(tree.size(), KEYS_COUNT - 100);
+  }
+
+  public void testPartialCompositeKeys() throws IOException {
+    final OBTree<OCompositeKey> compositeTree = new OBTree<OCompositeKey>(null, PAGE_SIZE, 0);
+    compositeTree.create(OCompositeKeySerializer.INSTANCE, false);
+
+    for (int i = 0; i < 100; i++)
+      for (int j = 0; j < 50; j++)
+        compositeTree.put(new OCompositeKey(i, j), rid(i * 50 + j));
+
+    final List<ORID> result = new ArrayList<ORID>();
+    final OBTree.OEntryListener<OCompositeKey> listener = new OBTree.OEntryListener<OCompositeKey>() {
+      public boolean addResult(final OCompositeKey iKey, final ORID iRid) {
+        result.add(iRid);
+        return true;
+      }
+    };
+
+    compositeTree.range(new OCompositeKey(10), true, new OCompositeKey(12), true, true, listener);
+    Assert.assertEquals(result.size(), 150);
+    Assert.assertEquals(result.get(0), rid(500));
+    Assert.assertEquals(result.get(149), rid(649));
+
+    result.clear();
+    compositeTree.range(new OCompositeKey(10), false, new OCompositeKey(12), false, false, listener);
+    Assert.assertEquals(result.size(), 50);
+    Assert.assertEquals(result.get(0), rid(599));
+    Assert.assertEquals(result.get(49), rid(550));
+  }
+
+  private List<Integer> range(final Integer iFrom, final boolean iFromInclusive, final Integer iTo, final boolean iToInclusive,
+      final boolean iAscending) {
+    final List<Integer> result = new ArrayList<Integer>();
+    tree.range(iFrom, iFromInclusive, iTo, iToInclusive, iAscending, new OBTree.OEntryListener<Integer>() {
+      public boolean addResult(final Integer iKey, final ORID iRid) {
+        result.add(iKey);
+        return true;
+      }
+    });
+    return result;
+  }
+
+  private static List<Integer> interval(final int iFrom, final int iTo, final boolean iAscending) {
+    final List<Integer> result = new ArrayList<Integer>();
+    if (iAscending)
+      for (int i = iFrom; i <= iTo; i++)
+        result.add(i);
+    else
+      for (int i = iTo; i >= iFrom; i--)
+        result.add(i);
+    return result;
+  }
+
+  private static int shuffle(final int i) {
+    // KEYS_COUNT IS NOT A MULTIPLE OF 7919, SO THIS IS A PERMUTATION OF 0..KEYS_COUNT-1
+    return (int) ((long) i * 7919 % KEYS_COUNT);
+  }
+
+  private static ORID rid(final int i) {
+    return new ORecordId(1, new OClusterPositionLong(i));
+  }
+}
@@ -2,6 +2,7 @@ package com.orientechnologies.orient.core.index.hashindex.local.arc;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -329,6 +330,55 @@ public class ARCBufferTest {
     assertFile(5, new byte[] { (byte) 105, 1, 2, 3, 4, 5, 6, (byte) 105 });
   }
 
+  public void testStripesKeepThePagesWrittenByConcurrentThreads() throws Exception {
+    buffer.close();
+    // 8 PAGES IN 4 STRIPES, LESS THAN THE 32 PAGES WRITTEN: THE STRIPES EVICT WHILE THE OTHER THREADS WORK
+    buffer = new OARCBuffer(64, directMemory, 8, storageLocal, true, 4);
+    final OStorageSegmentConfiguration segmentConfiguration = new OStorageSegmentConfiguration(storageLocal.getConfiguration(),
+        "arcBufferTest", 0);
+    segmentConfiguration.fileType = OFileFactory.CLASSIC;
+    buffer.openFile(segmentConfiguration, ".tst");
+
+    final int threadCount = 4;
+    final int pages = 32;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int first = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int round = 0; round < 10; round++)
+              for (int i = first; i < pages; i += threadCount) {
+                long pagePointer = buffer.loadAndLockForWrite("arcBufferTest", ".tst", i);
+                directMemory.set(pagePointer, new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, (byte) round }, 8);
+                buffer.releaseWriteLock("arcBufferTest", ".tst", i);
+
+                pagePointer = buffer.loadAndLockForRead("arcBufferTest", ".tst", i);
+                final byte[] content = directMemory.get(pagePointer, 8);
+                buffer.releaseReadLock("arcBufferTest", ".tst", i);
+                Assert.assertEquals(content, new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, (byte) round });
+              }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+
+    Assert.assertNull(failure.get());
+    Assert.assertTrue(buffer.getCachedPages() <= 8);
+    Assert.assertEquals(buffer.getHits() + buffer.getMisses(), pages * 10 * 2);
+
+    buffer.flush();
+    for (int i = 0; i < pages; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, 3, 4, 5, 6, (byte) 9 });
+  }
+
   private void assertFile(long pageIndex, byte[] value) throws IOException {
     String path = storageLocal.getConfiguration().getDirectory() + "/arcBufferTest.0.tst";
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.record.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class ODocumentPartialDeserializationTest {
+  private ODatabaseDocumentTx db;
+  private ORID                rid;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:documentPartialDeserializationTest");
+    db.create();
+
+    final ODocument doc = new ODocument("Account");
+    doc.field("name", "Luca, \"the\" founder");
+    doc.field("tags", Arrays.asList("a,b", "c"));
+    doc.field("age", 34);
+    doc.field("city", "Rome");
+    doc.save();
+    rid = doc.getIdentity();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testFieldsAreUnmarshalledOnAccess() {
+    db.getLevel1Cache().clear();
+    final ODocument doc = db.load(rid, null, true);
+
+    Assert.assertTrue(doc.deserializeFields("age"));
+    Assert.assertEquals(doc._fieldValues.size(), 1);
+    Assert.assertEquals(doc.field("age"), 34);
+
+    Assert.assertEquals(doc.field("tags"), Arrays.asList("a,b", "c"));
+    Assert.assertEquals(doc._fieldValues.size(), 2);
+
+    Assert.assertFalse(doc.deserializeFields("unknown"));
+
+    Assert.assertEquals(doc.fieldNames().length, 4);
+    Assert.assertEquals(doc.field("name"), "Luca, \"the\" founder");
+    Assert.assertEquals(doc.field("city"), "Rome");
+  }
+
+  public void testProjectionsUnmarshallOnlyTheirFields() {
+    db.getLevel1Cache().clear();
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select name, age from Account where city = 'Rome'"));
+
+    Assert.assertEquals(result.size(), 1);
+    Assert.assertEquals(result.get(0).field("name"), "Luca, \"the\" founder");
+    Assert.assertEquals(result.get(0).field("age"), 34);
+
+    // THE SCANNED RECORD STAYS IN THE CACHE WITH ONLY THE FIELDS OF THE QUERY
+    final ODocument doc = (ODocument) db.getLevel1Cache().findRecord(rid);
+    Assert.assertTrue(doc._fieldValues.containsKey("city"));
+    Assert.assertFalse(doc._fieldValues.containsKey("tags"));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.serialization.serializer.record.string;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class ORecordSerializerSchemaAware2BinaryTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:binaryRecordSerializerTest");
+    db.create();
+
+    final OClass account = db.getMetadata().getSchema().createClass("Account");
+    account.createProperty("name", OType.STRING);
+    account.createProperty("salary", OType.DECIMAL);
+    account.createProperty("tags", OType.EMBEDDEDLIST, OType.STRING);
+
+    db.set(ODatabase.ATTRIBUTES.RECORDFORMAT, "binary");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void testRoundTrip() {
+    final ODocument friend = new ODocument("Account").field("name", "Jay");
+    friend.save();
+
+    final Map<String, Object> map = new HashMap<String, Object>();
+    map.put("key", 10);
+
+    final ODocument doc = new ODocument("Account");
+    doc.field("name", "Luca");
+    doc.field("salary", new BigDecimal("3000.25"));
+    doc.field("tags", new ArrayList<String>(Arrays.asList("a", "b")));
+    doc.field("age", -34);
+    doc.field("id", 10000000000L);
+    doc.field("rate", 1.5d);
+    doc.field("active", true);
+    doc.field("birth", new Date(1000000L));
+    doc.field("photo", new byte[] { 1, 2, 3 });
+    doc.field("empty", (Object) null);
+    doc.field("friend", friend);
+    doc.field("map", map);
+    doc.field("address", new ODocument().field("city", "Rome"), OType.EMBEDDED);
+    doc.save();
+
+    final byte[] content = doc.toStream();
+    Assert.assertTrue(ORecordSerializerSchemaAware2Binary.isBinary(content));
+
+    // THE CSV SERIALIZER RECOGNIZES THE BINARY FORMAT
+    final ODocument loaded = (ODocument) ORecordSerializerSchemaAware2CSV.INSTANCE.fromStream(content, new ODocument(), null);
+
+    Assert.assertEquals(loaded.getClassName(), "Account");
+    Assert.assertEquals(loaded.field("name"), "Luca");
+    Assert.assertEquals(loaded.field("salary"), new BigDecimal("3000.25"));
+    Assert.assertEquals(new ArrayList<Object>((List<?>) loaded.field("tags")), Arrays.asList("a", "b"));
+    Assert.assertEquals(loaded.field("age"), -34);
+    Assert.assertEquals(loaded.field("id"), 10000000000L);
+    Assert.assertEquals(loaded.field("rate"), 1.5d);
+    Assert.assertEquals(loaded.field("active"), Boolean.TRUE);
+    Assert.assertEquals(loaded.field("birth"), new Date(1000000L));
+    Assert.assertEquals((byte[]) loaded.field("photo"), new byte[] { 1, 2, 3 });
+    Assert.assertTrue(loaded.containsField("empty"));
+    Assert.assertNull(loaded.field("empty"));
+    Assert.assertEquals(((ODocument) loaded.field("friend")).getIdentity(), friend.getIdentity());
+    Assert.assertEquals(((Map<?, ?>) loaded.field("map")).get("key"), 10);
+    Assert.assertEquals(((ODocument) loaded.field("address")).field("city"), "Rome");
+  }
+
+  public void testPartialRead() {
+    final ODocument doc = new ODocument("Account");
+    doc.field("name", "Luca");
+    doc.field("surname", "Garulli");
+    doc.save();
+
+    final ODocument loaded = (ODocument) ORecordSerializerSchemaAware2Binary.INSTANCE.fromStream(doc.toStream(), new ODocument(),
+        new String[] { "surname" });
+
+    Assert.assertEquals(loaded.field("surname"), "Garulli");
+    Assert.assertFalse(loaded.containsField("name"));
+  }
+
+  public void testPropertyNamesAreInterned() {
+    Assert.assertTrue(db.getMetadata().getSchema().getFieldId("name") > -1);
+
+    final ODocument doc = new ODocument("Account");
+    doc.field("name", "Luca");
+    final byte[] binary = ORecordSerializerSchemaAware2Binary.INSTANCE.toStream(doc, false);
+
+    doc.field("nickname", "Luca");
+    doc.removeField("name");
+    final byte[] inline = ORecordSerializerSchemaAware2Binary.INSTANCE.toStream(doc, false);
+
+    // THE INTERNED NAME TAKES LESS THAN THE NAME WRITTEN INLINE
+    Assert.assertTrue(binary.length < inline.length);
+  }
+}
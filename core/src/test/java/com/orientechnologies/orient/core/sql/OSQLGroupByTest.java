@@ -0,0 +1,180 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OSQLGroupByTest {
+  private static final String AGGREGATES = "count(*) as c, sum(amount) as s, min(amount) as mi, max(amount) as ma, avg(amount) as a";
+
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    db = new ODatabaseDocumentTx("memory:OSQLGroupByTest");
+    db.create();
+    db.getMetadata().getSchema().createClass("Sale");
+    final OClass indexed = db.getMetadata().getSchema().createClass("IndexedSale");
+    indexed.createProperty("customer", OType.INTEGER);
+    indexed.createIndex("IndexedSale.customer", OClass.INDEX_TYPE.NOTUNIQUE, "customer");
+    final OClass unknown = db.getMetadata().getSchema().createClass("AnonymousSale");
+    unknown.createProperty("customer", OType.INTEGER);
+    unknown.createIndex("AnonymousSale.customer", OClass.INDEX_TYPE.NOTUNIQUE, "customer");
+
+    for (int i = 0; i < 2000; ++i) {
+      new ODocument("Sale").field("customer", i % 300).field("shop", i % 7).field("amount", i % 91).save();
+      new ODocument("IndexedSale").field("customer", i % 300).field("shop", i % 7).field("amount", i % 91).save();
+    }
+    for (int i = 0; i < 10; ++i)
+      new ODocument("AnonymousSale").field("amount", i).save();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.setValue(100000);
+  }
+
+  public void spilledGroupsHaveTheSameAggregatesOfTheGroupsInMemory() {
+    // Given the groups computed in memory
+    final String single = "select customer, " + AGGREGATES + " from Sale group by customer";
+    final String multi = "select customer, shop, " + AGGREGATES + " from Sale group by customer, shop";
+    final Map<Object, ODocument> inMemory = byKey(query(single), "customer");
+    final Map<Object, ODocument> inMemoryMulti = byKey(query(multi), "customer", "shop");
+
+    // When only few groups can be kept in memory
+    OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.setValue(20);
+
+    // Then the groups written in the temporary files are merged with the same results
+    assertSameGroups(byKey(query(single), "customer"), inMemory);
+    assertSameGroups(byKey(query(multi), "customer", "shop"), inMemoryMulti);
+    assertEquals(inMemory.size(), 300);
+    // EVERY RECORD HAS ITS OWN CUSTOMER AND SHOP
+    assertEquals(inMemoryMulti.size(), 2000);
+  }
+
+  public void spilledGroupsAreDeletedWhenTheResultIsAbandoned() {
+    // Given groups written in temporary files
+    OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.setValue(20);
+    final int filesBefore = OSQLOrderByBufferTest.temporaryFiles("orientdb-group-");
+
+    // When the caller stops browsing the result after the first group
+    try {
+      db.query(new OSQLAsynchQuery<ODocument>("select customer, count(*) from Sale group by customer",
+          new OCommandResultListener() {
+            public boolean result(final Object iRecord) {
+              throw new IllegalStateException("stop");
+            }
+
+            public void end() {
+            }
+          }));
+    } catch (OCommandExecutionException e) {
+      assertEquals(e.getCause().getMessage(), "stop");
+    }
+
+    // Then the partitions not read yet are deleted anyway
+    assertEquals(OSQLOrderByBufferTest.temporaryFiles("orientdb-group-"), filesBefore);
+  }
+
+  public void groupsBrowsedByIndexHaveTheSameAggregates() {
+    // Given the groups computed without index
+    final Map<Object, ODocument> hashed = byKey(query("select customer, " + AGGREGATES + " from Sale group by customer"),
+        "customer");
+
+    // When the records are browsed by the index on the GROUP BY field
+    final List<ODocument> sorted = query("select customer, " + AGGREGATES + " from IndexedSale group by customer");
+
+    // Then the groups are the same and are returned in order
+    assertSameGroups(byKey(sorted, "customer"), hashed);
+    for (int i = 0; i < sorted.size(); ++i)
+      assertEquals(sorted.get(i).field("customer"), i);
+  }
+
+  public void whereIsServedByItsOwnIndex() {
+    // When the WHERE can use an index
+    final ODocument explain = explain("select customer, count(*) from IndexedSale where customer < 10 group by customer");
+
+    // Then the records are searched by the index instead of browsing the whole index of the GROUP BY
+    assertEquals(explain.field("groupBy"), "hash");
+    assertEquals(explain.field("involvedIndexes"), Collections.singleton("IndexedSale.customer"));
+    assertEquals(explain.field("indexReads"), 70l);
+    assertEquals(query("select customer, count(*) from IndexedSale where customer < 10 group by customer").size(), 10);
+  }
+
+  public void groupOfTheRecordsWithoutValueIsReturnedWhenItIsTheOnlyOne() {
+    // Given records never indexed because they have no value in the GROUP BY field
+    final List<ODocument> result = query("select customer, count(*) as c, sum(amount) as s from AnonymousSale group by customer");
+
+    // Then they are grouped together as without index
+    assertEquals(result.size(), 1);
+    assertEquals(result.get(0).field("c"), 10l);
+    assertEquals(result.get(0).field("s"), 45);
+  }
+
+  public void groupsCanBeSortedAndLimited() {
+    OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.setValue(20);
+
+    final List<ODocument> result = query("select customer, sum(amount) as s from Sale group by customer order by s desc limit 3");
+
+    assertEquals(result.size(), 3);
+    assertEquals(result.get(0).field("s"), 378);
+  }
+
+  public void explainReportsTheGroupingStrategy() {
+    OGlobalConfiguration.QUERY_GROUP_BY_BUFFER_SIZE.setValue(20);
+
+    assertEquals(explain("select customer, count(*) from Sale group by customer").field("groupBy"), "spill");
+    assertEquals(explain("select customer, count(*) from IndexedSale group by customer").field("groupBy"), "index");
+    assertEquals(explain("select customer, count(*) from Sale where customer < 10 group by customer").field("groupBy"), "hash");
+  }
+
+  private static void assertSameGroups(final Map<Object, ODocument> iActual, final Map<Object, ODocument> iExpected) {
+    assertEquals(iActual.size(), iExpected.size());
+    for (Map.Entry<Object, ODocument> e : iExpected.entrySet())
+      for (String field : new String[] { "c", "s", "mi", "ma", "a" })
+        assertEquals(iActual.get(e.getKey()).field(field), e.getValue().field(field), e.getKey() + "." + field);
+  }
+
+  private static Map<Object, ODocument> byKey(final List<ODocument> iResult, final String... iFields) {
+    final Map<Object, ODocument> map = new HashMap<Object, ODocument>();
+    for (ODocument d : iResult) {
+      final StringBuilder key = new StringBuilder();
+      for (String f : iFields)
+        key.append(d.field(f)).append('|');
+      map.put(key.toString(), d);
+    }
+    return map;
+  }
+
+  private List<ODocument> query(final String iText) {
+    return db.query(new OSQLSynchQuery<ODocument>(iText));
+  }
+
+  private ODocument explain(final String iText) {
+    return db.command(new OCommandSQL("explain " + iText)).execute();
+  }
+}
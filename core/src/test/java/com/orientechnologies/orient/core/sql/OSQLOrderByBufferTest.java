@@ -0,0 +1,160 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLAsynchQuery;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OSQLOrderByBufferTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void beforeClass() {
+    db = new ODatabaseDocumentTx("memory:OSQLOrderByBufferTest");
+    db.create();
+    db.getMetadata().getSchema().createClass("Item");
+
+    // FEW DISTINCT VALUES TO CHECK THE ORDER OF THE RECORDS WITH THE SAME VALUE
+    for (int i = 0; i < 1000; ++i)
+      new ODocument("Item").field("id", i).field("group", (i * 7) % 13).field("name", "item" + (i % 31)).save();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(100000);
+  }
+
+  public void topKReturnsTheFirstRecordsOfTheSort() {
+    // Given the whole result sorted in memory
+    final List<Integer> sorted = ids(query("select from Item order by group desc, name"));
+
+    // When only the first records are requested
+    final List<Integer> limited = ids(query("select from Item order by group desc, name limit 20"));
+    final List<Integer> skipped = ids(query("select from Item order by group desc, name asc skip 15 limit 20"));
+
+    // Then they are the same of the whole sort, also for the records with the same values
+    assertEquals(limited, sorted.subList(0, 20));
+    assertEquals(skipped, sorted.subList(15, 35));
+  }
+
+  public void topKOfZeroRecordsReturnsNoRecord() {
+    // Given a top-K that keeps no record
+    final OSQLOrderByTopK topK = new OSQLOrderByTopK(
+        Collections.singletonList(new OPair<String, String>("name", OCommandExecutorSQLSelect.KEYWORD_ASC)), 0);
+
+    // When records are added
+    for (ODocument record : query("select from Item limit 10"))
+      topK.add(record);
+
+    // Then no record is returned
+    assertEquals(topK.getResult().size(), 0);
+  }
+
+  public void skipAndLimitOverflowingAnIntAreSortedInTemporaryFiles() {
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(64);
+
+    // When SKIP + LIMIT doesn't fit in an int
+    final String text = "select from Item order by name asc skip 2147483000 limit 1000";
+
+    // Then the records are sorted without keeping the first SKIP + LIMIT, and all of them are skipped
+    assertEquals(explain(text).field("orderBy"), "externalSort");
+    assertEquals(query(text).size(), 0);
+  }
+
+  public void externalSortReturnsTheSameResultOfTheSortInMemory() {
+    // Given the result sorted in memory
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(0);
+    final List<Integer> sorted = ids(query("select from Item order by name desc, group"));
+    final List<Integer> skipped = ids(query("select from Item order by name desc, group asc skip 990"));
+
+    // When the buffer is smaller than the result
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(64);
+    final List<ODocument> external = query("select from Item order by name desc, group");
+
+    // Then the records read back from the temporary files are the same
+    assertEquals(ids(external), sorted);
+    assertEquals(ids(query("select from Item order by name desc, group asc skip 990")), skipped);
+    assertEquals(skipped.size(), 10);
+    assertEquals(external.get(500).getClassName(), "Item");
+    assertEquals(external.get(500).getIdentity().isPersistent(), true);
+  }
+
+  public void externalSortDeletesTheTemporaryFilesOfAnAbandonedResult() {
+    // Given a result sorted in temporary files
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(64);
+    final int filesBefore = temporaryFiles("orientdb-sort-");
+
+    // When the caller stops browsing it after the first record
+    try {
+      db.query(new OSQLAsynchQuery<ODocument>("select from Item order by name", new OCommandResultListener() {
+        public boolean result(final Object iRecord) {
+          throw new IllegalStateException("stop");
+        }
+
+        public void end() {
+        }
+      }));
+    } catch (OCommandExecutionException e) {
+      assertEquals(e.getCause().getMessage(), "stop");
+    }
+
+    // Then the files not read yet are deleted anyway
+    assertEquals(temporaryFiles("orientdb-sort-"), filesBefore);
+  }
+
+  public void explainReportsTheSortStrategy() {
+    OGlobalConfiguration.QUERY_ORDER_BY_BUFFER_SIZE.setValue(64);
+
+    assertEquals(explain("select from Item order by name limit 5").field("orderBy"), "topK");
+    assertEquals(explain("select from Item order by name").field("orderBy"), "externalSort");
+    assertEquals(explain("select from Item where id < 10 order by name").field("orderBy"), "memory");
+  }
+
+  private List<ODocument> query(final String iText) {
+    return db.query(new OSQLSynchQuery<ODocument>(iText));
+  }
+
+  private ODocument explain(final String iText) {
+    return db.command(new OCommandSQL("explain " + iText)).execute();
+  }
+
+  static int temporaryFiles(final String iPrefix) {
+    final String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+      public boolean accept(final File iDir, final String iName) {
+        return iName.startsWith(iPrefix);
+      }
+    });
+    return files != null ? files.length : 0;
+  }
+
+  private static List<Integer> ids(final List<? extends OIdentifiable> iResult) {
+    final List<Integer> ids = new ArrayList<Integer>();
+    for (OIdentifiable r : iResult)
+      ids.add((Integer) ((ODocument) r.getRecord()).field("id"));
+    return ids;
+  }
+}
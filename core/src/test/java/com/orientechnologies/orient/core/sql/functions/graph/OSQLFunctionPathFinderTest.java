@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OSQLFunctionPathFinderTest {
+  private OGraphDatabase db;
+  private ORID[]         v;
+
+  @BeforeClass
+  public void beforeClass() {
+    db = new OGraphDatabase("memory:OSQLFunctionPathFinderTest");
+    db.create();
+
+    v = new ORID[6];
+    final ODocument[] vertexes = new ODocument[v.length];
+    for (int i = 0; i < v.length; ++i) {
+      vertexes[i] = db.createVertex().field("id", i);
+      vertexes[i].save();
+      v[i] = vertexes[i].getIdentity();
+    }
+
+    // THE DIRECT EDGE 0->1 IS THE SHORTEST PATH BUT THE DETOUR 0->2->3->1 IS CHEAPER. 5 IS DISCONNECTED
+    final int[][] edges = { { 0, 1, 10 }, { 0, 2, 1 }, { 2, 3, 1 }, { 3, 1, 1 }, { 1, 4, 1 } };
+    for (int[] e : edges)
+      db.createEdge(vertexes[e[0]], vertexes[e[1]]).field("weight", e[2]).save();
+  }
+
+  @AfterClass
+  public void afterClass() {
+    db.drop();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    OGlobalConfiguration.QUERY_GRAPH_MAX_VISITED.setValue(0);
+  }
+
+  public void shortestPathHasTheFewestEdges() {
+    Assert.assertEquals(path("shortestPath(" + v[0] + ", " + v[4] + ")"), Arrays.asList(v[0], v[1], v[4]));
+    Assert.assertEquals(path("shortestPath(" + v[4] + ", " + v[0] + ", 'in')"), Arrays.asList(v[4], v[1], v[0]));
+    Assert.assertEquals(path("shortestPath(" + v[3] + ", " + v[2] + ", 'both')"), Arrays.asList(v[3], v[2]));
+    Assert.assertEquals(path("shortestPath(" + v[1] + ", " + v[1] + ")"), Arrays.asList(v[1]));
+  }
+
+  public void shortestPathWithoutPath() {
+    Assert.assertNull(path("shortestPath(" + v[4] + ", " + v[0] + ")"));
+    Assert.assertNull(path("shortestPath(" + v[0] + ", " + v[5] + ", 'both')"));
+  }
+
+  public void dijkstraHasTheLowestWeight() {
+    Assert.assertEquals(path("dijkstra(" + v[0] + ", " + v[4] + ", 'weight')"), Arrays.asList(v[0], v[2], v[3], v[1], v[4]));
+    Assert.assertEquals(path("dijkstra(" + v[4] + ", " + v[0] + ", 'weight', 'in')"), Arrays.asList(v[4], v[1], v[3], v[2], v[0]));
+    Assert.assertNull(path("dijkstra(" + v[4] + ", " + v[0] + ", 'weight')"));
+  }
+
+  public void maxDepthLimitsThePathLength() {
+    Assert.assertNull(path("shortestPath(" + v[0] + ", " + v[4] + ", 'out', 1)"));
+    Assert.assertEquals(path("shortestPath(" + v[0] + ", " + v[4] + ", 'out', 2)"), Arrays.asList(v[0], v[1], v[4]));
+
+    // THE CHEAPEST PATH IS TOO LONG
+    Assert.assertEquals(path("dijkstra(" + v[0] + ", " + v[4] + ", 'weight', 'out', 2)"), Arrays.asList(v[0], v[1], v[4]));
+  }
+
+  @Test(expectedExceptions = OCommandExecutionException.class)
+  public void maxVisitedStopsTheSearch() {
+    OGlobalConfiguration.QUERY_GRAPH_MAX_VISITED.setValue(3);
+    path("dijkstra(" + v[0] + ", " + v[4] + ", 'weight')");
+  }
+
+  private List<ORID> path(final String iFunction) {
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select " + iFunction + " as path"));
+    final List<OIdentifiable> path = result.get(0).field("path");
+    if (path == null)
+      return null;
+
+    final List<ORID> rids = new ArrayList<ORID>();
+    for (OIdentifiable step : path)
+      rids.add(step.getIdentity());
+    return rids;
+  }
+}
@@ -0,0 +1,98 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+
+@Test
+public class OFilePagedTest {
+  private File file;
+
+  @BeforeClass
+  public void beforeClass() {
+    // FEW PAGES TO FORCE THE EVICTION, IF THE CACHE IS NOT CREATED YET
+    OGlobalConfiguration.FILE_PAGE_CACHE_SIZE.setValue(16 * 1024);
+    OGlobalConfiguration.FILE_PAGE_CACHE_PAGE_SIZE.setValue(1024);
+  }
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    file = new File(buildDirectory, "OFilePagedTest.tst");
+    file.delete();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    file.delete();
+  }
+
+  public void readsWhatIsWrittenAcrossPages() throws IOException {
+    // Given a paged file bigger than the cache
+    final OFile paged = newFile(OFileFactory.PAGED);
+    paged.create(1024);
+    final byte[] content = content(256 * 1024);
+    final int offset = paged.allocateSpace(content.length + 8);
+
+    // When it is written with chunks not aligned to the pages
+    for (int i = 0; i < content.length; i += 1000)
+      paged.write(offset + i, content, Math.min(1000, content.length - i), i);
+    paged.writeLong(offset + content.length, 1234567890123l);
+
+    // Then the content is read back, also after the pages have been evicted
+    final byte[] read = new byte[content.length];
+    paged.read(offset, read, read.length);
+    assertTrue(Arrays.equals(read, content));
+    assertEquals(paged.readLong(offset + content.length), 1234567890123l);
+    assertEquals(paged.readByte(offset + 5000), content[5000]);
+
+    paged.close();
+  }
+
+  public void isCompatibleWithMemoryMappedFiles() throws IOException {
+    // Given a paged file written and closed
+    final OFile paged = newFile(OFileFactory.PAGED);
+    paged.create(1024);
+    final byte[] content = content(10000);
+    final int offset = paged.allocateSpace(content.length);
+    paged.write(offset, content);
+    paged.writeInt(offset + 100, 42);
+    paged.writeHeaderLong(0, 7);
+    paged.close();
+
+    // When it's opened as memory mapped file
+    final OFile mmap = newFile(OFileFactory.MMAP);
+    assertTrue(mmap.open());
+
+    // Then the content and the header are the same
+    assertEquals(mmap.getFilledUpTo(), offset + content.length);
+    assertEquals(mmap.readInt(offset + 100), 42);
+    assertEquals(mmap.readByte(offset + 9999), content[9999]);
+    assertEquals(mmap.readHeaderLong(0), 7);
+    mmap.close();
+  }
+
+  private OFile newFile(final String iType) throws IOException {
+    return OFileFactory.instance().create(iType, file.getPath(), "rw");
+  }
+
+  private static byte[] content(final int iLength) {
+    final byte[] content = new byte[iLength];
+    new Random(0).nextBytes(content);
+    return content;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.impl.local.wal.OWriteAheadLog;
+
+/**
+ * Recovers a database from the write ahead log after a crash, checking its indexes are recovered too without rebuilding them.
+ */
+@Test
+public class OStorageLocalWALTest {
+  private static final int RECORDS = 1000;
+
+  private boolean          oldStorageOpen;
+  private boolean          oldWALEnabled;
+  private int              oldCheckpointInterval;
+  private boolean          oldAutoRebuild;
+  private String           dbPath;
+  private String           crashedPath;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    oldStorageOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValueAsBoolean();
+    oldWALEnabled = OGlobalConfiguration.STORAGE_WAL_ENABLED.getValueAsBoolean();
+    oldCheckpointInterval = OGlobalConfiguration.STORAGE_WAL_CHECKPOINT_INTERVAL.getValueAsInteger();
+    oldAutoRebuild = OGlobalConfiguration.INDEX_AUTO_REBUILD_AFTER_NOTSOFTCLOSE.getValueAsBoolean();
+
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(false);
+    OGlobalConfiguration.STORAGE_WAL_ENABLED.setValue(true);
+    // ONLY THE CHECKPOINT OF THE TEST IS EXECUTED
+    OGlobalConfiguration.STORAGE_WAL_CHECKPOINT_INTERVAL.setValue(Integer.MAX_VALUE);
+    // A STALE INDEX IS NOT HIDDEN BY A REBUILD
+    OGlobalConfiguration.INDEX_AUTO_REBUILD_AFTER_NOTSOFTCLOSE.setValue(false);
+
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    dbPath = buildDirectory + "/OStorageLocalWALTest/db";
+    // THE LOG SEGMENTS ARE NAMED AFTER THE STORAGE
+    crashedPath = buildDirectory + "/OStorageLocalWALTest/crashed/db";
+    delTree(new File(buildDirectory + "/OStorageLocalWALTest"));
+    new File(dbPath).getParentFile().mkdirs();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(oldStorageOpen);
+    OGlobalConfiguration.STORAGE_WAL_ENABLED.setValue(oldWALEnabled);
+    OGlobalConfiguration.STORAGE_WAL_CHECKPOINT_INTERVAL.setValue(oldCheckpointInterval);
+    OGlobalConfiguration.INDEX_AUTO_REBUILD_AFTER_NOTSOFTCLOSE.setValue(oldAutoRebuild);
+
+    delTree(new File(dbPath).getParentFile());
+  }
+
+  public void recoversTheIndexesFromTheLog() throws IOException {
+    // Given an indexed class with records written in the storage files
+    ODatabaseDocumentTx db = new ODatabaseDocumentTx("local:" + dbPath);
+    db.create();
+    db.getMetadata().getSchema().createClass("Person").createProperty("name", OType.STRING)
+        .createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    insert(0, RECORDS);
+    ((OStorageLocal) db.getStorage()).getWriteAheadLog().checkpoint();
+    copyFiles(dbPath, crashedPath, false);
+
+    // And records written only in the log when the process crashes
+    insert(RECORDS, RECORDS * 2);
+    copyFiles(dbPath, crashedPath, true);
+    db.drop();
+
+    // When the database is opened
+    db = new ODatabaseDocumentTx("local:" + crashedPath).open("admin", "admin");
+    try {
+
+      // Then the records and their keys are recovered
+      Assert.assertEquals(db.countClass("Person"), RECORDS * 2);
+
+      final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+      Assert.assertEquals(index.getSize(), RECORDS * 2);
+      Assert.assertEquals(((Collection<?>) index.get("name" + (RECORDS / 2))).size(), 1);
+      Assert.assertEquals(((Collection<?>) index.get("name" + (RECORDS * 3 / 2))).size(), 1);
+
+    } finally {
+      db.drop();
+    }
+  }
+
+  private static void insert(final int iFrom, final int iTo) {
+    for (int i = iFrom; i < iTo; i++)
+      new ODocument("Person").field("name", "name" + i).save();
+  }
+
+  /**
+   * Copies the files of the storage or its write ahead log, as they are on disk.
+   */
+  private static void copyFiles(final String iFrom, final String iTo, final boolean iLog) throws IOException {
+    new File(iTo).mkdirs();
+
+    final byte[] buffer = new byte[64 * 1024];
+    for (File file : new File(iFrom).listFiles()) {
+      if (file.getName().endsWith(OWriteAheadLog.EXTENSION) != iLog)
+        continue;
+
+      final InputStream in = new FileInputStream(file);
+      try {
+        final OutputStream out = new FileOutputStream(new File(iTo, file.getName()));
+        try {
+          int read;
+          while ((read = in.read(buffer)) > 0)
+            out.write(buffer, 0, read);
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  private static void delTree(final File iDirectory) {
+    final File[] files = iDirectory.listFiles();
+    if (files != null)
+      for (File file : files)
+        if (file.isDirectory())
+          delTree(file);
+        else
+          file.delete();
+    iDirectory.delete();
+  }
+}
@@ -0,0 +1,212 @@
+package com.orientechnologies.orient.core.storage.impl.local.wal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.storage.fs.OFile;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+
+@Test
+public class OWriteAheadLogTest {
+  private static final String STORAGE = "walTest";
+
+  private File                directory;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    directory = new File(buildDirectory, "OWriteAheadLogTest");
+    directory.mkdirs();
+    deleteFiles();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    deleteFiles();
+    directory.delete();
+  }
+
+  public void replaysChangesLostByCrash() throws IOException {
+    // Given a logged file
+    OWriteAheadLog wal = newLog();
+    assertFalse(wal.open());
+    OWALFile file = new OWALFile(newFile("data.0.tst"), wal);
+    file.create(1024);
+
+    // When it is changed
+    final byte[] content = content(100, (byte) 7);
+    final int offset = file.allocateSpace(content.length + OBinaryProtocol.SIZE_LONG);
+    file.write(offset, content);
+    file.writeLong(offset + content.length, 1234567890123l);
+    file.writeHeaderLong(0, 42);
+
+    // And the changes are lost in a crash
+    wal.close();
+    file.getUnderlying().close();
+    loseChanges("data.0.tst");
+
+    // Then they are replayed on recovery
+    wal = newLog();
+    assertTrue(wal.open());
+    file = new OWALFile(newFile("data.0.tst"), wal);
+    file.open();
+    assertEquals(wal.recover(), 4);
+
+    final byte[] read = new byte[content.length];
+    file.read(offset, read, read.length);
+    assertTrue(Arrays.equals(read, content));
+    assertEquals(file.readLong(offset + content.length), 1234567890123l);
+    assertEquals(file.readHeaderLong(0), 42);
+    assertEquals(file.getFilledUpTo(), offset + content.length + OBinaryProtocol.SIZE_LONG);
+
+    file.close();
+    wal.close();
+  }
+
+  public void replaysNothingAfterCheckpoint() throws IOException {
+    // Given a logged file with changes
+    OWriteAheadLog wal = newLog();
+    wal.open();
+    OWALFile file = new OWALFile(newFile("data.0.tst"), wal);
+    file.create(1024);
+    file.write(file.allocateSpace(10), content(10, (byte) 1));
+    assertTrue(wal.getSizeSinceCheckpoint() > 0);
+
+    // When a checkpoint is executed
+    wal.checkpoint();
+
+    // Then the log is truncated
+    assertEquals(wal.getSizeSinceCheckpoint(), 0);
+    assertEquals(countSegments(), 1);
+
+    file.close();
+    wal.close();
+    wal = newLog();
+    assertTrue(wal.open());
+    file = new OWALFile(newFile("data.0.tst"), wal);
+    file.open();
+    assertEquals(wal.recover(), 0);
+
+    file.close();
+    wal.close();
+  }
+
+  public void skipsChangesOfDeletedFiles() throws IOException {
+    // Given a logged file changed and then deleted
+    OWriteAheadLog wal = newLog();
+    wal.open();
+    OWALFile file = new OWALFile(newFile("data.0.tst"), wal);
+    file.create(1024);
+    file.write(file.allocateSpace(10), content(10, (byte) 1));
+    file.delete();
+
+    // When it is created again and changed
+    file = new OWALFile(newFile("data.0.tst"), wal);
+    file.create(1024);
+    file.write(file.allocateSpace(20), content(20, (byte) 2));
+    wal.close();
+    file.getUnderlying().close();
+    loseChanges("data.0.tst");
+
+    // Then only the changes after the deletion are replayed
+    wal = newLog();
+    wal.open();
+    file = new OWALFile(newFile("data.0.tst"), wal);
+    file.open();
+    assertEquals(wal.recover(), 2);
+
+    final byte[] read = new byte[20];
+    file.read(0, read, read.length);
+    assertTrue(Arrays.equals(read, content(20, (byte) 2)));
+
+    file.close();
+    wal.close();
+  }
+
+  public void spansMoreSegments() throws IOException {
+    // Given a log with small segments
+    OWriteAheadLog wal = new OWriteAheadLog(STORAGE, directory.getPath(), 256);
+    wal.open();
+    OWALFile file = new OWALFile(newFile("data.0.tst"), wal);
+    file.create(1024);
+
+    // When more changes than a segment can contain are logged
+    final int offset = file.allocateSpace(50 * 8);
+    for (int i = 0; i < 50; ++i)
+      file.writeLong(offset + i * 8, i);
+    wal.close();
+    file.getUnderlying().close();
+    loseChanges("data.0.tst");
+
+    // Then all the segments are replayed
+    assertTrue(countSegments() > 1);
+    wal = new OWriteAheadLog(STORAGE, directory.getPath(), 256);
+    wal.open();
+    file = new OWALFile(newFile("data.0.tst"), wal);
+    file.open();
+    assertEquals(wal.recover(), 51);
+    for (int i = 0; i < 50; ++i)
+      assertEquals(file.readLong(offset + i * 8), i);
+    assertEquals(countSegments(), 1);
+
+    file.close();
+    wal.close();
+  }
+
+  private OWriteAheadLog newLog() {
+    return new OWriteAheadLog(STORAGE, directory.getPath(), 64 * 1024);
+  }
+
+  private OFile newFile(final String iName) throws IOException {
+    return OFileFactory.instance().create(OFileFactory.CLASSIC, new File(directory, iName).getPath(), "rw");
+  }
+
+  /**
+   * Clears everything but the size of the file, as if the changes never reached the disk.
+   */
+  private void loseChanges(final String iName) throws IOException {
+    final RandomAccessFile raf = new RandomAccessFile(new File(directory, iName), "rw");
+    try {
+      final long length = raf.length();
+      raf.setLength(OBinaryProtocol.SIZE_INT);
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private int countSegments() {
+    int count = 0;
+    for (File f : directory.listFiles())
+      if (f.getName().endsWith(OWriteAheadLog.EXTENSION))
+        count++;
+    return count;
+  }
+
+  private void deleteFiles() {
+    final File[] files = directory.listFiles();
+    if (files != null)
+      for (File f : files)
+        f.delete();
+  }
+
+  private static byte[] content(final int iLength, final byte iValue) {
+    final byte[] content = new byte[iLength];
+    Arrays.fill(content, iValue);
+    return content;
+  }
+}
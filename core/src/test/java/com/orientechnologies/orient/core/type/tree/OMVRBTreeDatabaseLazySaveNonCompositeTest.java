@@ -1,5 +1,14 @@
 package com.orientechnologies.orient.core.type.tree;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -45,6 +54,90 @@ public class OMVRBTreeDatabaseLazySaveNonCompositeTest extends OMVRBTreeNonCompo
     ((OMVRBTreeDatabaseLazySave<Double, Double>) tree).optimize(true);
   }
 
+  @Test
+  public void testConcurrentLookupsLoadingNodes() throws Exception {
+    final OMVRBTreeDatabaseLazySave<Double, Double> lazyTree = (OMVRBTreeDatabaseLazySave<Double, Double>) tree;
+    for (double i = 10; i < 1000; i++)
+      lazyTree.put(i, i);
+    lazyTree.save();
+    lazyTree.optimize(true);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+    final Thread[] readers = new Thread[4];
+    for (int t = 0; t < readers.length; ++t) {
+      final int offset = t * 250;
+      readers[t] = new Thread() {
+        @Override
+        public void run() {
+          final ODatabaseDocumentTx db = new ODatabaseDocumentTx(database.getURL()).open("admin", "admin");
+          try {
+            start.await();
+            // EVERY READER STARTS FROM A DIFFERENT KEY TO LOAD DIFFERENT NODES AT THE SAME TIME
+            for (int i = 0; i < 999; ++i) {
+              final double key = (offset + i) % 999 + 1;
+              Assert.assertEquals(lazyTree.getConcurrent(key), key);
+              Assert.assertTrue(lazyTree.containsKeyConcurrent(key));
+            }
+            Assert.assertNull(lazyTree.getConcurrent(1000.5));
+          } catch (Throwable e) {
+            errors.add(e);
+          } finally {
+            db.close();
+          }
+        }
+      };
+      readers[t].start();
+    }
+
+    start.countDown();
+    for (Thread reader : readers)
+      reader.join();
+
+    Assert.assertTrue(errors.isEmpty(), errors.toString());
+    Assert.assertEquals(lazyTree.size(), 999);
+  }
+
+  @Test
+  public void testPutAllSorted() {
+    final OMVRBTreeDatabaseLazySave<Double, Double> lazyTree = new OMVRBTreeDatabaseLazySave<Double, Double>("indextestclsuter",
+        new OSimpleKeySerializer<Double>(OType.DOUBLE), OStreamSerializerLiteral.INSTANCE, 1, 5000);
+
+    final List<Map.Entry<Double, Double>> entries = new ArrayList<Map.Entry<Double, Double>>();
+    for (double i = 0; i < 5000; i++)
+      entries.add(new AbstractMap.SimpleImmutableEntry<Double, Double>(i, i * 2));
+
+    // ENOUGH PAGES TO UNLOAD THE LEFT SUB-TREES WHILE BUILDING
+    lazyTree.putAllSorted(entries.iterator(), entries.size());
+    Assert.assertEquals(lazyTree.size(), 5000);
+
+    lazyTree.save();
+    lazyTree.unload();
+
+    for (double i = 0; i < 5000; i++)
+      Assert.assertEquals(lazyTree.get(i), i * 2);
+    Assert.assertNull(lazyTree.get(5000.5));
+
+    final Iterator<Double> keys = lazyTree.keySet().iterator();
+    for (double i = 0; i < 5000; i++)
+      Assert.assertEquals(keys.next(), i);
+    Assert.assertFalse(keys.hasNext());
+
+    // THE LOADED TREE IS A REGULAR TREE
+    lazyTree.put(2500.5, 1.0);
+    lazyTree.remove(0.0);
+    Assert.assertEquals(lazyTree.size(), 5000);
+    Assert.assertEquals(lazyTree.firstKey(), 1.0);
+    Assert.assertEquals(lazyTree.get(2500.5), 1.0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testPutAllSortedNotEmpty() {
+    final List<Map.Entry<Double, Double>> entries = new ArrayList<Map.Entry<Double, Double>>();
+    entries.add(new AbstractMap.SimpleImmutableEntry<Double, Double>(100.0, 100.0));
+    ((OMVRBTreeDatabaseLazySave<Double, Double>) tree).putAllSorted(entries.iterator(), entries.size());
+  }
+
   @AfterClass
   public void afterClass() {
     database.drop();
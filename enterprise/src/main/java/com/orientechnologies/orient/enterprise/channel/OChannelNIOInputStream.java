@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.enterprise.channel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Buffered input stream over a non-blocking socket channel. The channel is never switched to blocking mode, so it can stay
+ * registered to the selector that watches the idle connections: when no bytes are available the reading thread waits for them on a
+ * selector of its own, up to the timeout.
+ */
+public class OChannelNIOInputStream extends InputStream {
+  private final SocketChannel       channel;
+  private final ByteBuffer          buffer;
+  private final OChannelNIOSelector selector;
+
+  public OChannelNIOInputStream(final SocketChannel iChannel, final int iBufferSize, final int iTimeout) {
+    channel = iChannel;
+    selector = new OChannelNIOSelector(iChannel, SelectionKey.OP_READ, iTimeout);
+    buffer = ByteBuffer.allocate(iBufferSize);
+    buffer.flip();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill())
+      return -1;
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] iBuffer, final int iOffset, final int iLength) throws IOException {
+    if (iLength == 0)
+      return 0;
+
+    if (!fill())
+      return -1;
+
+    final int read = Math.min(iLength, buffer.remaining());
+    buffer.get(iBuffer, iOffset, read);
+    return read;
+  }
+
+  /**
+   * Returns the bytes that can be read without waiting, including the ones already arrived on the channel but not read yet.
+   */
+  @Override
+  public int available() throws IOException {
+    if (!buffer.hasRemaining())
+      readChannel();
+    return buffer.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      selector.close();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private boolean fill() throws IOException {
+    while (!buffer.hasRemaining()) {
+      if (readChannel() < 0)
+        return false;
+
+      if (!buffer.hasRemaining())
+        selector.waitFor();
+    }
+    return true;
+  }
+
+  private int readChannel() throws IOException {
+    buffer.clear();
+    try {
+      return channel.read(buffer);
+    } finally {
+      buffer.flip();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.enterprise.channel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Output stream over a non-blocking socket channel. When the socket buffer is full the writing thread waits on a selector of its
+ * own, up to the timeout. Wrap it in a buffered stream: every write goes to the channel.
+ *
+ * @see OChannelNIOInputStream
+ */
+public class OChannelNIOOutputStream extends OutputStream {
+  private final SocketChannel       channel;
+  private final OChannelNIOSelector selector;
+
+  public OChannelNIOOutputStream(final SocketChannel iChannel, final int iTimeout) {
+    channel = iChannel;
+    selector = new OChannelNIOSelector(iChannel, SelectionKey.OP_WRITE, iTimeout);
+  }
+
+  @Override
+  public void write(final int iByte) throws IOException {
+    write(new byte[] { (byte) iByte }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] iBuffer, final int iOffset, final int iLength) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(iBuffer, iOffset, iLength);
+    while (buffer.hasRemaining())
+      if (channel.write(buffer) == 0)
+        selector.waitFor();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      selector.close();
+    } finally {
+      channel.close();
+    }
+  }
+}
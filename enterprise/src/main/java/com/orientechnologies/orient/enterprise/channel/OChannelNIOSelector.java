@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.enterprise.channel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+
+/**
+ * Waits until a non-blocking channel is ready for an operation. The selector is opened at the first wait and reused by the next
+ * ones, so a stall on the hot path costs a select and not a new selector. Used by one thread at a time: the input and the output
+ * streams of a channel have one each.
+ */
+class OChannelNIOSelector {
+  private final SelectableChannel channel;
+  private final int               operation;
+  private final int               timeout;
+  private Selector                selector;
+
+  OChannelNIOSelector(final SelectableChannel iChannel, final int iOperation, final int iTimeout) {
+    channel = iChannel;
+    operation = iOperation;
+    timeout = iTimeout;
+  }
+
+  /**
+   * Waits until the channel is ready for the operation.
+   *
+   * @throws SocketTimeoutException
+   *           if the channel is not ready before the timeout in ms (0 means no timeout)
+   */
+  void waitFor() throws IOException {
+    if (selector == null) {
+      selector = Selector.open();
+      channel.register(selector, operation);
+    }
+
+    try {
+      final long deadline = System.currentTimeMillis() + timeout;
+      long wait = timeout;
+      while (selector.select(wait) == 0) {
+        if (Thread.currentThread().isInterrupted())
+          throw new InterruptedIOException("Interrupted while waiting for the channel " + channel);
+
+        if (timeout > 0) {
+          wait = deadline - System.currentTimeMillis();
+          if (wait <= 0)
+            throw new SocketTimeoutException("Timeout of " + timeout + "ms expired while waiting for the channel " + channel);
+        }
+      }
+    } finally {
+      // THE KEY MUST LEAVE THE SELECTED SET TO BE COUNTED AGAIN BY THE NEXT SELECT
+      selector.selectedKeys().clear();
+    }
+  }
+
+  void close() throws IOException {
+    if (selector != null) {
+      selector.close();
+      selector = null;
+    }
+  }
+}
@@ -23,12 +23,19 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import com.orientechnologies.common.concur.OTimeoutException;
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.io.OIOException;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
 import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.exception.ODatabaseException;
@@ -37,6 +44,7 @@ import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
 import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.core.version.ODistributedVersion;
 import com.orientechnologies.orient.core.version.ORecordVersion;
@@ -44,13 +52,35 @@ import com.orientechnologies.orient.core.version.OVersionFactory;
 import com.orientechnologies.orient.enterprise.channel.OChannel;
 
 public abstract class OChannelBinary extends OChannel {
-  private static final int MAX_LENGTH_DEBUG = 150;
-
-  public DataInputStream   in;
-  public DataOutputStream  out;
-  private final int        maxChunkSize;
-  protected final boolean  debug;
-  private final byte[]     buffer;
+  private static final int        MAX_LENGTH_DEBUG                = 150;
+
+  private static final AtomicLong metricGlobalRawBytes            = new AtomicLong();
+  private static final AtomicLong metricGlobalCompressedBytes     = new AtomicLong();
+
+  public DataInputStream          in;
+  public DataOutputStream         out;
+  private final int               maxChunkSize;
+  protected final boolean         debug;
+  private final byte[]            buffer;
+  private int                     compressionThreshold;
+
+  static {
+    final OJVMProfiler profiler = Orient.instance().getProfiler();
+    final String profilerMetric = profiler.getProcessMetric("network.channel.binary.compression");
+
+    profiler.registerHookValue(profilerMetric + ".rawBytes", "Bytes of the contents compressed before sending them",
+        METRIC_TYPE.SIZE, new OProfilerHookValue() {
+          public Object getValue() {
+            return metricGlobalRawBytes.get();
+          }
+        });
+    profiler.registerHookValue(profilerMetric + ".compressedBytes", "Bytes sent for the compressed contents", METRIC_TYPE.SIZE,
+        new OProfilerHookValue() {
+          public Object getValue() {
+            return metricGlobalCompressedBytes.get();
+          }
+        });
+  }
 
   public OChannelBinary(final Socket iSocket, final OContextConfiguration iConfig) throws IOException {
     super(iSocket, iConfig);
@@ -156,6 +186,9 @@ public abstract class OChannelBinary extends OChannel {
     if (debug)
       OLogManager.instance().debug(this, "%s - Read chunk lenght: %d", socket.getRemoteSocketAddress(), len);
 
+    if (len == OChannelBinaryProtocol.COMPRESSED_BYTES)
+      return readCompressedBytes();
+
     if (len < 0)
       return null;
 
@@ -172,6 +205,72 @@ public abstract class OChannelBinary extends OChannel {
     return tmp;
   }
 
+  /**
+   * Writes the chunk of bytes compressed with this format:<br/>
+   * - 4 bytes: COMPRESSED_BYTES marker<br/>
+   * - 4 bytes: length of the content<br/>
+   * - 4 bytes: length of the compressed content<br/>
+   * - x bytes: compressed content<br/>
+   * 
+   * @return false if the content doesn't shrink, so nothing has been written
+   */
+  private boolean writeCompressedBytes(final byte[] iContent, final int iLength) throws IOException {
+    final byte[] compressed = new byte[iLength];
+    final int compressedLength;
+
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(iContent, 0, iLength);
+      deflater.finish();
+      compressedLength = deflater.deflate(compressed);
+      if (!deflater.finished() || compressedLength + OBinaryProtocol.SIZE_INT * 2 >= iLength)
+        // NOT WORTH IT
+        return false;
+    } finally {
+      deflater.end();
+    }
+
+    if (debug)
+      OLogManager.instance().debug(this, "%s - Writing %d bytes compressed in %d bytes", socket.getRemoteSocketAddress(), iLength,
+          compressedLength);
+
+    out.writeInt(OChannelBinaryProtocol.COMPRESSED_BYTES);
+    out.writeInt(iLength);
+    out.writeInt(compressedLength);
+    out.write(compressed, 0, compressedLength);
+    updateMetricTransmittedBytes(OBinaryProtocol.SIZE_INT * 3 + compressedLength);
+
+    metricGlobalRawBytes.addAndGet(iLength);
+    metricGlobalCompressedBytes.addAndGet(compressedLength);
+    return true;
+  }
+
+  private byte[] readCompressedBytes() throws IOException {
+    final int len = in.readInt();
+    final int compressedLength = in.readInt();
+    updateMetricReceivedBytes(OBinaryProtocol.SIZE_INT * 2 + compressedLength);
+
+    if (debug)
+      OLogManager.instance().debug(this, "%s - Reading %d bytes compressed in %d bytes...", socket.getRemoteSocketAddress(), len,
+          compressedLength);
+
+    final byte[] compressed = new byte[compressedLength];
+    in.readFully(compressed);
+
+    final byte[] tmp = new byte[len];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      if (inflater.inflate(tmp) != len || !inflater.finished())
+        throw new IOException("Corrupted compressed content received: expected " + len + " bytes");
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupted compressed content received: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+    return tmp;
+  }
+
   public List<String> readStringList() throws IOException {
     if (debug)
       OLogManager.instance().debug(this, "%s - Reading string list. Reading string list items as int (4 bytes)...",
@@ -337,7 +436,7 @@ public abstract class OChannelBinary extends OChannel {
     if (iContent == null) {
       out.writeInt(-1);
       updateMetricTransmittedBytes(OBinaryProtocol.SIZE_INT);
-    } else {
+    } else if (compressionThreshold <= 0 || iLength < compressionThreshold || !writeCompressedBytes(iContent, iLength)) {
       out.writeInt(iLength);
       out.write(iContent, 0, iLength);
       updateMetricTransmittedBytes(OBinaryProtocol.SIZE_INT + iLength);
@@ -345,6 +444,24 @@ public abstract class OChannelBinary extends OChannel {
     return this;
   }
 
+  /**
+   * Returns the minimum size of the chunks of bytes compressed before sending them, 0 if the compression is disabled.
+   */
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /**
+   * Compresses the chunks of bytes of at least the size received before sending them. Set it only once the other side declared to
+   * understand them: compressed chunks are always read.
+   * 
+   * @param iCompressionThreshold
+   *          Minimum size in bytes, 0 to disable the compression
+   */
+  public void setCompressionThreshold(final int iCompressionThreshold) {
+    compressionThreshold = iCompressionThreshold;
+  }
+
   public OChannelBinary writeCollectionString(final Collection<String> iCollection) throws IOException {
     if (debug)
       OLogManager.instance().debug(this, "%s - Writing strings (4+%d=%d items): %s", socket.getRemoteSocketAddress(),
@@ -454,29 +571,11 @@ public abstract class OChannelBinary extends OChannel {
   protected int handleStatus(final byte iResult, final int iClientTxId) throws IOException {
     if (iResult == OChannelBinaryProtocol.RESPONSE_STATUS_OK || iResult == OChannelBinaryProtocol.PUSH_DATA) {
     } else if (iResult == OChannelBinaryProtocol.RESPONSE_STATUS_ERROR) {
-      StringBuilder buffer = new StringBuilder();
-
-      final List<OPair<String, String>> exceptions = new ArrayList<OPair<String, String>>();
-
-      // EXCEPTION
-      while (readByte() == 1) {
-        final String excClassName = readString();
-        final String excMessage = readString();
-        exceptions.add(new OPair<String, String>(excClassName, excMessage));
-      }
-
-      Exception previous = null;
-      for (int i = exceptions.size() - 1; i > -1; --i) {
-        previous = createException(exceptions.get(i).getKey(), exceptions.get(i).getValue(), previous);
-      }
-
-      if (previous != null) {
-        if (previous instanceof RuntimeException)
-          throw (RuntimeException) previous;
-        else
-          throw new ODatabaseException("Generic error, see the underlying cause", previous);
-      } else
-        throw new ONetworkProtocolException("Network response error: " + buffer.toString());
+      final RuntimeException exception = readException();
+      if (exception != null)
+        throw exception;
+      else
+        throw new ONetworkProtocolException("Network response error");
 
     } else {
       // PROTOCOL ERROR
@@ -486,6 +585,31 @@ public abstract class OChannelBinary extends OChannel {
     return iClientTxId;
   }
 
+  /**
+   * Reads an exception sent by the server as the chain of the classes and the messages of its causes.
+   * 
+   * @return the exception rebuilt, or null if the server sent an empty chain
+   */
+  public RuntimeException readException() throws IOException {
+    final List<OPair<String, String>> exceptions = new ArrayList<OPair<String, String>>();
+
+    // EXCEPTION
+    while (readByte() == 1) {
+      final String excClassName = readString();
+      final String excMessage = readString();
+      exceptions.add(new OPair<String, String>(excClassName, excMessage));
+    }
+
+    Exception previous = null;
+    for (int i = exceptions.size() - 1; i > -1; --i) {
+      previous = createException(exceptions.get(i).getKey(), exceptions.get(i).getValue(), previous);
+    }
+
+    if (previous == null || previous instanceof RuntimeException)
+      return (RuntimeException) previous;
+    return new ODatabaseException("Generic error, see the underlying cause", previous);
+  }
+
   @SuppressWarnings("unchecked")
   private static RuntimeException createException(final String iClassName, final String iMessage, final Exception iPrevious) {
     RuntimeException rootException = null;
@@ -17,29 +17,47 @@ package com.orientechnologies.orient.enterprise.channel.binary;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.common.io.OIOException;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 
 /**
- * Implementation that supports multiple client requests.
+ * Implementation that supports multiple client requests. Requests are pipelined: the write lock is held only while a request is
+ * written, so many threads can wait for their responses on the same channel. The responses are demultiplexed by session id: the
+ * first waiting thread reads the header of the next response and, if it's for another session, hands the channel to the thread
+ * waiting for it.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
 public class OChannelBinaryAsynch extends OChannelBinary {
-  private final ReentrantLock lockRead      = new ReentrantLock(true);
-  private final Condition     readCondition = lockRead.newCondition();
-  private final ReentrantLock lockWrite     = new ReentrantLock();
-  private boolean             channelRead   = false;
-  private byte                currentStatus;
-  private int                 currentSessionId;
-  private final int           maxUnreadResponses;
+  private final ReentrantLock         lockRead         = new ReentrantLock(true);
+  private final ReentrantLock         lockWrite        = new ReentrantLock();
+  private final List<OResponseWaiter> waiters          = new LinkedList<OResponseWaiter>();
+  private final AtomicInteger         pendingResponses = new AtomicInteger();
+  private boolean                     channelRead      = false;
+  private byte                        currentStatus;
+  private int                         currentSessionId;
+  private final int                   maxUnreadResponses;
+
+  private static class OResponseWaiter {
+    private final int       sessionId;
+    private final Condition condition;
+
+    private OResponseWaiter(final int iSessionId, final Condition iCondition) {
+      sessionId = iSessionId;
+      condition = iCondition;
+    }
+  }
 
   public OChannelBinaryAsynch(final Socket iSocket, final OContextConfiguration iConfig) throws IOException {
     super(iSocket, iConfig);
@@ -60,42 +78,44 @@ public class OChannelBinaryAsynch extends OChannelBinary {
   }
 
   public void beginResponse(final int iRequesterId, final long iTimeout) throws IOException {
+    pendingResponses.incrementAndGet();
     try {
       int unreadResponse = 0;
       final long startClock = iTimeout > 0 ? System.currentTimeMillis() : 0;
 
-      // WAIT FOR THE RESPONSE
-      do {
-        if (iTimeout <= 0)
-          lockRead.lock();
-        else if (!lockRead.tryLock(iTimeout, TimeUnit.MILLISECONDS))
-          throw new OTimeoutException("Cannot acquire read lock against channel: " + this);
-
-        if (!channelRead) {
-          channelRead = true;
+      if (iTimeout <= 0)
+        lockRead.lock();
+      else if (!lockRead.tryLock(iTimeout, TimeUnit.MILLISECONDS))
+        throw new OTimeoutException("Cannot acquire read lock against channel: " + this);
 
-          try {
-            currentStatus = readByte();
-            currentSessionId = readInt();
-
-            if (debug)
-              OLogManager.instance().debug(this, "%s - Read response: %d-%d", socket.getLocalAddress(), (int) currentStatus,
-                  currentSessionId);
-
-          } catch (IOException e) {
-            // UNLOCK THE RESOURCE AND PROPAGATES THE EXCEPTION
-            readCondition.signalAll();
-            lockRead.unlock();
-            channelRead = false;
-            throw e;
+      OResponseWaiter waiter = null;
+      boolean owner = false;
+      try {
+        // WAIT FOR THE RESPONSE
+        do {
+          if (!channelRead) {
+            channelRead = true;
+
+            try {
+              currentStatus = readByte();
+              currentSessionId = readInt();
+
+              if (debug)
+                OLogManager.instance().debug(this, "%s - Read response: %d-%d", socket.getLocalAddress(), (int) currentStatus,
+                    currentSessionId);
+
+            } catch (IOException e) {
+              // WAKE UP THE OTHER WAITERS AND PROPAGATES THE EXCEPTION
+              channelRead = false;
+              signalAllWaiters();
+              throw e;
+            }
           }
-        }
 
-        if (currentSessionId == iRequesterId)
-          // IT'S FOR ME
-          break;
+          if (currentSessionId == iRequesterId)
+            // IT'S FOR ME
+            break;
 
-        try {
           if (debug)
             OLogManager.instance().debug(this, "%s - Session %d skip response, it is for %d", socket.getLocalAddress(),
                 iRequesterId, currentSessionId);
@@ -112,16 +132,20 @@ public class OChannelBinaryAsynch extends OChannelBinary {
             throw new IOException("Timeout on reading response");
           }
 
-          // WAIT 1 SECOND AND RETRY
+          // HAND THE CHANNEL TO THE THREAD WAITING FOR THIS RESPONSE, IF ANY, AND WAIT FOR MINE
+          signalWaiter(currentSessionId);
 
-          readCondition.signalAll();
+          if (waiter == null) {
+            waiter = new OResponseWaiter(iRequesterId, lockRead.newCondition());
+            waiters.add(waiter);
+          }
 
           if (debug)
             OLogManager.instance().debug(this, "Session %d is going to sleep...", iRequesterId);
 
           final long start = System.currentTimeMillis();
 
-          readCondition.await(1, TimeUnit.SECONDS);
+          waiter.condition.await(1, TimeUnit.SECONDS);
           final long now = System.currentTimeMillis();
 
           if (debug)
@@ -131,13 +155,18 @@ public class OChannelBinaryAsynch extends OChannelBinary {
           if (now - start >= 1000)
             unreadResponse++;
 
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
+        } while (true);
+
+        owner = true;
+
+      } finally {
+        if (waiter != null)
+          waiters.remove(waiter);
 
-        } finally {
+        if (!owner)
+          // KEEP THE LOCK ONLY TO READ THE RESPONSE: IT'S RELEASED BY endResponse()
           lockRead.unlock();
-        }
-      } while (true);
+      }
 
       if (debug)
         OLogManager.instance().debug(this, "%s - Session %d handle response", socket.getLocalAddress(), iRequesterId);
@@ -145,24 +174,32 @@ public class OChannelBinaryAsynch extends OChannelBinary {
       handleStatus(currentStatus, currentSessionId);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
-      // NEVER HAPPENS?
-      e.printStackTrace();
+      throw new OIOException("Interrupted while waiting for the response of the session " + iRequesterId, e);
+    } finally {
+      pendingResponses.decrementAndGet();
     }
   }
 
   public void endResponse() {
     channelRead = false;
 
-    // WAKE UP ALL THE WAITING THREADS
-
     try {
-      readCondition.signalAll();
+      // WAKE UP THE FIRST WAITING THREAD TO READ THE NEXT RESPONSE
+      if (!waiters.isEmpty())
+        waiters.get(0).condition.signal();
       lockRead.unlock();
     } catch (IllegalMonitorStateException e) {
       // IGNORE IT
     }
   }
 
+  /**
+   * Returns the number of threads waiting for a response on this channel.
+   */
+  public int getPendingResponses() {
+    return pendingResponses.get();
+  }
+
   public ReentrantLock getLockRead() {
     return lockRead;
   }
@@ -175,7 +212,7 @@ public class OChannelBinaryAsynch extends OChannelBinary {
   public void close() {
     if (lockRead.tryLock())
       try {
-        readCondition.signalAll();
+        signalAllWaiters();
       } finally {
         lockRead.unlock();
       }
@@ -192,4 +229,17 @@ public class OChannelBinaryAsynch extends OChannelBinary {
       lockRead.unlock();
     }
   }
+
+  private void signalWaiter(final int iSessionId) {
+    for (OResponseWaiter w : waiters)
+      if (w.sessionId == iSessionId) {
+        w.condition.signal();
+        return;
+      }
+  }
+
+  private void signalAllWaiters() {
+    for (OResponseWaiter w : waiters)
+      w.condition.signal();
+  }
 }
@@ -66,6 +66,11 @@ public class OChannelBinaryProtocol {
   public static final byte  REQUEST_COUNT                          = 40; // DEPRECATED: USE REQUEST_DATACLUSTER_COUNT
   public static final byte  REQUEST_COMMAND                        = 41;
   public static final byte  REQUEST_POSITIONS_CEILING              = 42; // since 1.3.0
+  public static final byte  REQUEST_RECORD_LOAD_BATCH              = 43; // since 1.4.0
+  public static final byte  REQUEST_RECORD_CREATE_BATCH            = 44; // since 1.4.0
+  public static final byte  REQUEST_RECORD_UPDATE_BATCH            = 45; // since 1.4.0
+  public static final byte  REQUEST_CURSOR_FETCH                   = 46; // since 1.4.0
+  public static final byte  REQUEST_CURSOR_CLOSE                   = 47; // since 1.4.0
 
   public static final byte  REQUEST_TX_COMMIT                      = 60;
 
@@ -96,7 +101,8 @@ public class OChannelBinaryProtocol {
   // CONSTANTS
   public static final short RECORD_NULL                            = -2;
   public static final short RECORD_RID                             = -3;
-  public static final int   CURRENT_PROTOCOL_VERSION               = 14; // SENT AS SHORT AS FIRST PACKET AFTER SOCKET CONNECTION
+  public static final int   COMPRESSED_BYTES                       = -2; // since 1.4.0: LENGTH OF A COMPRESSED CHUNK OF BYTES
+  public static final int   CURRENT_PROTOCOL_VERSION               = 17; // SENT AS SHORT AS FIRST PACKET AFTER SOCKET CONNECTION
 
   public static OIdentifiable readIdentifiable(final OChannelBinaryClient network) throws IOException {
     final int classId = network.readShort();
@@ -38,14 +38,24 @@ import java.io.IOException;
 import java.net.Socket;
 
 import com.orientechnologies.orient.core.config.OContextConfiguration;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.enterprise.channel.OChannelNIOInputStream;
+import com.orientechnologies.orient.enterprise.channel.OChannelNIOOutputStream;
 
 public class OChannelBinaryServer extends OChannelBinary {
 
 	public OChannelBinaryServer(final Socket iSocket, final OContextConfiguration iConfig) throws IOException {
 		super(iSocket, iConfig);
 
-		inStream = new BufferedInputStream(socket.getInputStream(), socketBufferSize);
-		outStream = new BufferedOutputStream(socket.getOutputStream(), socketBufferSize);
+		if (socket.getChannel() != null) {
+			// SOCKET SERVED BY A SELECTOR: USE THE CHANNEL WITHOUT SWITCHING IT TO BLOCKING MODE
+			final int timeout = iConfig.getValueAsInteger(OGlobalConfiguration.NETWORK_SOCKET_TIMEOUT);
+			inStream = new OChannelNIOInputStream(socket.getChannel(), socketBufferSize, timeout);
+			outStream = new BufferedOutputStream(new OChannelNIOOutputStream(socket.getChannel(), timeout), socketBufferSize);
+		} else {
+			inStream = new BufferedInputStream(socket.getInputStream(), socketBufferSize);
+			outStream = new BufferedOutputStream(socket.getOutputStream(), socketBufferSize);
+		}
 
 		out = new DataOutputStream(outStream);
 		in = new DataInputStream(inStream);
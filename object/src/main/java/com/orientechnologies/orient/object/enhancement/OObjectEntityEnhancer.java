@@ -19,6 +19,7 @@ package com.orientechnologies.orient.object.enhancement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +27,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javassist.util.proxy.MethodHandler;
 import javassist.util.proxy.Proxy;
@@ -49,11 +52,12 @@ import com.orientechnologies.orient.object.serialization.OObjectCustomSerializer
  */
 public class OObjectEntityEnhancer {
 
-  private static final OObjectEntityEnhancer       instance              = new OObjectEntityEnhancer();
-  private final Map<Class<?>, OObjectMethodFilter> customMethodFilters   = new HashMap<Class<?>, OObjectMethodFilter>();
-  private final OObjectMethodFilter                defaultMethodFilter   = new OObjectMethodFilter();
+  private static final OObjectEntityEnhancer                                          instance              = new OObjectEntityEnhancer();
+  private final Map<Class<?>, OObjectMethodFilter>                                   customMethodFilters   = new HashMap<Class<?>, OObjectMethodFilter>();
+  private final OObjectMethodFilter                                                  defaultMethodFilter   = new OObjectMethodFilter();
+  private final ConcurrentMap<Class<?>, ConcurrentMap<Method, OObjectProxyAccessor>> proxyAccessors        = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, OObjectProxyAccessor>>();
 
-  public static final String                       ENHANCER_CLASS_PREFIX = "orientdb_";
+  public static final String                                                         ENHANCER_CLASS_PREFIX = "orientdb_";
 
   public OObjectEntityEnhancer() {
   }
@@ -183,10 +187,43 @@ public class OObjectEntityEnhancer {
 
   public void registerClassMethodFilter(Class<?> iClass, OObjectMethodFilter iMethodFilter) {
     customMethodFilters.put(iClass, iMethodFilter);
+    proxyAccessors.clear();
   }
 
   public void deregisterClassMethodFilter(Class<?> iClass) {
     customMethodFilters.remove(iClass);
+    proxyAccessors.clear();
+  }
+
+  /**
+   * Returns the accessor of a method handled by a proxied class, creating it at the first call. The accessors are cached per
+   * proxied class, so the property bound to the method is resolved only once.
+   * 
+   * @param iProxyClass
+   *          The proxied class
+   * @param iMethod
+   *          The method of the POJO called on the proxy
+   * @param iProceed
+   *          The method of the proxy that calls the original one, as passed by javassist. Null if the original method is abstract
+   */
+  public OObjectProxyAccessor getProxyAccessor(final Class<?> iProxyClass, final Method iMethod, final Method iProceed)
+      throws SecurityException, NoSuchFieldException {
+    ConcurrentMap<Method, OObjectProxyAccessor> classAccessors = proxyAccessors.get(iProxyClass);
+    if (classAccessors == null) {
+      classAccessors = new ConcurrentHashMap<Method, OObjectProxyAccessor>();
+      final ConcurrentMap<Method, OObjectProxyAccessor> current = proxyAccessors.putIfAbsent(iProxyClass, classAccessors);
+      if (current != null)
+        classAccessors = current;
+    }
+
+    OObjectProxyAccessor accessor = classAccessors.get(iMethod);
+    if (accessor == null) {
+      accessor = new OObjectProxyAccessor(iMethod, iProceed, getMethodFilter(iProxyClass));
+      final OObjectProxyAccessor current = classAccessors.putIfAbsent(iMethod, accessor);
+      if (current != null)
+        accessor = current;
+    }
+    return accessor;
   }
 
   public static synchronized OObjectEntityEnhancer getInstance() {
@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javassist.util.proxy.Proxy;
 import javassist.util.proxy.ProxyObject;
 
@@ -94,6 +96,7 @@ public class OObjectEntitySerializer {
   private static final HashMap<Class<?>, Field>                fieldIds            = new HashMap<Class<?>, Field>();
   private static final HashMap<Class<?>, Field>                fieldVersions       = new HashMap<Class<?>, Field>();
   private static final HashMap<String, List<Method>>           callbacks           = new HashMap<String, List<Method>>();
+  private static final Map<Class<?>, Map<String, Field>>       fieldsByName        = new ConcurrentHashMap<Class<?>, Map<String, Field>>();
 
   /**
    * Method that given an object serialize it an creates a proxy entity, in case the object isn't generated using the
@@ -865,6 +868,10 @@ public class OObjectEntitySerializer {
     invokeCallback(iClass, iInstance, iDocument, OBeforeDeserialization.class);
   }
 
+  /**
+   * Returns the type of the field. Only the field is cached: the type depends on the embedded and serialized fields, that change
+   * while the classes are registered and the serializers bound.
+   */
   public static OType getTypeByClass(final Class<?> iClass, final String fieldName) {
     Field f = getField(fieldName, iClass);
     if (f == null)
@@ -900,13 +907,18 @@ public class OObjectEntitySerializer {
   }
 
   public static Field getField(String fieldName, Class<?> iClass) {
-    for (Field f : iClass.getDeclaredFields()) {
-      if (f.getName().equals(fieldName))
-        return f;
+    Map<String, Field> classFields = fieldsByName.get(iClass);
+    if (classFields == null) {
+      // COLLECT THE FIELDS OF THE WHOLE HIERARCHY ONCE: getDeclaredFields() COPIES THEM AT EVERY CALL
+      classFields = new HashMap<String, Field>();
+      for (Class<?> currentClass = iClass; currentClass != null && currentClass != Object.class; currentClass = currentClass
+          .getSuperclass())
+        for (Field f : currentClass.getDeclaredFields())
+          if (!classFields.containsKey(f.getName()))
+            classFields.put(f.getName(), f);
+      fieldsByName.put(iClass, classFields);
     }
-    if (iClass.getSuperclass().equals(Object.class))
-      return null;
-    return getField(fieldName, iClass.getSuperclass());
+    return classFields.get(fieldName);
   }
 
   /**
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.object.enhancement;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Accessor of a method handled by an enhanced class. It resolves once the property bound to the method and calls the original
+ * getter or setter of the POJO. The accessors are cached by {@link OObjectEntityEnhancer} per proxied class.
+ *
+ * @see OObjectEntityEnhancer#getProxyAccessor(Class, Method, Method)
+ */
+public class OObjectProxyAccessor {
+  private final Method  method;
+  private final Method  proceed;
+  private final String  fieldName;
+  private final boolean getter;
+  private final boolean setter;
+  private final boolean idField;
+  private final boolean versionField;
+
+  /**
+   * @param iMethod
+   *          The method of the POJO called on the proxy
+   * @param iProceed
+   *          The method of the proxy that calls the original one, as passed by javassist
+   * @param iFilter
+   *          The filter that tells the getters and setters of the proxied class
+   */
+  public OObjectProxyAccessor(final Method iMethod, final Method iProceed, final OObjectMethodFilter iFilter)
+      throws SecurityException, NoSuchFieldException {
+    method = iMethod;
+    proceed = iProceed;
+    setter = iFilter.isSetterMethod(iMethod.getName(), iMethod);
+    getter = !setter && iFilter.isGetterMethod(iMethod.getName(), iMethod);
+    if (setter || getter) {
+      fieldName = iFilter.getFieldName(iMethod);
+      idField = OObjectEntitySerializer.isIdField(iMethod.getDeclaringClass(), fieldName);
+      versionField = !idField && OObjectEntitySerializer.isVersionField(iMethod.getDeclaringClass(), fieldName);
+    } else {
+      fieldName = null;
+      idField = false;
+      versionField = false;
+    }
+  }
+
+  /**
+   * Calls the original method of the POJO.
+   *
+   * @param iSelf
+   *          The proxied instance
+   * @param iArgs
+   *          The arguments of the call
+   * @return The value returned by the method, boxed if primitive, or null if void
+   */
+  public Object invoke(final Object iSelf, final Object[] iArgs) throws Throwable {
+    try {
+      return proceed.invoke(iSelf, iArgs);
+    } catch (InvocationTargetException e) {
+      // THROW THE EXCEPTION OF THE POJO, NOT ITS REFLECTION WRAPPER
+      throw e.getCause();
+    }
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  public boolean isGetter() {
+    return getter;
+  }
+
+  public boolean isSetter() {
+    return setter;
+  }
+
+  public boolean isIdField() {
+    return idField;
+  }
+
+  public boolean isVersionField() {
+    return versionField;
+  }
+}
@@ -104,13 +104,13 @@ public class OObjectProxyMethodHandler implements MethodHandler {
   }
 
   public Object invoke(final Object self, final Method m, final Method proceed, final Object[] args) throws Throwable {
-    final OObjectMethodFilter filter = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass());
-    if (filter.isSetterMethod(m.getName(), m)) {
-      return manageSetMethod(self, m, proceed, args);
-    } else if (filter.isGetterMethod(m.getName(), m)) {
-      return manageGetMethod(self, m, proceed, args);
+    final OObjectProxyAccessor accessor = OObjectEntityEnhancer.getInstance().getProxyAccessor(self.getClass(), m, proceed);
+    if (accessor.isSetter()) {
+      return manageSetMethod(self, accessor, args);
+    } else if (accessor.isGetter()) {
+      return manageGetMethod(self, accessor, args);
     }
-    return proceed.invoke(self, args);
+    return accessor.invoke(self, args);
   }
 
   /**
@@ -244,25 +244,24 @@ public class OObjectProxyMethodHandler implements MethodHandler {
     }
   }
 
-  protected Object manageGetMethod(final Object self, final Method m, final Method proceed, final Object[] args)
-      throws IllegalAccessException, InvocationTargetException, NoSuchMethodException, SecurityException, IllegalArgumentException,
-      NoSuchFieldException {
-    final String fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).getFieldName(m);
+  protected Object manageGetMethod(final Object self, final OObjectProxyAccessor accessor, final Object[] args) throws Throwable {
+    final String fieldName = accessor.getFieldName();
+    final Method m = accessor.getMethod();
 
     final ORID docRID = doc.getIdentity();
 
     final boolean idOrVersionField;
-    if (OObjectEntitySerializer.isIdField(m.getDeclaringClass(), fieldName)) {
+    if (accessor.isIdField()) {
       idOrVersionField = true;
       OObjectEntitySerializer.setIdField(m.getDeclaringClass(), self, docRID);
-    } else if (OObjectEntitySerializer.isVersionField(m.getDeclaringClass(), fieldName)) {
+    } else if (accessor.isVersionField()) {
       idOrVersionField = true;
       if (docRID.isValid() && !docRID.isTemporary())
         OObjectEntitySerializer.setVersionField(m.getDeclaringClass(), self, doc.getRecordVersion().copy());
     } else
       idOrVersionField = false;
 
-    Object value = proceed.invoke(self, args);
+    Object value = accessor.invoke(self, args);
 
     value = getValue(self, fieldName, idOrVersionField, value);
     if (docRID.isValid() && !docRID.isTemporary())
@@ -636,12 +635,9 @@ public class OObjectProxyMethodHandler implements MethodHandler {
         (self instanceof ProxyObject ? (ProxyObject) self : null));
   }
 
-  protected Object manageSetMethod(final Object self, final Method m, final Method proceed, final Object[] args)
-      throws IllegalAccessException, InvocationTargetException {
-    final String fieldName;
-    fieldName = OObjectEntityEnhancer.getInstance().getMethodFilter(self.getClass()).getFieldName(m);
-    args[0] = setValue(self, fieldName, args[0]);
-    return proceed.invoke(self, args);
+  protected Object manageSetMethod(final Object self, final OObjectProxyAccessor accessor, final Object[] args) throws Throwable {
+    args[0] = setValue(self, accessor.getFieldName(), args[0]);
+    return accessor.invoke(self, args);
   }
 
   @SuppressWarnings("rawtypes")
@@ -701,8 +697,9 @@ public class OObjectProxyMethodHandler implements MethodHandler {
               if (schemaClass != null)
                 schemaProperty = schemaClass.getProperty(fieldName);
 
-              doc.field(fieldName, OObjectEntitySerializer.typeToStream(valueToSet,
-                  schemaProperty != null ? schemaProperty.getType() : null, getDatabase(), doc));
+              // WITHOUT A PROPERTY IN THE SCHEMA THE TYPE IS THE ONE OF THE FIELD
+              doc.field(fieldName, OObjectEntitySerializer.typeToStream(valueToSet, schemaProperty != null ? schemaProperty.getType()
+                  : OObjectEntitySerializer.getTypeByClass(self.getClass(), fieldName), getDatabase(), doc));
             } else
               doc.field(fieldName, valueToSet, OObjectEntitySerializer.getTypeByClass(self.getClass(), fieldName));
           }
@@ -713,7 +710,8 @@ public class OObjectProxyMethodHandler implements MethodHandler {
         if (OObjectEntitySerializer.isToSerialize(valueToSet.getClass())) {
           doc.field(fieldName, OObjectEntitySerializer.serializeFieldValue(
               OObjectEntitySerializer.getField(fieldName, self.getClass()).getType(), valueToSet));
-        } else if (getDatabase().getEntityManager().getEntityClass(valueToSet.getClass().getSimpleName()) != null
+        } else if (!OReflectionHelper.isJavaType(valueToSet.getClass())
+            && getDatabase().getEntityManager().getEntityClass(valueToSet.getClass().getSimpleName()) != null
             && !valueToSet.getClass().isEnum()) {
           valueToSet = OObjectEntitySerializer.serializeObject(valueToSet, getDatabase());
           final ODocument docToSet = OObjectEntitySerializer.getDocument((Proxy) valueToSet);
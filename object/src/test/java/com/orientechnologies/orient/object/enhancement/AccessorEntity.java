@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.object.enhancement;
+
+import java.io.IOException;
+
+/**
+ * Entity with the kinds of methods the proxy accessors must call: primitive getters and setters, void methods, arrays and
+ * methods that throw.
+ */
+public class AccessorEntity {
+  private int      counter;
+  private boolean  enabled;
+  private double   ratio;
+  private byte[]   data;
+  private String[] tags;
+
+  public int getCounter() {
+    return counter;
+  }
+
+  public void setCounter(int counter) {
+    if (counter < 0)
+      throw new IllegalArgumentException("Negative counter: " + counter);
+    this.counter = counter;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getRatio() {
+    return ratio;
+  }
+
+  public void setRatio(double ratio) {
+    this.ratio = ratio;
+  }
+
+  public byte[] getData() {
+    return data;
+  }
+
+  public void setData(byte[] data) {
+    this.data = data;
+  }
+
+  public String[] getTags() {
+    return tags;
+  }
+
+  public void setTags(String[] tags) {
+    this.tags = tags;
+  }
+
+  public void increment() {
+    counter++;
+  }
+
+  public int add(int a, int b) {
+    return a + b;
+  }
+
+  public void check() throws IOException {
+    throw new IOException("Check failed");
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.object.enhancement;
+
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.object.db.OObjectDatabaseTx;
+
+@Test
+public class OObjectProxyAccessorTest {
+  private OObjectDatabaseTx database;
+
+  @BeforeClass
+  public void setUp() {
+    database = new OObjectDatabaseTx("memory:OObjectProxyAccessorTest");
+    database.create();
+    database.getEntityManager().registerEntityClass(AccessorEntity.class);
+    // ONLY BYTE ARRAYS HAVE A TYPE WITHOUT A PROPERTY IN THE SCHEMA
+    database.getMetadata().getSchema().getClass(AccessorEntity.class).createProperty("tags", OType.EMBEDDEDLIST, OType.STRING);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    database.drop();
+  }
+
+  public void primitiveAccessorsAreBoundToTheDocument() {
+    // Given a proxied entity
+    AccessorEntity entity = database.newInstance(AccessorEntity.class);
+
+    // When primitive values are set
+    entity.setCounter(5);
+    entity.setEnabled(true);
+    entity.setRatio(0.5);
+
+    // Then they are read back from the proxy and from the document
+    Assert.assertEquals(entity.getCounter(), 5);
+    Assert.assertTrue(entity.isEnabled());
+    Assert.assertEquals(entity.getRatio(), 0.5);
+
+    final ODocument document = database.getRecordByUserObject(entity, false);
+    Assert.assertEquals(document.field("counter"), 5);
+    Assert.assertEquals(document.field("enabled"), true);
+    Assert.assertEquals(document.field("ratio"), 0.5);
+
+    // And after a reload
+    entity = database.save(entity);
+    final ORID rid = database.getIdentity(entity);
+    database.getLevel1Cache().clear();
+    final AccessorEntity loaded = database.load(rid);
+    Assert.assertEquals(loaded.getCounter(), 5);
+    Assert.assertTrue(loaded.isEnabled());
+    Assert.assertEquals(loaded.getRatio(), 0.5);
+  }
+
+  public void voidAndNonAccessorMethodsReachThePojo() {
+    // Given a proxied entity
+    final AccessorEntity entity = database.newInstance(AccessorEntity.class);
+    entity.setCounter(1);
+
+    // When methods that are neither getters nor setters are called
+    entity.increment();
+    final int sum = entity.add(2, 3);
+
+    // Then the POJO executes them
+    Assert.assertEquals(entity.getCounter(), 2);
+    Assert.assertEquals(sum, 5);
+  }
+
+  public void arrayAccessorsAreBoundToTheDocument() {
+    // Given a proxied entity
+    AccessorEntity entity = database.newInstance(AccessorEntity.class);
+
+    // When arrays are set
+    entity.setData(new byte[] { 1, 2, 3 });
+    entity.setTags(new String[] { "a", "b" });
+
+    // Then they are read back after a reload
+    entity = database.save(entity);
+    final ORID rid = database.getIdentity(entity);
+    database.getLevel1Cache().clear();
+    final AccessorEntity loaded = database.load(rid);
+    Assert.assertEquals(loaded.getData(), new byte[] { 1, 2, 3 });
+    Assert.assertEquals(loaded.getTags(), new String[] { "a", "b" });
+  }
+
+  public void exceptionsOfThePojoReachTheCaller() {
+    // Given a proxied entity
+    final AccessorEntity entity = database.newInstance(AccessorEntity.class);
+    entity.setCounter(3);
+
+    // When a setter throws an unchecked exception
+    try {
+      entity.setCounter(-1);
+      Assert.fail("The setter must throw");
+    } catch (IllegalArgumentException e) {
+      // Then the caller gets it unwrapped and the value is not changed
+      Assert.assertEquals(e.getMessage(), "Negative counter: -1");
+    }
+    Assert.assertEquals(entity.getCounter(), 3);
+
+    // When a method throws a checked exception
+    try {
+      entity.check();
+      Assert.fail("The method must throw");
+    } catch (IOException e) {
+      // Then the caller gets it unwrapped
+      Assert.assertEquals(e.getMessage(), "Check failed");
+    }
+  }
+}
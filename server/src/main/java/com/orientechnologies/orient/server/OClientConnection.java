@@ -17,6 +17,9 @@ package com.orientechnologies.orient.server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.raw.ODatabaseRaw;
@@ -24,16 +27,18 @@ import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinary;
 import com.orientechnologies.orient.server.config.OServerUserConfiguration;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocol;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocolData;
+import com.orientechnologies.orient.server.network.protocol.binary.OCommandCursor;
 
 public class OClientConnection {
-  public final int                         id;
-  public final ONetworkProtocol            protocol;
-  public final long                        since;
-  public volatile ODatabaseDocumentTx      database;
-  public volatile ODatabaseRaw             rawDatabase;
-  public volatile OServerUserConfiguration serverUser;
+  public final int                           id;
+  public final ONetworkProtocol              protocol;
+  public final long                          since;
+  public volatile ODatabaseDocumentTx        database;
+  public volatile ODatabaseRaw               rawDatabase;
+  public volatile OServerUserConfiguration   serverUser;
 
-  public ONetworkProtocolData              data = new ONetworkProtocolData();
+  public ONetworkProtocolData                data    = new ONetworkProtocolData();
+  private final Map<Integer, OCommandCursor> cursors = new ConcurrentHashMap<Integer, OCommandCursor>();
 
   public OClientConnection(final int iId, final ONetworkProtocol iProtocol) throws IOException {
     this.id = iId;
@@ -42,12 +47,51 @@ public class OClientConnection {
   }
 
   public void close() {
+    // STOP THE COMMANDS OF THE CURSORS BEFORE TO CLOSE THEIR DATABASE
+    for (OCommandCursor cursor : cursors.values())
+      cursor.close();
+    cursors.clear();
+
     if (database != null) {
       database.close();
       database = null;
     }
   }
 
+  public void addCursor(final OCommandCursor iCursor) {
+    cursors.put(iCursor.id, iCursor);
+  }
+
+  public OCommandCursor getCursor(final int iId) {
+    return cursors.get(iId);
+  }
+
+  public OCommandCursor removeCursor(final int iId) {
+    return cursors.remove(iId);
+  }
+
+  /**
+   * Stops the commands of the expired cursors and removes them. It must be called by the thread serving the session, since the
+   * commands are stopped using its database.
+   */
+  public void closeExpiredCursors() {
+    for (Iterator<OCommandCursor> it = cursors.values().iterator(); it.hasNext();) {
+      final OCommandCursor cursor = it.next();
+      if (cursor.isClosed()) {
+        cursor.close();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of open cursors, after having removed the expired ones.
+   */
+  public int countCursors() {
+    closeExpiredCursors();
+    return cursors.size();
+  }
+
   @Override
   public String toString() {
     return "OClientConnection [id=" + id + ", source="
@@ -16,7 +16,9 @@
 package com.orientechnologies.orient.server.distributed;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -152,6 +154,14 @@ public class ODistributedStorage implements OStorage {
     return new OStorageOperationResult<OPhysicalPosition>((OPhysicalPosition) result);
   }
 
+  public List<ORawBuffer> readRecords(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    // ROUTE EVERY RECORD TO ITS NODE
+    final List<ORawBuffer> result = new ArrayList<ORawBuffer>(iRids.size());
+    for (ORecordId rid : iRids)
+      result.add(readRecord(rid, iFetchPlan, iIgnoreCache, null, false).getResult());
+    return result;
+  }
+
   public OStorageOperationResult<ORawBuffer> readRecord(final ORecordId iRecordId, final String iFetchPlan,
       final boolean iIgnoreCache, final ORecordCallback<ORawBuffer> iCallback, boolean loadTombstones) {
     if (ODistributedThreadLocal.INSTANCE.distributedExecution)
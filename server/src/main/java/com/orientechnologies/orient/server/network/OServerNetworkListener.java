@@ -24,16 +24,19 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
 import com.orientechnologies.orient.server.config.OServerParameterConfiguration;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocol;
+import com.orientechnologies.orient.server.network.protocol.binary.OBinaryNetworkProtocolAbstract;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommand;
 
 public class OServerNetworkListener extends Thread {
@@ -46,6 +49,7 @@ public class OServerNetworkListener extends Thread {
   private OContextConfiguration             configuration;
   private OServer                           server;
   private ONetworkProtocol                  protocol;
+  private OServerNetworkSelector            selector;
 
   @SuppressWarnings("unchecked")
   public OServerNetworkListener(final OServer iServer, final String iHostName, final String iHostPortRange,
@@ -54,11 +58,23 @@ public class OServerNetworkListener extends Thread {
     super(Orient.getThreadGroup(), "OrientDB " + iProtocol.getSimpleName() + " listen at " + iHostName + ":" + iHostPortRange);
     server = iServer;
 
-    listen(iHostName, iHostPortRange, iProtocolName);
     protocolType = iProtocol;
 
     readParameters(iServer.getContextConfiguration(), iParameters);
 
+    final boolean useSelector = configuration.getValueAsBoolean(OGlobalConfiguration.NETWORK_BINARY_SELECTOR_ENABLED)
+        && OBinaryNetworkProtocolAbstract.class.isAssignableFrom(iProtocol);
+
+    listen(iHostName, iHostPortRange, iProtocolName, useSelector);
+
+    if (useSelector)
+      try {
+        selector = new OServerNetworkSelector(this, serverSocket.getChannel(),
+            configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_SELECTOR_WORKERS));
+      } catch (IOException e) {
+        throw new OConfigurationException("Cannot create the selector for the connections of " + iProtocolName, e);
+      }
+
     if (iCommands != null) {
       // CREATE COMMANDS
       commands = new OServerCommand[iCommands.length];
@@ -86,6 +102,9 @@ public class OServerNetworkListener extends Thread {
       protocol = null;
     }
 
+    if (selector != null)
+      selector.shutdown();
+
     if (serverSocket != null)
       try {
         serverSocket.close();
@@ -98,14 +117,26 @@ public class OServerNetworkListener extends Thread {
    * 
    * @param iHostPortRange
    * @param iHostName
+   * @param iUseSelector
+   *          opens the socket through a channel, to serve the connections with a selector
    */
-  private void listen(final String iHostName, final String iHostPortRange, final String iProtocolName) {
+  private void listen(final String iHostName, final String iHostPortRange, final String iProtocolName, final boolean iUseSelector) {
     final int[] ports = getPorts(iHostPortRange);
 
     for (int port : ports) {
       inboundAddr = new InetSocketAddress(iHostName, port);
       try {
-        serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
+        if (iUseSelector) {
+          final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+          try {
+            serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(iHostName), port));
+          } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+          }
+          serverSocket = serverChannel.socket();
+        } else
+          serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
 
         if (serverSocket.isBound()) {
           OLogManager.instance().info(this,
@@ -136,20 +167,15 @@ public class OServerNetworkListener extends Thread {
   @Override
   public void run() {
     try {
+      if (selector != null) {
+        selector.run();
+        return;
+      }
+
       while (active) {
         try {
           // listen for and accept a client connection to serverSocket
-          final Socket socket = serverSocket.accept();
-
-          socket.setPerformancePreferences(0, 2, 1);
-          socket.setSendBufferSize(socketBufferSize);
-          socket.setReceiveBufferSize(socketBufferSize);
-
-          // CREATE A NEW PROTOCOL INSTANCE
-          protocol = protocolType.newInstance();
-
-          // CONFIGURE THE PROTOCOL FOR THE INCOMING CONNECTION
-          protocol.config(server, socket, configuration, commands);
+          connect(serverSocket.accept());
 
         } catch (Throwable e) {
           if (active)
@@ -166,6 +192,22 @@ public class OServerNetworkListener extends Thread {
     }
   }
 
+  /**
+   * Creates the protocol instance serving a new client connection.
+   */
+  ONetworkProtocol connect(final Socket iSocket) throws Exception {
+    iSocket.setPerformancePreferences(0, 2, 1);
+    iSocket.setSendBufferSize(socketBufferSize);
+    iSocket.setReceiveBufferSize(socketBufferSize);
+
+    // CREATE A NEW PROTOCOL INSTANCE
+    protocol = protocolType.newInstance();
+
+    // CONFIGURE THE PROTOCOL FOR THE INCOMING CONNECTION
+    protocol.config(server, iSocket, configuration, commands);
+    return protocol;
+  }
+
   public Class<? extends ONetworkProtocol> getProtocolType() {
     return protocolType;
   }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.server.network.protocol.binary.OBinaryNetworkProtocolAbstract;
+
+/**
+ * Serves the connections of a binary listener with a selector and a fixed pool of workers instead of a thread per connection. The
+ * selector watches the idle connections: when a request arrives the connection is handed to a worker, that executes all the
+ * requests already received and then gives the connection back to the selector. A mostly idle client costs a registration on the
+ * selector instead of a parked thread.
+ *
+ * Enable it per listener with the parameter "network.binary.selector.enabled".
+ */
+public class OServerNetworkSelector {
+  private final OServerNetworkListener listener;
+  private final ServerSocketChannel    serverChannel;
+  private final Selector               selector;
+  private final ExecutorService        workers;
+  private final Queue<SelectionKey>    released = new ConcurrentLinkedQueue<SelectionKey>();
+
+  public OServerNetworkSelector(final OServerNetworkListener iListener, final ServerSocketChannel iServerChannel,
+      final int iWorkers) throws IOException {
+    listener = iListener;
+    serverChannel = iServerChannel;
+
+    selector = Selector.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    final String name = "OrientDB <- BinaryClient worker (" + serverChannel.socket().getLocalSocketAddress() + ") #";
+    workers = Executors.newFixedThreadPool(iWorkers, new ThreadFactory() {
+      private final AtomicInteger serial = new AtomicInteger();
+
+      public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(Orient.getThreadGroup(), r, name + serial.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Accepts and dispatches the connections until the listener is active.
+   */
+  public void run() {
+    try {
+      while (listener.isActive()) {
+        try {
+          selector.select();
+
+          // GIVE BACK TO THE SELECTOR THE CONNECTIONS RELEASED BY THE WORKERS
+          SelectionKey key;
+          while ((key = released.poll()) != null)
+            if (key.isValid())
+              key.interestOps(SelectionKey.OP_READ);
+
+          final Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+          while (selected.hasNext()) {
+            key = selected.next();
+            selected.remove();
+
+            if (!key.isValid())
+              continue;
+
+            if (key.isAcceptable())
+              accept();
+            else if (key.isReadable())
+              dispatch(key);
+          }
+
+        } catch (Throwable e) {
+          if (listener.isActive())
+            OLogManager.instance().error(this, "Error on selecting the client connections", e);
+        }
+      }
+    } finally {
+      close();
+    }
+  }
+
+  public void shutdown() {
+    workers.shutdown();
+    selector.wakeup();
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept()) != null) {
+      try {
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, listener.connect(channel.socket()));
+      } catch (Throwable e) {
+        OLogManager.instance().error(this, "Error on client connection", e);
+        channel.close();
+      }
+    }
+  }
+
+  private void dispatch(final SelectionKey iKey) {
+    // NO MORE EVENTS UNTIL A WORKER GIVES BACK THE CONNECTION
+    iKey.interestOps(0);
+
+    final OBinaryNetworkProtocolAbstract protocol = (OBinaryNetworkProtocolAbstract) iKey.attachment();
+    try {
+      workers.execute(new Runnable() {
+        public void run() {
+          if (protocol.executePendingRequests()) {
+            released.offer(iKey);
+            selector.wakeup();
+          } else
+            iKey.cancel();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // SHUTTING DOWN
+      iKey.cancel();
+      protocol.sendShutdown();
+    }
+  }
+
+  private void close() {
+    workers.shutdown();
+
+    if (!selector.isOpen())
+      return;
+
+    for (SelectionKey key : selector.keys())
+      if (key.attachment() instanceof OBinaryNetworkProtocolAbstract)
+        ((OBinaryNetworkProtocolAbstract) key.attachment()).sendShutdown();
+
+    try {
+      selector.close();
+    } catch (IOException e) {
+    }
+  }
+}
@@ -38,5 +38,6 @@ public class ONetworkProtocolData {
   public String driverVersion             = null;
   public short  protocolVersion           = -1;
   public String clientId                  = null;
+  public int    compressionThreshold      = 0;
   public String currentUserId             = null;
 }
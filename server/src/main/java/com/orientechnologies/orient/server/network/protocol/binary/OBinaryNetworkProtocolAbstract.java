@@ -27,6 +27,7 @@ import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase.STATUS;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -63,6 +64,7 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
   protected OChannelBinaryServer channel;
   protected int                  requestType;
   protected int                  clientTxId;
+  protected boolean              pooled;
   private final Level            logClientExceptions;
   private final boolean          logClientFullStackTrace;
 
@@ -101,6 +103,35 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
       throws IOException {
     server = iServer;
     channel = new OChannelBinaryServer(iSocket, iConfig);
+    pooled = iSocket.getChannel() != null;
+  }
+
+  /**
+   * Executes the requests already received, without waiting for new ones. Used when the connection is served by the workers of a
+   * selector instead of by its own thread.
+   * 
+   * @return false if the connection has been closed, otherwise true
+   */
+  public boolean executePendingRequests() {
+    try {
+      do {
+        execute();
+
+        if (channel.socket.isClosed())
+          return false;
+
+      } while (channel.inStream.available() > 0);
+
+      return true;
+
+    } catch (Throwable t) {
+      OLogManager.instance().error(this, "Error on executing the requests of the client %s", t,
+          channel.socket.getRemoteSocketAddress());
+      sendShutdown();
+      return false;
+    } finally {
+      ODatabaseRecordThreadLocal.INSTANCE.remove();
+    }
   }
 
   @Override
@@ -146,6 +177,23 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     channel.close();
   }
 
+  @Override
+  public void sendShutdown() {
+    if (pooled) {
+      // NO THREAD TO INTERRUPT: RELEASE THE CONNECTION NOW
+      if (!channel.socket.isClosed())
+        shutdown();
+    } else
+      super.sendShutdown();
+  }
+
+  /**
+   * Returns true if the connection is served by the workers of a selector, otherwise by its own thread.
+   */
+  public boolean isPooled() {
+    return pooled;
+  }
+
   @Override
   public OChannel getChannel() {
     return channel;
@@ -170,16 +218,7 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
       else
         current = t;
 
-      while (current != null) {
-        // MORE DETAILS ARE COMING AS EXCEPTION
-        channel.writeByte((byte) 1);
-
-        channel.writeString(current.getClass().getName());
-        channel.writeString(current != null ? current.getMessage() : null);
-
-        current = current.getCause();
-      }
-      channel.writeByte((byte) 0);
+      writeExceptionChain(current);
 
       channel.flush();
 
@@ -199,6 +238,22 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     }
   }
 
+  /**
+   * Writes the class and the message of an exception and of all its causes, read back by the client to throw the same exception.
+   */
+  protected void writeExceptionChain(Throwable iException) throws IOException {
+    while (iException != null) {
+      // MORE DETAILS ARE COMING AS EXCEPTION
+      channel.writeByte((byte) 1);
+
+      channel.writeString(iException.getClass().getName());
+      channel.writeString(iException.getMessage());
+
+      iException = iException.getCause();
+    }
+    channel.writeByte((byte) 0);
+  }
+
   /**
    * Write a OIdentifiable instance using this format:<br/>
    * - 2 bytes: class id [-2=no record, -3=rid, -1=no class id, > -1 = valid] <br/>
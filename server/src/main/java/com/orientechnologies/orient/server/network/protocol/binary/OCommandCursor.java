@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.command.OCommandRequestInternal;
+import com.orientechnologies.orient.core.command.OCommandRequestText;
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+
+/**
+ * Server-side cursor over the result of a command, read by the client a page at a time. The command runs in its own thread, that
+ * stops as soon as a page is full and waits for the next fetch. The database of the session is used by one thread at a time: the
+ * cursor thread while filling a page, the thread serving the session otherwise.
+ *
+ * The cursor expires if no page is fetched before the timeout, since iterating the result could keep locks on the indexes used. The
+ * cursor thread only marks it closed: the command is stopped by the thread serving the session, at the next request of the session
+ * or when the session is closed.
+ */
+public class OCommandCursor implements OCommandResultListener, Runnable {
+  private static final AtomicInteger  serial = new AtomicInteger();
+
+  public final int                    id;
+  private final ODatabaseDocumentTx   database;
+  private final OCommandRequestText   command;
+  private final long                  timeout;
+  private final Thread                thread;
+  private final List<OIdentifiable>   page   = new ArrayList<OIdentifiable>();
+  private int                         pageSize;
+
+  // TRUE WHEN THE CURSOR THREAD OWNS THE DATABASE
+  private boolean                     producing;
+  private boolean                     finished;
+  private boolean                     closed;
+  private Throwable                   error;
+
+  public OCommandCursor(final ODatabaseDocumentTx iDatabase, final OCommandRequestText iCommand, final long iTimeout) {
+    id = serial.incrementAndGet();
+    database = iDatabase;
+    command = iCommand;
+    timeout = iTimeout;
+
+    command.setResultListener(this);
+
+    thread = new Thread(Orient.getThreadGroup(), this, "OrientDB <- Cursor #" + id);
+    thread.setDaemon(true);
+  }
+
+  public OCommandRequestText getCommand() {
+    return command;
+  }
+
+  /**
+   * Returns the next page of results, waiting for the command to produce it. The last page is shorter than the page size; after it
+   * the cursor is finished.
+   */
+  public synchronized List<OIdentifiable> fetch(final int iPageSize) {
+    if (closed) {
+      // STOP THE EXPIRED COMMAND BEFORE TO REPORT IT
+      close();
+      throw new OCommandExecutionException("Cursor " + id + " has been closed because not used for " + timeout + "ms");
+    }
+
+    page.clear();
+    if (finished)
+      return new ArrayList<OIdentifiable>(page);
+
+    pageSize = Math.max(1, iPageSize);
+    handOver();
+
+    if (error != null) {
+      if (error instanceof OException)
+        throw (OException) error;
+      throw new OCommandExecutionException("Error on executing the command of cursor " + id + ": " + command, error);
+    }
+
+    return new ArrayList<OIdentifiable>(page);
+  }
+
+  /**
+   * Stops the command and waits for it. It must be called by the thread serving the session, also for an expired cursor.
+   */
+  public synchronized void close() {
+    closed = true;
+
+    if (thread.getState() == Thread.State.NEW)
+      finished = true;
+    else if (!finished)
+      // THE COMMAND SEES THE CURSOR CLOSED AND STOPS BEFORE TO GIVE BACK THE DATABASE
+      handOver();
+  }
+
+  public synchronized boolean isFinished() {
+    return finished;
+  }
+
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  public synchronized boolean result(final Object iRecord) {
+    if (closed)
+      return false;
+
+    page.add((OIdentifiable) iRecord);
+    if (page.size() < pageSize)
+      return true;
+
+    // PAGE FULL: GIVE BACK THE DATABASE UNTIL THE NEXT FETCH
+    producing = false;
+    notifyAll();
+
+    // ON EXPIRATION DON'T TAKE BACK THE DATABASE, IN USE BY THE SESSION: WAIT FOR THE SESSION TO STOP THE COMMAND
+    final long deadline = System.currentTimeMillis() + timeout;
+    boolean interrupted = false;
+    while (!producing)
+      try {
+        final long wait = deadline - System.currentTimeMillis();
+        if (wait > 0 && !closed)
+          wait(wait);
+        else {
+          closed = true;
+          wait();
+        }
+      } catch (InterruptedException e) {
+        closed = true;
+        interrupted = true;
+      }
+
+    if (interrupted)
+      Thread.currentThread().interrupt();
+
+    return !closed;
+  }
+
+  public void end() {
+  }
+
+  public void run() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(database);
+    try {
+      ((OCommandRequestInternal) database.command(command)).execute();
+    } catch (Throwable t) {
+      synchronized (this) {
+        error = t;
+      }
+    } finally {
+      ODatabaseRecordThreadLocal.INSTANCE.remove();
+
+      synchronized (this) {
+        finished = true;
+        producing = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Lets the cursor thread use the database and waits until it gives it back.
+   */
+  private void handOver() {
+    producing = true;
+    if (thread.getState() == Thread.State.NEW)
+      thread.start();
+    else
+      notifyAll();
+
+    // DON'T GIVE UP ON INTERRUPTION: THE DATABASE CAN'T BE SHARED
+    boolean interrupted = false;
+    while (producing)
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+}
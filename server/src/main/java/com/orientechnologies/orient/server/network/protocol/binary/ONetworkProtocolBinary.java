@@ -17,8 +17,10 @@ package com.orientechnologies.orient.server.network.protocol.binary;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -40,6 +42,7 @@ import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.raw.ODatabaseRaw;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.exception.OSecurityAccessException;
 import com.orientechnologies.orient.core.exception.OSecurityException;
@@ -84,6 +87,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
   protected OUser             account;
 
   private String              dbType;
+  private boolean             compressionEnabled;
+  private int                 cursorTimeout;
+  private int                 maxCursors;
 
   public ONetworkProtocolBinary() {
     super("OrientDB <- BinaryClient/?");
@@ -101,11 +107,19 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
 
     super.config(iServer, iSocket, iConfig, iCommands);
 
+    compressionEnabled = iConfig.getValueAsBoolean(OGlobalConfiguration.NETWORK_BINARY_COMPRESSION_ENABLED);
+    cursorTimeout = iConfig.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_CURSOR_TIMEOUT);
+    maxCursors = iConfig.getValueAsInteger(OGlobalConfiguration.NETWORK_BINARY_CURSOR_MAX);
+
     // SEND PROTOCOL VERSION
     channel.writeShort((short) OChannelBinaryProtocol.CURRENT_PROTOCOL_VERSION);
 
     channel.flush();
-    start();
+    if (pooled)
+      // NO THREAD: NOTIFY THE CONNECTION NOW
+      startup();
+    else
+      start();
 
     setName("OrientDB <- BinaryClient (" + iSocket.getRemoteSocketAddress() + ")");
   }
@@ -126,6 +140,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
         connection.data.protocolVersion = protocolId;
     }
 
+    // COMPRESS THE RESPONSES AS NEGOTIATED BY THE SESSION
+    channel.setCompressionThreshold(connection != null ? connection.data.compressionThreshold : 0);
+
     if (connection != null) {
       ODatabaseRecordThreadLocal.INSTANCE.set(connection.database);
       if (connection.database != null) {
@@ -136,6 +153,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
         connection.data.lastUser = null;
       }
 
+      // THE COMMANDS OF THE EXPIRED CURSORS CAN BE STOPPED ONLY BY THE THREAD SERVING THE SESSION
+      connection.closeExpiredCursors();
+
       ++connection.data.totalRequests;
       setDataCommandInfo("Listening");
       connection.data.commandDetail = "-";
@@ -273,6 +293,26 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       deleteRecord();
       break;
 
+    case OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH:
+      readRecords();
+      break;
+
+    case OChannelBinaryProtocol.REQUEST_RECORD_CREATE_BATCH:
+      createRecords();
+      break;
+
+    case OChannelBinaryProtocol.REQUEST_RECORD_UPDATE_BATCH:
+      updateRecords();
+      break;
+
+    case OChannelBinaryProtocol.REQUEST_CURSOR_FETCH:
+      fetchCursor();
+      break;
+
+    case OChannelBinaryProtocol.REQUEST_CURSOR_CLOSE:
+      closeCursor();
+      break;
+
     case OChannelBinaryProtocol.REQUEST_POSITIONS_HIGHER:
       higherPositions();
       break;
@@ -726,6 +766,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
 
         if (connection.data.protocolVersion >= 14)
           channel.writeString(OConstants.getVersion());
+
+        if (connection.data.protocolVersion >= 16)
+          channel.writeInt(connection.data.compressionThreshold);
       } finally {
         endResponse();
       }
@@ -743,6 +786,9 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     try {
       sendOk(clientTxId);
       channel.writeInt(connection.id);
+
+      if (connection.data.protocolVersion >= 16)
+        channel.writeInt(connection.data.compressionThreshold);
     } finally {
       endResponse();
     }
@@ -1093,13 +1139,20 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
   protected void command() throws IOException {
     setDataCommandInfo("Execute remote command");
 
-    final boolean asynch = channel.readByte() == 'a';
+    final byte mode = channel.readByte();
+    final boolean asynch = mode == 'a';
 
     final OCommandRequestText command = (OCommandRequestText) OStreamSerializerAnyStreamable.INSTANCE.fromStream(channel
         .readBytes());
 
     connection.data.commandDetail = command.getText();
 
+    if (mode == 'c') {
+      // CURSOR
+      openCursor(command, channel.readInt());
+      return;
+    }
+
     // ENABLES THE CACHE TO IMPROVE PERFORMANCE OF COMPLEX COMMANDS LIKE TRAVERSE
     // connection.database.getLevel1Cache().setEnable(true);
     beginResponse();
@@ -1163,6 +1216,97 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  /**
+   * Opens a cursor over the result of the command and sends the first page.
+   */
+  protected void openCursor(final OCommandRequestText iCommand, final int iPageSize) throws IOException {
+    checkDatabase();
+
+    if (connection.countCursors() >= maxCursors)
+      throw new OCommandExecutionException("Cannot open more than " + maxCursors
+          + " cursors in the same session: close the unused ones or change the setting "
+          + OGlobalConfiguration.NETWORK_BINARY_CURSOR_MAX.getKey());
+
+    final OCommandCursor cursor = new OCommandCursor(connection.database, iCommand, cursorTimeout);
+    connection.addCursor(cursor);
+    sendCursorPage(cursor, iPageSize);
+  }
+
+  protected void fetchCursor() throws IOException {
+    setDataCommandInfo("Fetch the next page of a cursor");
+
+    final int cursorId = channel.readInt();
+    final int pageSize = channel.readInt();
+
+    checkDatabase();
+
+    final OCommandCursor cursor = connection.getCursor(cursorId);
+    if (cursor == null)
+      throw new OCommandExecutionException("Cursor " + cursorId + " not found: it has been closed or it expired after "
+          + cursorTimeout + "ms without fetches");
+
+    connection.data.commandDetail = cursor.getCommand().getText();
+    sendCursorPage(cursor, pageSize);
+  }
+
+  protected void closeCursor() throws IOException {
+    setDataCommandInfo("Close a cursor");
+
+    final OCommandCursor cursor = connection.removeCursor(channel.readInt());
+    if (cursor != null)
+      cursor.close();
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+    } finally {
+      endResponse();
+    }
+  }
+
+  /**
+   * Sends a page of records with the format of the asynchronous commands, followed by the cursor id or -1 if the cursor is
+   * finished.
+   */
+  private void sendCursorPage(final OCommandCursor iCursor, final int iPageSize) throws IOException {
+    final List<OIdentifiable> page;
+    try {
+      page = iCursor.fetch(iPageSize);
+    } finally {
+      if (iCursor.isFinished() || iCursor.isClosed())
+        connection.removeCursor(iCursor.id);
+    }
+
+    final String fetchPlanString = iCursor.getCommand().getFetchPlan();
+    final Map<String, Integer> fetchPlan = fetchPlanString != null && fetchPlanString.length() > 0 ? OFetchHelper
+        .buildFetchPlan(fetchPlanString) : null;
+    final Set<ODocument> recordsToSend = new HashSet<ODocument>();
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+
+      for (OIdentifiable o : page) {
+        channel.writeByte((byte) 1); // ONE MORE RECORD
+        writeIdentifiable(o.getRecord());
+
+        if (fetchPlan != null && o instanceof ODocument)
+          OFetchHelper.fetch((ODocument) o, o, fetchPlan, new ORemoteFetchListener(recordsToSend), new ORemoteFetchContext());
+      }
+
+      // SEND RECORDS TO LOAD IN CLIENT CACHE
+      for (ODocument doc : recordsToSend) {
+        channel.writeByte((byte) 2); // CLIENT CACHE RECORD. IT ISN'T PART OF THE RESULT SET
+        writeIdentifiable(doc);
+      }
+      channel.writeByte((byte) 0); // NO MORE RECORDS
+
+      channel.writeInt(iCursor.isFinished() ? -1 : iCursor.id);
+    } finally {
+      endResponse();
+    }
+  }
+
   /**
    * Use DATACLUSTER_COUNT
    * 
@@ -1365,6 +1509,157 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  /**
+   * Loads a set of records in one pass. The records are sent in the same order of the requested ids, followed by the records
+   * collected by the fetch plan for the client cache. Records not found are sent as missing. The whole request is read before
+   * checking the database, so a failure leaves nothing unread on the channel.
+   */
+  protected void readRecords() throws IOException {
+    setDataCommandInfo("Load records");
+
+    final int total = channel.readInt();
+    final List<ORecordId> rids = new ArrayList<ORecordId>(total);
+    for (int i = 0; i < total; ++i)
+      rids.add(channel.readRID());
+    final String fetchPlanString = channel.readString();
+    final boolean ignoreCache = channel.readByte() == 1;
+
+    checkDatabase();
+
+    final List<ORecordInternal<?>> records = new ArrayList<ORecordInternal<?>>(total);
+    for (ORecordId rid : rids)
+      records.add(connection.database.load(rid, fetchPlanString, ignoreCache));
+
+    final Set<ODocument> recordsToSend = new HashSet<ODocument>();
+    if (fetchPlanString.length() > 0) {
+      final Map<String, Integer> fetchPlan = OFetchHelper.buildFetchPlan(fetchPlanString);
+      final OFetchListener listener = new ORemoteFetchListener(recordsToSend);
+      final OFetchContext context = new ORemoteFetchContext();
+      for (ORecordInternal<?> record : records)
+        if (record instanceof ODocument)
+          OFetchHelper.fetch((ODocument) record, (ODocument) record, fetchPlan, listener, context);
+    }
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+
+      for (ORecordInternal<?> record : records) {
+        if (record != null) {
+          channel.writeByte((byte) 1); // HAS RECORD
+          channel.writeBytes(record.toStream());
+          channel.writeVersion(record.getRecordVersion());
+          channel.writeByte(record.getRecordType());
+        } else
+          channel.writeByte((byte) 0); // NOT FOUND
+      }
+
+      // SEND RECORDS TO LOAD IN CLIENT CACHE
+      for (ODocument d : recordsToSend) {
+        if (d.getIdentity().isValid() && !rids.contains(d.getIdentity())) {
+          channel.writeByte((byte) 2); // CLIENT CACHE
+          writeIdentifiable(d);
+        }
+      }
+      channel.writeByte((byte) 0); // NO MORE RECORDS
+
+    } finally {
+      endResponse();
+    }
+  }
+
+  /**
+   * Creates a set of records in one pass and sends back the outcome of each one: the position and the version of the record, or
+   * the exception that prevented its creation. The whole request is read before creating the first record, so a failure leaves
+   * nothing unread on the channel. The records are not created atomically: use a transaction for it.
+   */
+  protected void createRecords() throws IOException {
+    setDataCommandInfo("Create records");
+
+    final int dataSegmentId = channel.readInt();
+    final int total = channel.readInt();
+    final List<ORecordId> rids = new ArrayList<ORecordId>(total);
+    final List<byte[]> buffers = new ArrayList<byte[]>(total);
+    final byte[] recordTypes = new byte[total];
+    for (int i = 0; i < total; ++i) {
+      rids.add(new ORecordId(channel.readShort(), ORID.CLUSTER_POS_INVALID));
+      buffers.add(channel.readBytes());
+      recordTypes[i] = channel.readByte();
+    }
+
+    checkDatabase();
+
+    final Object[] outcomes = new Object[total];
+    for (int i = 0; i < total; ++i)
+      try {
+        outcomes[i] = createRecord(connection.database, rids.get(i), buffers.get(i), recordTypes[i], dataSegmentId);
+      } catch (Exception e) {
+        outcomes[i] = e;
+      }
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+      for (Object outcome : outcomes)
+        if (outcome instanceof ORecord<?>) {
+          channel.writeByte((byte) 1);
+          channel.writeClusterPosition(((ORecord<?>) outcome).getIdentity().getClusterPosition());
+          channel.writeVersion(((ORecord<?>) outcome).getRecordVersion());
+        } else {
+          channel.writeByte((byte) 0);
+          writeExceptionChain((Throwable) outcome);
+        }
+    } finally {
+      endResponse();
+    }
+  }
+
+  /**
+   * Updates a set of records in one pass and sends back the outcome of each one: the new version of the record, or the exception
+   * that prevented its update. The whole request is read before updating the first record, so a failure leaves nothing unread on
+   * the channel. The records are not updated atomically: use a transaction for it.
+   */
+  protected void updateRecords() throws IOException {
+    setDataCommandInfo("Update records");
+
+    final int total = channel.readInt();
+    final List<ORecordId> rids = new ArrayList<ORecordId>(total);
+    final List<byte[]> buffers = new ArrayList<byte[]>(total);
+    final List<ORecordVersion> versions = new ArrayList<ORecordVersion>(total);
+    final byte[] recordTypes = new byte[total];
+    for (int i = 0; i < total; ++i) {
+      rids.add(channel.readRID());
+      buffers.add(channel.readBytes());
+      versions.add(channel.readVersion());
+      recordTypes[i] = channel.readByte();
+    }
+
+    checkDatabase();
+
+    final Object[] outcomes = new Object[total];
+    for (int i = 0; i < total; ++i)
+      try {
+        outcomes[i] = updateRecord(connection.database, rids.get(i), buffers.get(i), versions.get(i), recordTypes[i]);
+      } catch (Exception e) {
+        outcomes[i] = e;
+      }
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+      for (Object outcome : outcomes)
+        if (outcome instanceof ORecordVersion) {
+          channel.writeByte((byte) 1);
+          channel.writeVersion((ORecordVersion) outcome);
+        } else {
+          channel.writeByte((byte) 0);
+          writeExceptionChain((Throwable) outcome);
+        }
+    } finally {
+      endResponse();
+    }
+  }
+
   protected void endResponse() throws IOException {
     channel.flush();
     channel.releaseExclusiveLock();
@@ -1384,6 +1679,12 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     connection.data.driverVersion = channel.readString();
     connection.data.protocolVersion = channel.readShort();
     connection.data.clientId = channel.readString();
+
+    if (connection.data.protocolVersion >= 16) {
+      // COMPRESSION REQUESTED BY THE CLIENT
+      final int compressionThreshold = channel.readInt();
+      connection.data.compressionThreshold = compressionEnabled ? compressionThreshold : 0;
+    }
   }
 
   private void sendDatabaseInformation() throws IOException {
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.record.ODatabaseFlat;
+import com.orientechnologies.orient.core.index.OIndexMVRBTreeAbstract;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ORecordFlat;
+import com.orientechnologies.orient.test.database.base.OrientMultiThreadTest;
+import com.orientechnologies.orient.test.database.base.OrientThreadTest;
+
+/**
+ * Looks up the keys of the dictionary, a unique index, from multiple threads at the same time. Run it with 1 thread and with as
+ * many threads as the cores to compare the throughput: the lookups share the index, so they should scale with the threads.
+ *
+ * Arguments: [url] [lookups] [threads] [keys]. The missing keys "doc-N" are created before the test, as DictionaryPutSpeedTest
+ * does.
+ */
+@Test(enabled = false)
+public class DictionaryLookupMultiThreadSpeedTest extends OrientMultiThreadTest {
+	private static int									keys;
+	private static final AtomicInteger	threadCounter	= new AtomicInteger();
+	private ODatabaseFlat								database;
+
+	public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+		if (iArgs.length > 0)
+			System.setProperty("url", iArgs[0]);
+
+		final int tot = iArgs.length > 1 ? Integer.parseInt(iArgs[1]) : 1000000;
+		final int threads = iArgs.length > 2 ? Integer.parseInt(iArgs[2]) : 4;
+		keys = iArgs.length > 3 ? Integer.parseInt(iArgs[3]) : 100000;
+
+		DictionaryLookupMultiThreadSpeedTest test = new DictionaryLookupMultiThreadSpeedTest(tot, threads);
+		test.data.go(test);
+	}
+
+	public DictionaryLookupMultiThreadSpeedTest(final int tot, final int threads) {
+		super(tot, threads, LookupThread.class);
+	}
+
+	@Override
+	public void init() {
+		// KEEP IT OPEN UNTIL THE END: A MEMORY DATABASE IS DROPPED WITH THE LAST CONNECTION
+		database = new ODatabaseFlat(System.getProperty("url"));
+		if (database.getURL().startsWith("memory:") && !database.exists())
+			database.create();
+		else
+			database.open("admin", "admin");
+
+		final long existent = database.getDictionary().size();
+		if (existent < keys) {
+			database.declareIntent(new OIntentMassiveInsert());
+			final ORecordFlat record = database.newInstance();
+			for (int id = (int) existent; id < keys; ++id) {
+				record.reset();
+				record.value("{ 'id' : " + id + " , 'name' : 'Gipsy' , 'type' : 'Cat' }");
+				record.save();
+				database.getDictionary().put("doc-" + id, record);
+			}
+			database.declareIntent(null);
+		}
+
+		// START WITH THE TREE ON DISK TO MEASURE THE CONCURRENT LOADING OF THE NODES TOO
+		((OIndexMVRBTreeAbstract<?>) database.getDictionary().getIndex().getInternal()).unload();
+
+		Orient.instance().getProfiler().startRecording();
+	}
+
+	@Test(enabled = false)
+	public static class LookupThread extends OrientThreadTest {
+		private ODatabaseFlat	database;
+		private int						offset;
+
+		@Override
+		public void init() {
+			database = new ODatabaseFlat(System.getProperty("url")).open("admin", "admin");
+
+			// EVERY THREAD STARTS FROM A DIFFERENT KEY
+			offset = threadCounter.getAndIncrement() * 7919;
+		}
+
+		public void cycle() {
+			final ORecordFlat value = database.getDictionary().get("doc-" + (offset + data.getCyclesDone()) % keys);
+			Assert.assertNotNull(value);
+		}
+
+		@Override
+		public void deinit() throws Exception {
+			if (database != null)
+				database.close();
+			super.deinit();
+		}
+	}
+
+	@Override
+	public void deinit() {
+		database.close();
+
+		System.out.println(Orient.instance().getProfiler().dump());
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.test.database.base.OrientMonoThreadTest;
+
+/**
+ * Searches paths between random vertexes of a scale-free graph built by preferential attachment: every new vertex is connected
+ * to -DedgesPerVertex vertexes chosen with a probability proportional to their degree. Run it with -Dfunction=dijkstra to search
+ * the cheapest paths instead of the shortest ones and with -Ddirection=out to follow the edges in one direction only. Run it with
+ * -DlightweightEdges=true to link the vertexes directly instead of creating the edges as documents.
+ */
+@Test(enabled = false)
+public class GraphPathFinderSpeedTest extends OrientMonoThreadTest {
+  private OGraphDatabase database;
+  private List<ORID>     vertexes;
+  private Random         random = new Random(1);
+  private String         function;
+  private String         direction;
+  private boolean        lightweightEdges;
+  private long           found;
+  private long           pathLength;
+
+  public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+    GraphPathFinderSpeedTest test = new GraphPathFinderSpeedTest();
+    test.data.go(test);
+  }
+
+  public GraphPathFinderSpeedTest() throws InstantiationException, IllegalAccessException {
+    super(1000);
+  }
+
+  @Override
+  public void init() {
+    database = new OGraphDatabase(System.getProperty("url", "memory:graphPathFinderSpeedTest"));
+    if (database.exists())
+      database.open("admin", "admin");
+    else
+      database.create();
+
+    function = System.getProperty("function", "shortestPath");
+    direction = System.getProperty("direction", "both");
+    lightweightEdges = Boolean.getBoolean("lightweightEdges");
+
+    createGraph(Integer.getInteger("vertexes", 100000), Integer.getInteger("edgesPerVertex", 3));
+  }
+
+  @Override
+  public void cycle() {
+    final ORID source = vertexes.get(random.nextInt(vertexes.size()));
+    final ORID destination = vertexes.get(random.nextInt(vertexes.size()));
+
+    final String weight = function.equalsIgnoreCase("dijkstra") ? "'weight', " : "";
+    final List<ODocument> result = database.query(new OSQLSynchQuery<ODocument>("select " + function + "(" + source + ", "
+        + destination + ", " + weight + "'" + direction + "') as path"));
+
+    final List<?> path = result.get(0).field("path");
+    if (path != null) {
+      found++;
+      pathLength += path.size() - 1;
+    }
+  }
+
+  @Override
+  public void deinit() {
+    System.out.println("Paths found: " + found + ", average length: " + (found > 0 ? (float) pathLength / found : 0));
+
+    if (database.getURL().startsWith("memory:"))
+      database.drop();
+    else
+      database.close();
+    super.deinit();
+  }
+
+  private void createGraph(final int iVertexes, final int iEdgesPerVertex) {
+    database.declareIntent(new OIntentMassiveInsert());
+    database.setUseLightweightEdges(lightweightEdges);
+
+    final long start = System.currentTimeMillis();
+
+    vertexes = new ArrayList<ORID>(iVertexes);
+
+    // EVERY VERTEX APPEARS ONCE PER EDGE: PICKING A RANDOM ITEM CHOOSES A VERTEX PROPORTIONALLY TO ITS DEGREE
+    final List<ODocument> endpoints = new ArrayList<ODocument>(iVertexes * iEdgesPerVertex * 2);
+
+    for (int i = 0; i < iVertexes; ++i) {
+      final ODocument vertex = database.createVertex();
+      vertex.field("id", i);
+      vertex.save();
+      vertexes.add(vertex.getIdentity());
+
+      for (int e = 0; e < iEdgesPerVertex && !endpoints.isEmpty(); ++e) {
+        final ODocument target = endpoints.get(random.nextInt(endpoints.size()));
+
+        final boolean out = random.nextBoolean();
+        if (lightweightEdges) {
+          if (out)
+            database.createLightweightEdge(vertex, target);
+          else
+            database.createLightweightEdge(target, vertex);
+          target.save();
+          vertex.save();
+        } else {
+          final ODocument edge = out ? database.createEdge(vertex, target) : database.createEdge(target, vertex);
+          edge.field("weight", 1 + random.nextInt(100));
+          edge.save();
+        }
+
+        endpoints.add(target);
+        endpoints.add(vertex);
+      }
+
+      if (endpoints.isEmpty())
+        endpoints.add(vertex);
+    }
+
+    database.declareIntent(null);
+
+    System.out.println("Created a graph of " + iVertexes + " vertexes in " + (System.currentTimeMillis() - start) + "ms");
+  }
+}
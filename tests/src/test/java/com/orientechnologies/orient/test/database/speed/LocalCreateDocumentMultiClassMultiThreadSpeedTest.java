@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.tx.OTransaction.TXTYPE;
+import com.orientechnologies.orient.test.database.base.OrientThreadTest;
+
+/**
+ * Creates documents from multiple threads against N classes, each one with its own data segment, and reports the throughput for
+ * every number of threads. Run it with -Dstorage.lockPerCluster=true to compare with the storage-wide lock.
+ */
+@Test(enabled = false)
+public class LocalCreateDocumentMultiClassMultiThreadSpeedTest extends LocalCreateDocumentMultiThreadSpeedTest {
+	private static final AtomicInteger	threadCounter	= new AtomicInteger();
+	private static int									classes;
+	private long												elapsed;
+
+	public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+		if (iArgs.length > 0)
+			System.setProperty("url", iArgs[0]);
+
+		final int tot = iArgs.length > 1 ? Integer.parseInt(iArgs[1]) : 1000000;
+		classes = iArgs.length > 2 ? Integer.parseInt(iArgs[2]) : 8;
+		final int maxThreads = iArgs.length > 3 ? Integer.parseInt(iArgs[3]) : 32;
+
+		final Map<Integer, Float> results = new LinkedHashMap<Integer, Float>();
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			final LocalCreateDocumentMultiClassMultiThreadSpeedTest test = new LocalCreateDocumentMultiClassMultiThreadSpeedTest(tot,
+					threads);
+			test.data.go(test);
+			results.put(threads, test.elapsed > 0 ? (float) tot / test.elapsed * 1000 : 0f);
+		}
+
+		System.out.println("\nlockPerCluster=" + OGlobalConfiguration.STORAGE_LOCK_PER_CLUSTER.getValueAsBoolean() + ", classes="
+				+ classes);
+		for (Map.Entry<Integer, Float> entry : results.entrySet())
+			System.out.println("- threads " + entry.getKey() + ": " + entry.getValue() + " records/sec");
+	}
+
+	public LocalCreateDocumentMultiClassMultiThreadSpeedTest(final int iTot, final int iThreads) {
+		super(iTot, iThreads, CreateObjectsThread.class);
+	}
+
+	@Override
+	public void init() {
+		super.init();
+
+		threadCounter.set(0);
+		for (int i = 0; i < classes; ++i) {
+			database.addDataSegment("account" + i, null);
+			database.getMetadata().getSchema().createClass("Account" + i);
+		}
+	}
+
+	@Override
+	public void cycle() throws InterruptedException {
+		final long start = System.currentTimeMillis();
+		super.cycle();
+		elapsed = System.currentTimeMillis() - start;
+	}
+
+	@Test(enabled = false)
+	public static class CreateObjectsThread extends OrientThreadTest {
+		private ODatabaseDocument	database;
+		private ODocument					record;
+		private Date							date	= new Date();
+		private String						className;
+		private String						dataSegmentName;
+
+		@Override
+		public void init() {
+			final int classId = threadCounter.getAndIncrement() % classes;
+			className = "Account" + classId;
+			dataSegmentName = "account" + classId;
+
+			database = new ODatabaseDocumentTx(System.getProperty("url")).open("admin", "admin");
+			record = database.newInstance();
+			database.declareIntent(new OIntentMassiveInsert());
+			database.begin(TXTYPE.NOTX);
+		}
+
+		public void cycle() {
+			record.reset();
+
+			record.setClassName(className);
+			record.setDataSegmentName(dataSegmentName);
+			record.field("id", data.getCyclesDone());
+			record.field("name", "Luca");
+			record.field("surname", "Garulli");
+			record.field("birthDate", date);
+			record.field("salary", 3000f + data.getCyclesDone());
+
+			record.save();
+
+			if (data.getCyclesDone() == data.getCycles() - 1)
+				database.commit();
+		}
+
+		@Override
+		public void deinit() throws Exception {
+			if (database != null)
+				database.close();
+			super.deinit();
+		}
+	}
+
+	@Override
+	public void deinit() {
+		long total = 0;
+		for (int i = 0; i < classes; ++i)
+			total += database.countClass("Account" + i);
+
+		System.out.println("\nTotal objects in Account classes after the test: " + total);
+		Assert.assertEquals(total - foundObjects, threadCycles / threads * threads);
+
+		if (database != null)
+			database.close();
+	}
+}
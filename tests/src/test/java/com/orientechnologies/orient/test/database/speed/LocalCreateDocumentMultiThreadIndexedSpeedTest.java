@@ -80,12 +80,17 @@ public class LocalCreateDocumentMultiThreadIndexedSpeedTest extends OrientMultiT
 			if (c == null)
 				c = database.getMetadata().getSchema().createClass("Account");
 
-			OProperty p = database.getMetadata().getSchema().getClass("Account").getProperty("id");
-			if (p == null)
-				p = database.getMetadata().getSchema().getClass("Account").createProperty("id", OType.INTEGER);
-
-			if (!p.isIndexed())
-				p.createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+			// EVERY FIELD IS INDEXED
+			final String[] fields = { "id", "name", "surname", "birthDate", "salary" };
+			final OType[] types = { OType.INTEGER, OType.STRING, OType.STRING, OType.DATETIME, OType.FLOAT };
+			for (int i = 0; i < fields.length; ++i) {
+				OProperty p = c.getProperty(fields[i]);
+				if (p == null)
+					p = c.createProperty(fields[i], types[i]);
+
+				if (!p.isIndexed())
+					p.createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+			}
 		}
 
 		System.out.println("\nTotal objects in Animal cluster before the test: " + foundObjects);
@@ -30,8 +30,8 @@ import com.orientechnologies.orient.test.database.base.OrientThreadTest;
 
 @Test(enabled = false)
 public class LocalCreateDocumentMultiThreadSpeedTest extends OrientMultiThreadTest {
-	private ODatabaseDocument	database;
-	private long							foundObjects;
+	protected ODatabaseDocument	database;
+	protected long							foundObjects;
 
 	public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
 		// System.setProperty("url", "memory:test");
@@ -43,6 +43,11 @@ public class LocalCreateDocumentMultiThreadSpeedTest extends OrientMultiThreadTe
 		super(1000000, 200, CreateObjectsThread.class);
 	}
 
+	protected LocalCreateDocumentMultiThreadSpeedTest(final int iCycles, final int iThreads,
+			final Class<? extends OrientThreadTest> iThreadClass) {
+		super(iCycles, iThreads, iThreadClass);
+	}
+
 	@Override
 	public void init() {
 		database = new ODatabaseDocumentTx(System.getProperty("url"));
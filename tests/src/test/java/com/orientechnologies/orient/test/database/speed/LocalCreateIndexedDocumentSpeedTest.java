@@ -15,21 +15,32 @@
  */
 package com.orientechnologies.orient.test.database.speed;
 
+import java.util.Random;
+
 import org.testng.annotations.Test;
 
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.tx.OTransaction.TXTYPE;
 import com.orientechnologies.orient.test.database.base.OrientMonoThreadTest;
 
+/**
+ * Creates the documents and then the index on them. The index type is set with the "indexType" property, UNIQUE by default, to
+ * compare the MVRB-tree with the B-tree. Once created, the index is used for range queries.
+ */
 @Test(enabled = false)
 public class LocalCreateIndexedDocumentSpeedTest extends OrientMonoThreadTest {
-	private ODatabaseDocument	database;
-	private ODocument					record;
+	private static final int		RANGE_QUERIES	= 10000;
+	private static final int		RANGE_SIZE		= 1000;
+
+	private ODatabaseDocument		database;
+	private ODocument						record;
+	private OClass.INDEX_TYPE		indexType;
 
 	public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
 		LocalCreateIndexedDocumentSpeedTest test = new LocalCreateIndexedDocumentSpeedTest();
@@ -46,6 +57,7 @@ public class LocalCreateIndexedDocumentSpeedTest extends OrientMonoThreadTest {
 
 		database = new ODatabaseDocumentTx(System.getProperty("url")).open("admin", "admin");
 		record = database.newInstance();
+		indexType = OClass.INDEX_TYPE.valueOf(System.getProperty("indexType", OClass.INDEX_TYPE.UNIQUE.toString()));
 
 		// REMOVE THE INDEX
 		System.out.println("Remove index...");
@@ -70,9 +82,27 @@ public class LocalCreateIndexedDocumentSpeedTest extends OrientMonoThreadTest {
 		if (data.getCyclesDone() == data.getCycles() - 1) {
 			database.commit();
 
-			System.out.println("\nIndexing...");
-			database.getMetadata().getSchema().getClass("Profile").getProperty("nick").createIndex(OClass.INDEX_TYPE.UNIQUE);
-			System.out.println("Done");
+			System.out.println("\nIndexing with " + indexType + "...");
+			long start = System.currentTimeMillis();
+			final OIndex<?> index = database.getMetadata().getSchema().getClass("Profile").getProperty("nick").createIndex(indexType);
+			System.out.println("Done in " + (System.currentTimeMillis() - start) + "ms");
+
+			System.out.println("Range queries...");
+			final Random random = new Random(0);
+			long found = 0;
+			start = System.currentTimeMillis();
+			for (int i = 0; i < RANGE_QUERIES; i++) {
+				final int from = 100 + random.nextInt((int) data.getCycles() - RANGE_SIZE);
+				// THE KEYS ARE STRINGS: "999" FOLLOWS "1099"
+				final String fromKey = String.valueOf(from);
+				final String toKey = String.valueOf(from + RANGE_SIZE);
+				if (fromKey.compareTo(toKey) < 0)
+					found += index.getValuesBetween(fromKey, toKey).size();
+				else
+					found += index.getValuesBetween(toKey, fromKey).size();
+			}
+			System.out.println("Done " + RANGE_QUERIES + " queries returning " + found + " records in "
+					+ (System.currentTimeMillis() - start) + "ms");
 		}
 	}
 
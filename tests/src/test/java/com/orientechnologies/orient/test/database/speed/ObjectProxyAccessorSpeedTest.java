@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.object.db.OObjectDatabaseTx;
+import com.orientechnologies.orient.test.database.base.OrientMonoThreadTest;
+import com.orientechnologies.orient.test.domain.business.Account;
+
+/**
+ * Calls the getters and setters of a proxied object.
+ */
+@Test(enabled = false)
+public class ObjectProxyAccessorSpeedTest extends OrientMonoThreadTest {
+  private OObjectDatabaseTx database;
+  private Account           account;
+  private Date              date = new Date();
+
+  public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+    ObjectProxyAccessorSpeedTest test = new ObjectProxyAccessorSpeedTest();
+    test.data.go(test);
+  }
+
+  public ObjectProxyAccessorSpeedTest() throws InstantiationException, IllegalAccessException {
+    super(1000000);
+  }
+
+  @Override
+  public void init() {
+    database = new OObjectDatabaseTx(System.getProperty("url", "memory:proxyAccessorSpeedTest"));
+    if (database.exists())
+      database.open("admin", "admin");
+    else
+      database.create();
+    database.getEntityManager().registerEntityClass(Account.class);
+
+    account = database.newInstance(Account.class);
+  }
+
+  @Override
+  public void cycle() {
+    account.setName("Luca");
+    account.setSurname("Garulli");
+    account.setBirthDate(date);
+    account.setSalary(3000f + data.getCyclesDone());
+
+    if (!account.getName().equals("Luca") || account.getSurname().length() != 7 || !account.getBirthDate().equals(date)
+        || account.getSalary() < 3000f)
+      throw new IllegalStateException("Wrong value read from the proxied object");
+  }
+
+  @Override
+  public void deinit() {
+    if (database.getURL().startsWith("memory:"))
+      database.drop();
+    else
+      database.close();
+    super.deinit();
+  }
+}
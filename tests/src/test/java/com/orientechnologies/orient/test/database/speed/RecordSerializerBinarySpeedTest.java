@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializerFactory;
+import com.orientechnologies.orient.test.database.base.OrientMonoThreadTest;
+
+/**
+ * Serializes a document and reads back one of its fields. Run it with -Dformat=csv to compare the binary record format against
+ * the CSV one.
+ */
+@Test(enabled = false)
+public class RecordSerializerBinarySpeedTest extends OrientMonoThreadTest {
+  private ODatabaseDocumentTx database;
+  private ORecordSerializer   serializer;
+  private ODocument           record;
+  private long                bytes;
+
+  public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+    RecordSerializerBinarySpeedTest test = new RecordSerializerBinarySpeedTest();
+    test.data.go(test);
+  }
+
+  public RecordSerializerBinarySpeedTest() throws InstantiationException, IllegalAccessException {
+    super(1000000);
+  }
+
+  @Override
+  public void init() {
+    database = new ODatabaseDocumentTx(System.getProperty("url", "memory:recordSerializerSpeedTest"));
+    if (database.exists())
+      database.open("admin", "admin");
+    else
+      database.create();
+
+    final OClass account = database.getMetadata().getSchema().getOrCreateClass("Account");
+    if (!account.existsProperty("name")) {
+      account.createProperty("id", OType.LONG);
+      account.createProperty("name", OType.STRING);
+      account.createProperty("surname", OType.STRING);
+      account.createProperty("birthDate", OType.DATETIME);
+      account.createProperty("salary", OType.FLOAT);
+    }
+
+    database.set(ODatabase.ATTRIBUTES.RECORDFORMAT, System.getProperty("format", "binary"));
+    final String format = (String) database.get(ODatabase.ATTRIBUTES.RECORDFORMAT);
+    serializer = ORecordSerializerFactory.instance().getFormat(format);
+    System.out.println("Record format: " + format);
+
+    record = new ODocument("Account");
+    record.field("name", "Luca");
+    record.field("surname", "Garulli");
+    record.field("birthDate", new Date());
+    record.field("city", "Rome");
+    record.field("tags", new ArrayList<String>(Arrays.asList("admin", "developer")));
+  }
+
+  @Override
+  public void cycle() {
+    record.field("id", data.getCyclesDone());
+    record.field("salary", 3000f + data.getCyclesDone());
+
+    final byte[] content = serializer.toStream(record, false);
+    bytes += content.length;
+
+    final ODocument loaded = (ODocument) serializer.fromStream(content, new ODocument(), new String[] { "surname" });
+    if (!"Garulli".equals(loaded.field("surname")))
+      throw new IllegalStateException("Wrong value read from the record");
+  }
+
+  @Override
+  public void deinit() {
+    System.out.println("Average record size: " + (bytes / data.getCyclesDone()) + " bytes");
+
+    if (database.getURL().startsWith("memory:"))
+      database.drop();
+    else
+      database.close();
+    super.deinit();
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.client.remote.OStorageRemoteThread;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+
+/**
+ * Compares the creation and the loading of documents one at a time against the batched requests, through a proxy that adds a
+ * latency to every packet to simulate a remote server on loopback.
+ *
+ * Arguments: [documents] [batch size] [latency in ms]. The server is taken from the system property "url", for example
+ * -Durl=remote:localhost/demo.
+ */
+@Test(enabled = false)
+public class RemoteBatchCreateDocumentSpeedTest {
+  public static void main(String[] args) throws Exception {
+    final String url = System.getProperty("url", "remote:localhost/demo");
+    final int total = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    final int batch = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    final int latency = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+    final String address = url.substring("remote:".length(), url.lastIndexOf('/'));
+    final String host = address.contains(":") ? address.substring(0, address.indexOf(':')) : address;
+    final int port = address.contains(":") ? Integer.parseInt(address.substring(address.indexOf(':') + 1)) : 2424;
+
+    final ServerSocket proxy = new ServerSocket(0);
+    startProxy(proxy, host, port, latency);
+    final String proxyUrl = "remote:localhost:" + proxy.getLocalPort() + url.substring(url.lastIndexOf('/'));
+
+    final ODatabaseDocumentTx database = new ODatabaseDocumentTx(proxyUrl).open("admin", "admin");
+    try {
+      if (!database.getMetadata().getSchema().existsClass("Account"))
+        database.getMetadata().getSchema().createClass("Account");
+      final int clusterId = database.getClusterIdByName("account");
+
+      // ONE DOCUMENT AT A TIME
+      final List<ORID> rids = new ArrayList<ORID>();
+      long begin = System.currentTimeMillis();
+      for (int i = 0; i < total; ++i)
+        rids.add(createDocument(i).save().getIdentity());
+      System.out.printf("Created %d documents one at a time in %dms\n", total, System.currentTimeMillis() - begin);
+
+      clearCaches(database);
+      begin = System.currentTimeMillis();
+      for (ORID rid : rids)
+        database.load(rid);
+      System.out.printf("Loaded %d documents one at a time in %dms\n", total, System.currentTimeMillis() - begin);
+
+      // BATCHES OF DOCUMENTS
+      final OStorageRemoteThread storage = (OStorageRemoteThread) database.getStorage();
+      rids.clear();
+      begin = System.currentTimeMillis();
+      for (int i = 0; i < total; i += batch) {
+        final List<ORecordId> batchRids = new ArrayList<ORecordId>();
+        final List<ORawBuffer> contents = new ArrayList<ORawBuffer>();
+        for (int k = i; k < Math.min(total, i + batch); ++k) {
+          final ODocument doc = createDocument(k);
+          batchRids.add(new ORecordId(clusterId, ORID.CLUSTER_POS_INVALID));
+          contents.add(new ORawBuffer(doc.toStream(), doc.getRecordVersion(), doc.getRecordType()));
+        }
+        storage.createRecords(0, batchRids, contents);
+        rids.addAll(batchRids);
+      }
+      System.out.printf("Created %d documents in batches of %d in %dms\n", total, batch, System.currentTimeMillis() - begin);
+
+      clearCaches(database);
+      begin = System.currentTimeMillis();
+      for (int i = 0; i < total; i += batch)
+        database.load(rids.subList(i, Math.min(total, i + batch)), null, false);
+      System.out.printf("Loaded %d documents in batches of %d in %dms\n", total, batch, System.currentTimeMillis() - begin);
+
+    } finally {
+      database.close();
+      proxy.close();
+    }
+  }
+
+  private static void clearCaches(final ODatabaseDocumentTx iDatabase) {
+    iDatabase.getLevel1Cache().clear();
+    iDatabase.getLevel2Cache().clear();
+  }
+
+  private static ODocument createDocument(final int i) {
+    return new ODocument("Account").field("id", i).field("name", "Luca").field("surname", "Garulli").field("salary", 3000f + i);
+  }
+
+  /**
+   * Forwards the connections to the server delaying every packet in both the directions.
+   */
+  private static void startProxy(final ServerSocket iProxy, final String iHost, final int iPort, final int iLatency) {
+    final Thread acceptor = new Thread() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final Socket client = iProxy.accept();
+            final Socket server = new Socket(iHost, iPort);
+            client.setTcpNoDelay(true);
+            server.setTcpNoDelay(true);
+            pipe(client.getInputStream(), server.getOutputStream(), iLatency);
+            pipe(server.getInputStream(), client.getOutputStream(), iLatency);
+          }
+        } catch (Exception e) {
+          // PROXY CLOSED
+        }
+      }
+    };
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  private static void pipe(final InputStream iIn, final OutputStream iOut, final int iLatency) {
+    final Thread pipe = new Thread() {
+      @Override
+      public void run() {
+        final byte[] buffer = new byte[65536];
+        try {
+          int read;
+          while ((read = iIn.read(buffer)) > -1) {
+            Thread.sleep(iLatency);
+            iOut.write(buffer, 0, read);
+            iOut.flush();
+          }
+        } catch (Exception e) {
+          // CONNECTION CLOSED
+        } finally {
+          try {
+            iOut.close();
+          } catch (Exception e) {
+          }
+        }
+      }
+    };
+    pipe.setDaemon(true);
+    pipe.start();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Measures the throughput of a few active clients while thousands of idle connections are open against the same binary listener.
+ * Run it against a server with and without the parameter "network.binary.selector.enabled" on the binary listener, and compare
+ * the throughput and the number of threads of the server (with jstack or the JMX console). With a thread per connection the server
+ * needs one thread per idle connection; with the selector only the workers.
+ *
+ * Arguments: [idle connections] [active clients] [seconds]. The server is taken from the system property "url", for example
+ * -Durl=remote:localhost/demo.
+ */
+@Test(enabled = false)
+public class RemoteConnectionScalingSpeedTest {
+  public static void main(String[] args) throws Exception {
+    final String url = System.getProperty("url", "remote:localhost/demo");
+    final int idle = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    final int active = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    final long duration = (args.length > 2 ? Integer.parseInt(args[2]) : 30) * 1000l;
+
+    final String address = url.substring("remote:".length(), url.lastIndexOf('/'));
+    final String host = address.contains(":") ? address.substring(0, address.indexOf(':')) : address;
+    final int port = address.contains(":") ? Integer.parseInt(address.substring(address.indexOf(':') + 1)) : 2424;
+
+    // OPEN THE IDLE CONNECTIONS: THEY ONLY RECEIVE THE PROTOCOL VERSION
+    final List<Socket> idleSockets = new ArrayList<Socket>();
+    long begin = System.currentTimeMillis();
+    for (int i = 0; i < idle; ++i) {
+      final Socket socket = new Socket();
+      socket.connect(new InetSocketAddress(host, port));
+      new DataInputStream(socket.getInputStream()).readShort();
+      idleSockets.add(socket);
+    }
+    System.out.printf("%d idle connections opened in %dms\n", idle, System.currentTimeMillis() - begin);
+
+    final ODatabaseDocumentTx database = new ODatabaseDocumentTx(url).open("admin", "admin");
+    if (!database.getMetadata().getSchema().existsClass("ScalingTest"))
+      database.getMetadata().getSchema().createClass("ScalingTest");
+    if (database.countClass("ScalingTest") == 0)
+      for (int i = 0; i < 100; ++i)
+        new ODocument("ScalingTest").field("id", i).field("name", "test" + i).save();
+    database.close();
+
+    final AtomicLong operations = new AtomicLong();
+    final AtomicLong totalLatency = new AtomicLong();
+    final AtomicLong maxLatency = new AtomicLong();
+    final Thread[] clients = new Thread[active];
+    final long end = System.currentTimeMillis() + duration;
+    for (int i = 0; i < active; ++i) {
+      clients[i] = new Thread() {
+        @Override
+        public void run() {
+          final ODatabaseDocumentTx db = new ODatabaseDocumentTx(url).open("admin", "admin");
+          try {
+            final OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<ODocument>("select from ScalingTest where id = ?");
+            int i = 0;
+            while (System.currentTimeMillis() < end) {
+              final long start = System.nanoTime();
+              db.query(query, i++ % 100);
+              final long latency = System.nanoTime() - start;
+
+              operations.incrementAndGet();
+              totalLatency.addAndGet(latency);
+              long max;
+              while ((max = maxLatency.get()) < latency && !maxLatency.compareAndSet(max, latency))
+                ;
+            }
+          } finally {
+            db.close();
+          }
+        }
+      };
+      clients[i].start();
+    }
+
+    for (Thread client : clients)
+      client.join();
+
+    System.out.printf("idle=%d active=%d operations/sec=%d avg latency=%.3fms max latency=%.3fms\n", idle, active,
+        operations.get() * 1000 / duration, totalLatency.get() / 1000000d / Math.max(1, operations.get()),
+        maxLatency.get() / 1000000d);
+
+    for (Socket socket : idleSockets)
+      socket.close();
+  }
+}
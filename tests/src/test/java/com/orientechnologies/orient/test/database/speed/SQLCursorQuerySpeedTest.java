@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLCursorQuery;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Reads a large result with a synchronous query and with a cursor, printing the time and the heap used by the client. Run it with a
+ * small heap to see the synchronous query fail where the cursor doesn't.
+ *
+ * Arguments: [records] [page size]. The server is taken from the system property "url", for example -Durl=remote:localhost/demo.
+ */
+@Test(enabled = false)
+public class SQLCursorQuerySpeedTest {
+  public static void main(String[] args) throws Exception {
+    final String url = System.getProperty("url", "remote:localhost/demo");
+    final int total = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    final int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : OSQLCursorQuery.DEFAULT_PAGE_SIZE;
+
+    final ODatabaseDocumentTx database = new ODatabaseDocumentTx(url).open("admin", "admin");
+    try {
+      if (!database.getMetadata().getSchema().existsClass("CursorTest"))
+        database.getMetadata().getSchema().createClass("CursorTest");
+
+      final long existent = database.countClass("CursorTest");
+      if (existent < total) {
+        database.declareIntent(new OIntentMassiveInsert());
+        final ODocument doc = new ODocument();
+        for (long i = existent; i < total; ++i) {
+          doc.reset();
+          doc.setClassName("CursorTest");
+          doc.field("id", i).field("name", "name" + i).field("description", "description of the record " + i).save();
+        }
+        database.declareIntent(null);
+      }
+
+      // RETAIN ONLY WHAT THE LISTENER RETAINS
+      database.getLevel1Cache().setEnable(false);
+
+      final long[] count = new long[1];
+      final long[] maxHeap = new long[1];
+      long begin = System.currentTimeMillis();
+      database.command(new OSQLCursorQuery<ODocument>("select from CursorTest", pageSize, new OCommandResultListener() {
+        public boolean result(final Object iRecord) {
+          if (++count[0] % 10000 == 0)
+            maxHeap[0] = Math.max(maxHeap[0], usedHeap());
+          return true;
+        }
+
+        public void end() {
+        }
+      })).execute();
+      System.out.printf("Cursor: %d records in %dms, max heap used %dMB\n", count[0], System.currentTimeMillis() - begin,
+          maxHeap[0] / 1048576);
+
+      begin = System.currentTimeMillis();
+      final List<ODocument> result = database.query(new OSQLSynchQuery<ODocument>("select from CursorTest"));
+      System.out.printf("Synchronous: %d records in %dms, heap used %dMB\n", result.size(), System.currentTimeMillis() - begin,
+          usedHeap() / 1048576);
+
+    } finally {
+      database.close();
+    }
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Compares the sequential and the parallel scan of a class without indexes. Run it once with 0 threads and once with the number
+ * of cores. The level-1 cache is disabled because the database instances of the parallel scan don't use it.
+ *
+ * Arguments: [threads] [records]
+ */
+@Test(enabled = false)
+public class SQLParallelScanSpeedTest {
+  private static final String URL   = "local:target/parallelScanTest";
+  private static final String QUERY = "select from Account where name like '%9' and salary > 1000";
+
+  public static void main(String[] args) {
+    final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    final int records = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(threads);
+    OGlobalConfiguration.CACHE_LEVEL1_ENABLED.setValue(false);
+
+    ODatabaseDocumentTx database = new ODatabaseDocumentTx(URL);
+    if (database.exists())
+      database.open("admin", "admin");
+    else
+      database.create();
+
+    if (!database.getMetadata().getSchema().existsClass("Account")) {
+      database.getMetadata().getSchema().createClass("Account");
+      database.declareIntent(new OIntentMassiveInsert());
+      for (int i = 0; i < records; ++i)
+        new ODocument("Account").field("id", i).field("name", "Account" + i).field("salary", i % 5000).save();
+      database.declareIntent(null);
+    }
+
+    try {
+      for (int i = 0; i < 5; ++i) {
+        final long begin = System.currentTimeMillis();
+        final List<ODocument> result = database.query(new OSQLSynchQuery<ODocument>(QUERY));
+        System.out.printf("threads=%d records=%d found=%d elapsed=%dms\n", threads, database.countClass("Account"), result.size(),
+            System.currentTimeMillis() - begin);
+      }
+    } finally {
+      database.close();
+    }
+  }
+}
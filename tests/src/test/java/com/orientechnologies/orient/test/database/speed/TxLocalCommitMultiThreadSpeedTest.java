@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.tx.OTransaction.TXTYPE;
+import com.orientechnologies.orient.test.database.base.OrientMultiThreadTest;
+import com.orientechnologies.orient.test.database.base.OrientThreadTest;
+
+/**
+ * Commits one small transaction per cycle from multiple threads with the TX log synchronized on disk, and reports the commits per
+ * second for every number of threads. Run it with -Dtx.log.groupCommit=true to compare with a synch per log entry.
+ */
+@Test(enabled = false)
+public class TxLocalCommitMultiThreadSpeedTest extends OrientMultiThreadTest {
+	private ODatabaseDocumentTx	database;
+	private long								foundObjects;
+	private long								elapsed;
+
+	public static void main(String[] iArgs) throws InstantiationException, IllegalAccessException {
+		if (iArgs.length > 0)
+			System.setProperty("url", iArgs[0]);
+
+		final int tot = iArgs.length > 1 ? Integer.parseInt(iArgs[1]) : 10000;
+		final int maxThreads = iArgs.length > 2 ? Integer.parseInt(iArgs[2]) : 32;
+
+		OGlobalConfiguration.TX_LOG_SYNCH.setValue(true);
+		OGlobalConfiguration.STORAGE_LOCK_PER_CLUSTER.setValue(true);
+		Orient.instance().getProfiler().startRecording();
+
+		final Map<Integer, Float> results = new LinkedHashMap<Integer, Float>();
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			final TxLocalCommitMultiThreadSpeedTest test = new TxLocalCommitMultiThreadSpeedTest(tot, threads);
+			test.data.go(test);
+			results.put(threads, test.elapsed > 0 ? (float) tot / test.elapsed * 1000 : 0f);
+		}
+
+		System.out.println("\ngroupCommit=" + OGlobalConfiguration.TX_LOG_GROUP_COMMIT.getValueAsBoolean());
+		for (Map.Entry<Integer, Float> entry : results.entrySet())
+			System.out.println("- threads " + entry.getKey() + ": " + entry.getValue() + " commits/sec");
+
+		System.out.println(Orient.instance().getProfiler().dump());
+	}
+
+	public TxLocalCommitMultiThreadSpeedTest(final int iTot, final int iThreads) {
+		super(iTot, iThreads, CommitThread.class);
+	}
+
+	@Override
+	public void init() {
+		database = new ODatabaseDocumentTx(System.getProperty("url")).open("admin", "admin");
+
+		if (!database.getMetadata().getSchema().existsClass("Account"))
+			database.getMetadata().getSchema().createClass("Account");
+
+		foundObjects = database.countClass("Account");
+	}
+
+	@Override
+	public void cycle() throws InterruptedException {
+		final long start = System.currentTimeMillis();
+		super.cycle();
+		elapsed = System.currentTimeMillis() - start;
+	}
+
+	@Test(enabled = false)
+	public static class CommitThread extends OrientThreadTest {
+		private ODatabaseDocumentTx	database;
+
+		@Override
+		public void init() {
+			database = new ODatabaseDocumentTx(System.getProperty("url")).open("admin", "admin");
+		}
+
+		public void cycle() {
+			database.begin(TXTYPE.OPTIMISTIC);
+
+			final ODocument record = new ODocument("Account");
+			record.field("id", data.getCyclesDone());
+			record.field("name", "Luca");
+			record.field("surname", "Garulli");
+			record.save();
+
+			database.commit();
+		}
+
+		@Override
+		public void deinit() throws Exception {
+			if (database != null)
+				database.close();
+			super.deinit();
+		}
+	}
+
+	@Override
+	public void deinit() {
+		final long total = database.countClass("Account");
+		System.out.println("\nCommitted transactions: " + (total - foundObjects) + " in " + elapsed + "ms");
+		Assert.assertEquals(total - foundObjects, threadCycles / threads * threads);
+
+		if (database != null)
+			database.close();
+	}
+}
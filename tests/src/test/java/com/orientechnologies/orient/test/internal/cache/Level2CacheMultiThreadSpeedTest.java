@@ -0,0 +1,133 @@
+package com.orientechnologies.orient.test.internal.cache;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.cache.OCache;
+import com.orientechnologies.orient.core.cache.ODefaultCache;
+import com.orientechnologies.orient.core.cache.OSegmentedCache;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Compares throughput and hit ratio of the level-2 cache implementations from 1 to 64 threads. Every thread reads records with a
+ * skewed distribution (few hot records, many cold ones) following the level-2 cache patterns: a part of the reads pops the record
+ * under the record lock and puts it back (POP_RECORD strategy), the others just look it up (COPY_RECORD strategy), and every miss
+ * puts the record loaded.
+ *
+ * Arguments: [records] [cache limit] [seconds per run] [% of pop reads]
+ */
+@Test(enabled = false)
+public class Level2CacheMultiThreadSpeedTest {
+  private final int     records;
+  private final int     limit;
+  private final long    duration;
+  private final int     popPercent;
+
+  public static void main(String[] args) throws Exception {
+    final int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    final int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    final int popPercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+    final Level2CacheMultiThreadSpeedTest test = new Level2CacheMultiThreadSpeedTest(records, limit, seconds * 1000l, popPercent);
+
+    System.out.printf("records=%d limit=%d pop reads=%d%%\n", records, limit, popPercent);
+    System.out.printf("%-16s %8s %14s %10s\n", "cache", "threads", "ops/sec", "hit ratio");
+    for (int threads = 1; threads <= 64; threads *= 2) {
+      test.run(new ODefaultCache(null, limit), threads);
+      test.run(new OSegmentedCache(null, limit), threads);
+    }
+  }
+
+  public Level2CacheMultiThreadSpeedTest(final int iRecords, final int iLimit, final long iDuration, final int iPopPercent) {
+    records = iRecords;
+    limit = iLimit;
+    duration = iDuration;
+    popPercent = iPopPercent;
+  }
+
+  public void run(final OCache cache, final int threads) throws InterruptedException {
+    cache.enable();
+
+    // WARM UP THE CACHE WITH THE HOT RECORDS
+    final Random random = new Random(0);
+    for (int i = 0; i < limit; ++i)
+      cache.put(new ODocument(nextRid(random)));
+
+    final AtomicLong operations = new AtomicLong();
+    final AtomicLong hits = new AtomicLong();
+    final CountDownLatch start = new CountDownLatch(1);
+    final long[] deadline = new long[1];
+
+    final Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      final int seed = t + 1;
+      workers[t] = new Thread() {
+        @Override
+        public void run() {
+          final Random random = new Random(seed);
+          long ops = 0;
+          long found = 0;
+          try {
+            start.await();
+            while ((ops & 1023) != 0 || System.currentTimeMillis() < deadline[0]) {
+              if (read(cache, nextRid(random), random.nextInt(100) < popPercent))
+                found++;
+              ops++;
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          operations.addAndGet(ops);
+          hits.addAndGet(found);
+        }
+      };
+      workers[t].start();
+    }
+
+    final long begin = System.currentTimeMillis();
+    deadline[0] = begin + duration;
+    start.countDown();
+    for (Thread worker : workers)
+      worker.join();
+    final long elapsed = System.currentTimeMillis() - begin;
+
+    System.out.printf("%-16s %8d %14d %10.3f\n", cache.getClass().getSimpleName(), threads, operations.get() * 1000 / elapsed,
+        (float) hits.get() / operations.get());
+
+    cache.disable();
+  }
+
+  private static boolean read(final OCache cache, final ORecordId rid, final boolean pop) {
+    if (pop) {
+      cache.lock(rid);
+      try {
+        final ORecordInternal<?> record = cache.remove(rid);
+        cache.put(record != null ? record : new ODocument(rid));
+        return record != null;
+      } finally {
+        cache.unlock(rid);
+      }
+    }
+
+    if (cache.get(rid) != null)
+      return true;
+
+    cache.put(new ODocument(rid));
+    return false;
+  }
+
+  /**
+   * Returns the 80% of the times a record between the first 10%.
+   */
+  private ORecordId nextRid(final Random random) {
+    final int position = random.nextInt(100) < 80 ? random.nextInt(records / 10) : random.nextInt(records);
+    return new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(position));
+  }
+}
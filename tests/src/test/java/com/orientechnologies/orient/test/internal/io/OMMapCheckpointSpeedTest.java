@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.internal.io;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.storage.fs.OFileMMap;
+
+/**
+ * Measures the latency of random writes against a memory mapped file while the file is periodically synchronized, as the storage
+ * does. Run it once with the background checkpoint disabled and once enabled to compare the latency distributions: without it
+ * every synch flushes all the dirty blocks together.
+ *
+ * Arguments: [checkpoint rate in Mb/sec, 0 = disabled] [file size in Mb] [seconds] [synch interval in ms]
+ */
+@Test(enabled = false)
+public class OMMapCheckpointSpeedTest {
+  private static final String FILE_NAME = "target/mmapCheckpointTest.odt";
+
+  public static void main(String[] args) throws Exception {
+    final int rate = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+    final int fileSize = (args.length > 1 ? Integer.parseInt(args[1]) : 256) * 1024 * 1024;
+    final long duration = (args.length > 2 ? Integer.parseInt(args[2]) : 20) * 1000l;
+    final long synchInterval = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+
+    OGlobalConfiguration.FILE_MMAP_CHECKPOINT_RATE.setValue(rate);
+
+    new File(FILE_NAME).getParentFile().mkdirs();
+    new File(FILE_NAME).delete();
+
+    final OFileMMap file = new OFileMMap().init(FILE_NAME, "rw");
+    file.create(fileSize);
+    file.allocateSpace(fileSize);
+
+    // ONE LATENCY BUCKET PER MICROSECOND UP TO 10 SECONDS
+    final long[] histogram = new long[10000000];
+    final Random random = new Random(0);
+    final byte[] record = new byte[256];
+
+    long operations = 0;
+    long maxLatency = 0;
+    final long begin = System.currentTimeMillis();
+    long nextSynch = begin + synchInterval;
+
+    while (System.currentTimeMillis() - begin < duration) {
+      random.nextBytes(record);
+      final long offset = (long) random.nextInt(fileSize / record.length) * record.length;
+
+      final long start = System.nanoTime();
+      file.write(offset, record);
+      if (System.currentTimeMillis() >= nextSynch) {
+        file.synch();
+        nextSynch += synchInterval;
+      }
+      final long latency = (System.nanoTime() - start) / 1000;
+
+      histogram[(int) Math.min(latency, histogram.length - 1)]++;
+      if (latency > maxLatency)
+        maxLatency = latency;
+      operations++;
+    }
+
+    file.close();
+    file.delete();
+
+    System.out.printf("checkpoint rate=%dMb/s file=%dMb writes=%d writes/sec=%d\n", rate, fileSize / 1024 / 1024, operations,
+        operations * 1000 / duration);
+    for (double percentile : Arrays.asList(50d, 99d, 99.9d, 99.99d))
+      System.out.printf("p%-6s %10dus\n", percentile, percentile(histogram, operations, percentile));
+    System.out.printf("max     %10dus\n", maxLatency);
+  }
+
+  private static long percentile(final long[] histogram, final long total, final double percentile) {
+    final long threshold = (long) Math.ceil(total * percentile / 100);
+    long count = 0;
+    for (int i = 0; i < histogram.length; ++i) {
+      count += histogram[i];
+      if (count >= threshold)
+        return i;
+    }
+    return histogram.length;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.internal.io;
+
+import java.io.File;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.storage.fs.OFile;
+import com.orientechnologies.orient.core.storage.fs.OFileFactory;
+import com.orientechnologies.orient.core.storage.fs.OFilePaged;
+
+/**
+ * Compares the memory mapped files with the paged files on a file bigger than the memory given to them. Records are read and
+ * written at random positions with a skewed distribution: most of the accesses hit a small part of the file, as happens with the
+ * clusters of a real database. Run it once per mode with the same arguments.
+ *
+ * Arguments: [mmap|paged] [file size in Mb] [memory in Mb] [seconds] [percentage of writes]
+ */
+@Test(enabled = false)
+public class OPageCacheSpeedTest {
+  private static final String FILE_NAME   = "target/pageCacheTest.odt";
+  private static final int    RECORD_SIZE = 512;
+
+  public static void main(String[] args) throws Exception {
+    final String mode = args.length > 0 ? args[0] : OFilePaged.NAME;
+    final int fileSize = (args.length > 1 ? Integer.parseInt(args[1]) : 1024) * 1024 * 1024;
+    final long memory = (args.length > 2 ? Integer.parseInt(args[2]) : 128) * 1024l * 1024l;
+    final long duration = (args.length > 3 ? Integer.parseInt(args[3]) : 30) * 1000l;
+    final int writes = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+    OGlobalConfiguration.FILE_PAGE_CACHE_ENABLED.setValue(OFilePaged.NAME.equals(mode));
+    OGlobalConfiguration.FILE_PAGE_CACHE_SIZE.setValue(memory);
+    OGlobalConfiguration.FILE_MMAP_MAX_MEMORY.setValue(memory);
+
+    new File(FILE_NAME).getParentFile().mkdirs();
+    new File(FILE_NAME).delete();
+
+    final OFile file = OFileFactory.instance().create(OFileFactory.MMAP, FILE_NAME, "rw");
+    file.create(fileSize);
+    file.allocateSpace(fileSize);
+
+    final int records = fileSize / RECORD_SIZE;
+    final byte[] record = new byte[RECORD_SIZE];
+    final Random random = new Random(0);
+
+    // FILL THE FILE BEFORE TO MEASURE
+    long begin = System.currentTimeMillis();
+    for (int i = 0; i < records; ++i)
+      file.write((long) i * RECORD_SIZE, record);
+    file.synch();
+    System.out.printf("%s: file of %dMb written in %dms\n", file.getClass().getSimpleName(), fileSize / 1024 / 1024,
+        System.currentTimeMillis() - begin);
+
+    long reads = 0;
+    long updates = 0;
+    begin = System.currentTimeMillis();
+    while (System.currentTimeMillis() - begin < duration) {
+      // 90% OF THE ACCESSES ON 10% OF THE RECORDS
+      final int hot = records / 10;
+      final int position = random.nextInt(10) < 9 ? random.nextInt(hot) : hot + random.nextInt(records - hot);
+
+      if (random.nextInt(100) < writes) {
+        random.nextBytes(record);
+        file.write((long) position * RECORD_SIZE, record);
+        updates++;
+      } else {
+        file.read((long) position * RECORD_SIZE, record, RECORD_SIZE);
+        reads++;
+      }
+    }
+    file.synch();
+    final long elapsed = System.currentTimeMillis() - begin;
+
+    file.close();
+    file.delete();
+
+    System.out.printf("%s: memory=%dMb reads=%d updates=%d operations/sec=%d\n", mode, memory / 1024 / 1024, reads, updates,
+        (reads + updates) * 1000 / elapsed);
+    if (OFilePaged.NAME.equals(mode))
+      System.out.printf("page cache: hits=%d misses=%d\n", OFilePaged.getPageCache().getHits(), OFilePaged.getPageCache()
+          .getMisses());
+  }
+}